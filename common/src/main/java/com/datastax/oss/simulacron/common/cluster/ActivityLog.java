@@ -18,17 +18,153 @@ package com.datastax.oss.simulacron.common.cluster;
 import com.datastax.oss.protocol.internal.Frame;
 import com.datastax.oss.simulacron.common.stubbing.InternalStubMapping;
 import com.datastax.oss.simulacron.common.stubbing.StubMapping;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.SocketAddress;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.Queue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+/**
+ * Records the {@link QueryLog}s of a node. By default the log is unbounded, when given a capacity
+ * it is instead backed by a fixed-size ring buffer and entries are evicted according to its {@link
+ * EvictionPolicy}. Only a sample of the requests may be recorded, see {@link ActivityLogSampling}.
+ *
+ * <p>For long runs a log can also be {@link #spilling} its entries to memory-mapped files so that
+ * they are not retained on the heap.
+ *
+ * <p>Each recorded entry is given a sequence number, see {@link Entry}.
+ */
 public class ActivityLog {
 
-  private Queue<QueryLog> queryLog = new ConcurrentLinkedQueue<>();
+  /** Capacity used to indicate that the log should never evict entries. */
+  public static final int UNBOUNDED = 0;
+
+  /** What to do when adding an entry to a log that is at capacity. */
+  public enum EvictionPolicy {
+    /** Overwrite the oldest entry. */
+    DROP_OLDEST,
+    /** Discard the entry being added. */
+    DROP_NEWEST
+  }
+
+  // entries are only allocated when the first one is added so that idle nodes hold no memory.
+  private volatile Queue<Entry> queryLog;
+
+  private final int capacity;
+
+  private final EvictionPolicy evictionPolicy;
+
+  private volatile AtomicReferenceArray<Entry> slots;
+
+  private final SpillLog spill;
+
+  /** Sequence number of the next entry to be written, unless spilling. */
+  private final AtomicLong tail = new AtomicLong();
+
+  /** Sequence number of the first entry that was not cleared. */
+  private volatile long head = 0;
+
+  private final AtomicLong evicted = new AtomicLong();
+
+  private volatile Sampler sampler;
+
+  private final LongAdder sampledOut = new LongAdder();
+
+  public ActivityLog() {
+    this(UNBOUNDED, EvictionPolicy.DROP_OLDEST);
+  }
+
+  /**
+   * @param capacity maximum number of entries to retain, or {@link #UNBOUNDED}.
+   * @param evictionPolicy what to do when adding an entry when capacity is reached.
+   */
+  public ActivityLog(int capacity, EvictionPolicy evictionPolicy) {
+    this(capacity, evictionPolicy, ActivityLogSampling.RECORD_ALL);
+  }
+
+  /**
+   * @param capacity maximum number of entries to retain, or {@link #UNBOUNDED}.
+   * @param evictionPolicy what to do when adding an entry when capacity is reached.
+   * @param sampling which requests to record.
+   */
+  public ActivityLog(int capacity, EvictionPolicy evictionPolicy, ActivityLogSampling sampling) {
+    if (capacity < 0) {
+      throw new IllegalArgumentException("Activity log capacity must be >= 0, got " + capacity);
+    }
+    this.capacity = capacity;
+    this.evictionPolicy = evictionPolicy != null ? evictionPolicy : EvictionPolicy.DROP_OLDEST;
+    this.spill = null;
+    setSampling(sampling);
+  }
+
+  private ActivityLog(SpillLog spill, ActivityLogSampling sampling) {
+    this.capacity = UNBOUNDED;
+    this.evictionPolicy = EvictionPolicy.DROP_OLDEST;
+    this.spill = spill;
+    setSampling(sampling);
+  }
+
+  /**
+   * Creates an unbounded log that appends its entries to memory-mapped segment files instead of
+   * keeping them in memory. Any segment already in the directory is deleted. This blocks on the
+   * file system, see {@link #spillingAsync} to create a log from an event loop.
+   *
+   * @param spill where to store the entries.
+   * @param sampling which requests to record.
+   * @return the created log, it should be {@link #close() closed} when no longer used.
+   */
+  public static ActivityLog spilling(ActivityLogSpill spill, ActivityLogSampling sampling) {
+    try {
+      return spillingAsync(spill, sampling).toCompletableFuture().join();
+    } catch (CompletionException e) {
+      Throwable cause = e.getCause();
+      throw new UncheckedIOException(
+          "Failed to create activity log in " + spill.getDirectory(),
+          cause instanceof UncheckedIOException
+              ? ((UncheckedIOException) cause).getCause()
+              : new IOException(cause));
+    }
+  }
+
+  /**
+   * Same as {@link #spilling} but creates the directory and the first segment in the background.
+   *
+   * @param spill where to store the entries.
+   * @param sampling which requests to record.
+   * @return future that completes with the created log once entries can be added to it.
+   */
+  public static CompletionStage<ActivityLog> spillingAsync(
+      ActivityLogSpill spill, ActivityLogSampling sampling) {
+    SpillLog spillLog = new SpillLog(spill.getDirectory(), spill.getSegmentSize());
+    return spillLog.ready().thenApply(v -> new ActivityLog(spillLog, sampling));
+  }
+
+  /**
+   * Reads the entries a spilling log left on disk, for instance to export them after a run.
+   *
+   * @param directory the directory of the {@link ActivityLogSpill} the log was created with.
+   * @return the entries in the order they were recorded.
+   */
+  public static Stream<QueryLog> readSpilled(Path directory) throws IOException {
+    return stream(SpillLog.read(directory));
+  }
 
   public QueryLog addLog(
       Frame frame, SocketAddress socketAddress, long timestamp, Optional<StubMapping> stubOption) {
@@ -38,23 +174,330 @@ public class ActivityLog {
       isPrimed = !(stub instanceof InternalStubMapping);
     }
     QueryLog log = new QueryLog(frame, socketAddress, timestamp, isPrimed, stubOption);
-    queryLog.add(log);
+    if (!sampler.accept(isPrimed)) {
+      // still returned to notify listeners.
+      sampledOut.increment();
+    } else if (spill != null) {
+      boolean appended;
+      try {
+        appended = spill.append(log);
+      } catch (UncheckedIOException e) {
+        // e.g. the disk is full, never fail the request because of its log.
+        appended = false;
+      }
+      if (!appended) {
+        evicted.incrementAndGet();
+      }
+    } else if (capacity == UNBOUNDED) {
+      queryLog().add(new Entry(tail.getAndIncrement(), log));
+    } else if (evictionPolicy == EvictionPolicy.DROP_NEWEST) {
+      addOrDrop(log);
+    } else {
+      addOrOverwrite(log);
+    }
     return log;
   }
 
+  private Queue<Entry> queryLog() {
+    Queue<Entry> queryLog = this.queryLog;
+    if (queryLog == null) {
+      synchronized (this) {
+        queryLog = this.queryLog;
+        if (queryLog == null) {
+          queryLog = new ConcurrentLinkedQueue<>();
+          this.queryLog = queryLog;
+        }
+      }
+    }
+    return queryLog;
+  }
+
+  private AtomicReferenceArray<Entry> slots() {
+    AtomicReferenceArray<Entry> slots = this.slots;
+    if (slots == null) {
+      synchronized (this) {
+        slots = this.slots;
+        if (slots == null) {
+          slots = new AtomicReferenceArray<>(capacity);
+          this.slots = slots;
+        }
+      }
+    }
+    return slots;
+  }
+
+  private void addOrOverwrite(QueryLog log) {
+    AtomicReferenceArray<Entry> slots = slots();
+    long sequence = tail.getAndIncrement();
+    if (sequence - head >= capacity) {
+      evicted.incrementAndGet();
+    }
+    int index = index(sequence);
+    Entry slot = new Entry(sequence, log);
+    Entry current;
+    do {
+      current = slots.get(index);
+      // A writer that lapped us already stored a more recent entry in this slot.
+      if (current != null && current.sequence > sequence) {
+        return;
+      }
+    } while (!slots.compareAndSet(index, current, slot));
+  }
+
+  private void addOrDrop(QueryLog log) {
+    long sequence;
+    do {
+      sequence = tail.get();
+      if (sequence - head >= capacity) {
+        evicted.incrementAndGet();
+        return;
+      }
+    } while (!tail.compareAndSet(sequence, sequence + 1));
+    slots().set(index(sequence), new Entry(sequence, log));
+  }
+
+  private int index(long sequence) {
+    return (int) (sequence % capacity);
+  }
+
   public void clear() {
-    queryLog.clear();
+    if (spill != null) {
+      spill.clear();
+    } else if (capacity == UNBOUNDED) {
+      Queue<Entry> queryLog = this.queryLog;
+      if (queryLog != null) {
+        queryLog.clear();
+      }
+    } else {
+      long end = tail.get();
+      long start = Math.max(head, end - capacity);
+      head = end;
+      // drop the cleared entries so that their frames can be garbage collected.
+      AtomicReferenceArray<Entry> slots = this.slots;
+      if (slots != null) {
+        for (long sequence = start; sequence < end; sequence++) {
+          int index = index(sequence);
+          Entry slot = slots.get(index);
+          // leave entries added since the clear began.
+          if (slot != null && slot.sequence < end) {
+            slots.compareAndSet(index, slot, null);
+          }
+        }
+      }
+    }
   }
 
   public int getSize() {
-    return queryLog.size();
+    if (spill != null) {
+      return (int) Math.min(spill.size(), Integer.MAX_VALUE);
+    } else if (capacity == UNBOUNDED) {
+      Queue<Entry> queryLog = this.queryLog;
+      return queryLog != null ? queryLog.size() : 0;
+    }
+    return (int) Math.min(tail.get() - head, capacity);
+  }
+
+  /** @return The maximum number of entries retained, or {@link #UNBOUNDED}. */
+  public int getCapacity() {
+    return capacity;
+  }
+
+  public EvictionPolicy getEvictionPolicy() {
+    return evictionPolicy;
+  }
+
+  /**
+   * @return How many entries were overwritten or discarded because the log was at capacity, or
+   *     dropped by a spilling log because its next segment wasn't ready or could not be written.
+   */
+  public long getEvictedCount() {
+    return evicted.get();
+  }
+
+  /**
+   * Replaces which requests are recorded from now on.
+   *
+   * @param sampling which requests to record, {@link ActivityLogSampling#RECORD_ALL} for all.
+   */
+  public void setSampling(ActivityLogSampling sampling) {
+    this.sampler = new Sampler(sampling != null ? sampling : ActivityLogSampling.RECORD_ALL);
+  }
+
+  public ActivityLogSampling getSampling() {
+    return sampler.sampling;
+  }
+
+  /** @return How many requests were not recorded because of the {@link ActivityLogSampling}. */
+  public long getSampledOutCount() {
+    return sampledOut.sum();
+  }
+
+  /** @return Whether entries are stored on disk, see {@link #spilling}. */
+  public boolean isSpilling() {
+    return spill != null;
   }
 
   public List<QueryLog> getLogs() {
-    return new ArrayList<>(queryLog);
+    if (spill != null) {
+      List<QueryLog> logs = new ArrayList<>();
+      spill.iterator().forEachRemaining(logs::add);
+      return logs;
+    }
+    List<Entry> entries = getEntries();
+    List<QueryLog> logs = new ArrayList<>(entries.size());
+    for (Entry entry : entries) {
+      logs.add(entry.log);
+    }
+    return logs;
+  }
+
+  private List<Entry> getEntries() {
+    if (capacity == UNBOUNDED) {
+      Queue<Entry> queryLog = this.queryLog;
+      return queryLog != null ? new ArrayList<>(queryLog) : new ArrayList<>();
+    }
+    AtomicReferenceArray<Entry> slots = this.slots;
+    if (slots == null) {
+      return new ArrayList<>();
+    }
+    long end = tail.get();
+    long start = Math.max(head, end - capacity);
+    List<Entry> entries = new ArrayList<>((int) Math.max(end - start, 0));
+    for (long sequence = start; sequence < end; sequence++) {
+      Entry slot = slots.get(index(sequence));
+      // skip entries that are not written yet or were overwritten since we started reading.
+      if (slot != null && slot.sequence == sequence) {
+        entries.add(slot);
+      }
+    }
+    return entries;
   }
 
   public List<QueryLog> getLogs(boolean primed) {
-    return queryLog.stream().filter(l -> l.isPrimed() == primed).collect(Collectors.toList());
+    return getLogs(l -> l.isPrimed() == primed);
+  }
+
+  /**
+   * @param filter which entries to return, it is tested against each entry in order.
+   * @return The entries matching the filter.
+   */
+  public List<QueryLog> getLogs(Predicate<QueryLog> filter) {
+    return stream().filter(filter).collect(Collectors.toList());
+  }
+
+  /**
+   * @return The entries of this log, unlike {@link #getLogs()} a spilling log reads them from disk
+   *     as the stream is consumed instead of loading them all at once.
+   */
+  public Stream<QueryLog> stream() {
+    if (spill != null) {
+      return stream(spill.iterator());
+    }
+    return getLogs().stream();
+  }
+
+  /**
+   * Same as {@link #stream()} but with the sequence number of each entry, which can be used to
+   * resume reading after a given entry.
+   *
+   * @return The entries of this log in the order they were recorded.
+   */
+  public Stream<Entry> entries() {
+    if (spill != null) {
+      return stream(spill.entries());
+    }
+    return getEntries().stream();
+  }
+
+  private static <T> Stream<T> stream(Iterator<T> iterator) {
+    return StreamSupport.stream(
+        Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false);
+  }
+
+  /**
+   * Releases the resources held by this log, entries of a spilling log stay on disk and are flushed
+   * in the background.
+   */
+  public void close() {
+    if (spill != null) {
+      spill.close();
+    }
+  }
+
+  /** Applies an {@link ActivityLogSampling}, holding the state it needs. */
+  private static class Sampler {
+    private final ActivityLogSampling sampling;
+    private final AtomicLong counter = new AtomicLong();
+    /** Earliest time at which the next request can be recorded when rate limited. */
+    private final AtomicLong nextAllowed = new AtomicLong(System.nanoTime());
+    private final long interval;
+    private final long tolerance;
+
+    Sampler(ActivityLogSampling sampling) {
+      this.sampling = sampling;
+      if (sampling.getMaxPerSecond() > 0) {
+        this.interval =
+            Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / sampling.getMaxPerSecond()));
+        // allow up to a second worth of requests at once.
+        this.tolerance = interval * (Math.max(1, (long) sampling.getMaxPerSecond()) - 1);
+      } else {
+        this.interval = 0;
+        this.tolerance = 0;
+      }
+    }
+
+    boolean accept(boolean primed) {
+      switch (sampling.getFilter()) {
+        case PRIMED:
+          if (!primed) {
+            return false;
+          }
+          break;
+        case UNPRIMED:
+          if (primed) {
+            return false;
+          }
+          break;
+        default:
+          break;
+      }
+      if (sampling.getOneIn() > 1 && counter.getAndIncrement() % sampling.getOneIn() != 0) {
+        return false;
+      }
+      if (interval > 0) {
+        long now = System.nanoTime();
+        long allowed;
+        do {
+          allowed = nextAllowed.get();
+          if (allowed - now > tolerance) {
+            return false;
+          }
+        } while (!nextAllowed.compareAndSet(allowed, Math.max(allowed, now) + interval));
+      }
+      return true;
+    }
+  }
+
+  /**
+   * An entry of a log with its sequence number. Sequence numbers increase in the order entries are
+   * recorded and are not reused once the log is cleared, so entries recorded later on are always
+   * given a greater one.
+   */
+  public static class Entry {
+    private final long sequence;
+    private final QueryLog log;
+
+    Entry(long sequence, QueryLog log) {
+      this.sequence = sequence;
+      this.log = log;
+    }
+
+    public long getSequence() {
+      return sequence;
+    }
+
+    public QueryLog getLog() {
+      return log;
+    }
   }
 }
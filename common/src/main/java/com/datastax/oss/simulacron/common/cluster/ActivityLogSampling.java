@@ -0,0 +1,99 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.common.cluster;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Which requests an {@link ActivityLog} records, so that logging can stay enabled in long running
+ * tests at a fraction of its cost. Requests are first filtered, then 1 in {@link #getOneIn()} of
+ * the remaining ones is kept, and finally at most {@link #getMaxPerSecond()} per second are kept.
+ * Requests that are not recorded are counted, see {@link ActivityLog#getSampledOutCount()}.
+ */
+public class ActivityLogSampling {
+
+  /** Which requests to consider for recording. */
+  public enum Filter {
+    @JsonProperty("all")
+    ALL,
+    /** Only requests that matched a prime. */
+    @JsonProperty("primed")
+    PRIMED,
+    /** Only requests that did not match a prime. */
+    @JsonProperty("unprimed")
+    UNPRIMED
+  }
+
+  /** Records every request, the default. */
+  public static final ActivityLogSampling RECORD_ALL = new ActivityLogSampling(1, 0, Filter.ALL);
+
+  private final int oneIn;
+
+  private final double maxPerSecond;
+
+  private final Filter filter;
+
+  /**
+   * @param oneIn record 1 in this many requests, 1 to record all of them.
+   * @param maxPerSecond maximum number of requests recorded per second, 0 for no limit.
+   * @param filter which requests to consider for recording.
+   */
+  @JsonCreator
+  public ActivityLogSampling(
+      @JsonProperty("one_in") int oneIn,
+      @JsonProperty("max_per_second") double maxPerSecond,
+      @JsonProperty("filter") Filter filter) {
+    if (oneIn < 0 || maxPerSecond < 0) {
+      throw new IllegalArgumentException(
+          "Sampling settings must be positive, got one_in="
+              + oneIn
+              + ", max_per_second="
+              + maxPerSecond);
+    }
+    // 0 is what jackson gives when one_in is absent.
+    this.oneIn = Math.max(1, oneIn);
+    this.maxPerSecond = maxPerSecond;
+    this.filter = filter != null ? filter : Filter.ALL;
+  }
+
+  @JsonProperty("one_in")
+  public int getOneIn() {
+    return oneIn;
+  }
+
+  @JsonProperty("max_per_second")
+  public double getMaxPerSecond() {
+    return maxPerSecond;
+  }
+
+  @JsonProperty("filter")
+  public Filter getFilter() {
+    return filter;
+  }
+
+  @Override
+  public String toString() {
+    return "ActivityLogSampling{"
+        + "oneIn="
+        + oneIn
+        + ", maxPerSecond="
+        + maxPerSecond
+        + ", filter="
+        + filter
+        + '}';
+  }
+}
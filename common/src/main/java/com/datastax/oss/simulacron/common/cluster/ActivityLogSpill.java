@@ -0,0 +1,65 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.common.cluster;
+
+import java.nio.file.Path;
+
+/**
+ * Where and how an {@link ActivityLog} spills its entries to disk instead of keeping them in
+ * memory, see {@link ActivityLog#spilling(ActivityLogSpill, ActivityLogSampling)}.
+ */
+public class ActivityLogSpill {
+
+  /** Default size of each segment file, 64 MiB. */
+  public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+  private final Path directory;
+
+  private final int segmentSize;
+
+  /** @param directory where to store segment files. */
+  public ActivityLogSpill(Path directory) {
+    this(directory, DEFAULT_SEGMENT_SIZE);
+  }
+
+  /**
+   * @param directory where to store segment files.
+   * @param segmentSize size of each segment file in bytes, a new one is started when it is full.
+   */
+  public ActivityLogSpill(Path directory, int segmentSize) {
+    if (segmentSize <= 0) {
+      throw new IllegalArgumentException("Segment size must be > 0, got " + segmentSize);
+    }
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+  }
+
+  public Path getDirectory() {
+    return directory;
+  }
+
+  public int getSegmentSize() {
+    return segmentSize;
+  }
+
+  /**
+   * @param child name of a sub directory.
+   * @return the same configuration storing segments in the given sub directory.
+   */
+  public ActivityLogSpill resolve(String child) {
+    return new ActivityLogSpill(directory.resolve(child), segmentSize);
+  }
+}
@@ -62,6 +62,23 @@ public class ClusterConnectionReport extends ConnectionReport
    */
   public NodeConnectionReport addNode(
       AbstractNode node, List<SocketAddress> addressList, SocketAddress serverAddress) {
+    return addNode(node, addressList, serverAddress, null);
+  }
+
+  /**
+   * Convenience method for adding a single node's connection to ClusterConnectionReport
+   *
+   * @param node Node to add
+   * @param addressList client side of the connections this node has
+   * @param serverAddress the address where this node is listening
+   * @param traffic throughput of the node's connections, or null if its traffic is not shaped
+   * @return report for added node.
+   */
+  public NodeConnectionReport addNode(
+      AbstractNode node,
+      List<SocketAddress> addressList,
+      SocketAddress serverAddress,
+      TrafficReport traffic) {
     Long dcId = node.getDataCenter().getId();
     Optional<DataCenterConnectionReport> optionalDatacenterReport =
         dataCenters.stream().filter(dc -> dc.getId().equals(dcId)).findFirst();
@@ -73,7 +90,8 @@ public class ClusterConnectionReport extends ConnectionReport
       this.addDataCenter(datacenterReport);
     }
     NodeConnectionReport nodeReport =
-        new NodeConnectionReport(node.getId(), addressList, serverAddress, datacenterReport);
+        new NodeConnectionReport(
+            node.getId(), addressList, serverAddress, traffic, datacenterReport);
     datacenterReport.addNode(nodeReport);
     return nodeReport;
   }
@@ -44,6 +44,33 @@ public class ClusterQueryLogReport extends QueryLogReport
   }
 
   public NodeQueryLogReport addNode(AbstractNode node, List<QueryLog> logs) {
+    return addNode(node, logs, 0);
+  }
+
+  /**
+   * Adds the logs of the given node to this report.
+   *
+   * @param node node the logs belong to.
+   * @param logs the logs to report.
+   * @param evicted number of entries the node's activity log evicted because it was full.
+   * @return the report for the node.
+   */
+  public NodeQueryLogReport addNode(AbstractNode node, List<QueryLog> logs, long evicted) {
+    return addNode(node, logs, evicted, 0);
+  }
+
+  /**
+   * Adds the logs of the given node to this report.
+   *
+   * @param node node the logs belong to.
+   * @param logs the logs to report.
+   * @param evicted number of entries the node's activity log evicted because it was full.
+   * @param sampledOut number of requests the node's activity log did not record because of
+   *     sampling.
+   * @return the report for the node.
+   */
+  public NodeQueryLogReport addNode(
+      AbstractNode node, List<QueryLog> logs, long evicted, long sampledOut) {
     Long dcId = node.getDataCenter().getId();
     Optional<DataCenterQueryLogReport> optionalDatacenterReport =
         dataCenters.stream().filter(dc -> dc.getId().equals(dcId)).findFirst();
@@ -54,7 +81,8 @@ public class ClusterQueryLogReport extends QueryLogReport
       datacenterReport = new DataCenterQueryLogReport(dcId, this);
       this.addDataCenter(datacenterReport);
     }
-    NodeQueryLogReport nodeReport = new NodeQueryLogReport(node.getId(), logs, datacenterReport);
+    NodeQueryLogReport nodeReport =
+        new NodeQueryLogReport(node.getId(), logs, evicted, sampledOut, datacenterReport);
     datacenterReport.addNode(nodeReport);
     return nodeReport;
   }
@@ -17,6 +17,7 @@ package com.datastax.oss.simulacron.common.cluster;
 
 import com.fasterxml.jackson.annotation.JsonBackReference;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import java.net.SocketAddress;
 import java.util.Collections;
@@ -32,6 +33,10 @@ public class NodeConnectionReport extends ConnectionReport
   @JsonProperty private final List<SocketAddress> connections;
   @JsonProperty private final SocketAddress address;
 
+  @JsonProperty
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  private final TrafficReport traffic;
+
   @JsonBackReference private final DataCenterConnectionReport parent;
 
   @SuppressWarnings("unused")
@@ -45,9 +50,19 @@ public class NodeConnectionReport extends ConnectionReport
       List<SocketAddress> connections,
       SocketAddress address,
       DataCenterConnectionReport parent) {
+    this(id, connections, address, null, parent);
+  }
+
+  public NodeConnectionReport(
+      Long id,
+      List<SocketAddress> connections,
+      SocketAddress address,
+      TrafficReport traffic,
+      DataCenterConnectionReport parent) {
     super(id);
     this.connections = connections;
     this.address = address;
+    this.traffic = traffic;
     this.parent = parent;
     if (parent != null) {
       parent.addNode(this);
@@ -63,6 +78,11 @@ public class NodeConnectionReport extends ConnectionReport
     return address;
   }
 
+  /** @return throughput of the node's connections if its traffic is shaped, otherwise null. */
+  public TrafficReport getTraffic() {
+    return traffic;
+  }
+
   @Override
   public DataCenterConnectionReport getDataCenter() {
     return parent;
@@ -15,7 +15,10 @@
  */
 package com.datastax.oss.simulacron.common.cluster;
 
+import static com.fasterxml.jackson.annotation.JsonInclude.Include.NON_DEFAULT;
+
 import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import java.util.List;
 
@@ -28,6 +31,14 @@ public class NodeQueryLogReport extends QueryLogReport
   @JsonProperty("queries")
   private List<QueryLog> queryLogs;
 
+  @JsonProperty("evicted")
+  @JsonInclude(NON_DEFAULT)
+  private long evicted;
+
+  @JsonProperty("sampled_out")
+  @JsonInclude(NON_DEFAULT)
+  private long sampledOut;
+
   @JsonBackReference private final DataCenterQueryLogReport parent;
 
   NodeQueryLogReport() {
@@ -36,9 +47,25 @@ public class NodeQueryLogReport extends QueryLogReport
   }
 
   public NodeQueryLogReport(Long id, List<QueryLog> queryLogs, DataCenterQueryLogReport parent) {
+    this(id, queryLogs, 0, parent);
+  }
+
+  public NodeQueryLogReport(
+      Long id, List<QueryLog> queryLogs, long evicted, DataCenterQueryLogReport parent) {
+    this(id, queryLogs, evicted, 0, parent);
+  }
+
+  public NodeQueryLogReport(
+      Long id,
+      List<QueryLog> queryLogs,
+      long evicted,
+      long sampledOut,
+      DataCenterQueryLogReport parent) {
 
     super(id);
     this.queryLogs = queryLogs;
+    this.evicted = evicted;
+    this.sampledOut = sampledOut;
     this.parent = parent;
   }
 
@@ -69,6 +96,16 @@ public class NodeQueryLogReport extends QueryLogReport
     return queryLogs;
   }
 
+  /** @return How many entries the node's activity log evicted because it was full. */
+  public long getEvicted() {
+    return evicted;
+  }
+
+  /** @return How many requests the node's activity log did not record because of sampling. */
+  public long getSampledOut() {
+    return sampledOut;
+  }
+
   @Override
   public DataCenterQueryLogReport getDataCenter() {
     return parent;
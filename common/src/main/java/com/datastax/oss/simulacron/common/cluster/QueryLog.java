@@ -16,6 +16,7 @@
 package com.datastax.oss.simulacron.common.cluster;
 
 import com.datastax.oss.protocol.internal.Frame;
+import com.datastax.oss.protocol.internal.Message;
 import com.datastax.oss.protocol.internal.request.Batch;
 import com.datastax.oss.protocol.internal.request.Execute;
 import com.datastax.oss.protocol.internal.request.Prepare;
@@ -31,6 +32,13 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Optional;
 
+/**
+ * A request received by a node.
+ *
+ * <p>Logs recorded by an {@link ActivityLog} only capture the frame, connection, timestamp and
+ * matching stub when the request is received. Everything else, including decoding the values of
+ * primed requests, is derived the first time the log is read since most logs never are.
+ */
 public class QueryLog {
 
   @JsonProperty("type")
@@ -63,6 +71,11 @@ public class QueryLog {
   @JsonProperty(value = "decodedValues")
   private List<LinkedHashMap<String, Object>> decodedValues = Collections.emptyList();
 
+  /** The stub that matched the frame, only retained until the log is materialized. */
+  private StubMapping stub;
+
+  private volatile boolean materialized;
+
   @JsonCreator
   public QueryLog(
       @JsonProperty("query") String query,
@@ -79,6 +92,7 @@ public class QueryLog {
     this.clientTimestamp = clientTimestamp;
     this.receivedTimestamp = receivedTimestamp;
     this.primed = primed;
+    this.materialized = true;
   }
 
   QueryLog(
@@ -91,16 +105,98 @@ public class QueryLog {
     this.connection = connection;
     this.receivedTimestamp = receivedTimestamp;
     this.primed = primed;
+    this.stub = stubOption.orElse(null);
+  }
+
+  /** Restores a log read back from disk, see {@link SpillLog}. */
+  QueryLog(
+      Frame frame,
+      String type,
+      String query,
+      ConsistencyLevel consistency,
+      ConsistencyLevel serialConsistency,
+      SocketAddress connection,
+      long receivedTimestamp,
+      long clientTimestamp,
+      boolean primed) {
+    this(
+        query,
+        consistency,
+        serialConsistency,
+        connection,
+        receivedTimestamp,
+        clientTimestamp,
+        primed);
+    this.frame = frame;
+    this.type = type;
+  }
+
+  /** @return The query text of this log, without decoding its values if not materialized yet. */
+  String getQueryText() {
+    if (!materialized) {
+      synchronized (this) {
+        if (!materialized) {
+          return queryText(frame.message, stub);
+        }
+      }
+    }
+    return query;
+  }
+
+  /**
+   * @param message the logged request.
+   * @param stub the stub that matched the request, if any.
+   * @return the query of the request, or its type for requests that have none and aren't batches.
+   */
+  private static String queryText(Message message, StubMapping stub) {
+    if (message instanceof Query) {
+      return ((Query) message).query;
+    } else if (message instanceof Execute) {
+      // the query of a prepared statement is only known from the prime it matched.
+      if (stub instanceof Prime
+          && ((Prime) stub).getPrimedRequest().when
+              instanceof com.datastax.oss.simulacron.common.request.Query) {
+        return ((com.datastax.oss.simulacron.common.request.Query)
+                ((Prime) stub).getPrimedRequest().when)
+            .query;
+      }
+      return null;
+    } else if (message instanceof Prepare) {
+      return ((Prepare) message).cqlQuery;
+    } else if (message instanceof Batch) {
+      return null;
+    }
+    // in the case where we don't know how to extract info from the message, just use the type of
+    // message.
+    return message.getClass().getSimpleName().toUpperCase();
+  }
+
+  /** Derives the remaining fields from the frame the first time any of them is read. */
+  private void materialize() {
+    if (materialized) {
+      return;
+    }
+    synchronized (this) {
+      if (materialized) {
+        return;
+      }
+      deriveFields(stub);
+      stub = null;
+      materialized = true;
+    }
+  }
+
+  private void deriveFields(StubMapping stub) {
     this.type = frame.message.getClass().getSimpleName().toUpperCase();
 
-    if (primed && stubOption.isPresent() && stubOption.get() instanceof Prime) {
-      Prime prime = (Prime) stubOption.get();
+    if (primed && stub instanceof Prime) {
+      Prime prime = (Prime) stub;
       decodedValues = MessageValuesDecoder.decode(prime, frame);
     }
 
+    this.query = queryText(frame.message, stub);
     if (frame.message instanceof Query) {
       Query query = (Query) frame.message;
-      this.query = query.query;
       this.consistency = ConsistencyLevel.fromCode(query.options.consistency);
       this.serialConsistency = ConsistencyLevel.fromCode(query.options.serialConsistency);
       this.clientTimestamp = query.options.defaultTimestamp;
@@ -109,44 +205,29 @@ public class QueryLog {
       this.consistency = ConsistencyLevel.fromCode(execute.options.consistency);
       this.serialConsistency = ConsistencyLevel.fromCode(execute.options.serialConsistency);
       this.clientTimestamp = execute.options.defaultTimestamp;
-      if (stubOption.isPresent()) {
-        StubMapping stub = stubOption.get();
-        if (stub instanceof Prime) {
-          Prime prime = (Prime) stub;
-          if (prime.getPrimedRequest().when
-              instanceof com.datastax.oss.simulacron.common.request.Query) {
-            com.datastax.oss.simulacron.common.request.Query query =
-                (com.datastax.oss.simulacron.common.request.Query) prime.getPrimedRequest().when;
-            this.query = query.query;
-          }
-        }
-      }
-    } else if (frame.message instanceof Prepare) {
-      Prepare prepare = (Prepare) frame.message;
-      this.query = prepare.cqlQuery;
     } else if (frame.message instanceof Batch) {
       Batch batch = (Batch) frame.message;
       this.clientTimestamp = batch.defaultTimestamp;
-    } else {
-      // in the case where we don't know how to extract info from the message, just set the query to
-      // the type of message.
-      this.query = frame.message.getClass().getSimpleName().toUpperCase();
     }
   }
 
   public String getType() {
+    materialize();
     return type;
   }
 
   public String getQuery() {
+    materialize();
     return query;
   }
 
   public ConsistencyLevel getConsistency() {
+    materialize();
     return consistency;
   }
 
   public ConsistencyLevel getSerialConsistency() {
+    materialize();
     return serialConsistency;
   }
 
@@ -159,6 +240,7 @@ public class QueryLog {
   }
 
   public long getClientTimestamp() {
+    materialize();
     return clientTimestamp;
   }
 
@@ -173,16 +255,19 @@ public class QueryLog {
 
   /** @return List of decoded values if present and primed */
   public List<LinkedHashMap<String, Object>> getDecodedValues() {
+    materialize();
     return this.decodedValues;
   }
 
   /** @return Decoded value from query/execute message if present and primed */
   public Object getDecodedValue(String name) {
+    materialize();
     return this.decodedValues.stream().findFirst().orElse(new LinkedHashMap<>()).get(name);
   }
 
   @Override
   public String toString() {
+    materialize();
     return "QueryLog{"
         + "type='"
         + type
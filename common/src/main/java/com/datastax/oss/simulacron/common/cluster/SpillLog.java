@@ -0,0 +1,739 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.common.cluster;
+
+import com.datastax.oss.protocol.internal.Frame;
+import com.datastax.oss.protocol.internal.Message;
+import com.datastax.oss.protocol.internal.request.Batch;
+import com.datastax.oss.protocol.internal.request.Execute;
+import com.datastax.oss.protocol.internal.request.Prepare;
+import com.datastax.oss.protocol.internal.request.Query;
+import com.datastax.oss.protocol.internal.request.query.QueryOptions;
+import com.datastax.oss.simulacron.common.codec.ConsistencyLevel;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stores {@link QueryLog}s as compact binary records appended to memory-mapped segment files, so
+ * that the complete history of a node can be kept for hours without holding it on the heap.
+ *
+ * <p>Each record holds the timestamps, connection, message type, query text, consistency levels and
+ * the raw bytes of the values of a request. Strings are written once in a definition record and
+ * referenced by id afterwards since the same few queries are usually logged over and over. The
+ * dictionary is bounded by {@link #MAX_STRINGS}, strings first seen once it is full are written
+ * inline in each record instead. A segment ends at the first record with a length of 0, which is
+ * how new files read as they are zero-filled, and a new one is started when the current one is
+ * full.
+ *
+ * <p>Appends happen on event loops so they never touch the file system: all file operations run in
+ * order on a shared pool of background threads. The next segment is created and mapped ahead of
+ * time, and a record is dropped if it arrives while that segment isn't ready yet, see {@link
+ * #append}. Segments are only forced to disk on {@link #close()}. Mapped segments are released by
+ * {@link #clear()}, otherwise they stay mapped until the log is garbage collected.
+ *
+ * <p>Records are read back as {@link QueryLog}s whose frame is rebuilt from the record for QUERY,
+ * EXECUTE and PREPARE messages. Values are not decoded since the prime that matched the request is
+ * not retained.
+ */
+class SpillLog {
+
+  private static final byte STRING_DEFINITION = 1;
+
+  private static final byte ENTRY = 2;
+
+  /** Id of a string written inline in an entry rather than referenced. */
+  private static final int INLINE = -2;
+
+  /** Maximum number of distinct strings kept in the dictionary. */
+  static final int MAX_STRINGS = 4096;
+
+  private static final String SEGMENT_PREFIX = "segment-";
+
+  private static final String SEGMENT_SUFFIX = ".log";
+
+  private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+  /** Runs the file operations of all logs, those of a given log run one at a time in order. */
+  private static final ExecutorService IO =
+      Executors.newFixedThreadPool(
+          Math.max(2, Runtime.getRuntime().availableProcessors()),
+          runnable -> {
+            Thread thread =
+                new Thread(runnable, "simulacron-spill-log-" + THREAD_COUNT.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  private final Path directory;
+
+  private final int segmentSize;
+
+  private final List<Segment> segments = new ArrayList<>();
+
+  private final Map<String, Integer> stringIds = new HashMap<>();
+
+  private final AtomicLong size = new AtomicLong();
+
+  /** Sequence number of the first record, the number of records cleared so far. */
+  private long first;
+
+  private ByteBuffer scratch = ByteBuffer.allocate(1024);
+
+  private Segment current;
+
+  /** The next segment, being created in the background, null once closed. */
+  private CompletableFuture<Segment> next;
+
+  /** The last file operation submitted, the next one runs after it. */
+  private CompletableFuture<?> io = CompletableFuture.completedFuture(null);
+
+  private final CompletableFuture<Void> ready;
+
+  private int segmentCount;
+
+  /** Incremented when segments are released so that iterators over them stop. */
+  private long generation;
+
+  /**
+   * Creates the directory and the first segment in the background, see {@link #ready()}.
+   *
+   * @param directory where to store segments, any segment already there is deleted.
+   * @param segmentSize size of each segment file in bytes.
+   */
+  SpillLog(Path directory, int segmentSize) {
+    if (segmentSize <= 0) {
+      throw new IllegalArgumentException("Segment size must be > 0, got " + segmentSize);
+    }
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+    Path first = nextSegmentPath();
+    next =
+        submit(
+            () -> {
+              Files.createDirectories(directory);
+              deleteSegmentFiles(directory);
+              return createSegment(first, segmentSize);
+            });
+    ready = next.thenApply(segment -> null);
+  }
+
+  /**
+   * @return future that completes when the first segment can be written to, or fails if the
+   *     directory or the segment could not be created.
+   */
+  CompletableFuture<Void> ready() {
+    return ready;
+  }
+
+  /**
+   * Appends a record for the given log, without waiting for the file system.
+   *
+   * @param log the log to record.
+   * @return whether the record was written. It is dropped if the current segment is full and the
+   *     next one isn't created yet or could not be created, if it is larger than a segment or if
+   *     this was closed.
+   */
+  synchronized boolean append(QueryLog log) {
+    Frame frame = log.getFrame();
+    Message message = frame.message;
+    String query = log.getQueryText();
+
+    ByteBuffer buffer = scratch;
+    buffer.clear();
+    buffer.put(ENTRY);
+    buffer.putLong(log.getReceivedTimestamp());
+    buffer.put(log.isPrimed() ? (byte) 1 : 0);
+    buffer.put((byte) frame.protocolVersion);
+    buffer = putString(buffer, message.getClass().getSimpleName().toUpperCase());
+    buffer = putString(buffer, query);
+    buffer = ensure(buffer, 1);
+    SocketAddress connection = log.getConnection();
+    if (connection instanceof InetSocketAddress) {
+      InetSocketAddress address = (InetSocketAddress) connection;
+      byte[] ip = address.getAddress().getAddress();
+      buffer = ensure(buffer, ip.length + 5);
+      buffer.put((byte) ip.length);
+      buffer.put(ip);
+      buffer.putInt(address.getPort());
+    } else {
+      buffer.put((byte) 0);
+    }
+
+    QueryOptions options = null;
+    byte[] preparedId = null;
+    if (message instanceof Query) {
+      options = ((Query) message).options;
+    } else if (message instanceof Execute) {
+      options = ((Execute) message).options;
+      preparedId = ((Execute) message).queryId;
+    }
+    long clientTimestamp = message instanceof Batch ? ((Batch) message).defaultTimestamp : 0;
+    buffer = ensure(buffer, 32);
+    if (options != null) {
+      buffer.put((byte) 1);
+      buffer.putInt(options.consistency);
+      buffer.putInt(options.serialConsistency);
+      buffer.putLong(options.defaultTimestamp);
+      buffer = putBytes(buffer, preparedId);
+      buffer = ensure(buffer, 8);
+      buffer.putInt(options.positionalValues.size());
+      for (ByteBuffer value : options.positionalValues) {
+        buffer = putBytes(buffer, value);
+      }
+      buffer = ensure(buffer, 4);
+      buffer.putInt(options.namedValues.size());
+      for (Map.Entry<String, ByteBuffer> value : options.namedValues.entrySet()) {
+        buffer = putBytes(buffer, value.getKey().getBytes(StandardCharsets.UTF_8));
+        buffer = putBytes(buffer, value.getValue());
+      }
+    } else {
+      buffer.put((byte) 0);
+      buffer.putLong(clientTimestamp);
+    }
+    scratch = buffer;
+    buffer.flip();
+    if (!write(buffer)) {
+      return false;
+    }
+    size.incrementAndGet();
+    return true;
+  }
+
+  private ByteBuffer putString(ByteBuffer buffer, String value) {
+    buffer = ensure(buffer, 4);
+    if (value == null) {
+      buffer.putInt(-1);
+      return buffer;
+    }
+    Integer id = stringIds.get(value);
+    if (id == null && stringIds.size() < MAX_STRINGS) {
+      id = stringIds.size();
+      stringIds.put(value, id);
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      ByteBuffer definition = ByteBuffer.allocate(9 + bytes.length);
+      definition.put(STRING_DEFINITION).putInt(id).putInt(bytes.length).put(bytes).flip();
+      if (!write(definition)) {
+        // never referenced since it can't be read back, defined again by a later record.
+        stringIds.remove(value);
+        id = null;
+      }
+    }
+    if (id != null) {
+      buffer.putInt(id);
+      return buffer;
+    }
+    buffer.putInt(INLINE);
+    return putBytes(buffer, value.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private boolean write(ByteBuffer record) {
+    int length = record.remaining();
+    // keep room for the length of the end marker.
+    if ((current == null || current.buffer.remaining() < length + 8) && !roll(length + 8)) {
+      return false;
+    }
+    current.buffer.putInt(length);
+    current.buffer.put(record);
+    current.end = current.buffer.position();
+    return true;
+  }
+
+  /**
+   * Switches to the segment created ahead of time if it is ready, and starts creating the next one.
+   *
+   * @param minimumSize room needed in the new segment.
+   * @return whether the current segment has the room needed.
+   */
+  private boolean roll(int minimumSize) {
+    if (next == null || !next.isDone()) {
+      return false;
+    }
+    CompletableFuture<Segment> segment = next;
+    Path path = nextSegmentPath();
+    // if creating the segment failed, this tries again.
+    next = submit(() -> createSegment(path, segmentSize));
+    if (segment.isCompletedExceptionally()) {
+      return false;
+    }
+    current = segment.join();
+    segments.add(current);
+    // a record larger than a segment is dropped, the following ones go to the new segment.
+    return current.buffer.remaining() >= minimumSize;
+  }
+
+  /** Runs a file operation in the background after the ones submitted before. */
+  private synchronized <T> CompletableFuture<T> submit(IoTask<T> task) {
+    CompletableFuture<T> result =
+        io.handle((previous, error) -> null)
+            .thenApplyAsync(
+                __ -> {
+                  try {
+                    return task.run();
+                  } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                  }
+                },
+                IO);
+    io = result;
+    return result;
+  }
+
+  private Path nextSegmentPath() {
+    String name = String.format("%s%06d%s", SEGMENT_PREFIX, segmentCount++, SEGMENT_SUFFIX);
+    return directory.resolve(name);
+  }
+
+  private static Segment createSegment(Path path, int capacity) {
+    try (FileChannel channel =
+        FileChannel.open(
+            path,
+            StandardOpenOption.CREATE_NEW,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE)) {
+      return new Segment(path, channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity));
+    } catch (IOException e) {
+      try {
+        Files.deleteIfExists(path);
+      } catch (IOException deleteError) {
+        e.addSuppressed(deleteError);
+      }
+      throw new UncheckedIOException("Failed to create activity log segment " + path, e);
+    }
+  }
+
+  private static ByteBuffer ensure(ByteBuffer buffer, int needed) {
+    if (buffer.remaining() >= needed) {
+      return buffer;
+    }
+    ByteBuffer grown =
+        ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + needed));
+    buffer.flip();
+    grown.put(buffer);
+    return grown;
+  }
+
+  private static ByteBuffer putBytes(ByteBuffer buffer, byte[] bytes) {
+    if (bytes == null) {
+      buffer = ensure(buffer, 4);
+      buffer.putInt(-1);
+      return buffer;
+    }
+    buffer = ensure(buffer, 4 + bytes.length);
+    buffer.putInt(bytes.length);
+    buffer.put(bytes);
+    return buffer;
+  }
+
+  private static ByteBuffer putBytes(ByteBuffer buffer, ByteBuffer bytes) {
+    if (bytes == null) {
+      return putBytes(buffer, (byte[]) null);
+    }
+    buffer = ensure(buffer, 4 + bytes.remaining());
+    buffer.putInt(bytes.remaining());
+    buffer.put(bytes.duplicate());
+    return buffer;
+  }
+
+  long size() {
+    return size.get();
+  }
+
+  /**
+   * Deletes all records, blocking until their segments are deleted and a new segment is ready.
+   * Records appended meanwhile are dropped.
+   */
+  void clear() {
+    CompletableFuture<?> cleared;
+    synchronized (this) {
+      List<Segment> released = new ArrayList<>(segments);
+      CompletableFuture<Segment> unused = next;
+      generation++;
+      segments.clear();
+      stringIds.clear();
+      current = null;
+      segmentCount = 0;
+      first += size.getAndSet(0);
+      submit(
+          () -> {
+            released.forEach(segment -> unmap(segment.buffer));
+            if (unused != null && !unused.isCompletedExceptionally()) {
+              // done since it was submitted before.
+              unmap(unused.join().buffer);
+            }
+            deleteSegmentFiles(directory);
+            return null;
+          });
+      Path first = nextSegmentPath();
+      next = submit(() -> createSegment(first, segmentSize));
+      cleared = next;
+    }
+    try {
+      cleared.join();
+    } catch (CompletionException e) {
+      throw new UncheckedIOException(
+          "Failed to clear activity log segments in " + directory,
+          e.getCause() instanceof UncheckedIOException
+              ? ((UncheckedIOException) e.getCause()).getCause()
+              : new IOException(e.getCause()));
+    }
+  }
+
+  private static void deleteSegmentFiles(Path directory) throws IOException {
+    for (Path segment : segmentPaths(directory)) {
+      Files.delete(segment);
+    }
+  }
+
+  /**
+   * Flushes the segments in the background, they stay on disk and can be read with {@link #read}.
+   * The segment created ahead of time is deleted since it holds no record. Records appended
+   * afterwards are dropped.
+   */
+  synchronized void close() {
+    List<Segment> written = new ArrayList<>(segments);
+    CompletableFuture<Segment> unused = next;
+    next = null;
+    current = null;
+    submit(
+        () -> {
+          for (Segment segment : written) {
+            segment.buffer.force();
+          }
+          if (unused != null && !unused.isCompletedExceptionally()) {
+            Segment segment = unused.join();
+            unmap(segment.buffer);
+            Files.deleteIfExists(segment.path);
+          }
+          return null;
+        });
+  }
+
+  /** @return the records written so far, records appended while iterating may not be included. */
+  synchronized Iterator<QueryLog> iterator() {
+    List<ByteBuffer> snapshot = new ArrayList<>(segments.size());
+    for (Segment segment : segments) {
+      ByteBuffer buffer = segment.buffer.duplicate();
+      buffer.position(0).limit(segment.end);
+      snapshot.add(buffer);
+    }
+    return new RecordIterator(snapshot, this, generation);
+  }
+
+  /** @return same as {@link #iterator()} along with the sequence number of each record. */
+  synchronized Iterator<ActivityLog.Entry> entries() {
+    Iterator<QueryLog> logs = iterator();
+    return new Iterator<ActivityLog.Entry>() {
+      private long sequence = first;
+
+      @Override
+      public boolean hasNext() {
+        return logs.hasNext();
+      }
+
+      @Override
+      public ActivityLog.Entry next() {
+        return new ActivityLog.Entry(sequence++, logs.next());
+      }
+    };
+  }
+
+  /**
+   * Reads the segments a spilling activity log left in the given directory, for instance to export
+   * the history of a node after a run.
+   *
+   * @param directory directory of a node's segments.
+   * @return the logs of the node in order.
+   */
+  static Iterator<QueryLog> read(Path directory) throws IOException {
+    List<ByteBuffer> buffers = new ArrayList<>();
+    for (Path segment : segmentPaths(directory)) {
+      try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+        buffers.add(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+      } catch (NoSuchFileException e) {
+        // an unused segment deleted by close() in the meantime.
+      }
+    }
+    return new RecordIterator(buffers, null, 0);
+  }
+
+  private static List<Path> segmentPaths(Path directory) throws IOException {
+    List<Path> paths = new ArrayList<>();
+    if (Files.isDirectory(directory)) {
+      try (DirectoryStream<Path> stream =
+          Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+        stream.forEach(paths::add);
+      }
+    }
+    // names are zero padded so they sort in order.
+    Collections.sort(paths);
+    return paths;
+  }
+
+  /**
+   * Releases the mapping of a segment right away rather than when the buffer is garbage collected,
+   * so that the file can be deleted and the address space reused. Best effort, relying on JDK
+   * internals.
+   */
+  private static void unmap(MappedByteBuffer buffer) {
+    try {
+      try {
+        // Java 9 and later.
+        Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+        Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+        theUnsafe.setAccessible(true);
+        invokeCleaner.invoke(theUnsafe.get(null), buffer);
+      } catch (NoSuchMethodException e) {
+        // Java 8.
+        Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+        cleanerMethod.setAccessible(true);
+        Object cleaner = cleanerMethod.invoke(buffer);
+        if (cleaner != null) {
+          cleaner.getClass().getMethod("clean").invoke(cleaner);
+        }
+      }
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      // the mapping is released when the buffer is garbage collected.
+    }
+  }
+
+  private interface IoTask<T> {
+    T run() throws IOException;
+  }
+
+  private static class Segment {
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private volatile int end;
+
+    Segment(Path path, MappedByteBuffer buffer) {
+      this.path = path;
+      this.buffer = buffer;
+    }
+  }
+
+  private static class RecordIterator implements Iterator<QueryLog> {
+
+    private final Iterator<ByteBuffer> segments;
+
+    /** Log the segments are mapped by, if they can be released while iterating. */
+    private final SpillLog owner;
+
+    private final long generation;
+
+    private final Map<Integer, String> strings = new HashMap<>();
+
+    private ByteBuffer segment;
+
+    private QueryLog next;
+
+    RecordIterator(List<ByteBuffer> segments, SpillLog owner, long generation) {
+      this.segments = segments.iterator();
+      this.owner = owner;
+      this.generation = generation;
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (next == null) {
+        if (owner == null) {
+          advance();
+        } else {
+          synchronized (owner) {
+            // stop if the segments were released by clear().
+            if (owner.generation == generation) {
+              advance();
+            }
+          }
+        }
+      }
+      return next != null;
+    }
+
+    private void advance() {
+      while (next == null) {
+        if (segment == null || segment.remaining() < 4) {
+          if (!segments.hasNext()) {
+            return;
+          }
+          segment = segments.next();
+          continue;
+        }
+        int length = segment.getInt();
+        if (length == 0) {
+          // end of the segment.
+          segment = null;
+          continue;
+        }
+        ByteBuffer record = segment.slice();
+        record.limit(length);
+        segment.position(segment.position() + length);
+        next = decode(record);
+      }
+    }
+
+    @Override
+    public QueryLog next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      QueryLog log = next;
+      next = null;
+      return log;
+    }
+
+    private QueryLog decode(ByteBuffer record) {
+      byte kind = record.get();
+      if (kind == STRING_DEFINITION) {
+        int id = record.getInt();
+        strings.put(id, new String(getBytes(record), StandardCharsets.UTF_8));
+        return null;
+      }
+      long receivedTimestamp = record.getLong();
+      boolean primed = record.get() == 1;
+      int protocolVersion = record.get();
+      String type = getString(record);
+      String query = getString(record);
+      SocketAddress connection = null;
+      int ipLength = record.get();
+      if (ipLength > 0) {
+        byte[] ip = new byte[ipLength];
+        record.get(ip);
+        try {
+          connection = new InetSocketAddress(InetAddress.getByAddress(ip), record.getInt());
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+
+      if (record.get() == 0) {
+        long clientTimestamp = record.getLong();
+        Message message = "PREPARE".equals(type) ? new Prepare(query) : null;
+        return new QueryLog(
+            message != null ? frame(protocolVersion, message) : null,
+            type,
+            query,
+            null,
+            null,
+            connection,
+            receivedTimestamp,
+            clientTimestamp,
+            primed);
+      }
+      int consistency = record.getInt();
+      int serialConsistency = record.getInt();
+      long clientTimestamp = record.getLong();
+      byte[] preparedId = getBytes(record);
+      int positionalCount = record.getInt();
+      List<ByteBuffer> positionalValues = new ArrayList<>(positionalCount);
+      for (int i = 0; i < positionalCount; i++) {
+        byte[] value = getBytes(record);
+        positionalValues.add(value != null ? ByteBuffer.wrap(value) : null);
+      }
+      int namedCount = record.getInt();
+      Map<String, ByteBuffer> namedValues = new LinkedHashMap<>();
+      for (int i = 0; i < namedCount; i++) {
+        String name = new String(getBytes(record), StandardCharsets.UTF_8);
+        byte[] value = getBytes(record);
+        namedValues.put(name, value != null ? ByteBuffer.wrap(value) : null);
+      }
+      QueryOptions options =
+          new QueryOptions(
+              consistency,
+              positionalValues,
+              namedValues,
+              false,
+              -1,
+              null,
+              serialConsistency,
+              clientTimestamp,
+              null,
+              Integer.MIN_VALUE);
+      Message message =
+          preparedId != null ? new Execute(preparedId, options) : new Query(query, options);
+      return new QueryLog(
+          frame(protocolVersion, message),
+          type,
+          query,
+          ConsistencyLevel.fromCode(consistency),
+          ConsistencyLevel.fromCode(serialConsistency),
+          connection,
+          receivedTimestamp,
+          clientTimestamp,
+          primed);
+    }
+
+    private static Frame frame(int protocolVersion, Message message) {
+      return new Frame(
+          protocolVersion,
+          false,
+          0,
+          false,
+          null,
+          -1,
+          -1,
+          Collections.emptyMap(),
+          Collections.emptyList(),
+          message);
+    }
+
+    private String getString(ByteBuffer record) {
+      int id = record.getInt();
+      if (id == INLINE) {
+        return new String(getBytes(record), StandardCharsets.UTF_8);
+      }
+      return id >= 0 ? strings.get(id) : null;
+    }
+
+    private static byte[] getBytes(ByteBuffer record) {
+      int length = record.getInt();
+      if (length < 0) {
+        return null;
+      }
+      byte[] bytes = new byte[length];
+      record.get(bytes);
+      return bytes;
+    }
+  }
+}
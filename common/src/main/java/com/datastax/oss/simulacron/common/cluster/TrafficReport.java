@@ -0,0 +1,66 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.common.cluster;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Throughput observed by a traffic shaper over its last check interval, along with the cumulative
+ * bytes it let through. It's useful for encoding the results with JSON.
+ */
+public class TrafficReport {
+
+  @JsonProperty("read_bytes_per_second")
+  private final long readThroughput;
+
+  @JsonProperty("write_bytes_per_second")
+  private final long writeThroughput;
+
+  @JsonProperty("read_bytes")
+  private final long readBytes;
+
+  @JsonProperty("written_bytes")
+  private final long writtenBytes;
+
+  @JsonCreator
+  public TrafficReport(
+      @JsonProperty("read_bytes_per_second") long readThroughput,
+      @JsonProperty("write_bytes_per_second") long writeThroughput,
+      @JsonProperty("read_bytes") long readBytes,
+      @JsonProperty("written_bytes") long writtenBytes) {
+    this.readThroughput = readThroughput;
+    this.writeThroughput = writeThroughput;
+    this.readBytes = readBytes;
+    this.writtenBytes = writtenBytes;
+  }
+
+  public long getReadThroughput() {
+    return readThroughput;
+  }
+
+  public long getWriteThroughput() {
+    return writeThroughput;
+  }
+
+  public long getReadBytes() {
+    return readBytes;
+  }
+
+  public long getWrittenBytes() {
+    return writtenBytes;
+  }
+}
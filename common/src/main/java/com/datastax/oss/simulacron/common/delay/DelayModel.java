@@ -0,0 +1,115 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.common.delay;
+
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A distribution that the delay of a primed response is sampled from, every time the prime is
+ * applied.
+ *
+ * <p>Samples are drawn from {@link ThreadLocalRandom} and don't allocate, so they are cheap enough
+ * to take for every request.
+ */
+@JsonTypeInfo(use = JsonTypeInfo.Id.NAME, include = JsonTypeInfo.As.PROPERTY, property = "type")
+@JsonSubTypes({
+  @JsonSubTypes.Type(value = FixedDelay.class, name = "fixed"),
+  @JsonSubTypes.Type(value = UniformDelay.class, name = "uniform"),
+  @JsonSubTypes.Type(value = NormalDelay.class, name = "normal"),
+  @JsonSubTypes.Type(value = LogNormalDelay.class, name = "log_normal"),
+  @JsonSubTypes.Type(value = EmpiricalDelay.class, name = "empirical")
+})
+public abstract class DelayModel {
+
+  /** @return A delay sampled from this distribution in nanoseconds, never negative. */
+  public abstract long sampleNanos();
+
+  /**
+   * @param delay The delay.
+   * @param unit The unit of the delay.
+   * @return A model that always returns the given delay.
+   */
+  public static DelayModel fixed(long delay, TimeUnit unit) {
+    return new FixedDelay(unit.toNanos(delay));
+  }
+
+  /**
+   * @param min The minimum delay, inclusive.
+   * @param max The maximum delay, exclusive.
+   * @param unit The unit of min and max.
+   * @return A model that returns delays uniformly distributed between min and max.
+   */
+  public static DelayModel uniform(long min, long max, TimeUnit unit) {
+    return new UniformDelay(unit.toNanos(min), unit.toNanos(max));
+  }
+
+  /**
+   * @param mean The mean delay.
+   * @param stdDev The standard deviation of the delay.
+   * @param unit The unit of mean and stdDev.
+   * @return A model that returns normally distributed delays, negative samples are returned as 0.
+   */
+  public static DelayModel normal(long mean, long stdDev, TimeUnit unit) {
+    return new NormalDelay(unit.toNanos(mean), unit.toNanos(stdDev));
+  }
+
+  /**
+   * @param median The median delay.
+   * @param sigma The standard deviation of the logarithm of the delay, the larger the longer the
+   *     tail.
+   * @param unit The unit of median.
+   * @return A model that returns log-normally distributed delays.
+   */
+  public static DelayModel logNormal(long median, double sigma, TimeUnit unit) {
+    return new LogNormalDelay(unit.toNanos(median), sigma);
+  }
+
+  /**
+   * @param histogramLog An HdrHistogram log file, all of its intervals are merged.
+   * @param unit The unit of the values recorded in the histograms.
+   * @return A model that returns delays distributed like the recorded values.
+   */
+  public static DelayModel empirical(Path histogramLog, TimeUnit unit) {
+    return new EmpiricalDelay(histogramLog.toString(), unit);
+  }
+
+  /**
+   * @param samples Recorded delays, i.e. latencies captured from a real cluster.
+   * @param unit The unit of the samples.
+   * @return A model that returns delays distributed like the samples.
+   */
+  public static DelayModel empirical(long[] samples, TimeUnit unit) {
+    return new EmpiricalDelay(samples, unit);
+  }
+
+  static long nanos(double millis) {
+    return (long) (millis * 1_000_000);
+  }
+
+  static double millis(double nanos) {
+    return nanos / 1_000_000;
+  }
+
+  static double nextGaussian(ThreadLocalRandom random) {
+    // Box-Muller transform, ThreadLocalRandom.nextGaussian boxes the spare value it generates.
+    double u = 1.0 - random.nextDouble();
+    return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * random.nextDouble());
+  }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.common.delay;
+
+import static com.fasterxml.jackson.annotation.JsonInclude.Include.NON_NULL;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.io.FileNotFoundException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.HdrHistogram.AbstractHistogram;
+import org.HdrHistogram.EncodableHistogram;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogReader;
+
+/**
+ * Delays distributed like recorded values, i.e. latencies captured from a real cluster, given
+ * either inline or as an HdrHistogram log.
+ *
+ * <p>The values are only read once: their inverse cumulative distribution is tabulated at {@link
+ * #QUANTILES} evenly spaced quantiles and samples interpolate between them.
+ *
+ * <p>When read from JSON, i.e. primes received over HTTP, histogram log paths are resolved against
+ * the directory set with {@link #setHistogramDirectory(Path)} and may not leave it, so that clients
+ * can't make the server read arbitrary files. Without such a directory only inline samples are
+ * accepted from JSON.
+ */
+public class EmpiricalDelay extends DelayModel {
+
+  static final int QUANTILES = 1024;
+
+  private static volatile Path histogramDirectory = null;
+
+  private final String path;
+
+  private final long[] samples;
+
+  private final TimeUnit unit;
+
+  private final long[] quantileNanos;
+
+  /**
+   * @param path An HdrHistogram log file, all of its intervals are merged.
+   * @param unit The unit of the values recorded in the histograms, microseconds if null.
+   */
+  public EmpiricalDelay(String path, TimeUnit unit) {
+    this(path, path, null, unit);
+  }
+
+  /**
+   * @param samples The recorded values.
+   * @param unit The unit of the values, microseconds if null.
+   */
+  public EmpiricalDelay(long[] samples, TimeUnit unit) {
+    this(null, null, samples, unit);
+  }
+
+  private EmpiricalDelay(String path, String file, long[] samples, TimeUnit unit) {
+    this.path = path;
+    this.samples = samples;
+    this.unit = unit != null ? unit : TimeUnit.MICROSECONDS;
+    this.quantileNanos = quantiles(file != null ? read(file) : record(samples), this.unit);
+  }
+
+  /**
+   * Creates a model read from JSON, see the restrictions on paths above.
+   *
+   * @param path An HdrHistogram log file relative to the histogram directory, if no samples.
+   * @param samples The recorded values.
+   * @param unit The unit of the values, microseconds if null.
+   * @return The model.
+   */
+  @JsonCreator
+  public static EmpiricalDelay fromJson(
+      @JsonProperty("path") String path,
+      @JsonProperty("samples") long[] samples,
+      @JsonProperty("unit") TimeUnit unit) {
+    if (samples != null) {
+      return new EmpiricalDelay(samples, unit);
+    } else if (path == null) {
+      throw new IllegalArgumentException("Expected either samples or the path of a histogram log");
+    }
+    Path directory = histogramDirectory;
+    if (directory == null) {
+      throw new IllegalArgumentException(
+          "Histogram logs can't be read from JSON without a histogram directory, use samples");
+    }
+    Path file = directory.resolve(path).normalize();
+    if (!file.startsWith(directory)) {
+      throw new IllegalArgumentException("Histogram log is outside of the histogram directory");
+    }
+    return new EmpiricalDelay(path, file.toString(), null, unit);
+  }
+
+  /**
+   * Sets the directory that histogram log paths read from JSON are resolved against.
+   *
+   * @param directory The directory, or null to only accept inline samples from JSON.
+   */
+  public static void setHistogramDirectory(Path directory) {
+    histogramDirectory = directory != null ? directory.toAbsolutePath().normalize() : null;
+  }
+
+  @JsonProperty("path")
+  @JsonInclude(NON_NULL)
+  public String getPath() {
+    return path;
+  }
+
+  @JsonProperty("samples")
+  @JsonInclude(NON_NULL)
+  public long[] getSamples() {
+    return samples;
+  }
+
+  @JsonProperty("unit")
+  public TimeUnit getUnit() {
+    return unit;
+  }
+
+  private static Histogram read(String path) {
+    Histogram merged = new Histogram(3);
+    try (HistogramLogReader reader = new HistogramLogReader(path)) {
+      EncodableHistogram interval;
+      while ((interval = reader.nextIntervalHistogram()) != null) {
+        if (!(interval instanceof AbstractHistogram)) {
+          throw new IllegalArgumentException(
+              "Only integer value histograms are supported, found "
+                  + interval.getClass().getSimpleName()
+                  + " in "
+                  + path);
+        }
+        merged.add((AbstractHistogram) interval);
+      }
+    } catch (FileNotFoundException e) {
+      throw new IllegalArgumentException("Histogram log not found: " + path, e);
+    }
+    if (merged.getTotalCount() == 0) {
+      throw new IllegalArgumentException("Histogram log has no recorded values: " + path);
+    }
+    return merged;
+  }
+
+  private static Histogram record(long[] samples) {
+    if (samples.length == 0) {
+      throw new IllegalArgumentException("Expected at least one sample");
+    }
+    Histogram histogram = new Histogram(3);
+    for (long sample : samples) {
+      if (sample < 0) {
+        throw new IllegalArgumentException("Expected samples >= 0, got " + sample);
+      }
+      histogram.recordValue(sample);
+    }
+    return histogram;
+  }
+
+  private static long[] quantiles(Histogram histogram, TimeUnit unit) {
+    long[] quantiles = new long[QUANTILES + 1];
+    for (int i = 0; i <= QUANTILES; i++) {
+      double percentile = 100.0 * i / QUANTILES;
+      // getValueAtPercentile returns the highest equivalent value, use the lowest for the minimum.
+      long value = i == 0 ? histogram.getMinValue() : histogram.getValueAtPercentile(percentile);
+      quantiles[i] = unit.toNanos(value);
+    }
+    return quantiles;
+  }
+
+  @Override
+  public long sampleNanos() {
+    double position = ThreadLocalRandom.current().nextDouble() * QUANTILES;
+    int index = (int) position;
+    long lower = quantileNanos[index];
+    long upper = quantileNanos[index + 1];
+    return lower + (long) ((upper - lower) * (position - index));
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    EmpiricalDelay that = (EmpiricalDelay) o;
+    return Objects.equals(path, that.path)
+        && Arrays.equals(samples, that.samples)
+        && unit == that.unit;
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * (31 * Objects.hashCode(path) + Arrays.hashCode(samples)) + unit.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return path != null
+        ? "EmpiricalDelay{" + "path='" + path + '\'' + ", unit=" + unit + '}'
+        : "EmpiricalDelay{" + "samples=" + samples.length + ", unit=" + unit + '}';
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.common.delay;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/** Always the same delay. */
+public class FixedDelay extends DelayModel {
+
+  private final long delayNanos;
+
+  FixedDelay(long delayNanos) {
+    this.delayNanos = Math.max(0, delayNanos);
+  }
+
+  @JsonCreator
+  public FixedDelay(@JsonProperty("delay_in_ms") double delayInMs) {
+    this(nanos(delayInMs));
+  }
+
+  @JsonProperty("delay_in_ms")
+  public double getDelayInMs() {
+    return millis(delayNanos);
+  }
+
+  @Override
+  public long sampleNanos() {
+    return delayNanos;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    return delayNanos == ((FixedDelay) o).delayNanos;
+  }
+
+  @Override
+  public int hashCode() {
+    return Long.hashCode(delayNanos);
+  }
+
+  @Override
+  public String toString() {
+    return "FixedDelay{" + "delayNanos=" + delayNanos + '}';
+  }
+}
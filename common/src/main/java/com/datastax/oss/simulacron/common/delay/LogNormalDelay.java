@@ -0,0 +1,86 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.common.delay;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Log-normally distributed delays, described by their median and by sigma, the standard deviation
+ * of their logarithm. This is a common fit for service latencies: most requests are close to the
+ * median, with a long tail whose length grows with sigma.
+ */
+public class LogNormalDelay extends DelayModel {
+
+  private final double medianNanos;
+
+  private final double sigma;
+
+  private final double mu;
+
+  LogNormalDelay(long medianNanos, double sigma) {
+    if (medianNanos <= 0 || sigma < 0) {
+      throw new IllegalArgumentException(
+          "Expected a positive median and sigma, got median="
+              + medianNanos
+              + "ns, sigma="
+              + sigma);
+    }
+    this.medianNanos = medianNanos;
+    this.sigma = sigma;
+    this.mu = Math.log(medianNanos);
+  }
+
+  @JsonCreator
+  public LogNormalDelay(
+      @JsonProperty("median_in_ms") double medianInMs, @JsonProperty("sigma") double sigma) {
+    this(nanos(medianInMs), sigma);
+  }
+
+  @JsonProperty("median_in_ms")
+  public double getMedianInMs() {
+    return millis(medianNanos);
+  }
+
+  @JsonProperty("sigma")
+  public double getSigma() {
+    return sigma;
+  }
+
+  @Override
+  public long sampleNanos() {
+    return (long) Math.exp(mu + sigma * nextGaussian(ThreadLocalRandom.current()));
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    LogNormalDelay that = (LogNormalDelay) o;
+    return medianNanos == that.medianNanos && sigma == that.sigma;
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * Double.hashCode(medianNanos) + Double.hashCode(sigma);
+  }
+
+  @Override
+  public String toString() {
+    return "LogNormalDelay{" + "medianNanos=" + medianNanos + ", sigma=" + sigma + '}';
+  }
+}
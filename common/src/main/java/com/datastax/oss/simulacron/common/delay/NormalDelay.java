@@ -0,0 +1,77 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.common.delay;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.concurrent.ThreadLocalRandom;
+
+/** Normally distributed delays, samples that would be negative are returned as 0. */
+public class NormalDelay extends DelayModel {
+
+  private final double meanNanos;
+
+  private final double stdDevNanos;
+
+  NormalDelay(long meanNanos, long stdDevNanos) {
+    if (stdDevNanos < 0) {
+      throw new IllegalArgumentException("Standard deviation must be positive: " + stdDevNanos);
+    }
+    this.meanNanos = meanNanos;
+    this.stdDevNanos = stdDevNanos;
+  }
+
+  @JsonCreator
+  public NormalDelay(
+      @JsonProperty("mean_in_ms") double meanInMs,
+      @JsonProperty("std_dev_in_ms") double stdDevInMs) {
+    this(nanos(meanInMs), nanos(stdDevInMs));
+  }
+
+  @JsonProperty("mean_in_ms")
+  public double getMeanInMs() {
+    return millis(meanNanos);
+  }
+
+  @JsonProperty("std_dev_in_ms")
+  public double getStdDevInMs() {
+    return millis(stdDevNanos);
+  }
+
+  @Override
+  public long sampleNanos() {
+    double sample = meanNanos + stdDevNanos * nextGaussian(ThreadLocalRandom.current());
+    return Math.max(0, (long) sample);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    NormalDelay that = (NormalDelay) o;
+    return meanNanos == that.meanNanos && stdDevNanos == that.stdDevNanos;
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * Double.hashCode(meanNanos) + Double.hashCode(stdDevNanos);
+  }
+
+  @Override
+  public String toString() {
+    return "NormalDelay{" + "meanNanos=" + meanNanos + ", stdDevNanos=" + stdDevNanos + '}';
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.common.delay;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.concurrent.ThreadLocalRandom;
+
+/** Delays uniformly distributed between a minimum (inclusive) and a maximum (exclusive). */
+public class UniformDelay extends DelayModel {
+
+  private final long minNanos;
+
+  private final long maxNanos;
+
+  UniformDelay(long minNanos, long maxNanos) {
+    if (minNanos < 0 || maxNanos < minNanos) {
+      throw new IllegalArgumentException(
+          "Expected 0 <= min <= max, got min=" + minNanos + "ns, max=" + maxNanos + "ns");
+    }
+    this.minNanos = minNanos;
+    this.maxNanos = maxNanos;
+  }
+
+  @JsonCreator
+  public UniformDelay(
+      @JsonProperty("min_in_ms") double minInMs, @JsonProperty("max_in_ms") double maxInMs) {
+    this(nanos(minInMs), nanos(maxInMs));
+  }
+
+  @JsonProperty("min_in_ms")
+  public double getMinInMs() {
+    return millis(minNanos);
+  }
+
+  @JsonProperty("max_in_ms")
+  public double getMaxInMs() {
+    return millis(maxNanos);
+  }
+
+  @Override
+  public long sampleNanos() {
+    return minNanos == maxNanos
+        ? minNanos
+        : ThreadLocalRandom.current().nextLong(minNanos, maxNanos);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    UniformDelay that = (UniformDelay) o;
+    return minNanos == that.minNanos && maxNanos == that.maxNanos;
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * Long.hashCode(minNanos) + Long.hashCode(maxNanos);
+  }
+
+  @Override
+  public String toString() {
+    return "UniformDelay{" + "minNanos=" + minNanos + ", maxNanos=" + maxNanos + '}';
+  }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.common.request;
+
+import static com.datastax.oss.simulacron.common.codec.CodecUtils.primitive;
+
+import com.datastax.oss.protocol.internal.ProtocolConstants.DataType;
+import com.datastax.oss.protocol.internal.response.result.RawType;
+import com.datastax.oss.simulacron.common.codec.Codec;
+import com.datastax.oss.simulacron.common.codec.CodecUtils;
+import com.datastax.oss.simulacron.common.codec.CqlMapper;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Predicate;
+
+/**
+ * Matches the values bound to a QUERY, EXECUTE or BATCH statement against the primed parameters of
+ * a {@link Query} or {@link Statement}.
+ *
+ * <p>Instead of decoding every bound value, each primed value is encoded once per protocol version
+ * and compared bytewise. Types whose values have a single encoding are matched on their bytes
+ * alone, so a bound value of an invalid size for its type doesn't match instead of failing to
+ * decode. The others (i.e. decimals, collections) are decoded and compared by value when their
+ * bytes differ. Primed values that can't be encoded fall back on {@link Request#checkParamsEqual}.
+ */
+final class ParamsMatcher {
+
+  // types for which different bytes always mean different values.
+  private static final Set<RawType> BYTE_EXACT_TYPES =
+      new HashSet<>(
+          Arrays.asList(
+              primitive(DataType.ASCII),
+              primitive(DataType.BIGINT),
+              primitive(DataType.BLOB),
+              primitive(DataType.COUNTER),
+              primitive(DataType.DATE),
+              primitive(DataType.INT),
+              primitive(DataType.SMALLINT),
+              primitive(DataType.TIME),
+              primitive(DataType.TIMESTAMP),
+              primitive(DataType.TIMEUUID),
+              primitive(DataType.TINYINT),
+              primitive(DataType.UUID),
+              primitive(DataType.VARCHAR)));
+
+  private static final Predicate<ByteBuffer> ANY = buffer -> true;
+
+  private final Map<String, Object> params;
+
+  private final Map<String, String> paramTypes;
+
+  private final ConcurrentMap<Integer, Compiled> byProtocolVersion = new ConcurrentHashMap<>();
+
+  ParamsMatcher(Map<String, Object> params, Map<String, String> paramTypes) {
+    this.params = params;
+    this.paramTypes = paramTypes;
+  }
+
+  /**
+   * @param protocolVersion protocol version of the bound values.
+   * @param values positional values, in the order of the primed parameters.
+   * @return Whether or not each value matches its primed parameter.
+   */
+  boolean matchesPositional(int protocolVersion, List<ByteBuffer> values) {
+    Predicate<ByteBuffer>[] positional = compiled(protocolVersion).positional;
+    if (values.size() != positional.length) {
+      return false;
+    }
+    for (int i = 0; i < positional.length; i++) {
+      if (!positional[i].test(values.get(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @param protocolVersion protocol version of the bound values.
+   * @param values named values.
+   * @return Whether or not each value matches the primed parameter of the same name.
+   */
+  boolean matchesNamed(int protocolVersion, Map<String, ByteBuffer> values) {
+    Map<String, Predicate<ByteBuffer>> named = compiled(protocolVersion).named;
+    if (values.size() != named.size()) {
+      return false;
+    }
+    for (Map.Entry<String, ByteBuffer> value : values.entrySet()) {
+      Predicate<ByteBuffer> matcher = named.get(value.getKey());
+      if (matcher == null || !matcher.test(value.getValue())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private Compiled compiled(int protocolVersion) {
+    Compiled compiled = byProtocolVersion.get(protocolVersion);
+    if (compiled == null) {
+      compiled = byProtocolVersion.computeIfAbsent(protocolVersion, this::compile);
+    }
+    return compiled;
+  }
+
+  @SuppressWarnings("unchecked")
+  private Compiled compile(int protocolVersion) {
+    CqlMapper mapper = CqlMapper.forVersion(protocolVersion);
+    Predicate<ByteBuffer>[] positional = new Predicate[params.size()];
+    Map<String, Predicate<ByteBuffer>> named = new HashMap<>();
+    // positional values are paired with types by order, named values by name.
+    Iterator<String> types = paramTypes != null ? paramTypes.values().iterator() : null;
+    int i = 0;
+    for (Map.Entry<String, Object> param : params.entrySet()) {
+      String positionalType = types != null && types.hasNext() ? types.next() : null;
+      String namedType = paramTypes != null ? paramTypes.get(param.getKey()) : null;
+      positional[i++] = compile(mapper, param.getValue(), positionalType);
+      named.put(param.getKey(), compile(mapper, param.getValue(), namedType));
+    }
+    return new Compiled(positional, named);
+  }
+
+  private static Predicate<ByteBuffer> compile(CqlMapper mapper, Object primed, String type) {
+    if ("*".equals(primed)) {
+      return ANY;
+    }
+    Predicate<ByteBuffer> fallback =
+        buffer -> Request.checkParamsEqual(buffer, primed, type, mapper);
+    try {
+      RawType rawType = CodecUtils.getTypeFromName(type);
+      Codec<Object> codec = mapper.codecFor(rawType);
+      Object expected = codec.toNativeType(primed);
+      ByteBuffer encoded = codec.encode(expected);
+      if (encoded == null) {
+        return fallback;
+      }
+      if (BYTE_EXACT_TYPES.contains(rawType)) {
+        // null and empty values decode to the default of some types (i.e. 0 for int).
+        return buffer ->
+            buffer != null && buffer.hasRemaining()
+                ? encoded.equals(buffer)
+                : expected.equals(codec.decode(buffer));
+      }
+      return buffer -> encoded.equals(buffer) || expected.equals(codec.decode(buffer));
+    } catch (RuntimeException e) {
+      // let matching fail the way it did before parameters were compiled.
+      return fallback;
+    }
+  }
+
+  private static class Compiled {
+    private final Predicate<ByteBuffer>[] positional;
+    private final Map<String, Predicate<ByteBuffer>> named;
+
+    Compiled(Predicate<ByteBuffer>[] positional, Map<String, Predicate<ByteBuffer>> named) {
+      this.positional = positional;
+      this.named = named;
+    }
+  }
+}
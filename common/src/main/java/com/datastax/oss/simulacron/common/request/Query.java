@@ -15,6 +15,7 @@
  */
 package com.datastax.oss.simulacron.common.request;
 
+import static com.datastax.oss.simulacron.common.utils.PreparedIdUtils.toQueryId;
 import static com.fasterxml.jackson.annotation.JsonInclude.Include.NON_EMPTY;
 
 import com.datastax.oss.protocol.internal.Frame;
@@ -22,15 +23,11 @@ import com.datastax.oss.protocol.internal.request.Execute;
 import com.datastax.oss.protocol.internal.request.Prepare;
 import com.datastax.oss.protocol.internal.request.query.QueryOptions;
 import com.datastax.oss.simulacron.common.codec.ConsistencyLevel;
-import com.datastax.oss.simulacron.common.codec.CqlMapper;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import java.math.BigInteger;
-import java.nio.ByteBuffer;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -46,6 +43,8 @@ public final class Query extends Request {
   @JsonInclude(NON_EMPTY)
   public final Map<String, Object> params;
 
+  private final transient ParamsMatcher paramsMatcher;
+
   public Query(String query) {
     this(query, Collections.emptyList(), null, null);
   }
@@ -68,6 +67,8 @@ public final class Query extends Request {
     this.consistencyEnum = consistencies;
     this.params = params;
     this.paramTypes = paramTypes;
+    this.paramsMatcher =
+        params == null || params.isEmpty() ? null : new ParamsMatcher(params, paramTypes);
   }
 
   @JsonProperty("consistency_level")
@@ -90,8 +91,7 @@ public final class Query extends Request {
     }
     if (frame.message instanceof Execute) {
       Execute execute = (Execute) frame.message;
-      Integer queryIdInt = new BigInteger(execute.queryId).intValue();
-      if (getQueryId() == queryIdInt) {
+      if (execute.queryId.length > 0 && getQueryId() == toQueryId(execute.queryId)) {
         ConsistencyLevel level = ConsistencyLevel.fromCode(execute.options.consistency);
         // NOTE: Absent CL level means it will match all CL levels
         if (this.consistencyEnum.contains(level) || this.consistencyEnum.size() == 0) {
@@ -123,8 +123,6 @@ public final class Query extends Request {
    * @return True if the parameters match;
    */
   private boolean checkParamsMatch(QueryOptions options, Frame frame) {
-    // I don't like this, but I can't see a way to simplify it.
-
     // No params match criteria was specified, simply return true.
     if (params == null || params.size() == 0) {
       return true;
@@ -134,39 +132,12 @@ public final class Query extends Request {
         && options.positionalValues.size() != params.size()) {
       return false;
     }
-    if ((options.namedValues.size() != 0 || options.positionalValues.size() != 0)
-        && params.size() != 0) {
-
-      CqlMapper mapper = CqlMapper.forVersion(frame.protocolVersion);
-      // Positional parameter case, ensure number of parameters is the same.
-      if (options.positionalValues.size() != 0) {
-        if (options.positionalValues.size() != params.size()) {
-          return false;
-        }
-        Iterator<Object> primedPositionValues = params.values().iterator();
-        Iterator<String> primedPositionTypes = paramTypes.values().iterator();
-        // iterate over the parameters and make sure they all match
-        for (ByteBuffer buffer : options.positionalValues) {
-          if (!checkParamsEqual(
-              buffer, primedPositionValues.next(), primedPositionTypes.next(), mapper)) {
-            return false;
-          }
-        }
-        // Named parameters case
-      } else if (options.namedValues.size() != 0) {
-        if (options.namedValues.size() != params.size()) {
-          return false;
-        }
-        // look up each parameter and make sure they match
-        for (String key : options.namedValues.keySet()) {
-          String stringType = paramTypes.get(key);
-
-          ByteBuffer buffer = options.namedValues.get(key);
-          if (!checkParamsEqual(buffer, params.get(key), stringType, mapper)) {
-            return false;
-          }
-        }
-      }
+    if (options.positionalValues.size() != 0) {
+      // Positional parameter case, values are matched in the order of the primed parameters.
+      return paramsMatcher.matchesPositional(frame.protocolVersion, options.positionalValues);
+    } else if (options.namedValues.size() != 0) {
+      // Named parameters case, values are matched by name.
+      return paramsMatcher.matchesNamed(frame.protocolVersion, options.namedValues);
     }
     return true;
   }
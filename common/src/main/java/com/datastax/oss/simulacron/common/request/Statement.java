@@ -15,13 +15,12 @@
  */
 package com.datastax.oss.simulacron.common.request;
 
-import com.datastax.oss.simulacron.common.codec.CqlMapper;
+import static com.datastax.oss.simulacron.common.utils.PreparedIdUtils.toQueryId;
+
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import java.math.BigInteger;
 import java.nio.ByteBuffer;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -29,6 +28,7 @@ public class Statement {
   public final String query;
   public final Map<String, String> paramTypes;
   public final Map<String, Object> params;
+  private final transient ParamsMatcher paramsMatcher;
 
   @JsonCreator
   public Statement(
@@ -38,6 +38,8 @@ public class Statement {
     this.query = query;
     this.paramTypes = paramTypes;
     this.params = params;
+    this.paramsMatcher =
+        params == null || params.isEmpty() ? null : new ParamsMatcher(params, paramTypes);
   }
 
   public boolean checkStatementMatch(
@@ -45,8 +47,9 @@ public class Statement {
     if (queryOrId instanceof String) {
       return query.equals(queryOrId) && checkStatementMatch(protocolVersion, positionalValues);
     } else {
-      Integer queryIdInt = new BigInteger((byte[]) queryOrId).intValue();
-      return queryIdInt.equals(getQueryId())
+      byte[] preparedId = (byte[]) queryOrId;
+      return preparedId.length > 0
+          && toQueryId(preparedId) == getQueryId()
           && checkStatementMatch(protocolVersion, positionalValues);
     }
   }
@@ -55,23 +58,7 @@ public class Statement {
     if (params == null || params.size() == 0) {
       return true;
     }
-
-    if (positionalValues.size() != params.size()) {
-      return false;
-    }
-
-    Iterator<Object> primedPositionValues = params.values().iterator();
-    Iterator<String> primedPositionTypes = paramTypes.values().iterator();
-    // iterate over the parameters and make sure they all match
-
-    CqlMapper mapper = CqlMapper.forVersion(protocolVersion);
-    for (ByteBuffer buffer : positionalValues) {
-      if (!Request.checkParamsEqual(
-          buffer, primedPositionValues.next(), primedPositionTypes.next(), mapper)) {
-        return false;
-      }
-    }
-    return true;
+    return paramsMatcher.matchesPositional(protocolVersion, positionalValues);
   }
 
   @JsonIgnore
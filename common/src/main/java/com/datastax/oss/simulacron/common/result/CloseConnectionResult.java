@@ -24,6 +24,7 @@ import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 public class CloseConnectionResult extends Result {
 
@@ -50,7 +51,8 @@ public class CloseConnectionResult extends Result {
 
   @Override
   public List<Action> toActions(AbstractNode node, Frame frame) {
-    DisconnectAction.Builder builder = DisconnectAction.builder().withDelayInMs(delayInMs);
+    DisconnectAction.Builder builder =
+        DisconnectAction.builder().withDelay(sampleDelayInNanos(), TimeUnit.NANOSECONDS);
     if (scope != null) {
       builder.withScope(scope);
     }
@@ -25,6 +25,7 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 public abstract class ErrorResult extends Result {
 
@@ -49,7 +50,8 @@ public abstract class ErrorResult extends Result {
 
   @Override
   public List<Action> toActions(AbstractNode node, Frame frame) {
-    return Collections.singletonList(new MessageResponseAction(toMessage(), getDelayInMs()));
+    return Collections.singletonList(
+        new MessageResponseAction(toMessage(), sampleDelayInNanos(), TimeUnit.NANOSECONDS));
   }
 
   public Message toMessage() {
@@ -17,9 +17,11 @@ package com.datastax.oss.simulacron.common.result;
 
 import com.datastax.oss.protocol.internal.Frame;
 import com.datastax.oss.simulacron.common.cluster.AbstractNode;
+import com.datastax.oss.simulacron.common.delay.DelayModel;
 import com.datastax.oss.simulacron.common.stubbing.Action;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonSubTypes;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
@@ -56,6 +58,11 @@ public abstract class Result {
   @JsonProperty("delay_in_ms")
   protected long delayInMs;
 
+  /** If set, the delay is sampled from this model instead of using delayInMs. */
+  @JsonProperty("delay")
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  protected DelayModel delay;
+
   @JsonProperty("ignore_on_prepare")
   protected Boolean ignoreOnPrepare;
 
@@ -74,6 +81,27 @@ public abstract class Result {
 
   public void setDelay(long delay, TimeUnit delayUnit) {
     this.delayInMs = TimeUnit.MILLISECONDS.convert(delay, delayUnit);
+    this.delay = null;
+  }
+
+  /** @return The model delays are sampled from, or null if using a fixed delayInMs. */
+  @JsonIgnore
+  public DelayModel getDelayModel() {
+    return delay;
+  }
+
+  /**
+   * Sets a model to sample the delay of each response from, instead of a fixed delay.
+   *
+   * @param delay The model to use.
+   */
+  public void setDelay(DelayModel delay) {
+    this.delay = delay;
+  }
+
+  /** @return The delay to apply to the next response, in nanoseconds. */
+  public long sampleDelayInNanos() {
+    return delay != null ? delay.sampleNanos() : TimeUnit.MILLISECONDS.toNanos(delayInMs);
   }
 
   /**
@@ -105,11 +133,14 @@ public abstract class Result {
 
     Result result = (Result) o;
 
-    return delayInMs == result.delayInMs;
+    if (delayInMs != result.delayInMs) return false;
+    return delay != null ? delay.equals(result.delay) : result.delay == null;
   }
 
   @Override
   public int hashCode() {
-    return (int) (delayInMs ^ (delayInMs >>> 32));
+    int result = (int) (delayInMs ^ (delayInMs >>> 32));
+    result = 31 * result + (delay != null ? delay.hashCode() : 0);
+    return result;
   }
 }
@@ -19,6 +19,7 @@ import com.datastax.oss.protocol.internal.Frame;
 import com.datastax.oss.protocol.internal.response.result.ColumnSpec;
 import com.datastax.oss.protocol.internal.response.result.DefaultRows;
 import com.datastax.oss.protocol.internal.response.result.RawType;
+import com.datastax.oss.protocol.internal.response.result.Rows;
 import com.datastax.oss.protocol.internal.response.result.RowsMetadata;
 import com.datastax.oss.simulacron.common.cluster.AbstractNode;
 import com.datastax.oss.simulacron.common.codec.CodecUtils;
@@ -28,13 +29,16 @@ import com.datastax.oss.simulacron.common.stubbing.MessageResponseAction;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import java.nio.ByteBuffer;
+import java.util.AbstractQueue;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 public class SuccessResult extends Result {
   @JsonProperty("rows")
@@ -43,6 +47,12 @@ public class SuccessResult extends Result {
   @JsonProperty("column_types")
   public final LinkedHashMap<String, String> columnTypes;
 
+  private static final int MAX_CACHED_PROTOCOL_VERSION = 7;
+
+  /** Rows responses by protocol version, encoded on first use. */
+  private final transient AtomicReferenceArray<Rows> encodedRows =
+      new AtomicReferenceArray<>(MAX_CACHED_PROTOCOL_VERSION + 1);
+
   public SuccessResult(
       List<LinkedHashMap<String, Object>> rows, LinkedHashMap<String, String> columnTypes) {
     this(rows, columnTypes, 0, null);
@@ -69,12 +79,40 @@ public class SuccessResult extends Result {
 
   @Override
   public List<Action> toActions(AbstractNode node, Frame frame) {
-    CqlMapper mapper = CqlMapper.forVersion(frame.protocolVersion);
+    MessageResponseAction action =
+        new MessageResponseAction(
+            encodedRows(frame.protocolVersion), sampleDelayInNanos(), TimeUnit.NANOSECONDS);
+    return Collections.singletonList(action);
+  }
+
+  /**
+   * Returns the rows response for the given protocol version. The response is encoded on first use
+   * for each version and then shared between all requests, as such the returned {@link Rows} and
+   * its values are read-only.
+   *
+   * @param protocolVersion The protocol version to encode values with.
+   * @return The encoded rows response.
+   */
+  public Rows encodedRows(int protocolVersion) {
+    if (protocolVersion < 0 || protocolVersion >= encodedRows.length()) {
+      return encode(protocolVersion);
+    }
+    Rows rows = encodedRows.get(protocolVersion);
+    if (rows == null) {
+      // Encoding is idempotent so a concurrent first use may encode twice, keep the first.
+      encodedRows.compareAndSet(protocolVersion, null, encode(protocolVersion));
+      rows = encodedRows.get(protocolVersion);
+    }
+    return rows;
+  }
+
+  private Rows encode(int protocolVersion) {
+    CqlMapper mapper = CqlMapper.forVersion(protocolVersion);
     // This will return all the rows specified in the query, along with any corresponding metadata
     // about the row
-    List<ColumnSpec> columnMetadata = new LinkedList<ColumnSpec>();
+    List<ColumnSpec> columnMetadata = new ArrayList<>(columnTypes.size());
     CodecUtils.ColumnSpecBuilder columnBuilder = CodecUtils.columnSpecBuilder();
-    Queue<List<ByteBuffer>> rows = new LinkedList<>();
+    List<List<ByteBuffer>> rows = new ArrayList<>(this.rows.size());
 
     // Populate column metadata even if there are no rows.
     if (this.rows.isEmpty()) {
@@ -86,23 +124,24 @@ public class SuccessResult extends Result {
     } else {
       boolean metaConstructed = false;
       for (Map<String, Object> row : this.rows) {
-        List<ByteBuffer> rowByteBuffer = new LinkedList<>();
+        ByteBuffer[] rowByteBuffer = new ByteBuffer[row.size()];
+        int i = 0;
         // Iterate over all the rows and create column meta data if needed
-        for (String key : row.keySet()) {
-          RawType type = CodecUtils.getTypeFromName(columnTypes.get(key));
+        for (Map.Entry<String, Object> column : row.entrySet()) {
+          RawType type = CodecUtils.getTypeFromName(columnTypes.get(column.getKey()));
           if (!metaConstructed) {
-            columnMetadata.add(columnBuilder.apply(key, type));
+            columnMetadata.add(columnBuilder.apply(column.getKey(), type));
           }
-          rowByteBuffer.add(mapper.codecFor(type).encodeObject(row.get(key)));
+          ByteBuffer value = mapper.codecFor(type).encodeObject(column.getValue());
+          rowByteBuffer[i++] = value != null ? value.asReadOnlyBuffer() : null;
         }
         metaConstructed = true;
-        rows.add(rowByteBuffer);
+        rows.add(Collections.unmodifiableList(Arrays.asList(rowByteBuffer)));
       }
     }
-    RowsMetadata rowMetadata = new RowsMetadata(columnMetadata, null, new int[] {0}, null);
-    MessageResponseAction action =
-        new MessageResponseAction(new DefaultRows(rowMetadata, rows), getDelayInMs());
-    return Collections.singletonList(action);
+    RowsMetadata rowMetadata =
+        new RowsMetadata(Collections.unmodifiableList(columnMetadata), null, new int[] {0}, null);
+    return new DefaultRows(rowMetadata, new ReadOnlyRowQueue(rows));
   }
 
   @Override
@@ -124,4 +163,42 @@ public class SuccessResult extends Result {
     result = 31 * result + columnTypes.hashCode();
     return result;
   }
+
+  /**
+   * A read-only {@link java.util.Queue} of encoded rows, allowing a single {@link Rows} response to
+   * be shared by any number of requests.
+   */
+  private static final class ReadOnlyRowQueue extends AbstractQueue<List<ByteBuffer>> {
+
+    private final List<List<ByteBuffer>> rows;
+
+    private ReadOnlyRowQueue(List<List<ByteBuffer>> rows) {
+      this.rows = Collections.unmodifiableList(rows);
+    }
+
+    @Override
+    public Iterator<List<ByteBuffer>> iterator() {
+      return rows.iterator();
+    }
+
+    @Override
+    public int size() {
+      return rows.size();
+    }
+
+    @Override
+    public boolean offer(List<ByteBuffer> row) {
+      throw new UnsupportedOperationException("Encoded rows are read-only");
+    }
+
+    @Override
+    public List<ByteBuffer> poll() {
+      throw new UnsupportedOperationException("Encoded rows are read-only");
+    }
+
+    @Override
+    public List<ByteBuffer> peek() {
+      return rows.isEmpty() ? null : rows.get(0);
+    }
+  }
 }
@@ -56,6 +56,13 @@ public class VoidResult extends Result {
 
   @Override
   public List<Action> toActions(AbstractNode node, Frame frame) {
+    if (delay != null) {
+      return Collections.singletonList(
+          new MessageResponseAction(
+              com.datastax.oss.protocol.internal.response.result.Void.INSTANCE,
+              sampleDelayInNanos(),
+              TimeUnit.NANOSECONDS));
+    }
     return this.actions;
   }
 }
@@ -0,0 +1,105 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.common.stats;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.HdrHistogram.AbstractHistogram;
+
+/** Summary of the time it took to respond to requests, in microseconds. */
+public class LatencyStats {
+
+  @JsonProperty("min")
+  private final long min;
+
+  @JsonProperty("mean")
+  private final double mean;
+
+  @JsonProperty("p50")
+  private final long p50;
+
+  @JsonProperty("p90")
+  private final long p90;
+
+  @JsonProperty("p99")
+  private final long p99;
+
+  @JsonProperty("p999")
+  private final long p999;
+
+  @JsonProperty("max")
+  private final long max;
+
+  @JsonCreator
+  public LatencyStats(
+      @JsonProperty("min") long min,
+      @JsonProperty("mean") double mean,
+      @JsonProperty("p50") long p50,
+      @JsonProperty("p90") long p90,
+      @JsonProperty("p99") long p99,
+      @JsonProperty("p999") long p999,
+      @JsonProperty("max") long max) {
+    this.min = min;
+    this.mean = mean;
+    this.p50 = p50;
+    this.p90 = p90;
+    this.p99 = p99;
+    this.p999 = p999;
+    this.max = max;
+  }
+
+  static LatencyStats of(AbstractHistogram histogram) {
+    if (histogram.getTotalCount() == 0) {
+      return new LatencyStats(0, 0, 0, 0, 0, 0, 0);
+    }
+    return new LatencyStats(
+        histogram.getMinValue(),
+        histogram.getMean(),
+        histogram.getValueAtPercentile(50),
+        histogram.getValueAtPercentile(90),
+        histogram.getValueAtPercentile(99),
+        histogram.getValueAtPercentile(99.9),
+        histogram.getMaxValue());
+  }
+
+  public long getMin() {
+    return min;
+  }
+
+  public double getMean() {
+    return mean;
+  }
+
+  public long getP50() {
+    return p50;
+  }
+
+  public long getP90() {
+    return p90;
+  }
+
+  public long getP99() {
+    return p99;
+  }
+
+  public long getP999() {
+    return p999;
+  }
+
+  public long getMax() {
+    return max;
+  }
+}
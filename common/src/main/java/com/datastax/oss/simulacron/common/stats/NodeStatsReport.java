@@ -0,0 +1,65 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.common.stats;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.Collections;
+import java.util.List;
+
+/** The statistics of each statement a node received, see {@link QueryStats}. */
+public class NodeStatsReport {
+
+  @JsonProperty("cluster_id")
+  private final Long clusterId;
+
+  @JsonProperty("data_center_id")
+  private final Long dataCenterId;
+
+  @JsonProperty("node_id")
+  private final Long nodeId;
+
+  @JsonProperty("statements")
+  private final List<StatementStats> statements;
+
+  @JsonCreator
+  public NodeStatsReport(
+      @JsonProperty("cluster_id") Long clusterId,
+      @JsonProperty("data_center_id") Long dataCenterId,
+      @JsonProperty("node_id") Long nodeId,
+      @JsonProperty("statements") List<StatementStats> statements) {
+    this.clusterId = clusterId;
+    this.dataCenterId = dataCenterId;
+    this.nodeId = nodeId;
+    this.statements = statements != null ? statements : Collections.emptyList();
+  }
+
+  public Long getClusterId() {
+    return clusterId;
+  }
+
+  public Long getDataCenterId() {
+    return dataCenterId;
+  }
+
+  public Long getNodeId() {
+    return nodeId;
+  }
+
+  public List<StatementStats> getStatements() {
+    return statements;
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.common.stats;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The statistics of the cache of primes a cluster registers for PREPARE messages no stub mapping
+ * matched. Counts are cumulative since the cluster was registered.
+ */
+public class PreparedStatementCacheStats {
+
+  @JsonProperty("capacity")
+  private final int capacity;
+
+  @JsonProperty("size")
+  private final int size;
+
+  @JsonProperty("hits")
+  private final long hits;
+
+  @JsonProperty("misses")
+  private final long misses;
+
+  @JsonProperty("evictions")
+  private final long evictions;
+
+  @JsonCreator
+  public PreparedStatementCacheStats(
+      @JsonProperty("capacity") int capacity,
+      @JsonProperty("size") int size,
+      @JsonProperty("hits") long hits,
+      @JsonProperty("misses") long misses,
+      @JsonProperty("evictions") long evictions) {
+    this.capacity = capacity;
+    this.size = size;
+    this.hits = hits;
+    this.misses = misses;
+    this.evictions = evictions;
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  public int getSize() {
+    return size;
+  }
+
+  public long getHits() {
+    return hits;
+  }
+
+  public long getMisses() {
+    return misses;
+  }
+
+  public long getEvictions() {
+    return evictions;
+  }
+}
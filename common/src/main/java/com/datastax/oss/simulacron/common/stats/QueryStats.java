@@ -0,0 +1,211 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.common.stats;
+
+import com.datastax.oss.simulacron.common.codec.ConsistencyLevel;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Aggregates the requests a node received per statement: how many there were by consistency level,
+ * how many failed and a histogram of how long it took to respond to them.
+ *
+ * <p>Recording is meant to be cheap enough to be always on: statements are normalized, replacing
+ * literals by {@code ?}, through a bounded cache of the raw texts seen recently, then counted in
+ * {@link LongAdder}s, and latencies are recorded in an HdrHistogram {@link Recorder}. At most
+ * {@link #MAX_STATEMENTS} distinct normalized statements are tracked, further ones are counted
+ * under {@link #OTHER}.
+ */
+public class QueryStats {
+
+  /** Maximum number of distinct statements tracked. */
+  public static final int MAX_STATEMENTS = 10_000;
+
+  /** Query of the entry counting statements beyond {@link #MAX_STATEMENTS}. */
+  public static final String OTHER = "<other>";
+
+  /** Maximum number of raw statements whose normalized text is cached. */
+  static final int MAX_CACHED_QUERIES = 10_000;
+
+  private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+
+  private static final Pattern UUID_LITERAL =
+      Pattern.compile(
+          "\\b[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}\\b");
+
+  private static final Pattern BLOB_LITERAL = Pattern.compile("\\b0[xX][0-9a-fA-F]*\\b");
+
+  private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w.])-?\\d+(\\.\\d+)?\\b");
+
+  private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+  private final Map<Key, Counters> statements = new ConcurrentHashMap<>();
+
+  private final Map<String, String> normalizedQueries = new ConcurrentHashMap<>();
+
+  /**
+   * Records a response to a request.
+   *
+   * @param type type of the request, i.e. QUERY or EXECUTE.
+   * @param query text of the statement, or an identifier of it if not known.
+   * @param consistency consistency level of the request, or null if it has none.
+   * @param error whether the response was an error.
+   * @param latencyNanos time it took to respond.
+   */
+  public void record(
+      String type, String query, ConsistencyLevel consistency, boolean error, long latencyNanos) {
+    Key key = new Key(type, normalizeCached(query));
+    Counters counters = statements.get(key);
+    if (counters == null) {
+      if (statements.size() >= MAX_STATEMENTS) {
+        key = new Key(type, OTHER);
+      }
+      counters = statements.computeIfAbsent(key, k -> new Counters());
+    }
+    counters.record(consistency, error, latencyNanos);
+  }
+
+  private String normalizeCached(String query) {
+    if (query == null) {
+      return null;
+    }
+    String normalized = normalizedQueries.get(query);
+    if (normalized == null) {
+      normalized = normalize(query);
+      if (normalizedQueries.size() >= MAX_CACHED_QUERIES) {
+        // most likely statements with inlined literals that won't be seen again, start over.
+        normalizedQueries.clear();
+      }
+      normalizedQueries.put(query, normalized);
+    }
+    return normalized;
+  }
+
+  /** Forgets everything recorded so far. */
+  public void reset() {
+    statements.clear();
+    normalizedQueries.clear();
+  }
+
+  /** @return The statistics of each normalized statement recorded so far. */
+  public List<StatementStats> snapshot() {
+    List<StatementStats> stats = new ArrayList<>(statements.size());
+    for (Map.Entry<Key, Counters> entry : statements.entrySet()) {
+      stats.add(entry.getValue().toStats(entry.getKey()));
+    }
+    return stats;
+  }
+
+  /**
+   * @param query a CQL statement.
+   * @return the statement with string, uuid, blob and number literals replaced by {@code ?} and
+   *     whitespace collapsed, so that statements only differing by their literals are grouped.
+   */
+  static String normalize(String query) {
+    if (query == null) {
+      return null;
+    }
+    String normalized = STRING_LITERAL.matcher(query).replaceAll("?");
+    normalized = UUID_LITERAL.matcher(normalized).replaceAll("?");
+    normalized = BLOB_LITERAL.matcher(normalized).replaceAll("?");
+    normalized = NUMBER_LITERAL.matcher(normalized).replaceAll("?");
+    return WHITESPACE.matcher(normalized).replaceAll(" ").trim();
+  }
+
+  private static class Key {
+    private final String type;
+    private final String query;
+
+    Key(String type, String query) {
+      this.type = type;
+      this.query = query;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      Key key = (Key) o;
+      return Objects.equals(type, key.type) && Objects.equals(query, key.query);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(type, query);
+    }
+  }
+
+  private static class Counters {
+    private final LongAdder count = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder[] byConsistency = new LongAdder[ConsistencyLevel.values().length];
+    private final Recorder latencyMicros = new Recorder(3);
+    /** Latencies taken from the recorder so far, created on the first snapshot, guarded by this. */
+    private Histogram latencyTotal;
+
+    Counters() {
+      for (int i = 0; i < byConsistency.length; i++) {
+        byConsistency[i] = new LongAdder();
+      }
+    }
+
+    void record(ConsistencyLevel consistency, boolean error, long latencyNanos) {
+      count.increment();
+      if (error) {
+        errors.increment();
+      }
+      if (consistency != null) {
+        byConsistency[consistency.ordinal()].increment();
+      }
+      latencyMicros.recordValue(Math.max(0, TimeUnit.NANOSECONDS.toMicros(latencyNanos)));
+    }
+
+    synchronized StatementStats toStats(Key key) {
+      Histogram interval = latencyMicros.getIntervalHistogram();
+      if (latencyTotal == null) {
+        latencyTotal = interval;
+      } else {
+        latencyTotal.add(interval);
+      }
+      Map<ConsistencyLevel, Long> consistencies = new EnumMap<>(ConsistencyLevel.class);
+      for (ConsistencyLevel consistency : ConsistencyLevel.values()) {
+        long value = byConsistency[consistency.ordinal()].sum();
+        if (value > 0) {
+          consistencies.put(consistency, value);
+        }
+      }
+      long count = this.count.sum();
+      long errors = this.errors.sum();
+      return new StatementStats(
+          key.type,
+          key.query,
+          count,
+          count - errors,
+          errors,
+          consistencies,
+          LatencyStats.of(latencyTotal));
+    }
+  }
+}
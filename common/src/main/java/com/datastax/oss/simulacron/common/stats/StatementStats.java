@@ -0,0 +1,97 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.common.stats;
+
+import com.datastax.oss.simulacron.common.codec.ConsistencyLevel;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Statistics of the requests a node received for a normalized statement, see {@link QueryStats}.
+ */
+public class StatementStats {
+
+  @JsonProperty("type")
+  private final String type;
+
+  @JsonProperty("query")
+  private final String query;
+
+  @JsonProperty("count")
+  private final long count;
+
+  @JsonProperty("success")
+  private final long success;
+
+  @JsonProperty("errors")
+  private final long errors;
+
+  @JsonProperty("consistency_levels")
+  private final Map<ConsistencyLevel, Long> consistencies;
+
+  @JsonProperty("latency")
+  private final LatencyStats latency;
+
+  @JsonCreator
+  public StatementStats(
+      @JsonProperty("type") String type,
+      @JsonProperty("query") String query,
+      @JsonProperty("count") long count,
+      @JsonProperty("success") long success,
+      @JsonProperty("errors") long errors,
+      @JsonProperty("consistency_levels") Map<ConsistencyLevel, Long> consistencies,
+      @JsonProperty("latency") LatencyStats latency) {
+    this.type = type;
+    this.query = query;
+    this.count = count;
+    this.success = success;
+    this.errors = errors;
+    this.consistencies = consistencies != null ? consistencies : Collections.emptyMap();
+    this.latency = latency;
+  }
+
+  public String getType() {
+    return type;
+  }
+
+  /** @return The normalized statement, or its prepared id if its text is not known. */
+  public String getQuery() {
+    return query;
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  public long getSuccess() {
+    return success;
+  }
+
+  public long getErrors() {
+    return errors;
+  }
+
+  /** @return How many requests were received at each consistency level. */
+  public Map<ConsistencyLevel, Long> getConsistencies() {
+    return consistencies;
+  }
+
+  public LatencyStats getLatency() {
+    return latency;
+  }
+}
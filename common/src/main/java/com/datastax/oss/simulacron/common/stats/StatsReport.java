@@ -0,0 +1,71 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.common.stats;
+
+import static com.fasterxml.jackson.annotation.JsonInclude.Include.NON_NULL;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The statistics of each node of a cluster, data center or node, and of the prepared statement
+ * cache of the cluster they belong to.
+ */
+public class StatsReport {
+
+  @JsonProperty("nodes")
+  private final List<NodeStatsReport> nodes;
+
+  @JsonProperty("prepared_statement_cache")
+  @JsonInclude(NON_NULL)
+  private PreparedStatementCacheStats preparedStatementCache;
+
+  public StatsReport() {
+    this(null, null);
+  }
+
+  public StatsReport(List<NodeStatsReport> nodes) {
+    this(nodes, null);
+  }
+
+  @JsonCreator
+  public StatsReport(
+      @JsonProperty("nodes") List<NodeStatsReport> nodes,
+      @JsonProperty("prepared_statement_cache")
+          PreparedStatementCacheStats preparedStatementCache) {
+    this.nodes = nodes != null ? nodes : new ArrayList<>();
+    this.preparedStatementCache = preparedStatementCache;
+  }
+
+  public void addNode(NodeStatsReport node) {
+    nodes.add(node);
+  }
+
+  public List<NodeStatsReport> getNodes() {
+    return nodes;
+  }
+
+  public PreparedStatementCacheStats getPreparedStatementCache() {
+    return preparedStatementCache;
+  }
+
+  public void setPreparedStatementCache(PreparedStatementCacheStats preparedStatementCache) {
+    this.preparedStatementCache = preparedStatementCache;
+  }
+}
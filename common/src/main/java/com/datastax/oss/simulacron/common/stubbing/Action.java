@@ -15,6 +15,8 @@
  */
 package com.datastax.oss.simulacron.common.stubbing;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * Defines some behavior to take place, optionally at some point in the future (defined by {@link
  * #delayInMs}).
@@ -22,4 +24,9 @@ package com.datastax.oss.simulacron.common.stubbing;
 public interface Action {
   /** @return How far into the future to schedule this action. */
   Long delayInMs();
+
+  /** @return How far into the future to schedule this action, with sub-millisecond precision. */
+  default long delayInNanos() {
+    return TimeUnit.MILLISECONDS.toNanos(delayInMs());
+  }
 }
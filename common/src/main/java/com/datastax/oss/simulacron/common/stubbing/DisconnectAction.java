@@ -18,6 +18,7 @@ package com.datastax.oss.simulacron.common.stubbing;
 import static com.datastax.oss.simulacron.common.stubbing.DisconnectAction.Scope.CONNECTION;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.concurrent.TimeUnit;
 
 public class DisconnectAction implements Action {
 
@@ -34,19 +35,24 @@ public class DisconnectAction implements Action {
 
   private final Scope scope;
 
-  private final long delayInMs;
+  private final long delayInNanos;
 
   private final CloseType closeType;
 
-  DisconnectAction(Scope scope, CloseType closeType, long delayInMs) {
+  DisconnectAction(Scope scope, CloseType closeType, long delayInNanos) {
     this.scope = scope;
-    this.delayInMs = delayInMs;
+    this.delayInNanos = delayInNanos;
     this.closeType = closeType;
   }
 
   @Override
   public Long delayInMs() {
-    return delayInMs;
+    return TimeUnit.NANOSECONDS.toMillis(delayInNanos);
+  }
+
+  @Override
+  public long delayInNanos() {
+    return delayInNanos;
   }
 
   public Scope getScope() {
@@ -59,7 +65,7 @@ public class DisconnectAction implements Action {
 
   @Override
   public String toString() {
-    return "DisconnectAction{" + "scope=" + scope + ", delayInMs=" + delayInMs + '}';
+    return "DisconnectAction{" + "scope=" + scope + ", delayInNanos=" + delayInNanos + '}';
   }
 
   public static Builder builder() {
@@ -69,7 +75,7 @@ public class DisconnectAction implements Action {
   public static class Builder {
     private Scope scope = CONNECTION;
     private CloseType closeType = CloseType.DISCONNECT;
-    long delayInMs = 0L;
+    long delayInNanos = 0L;
 
     public Builder withScope(Scope scope) {
       this.scope = scope;
@@ -82,12 +88,16 @@ public class DisconnectAction implements Action {
     }
 
     public Builder withDelayInMs(long delayInMs) {
-      this.delayInMs = delayInMs;
+      return withDelay(delayInMs, TimeUnit.MILLISECONDS);
+    }
+
+    public Builder withDelay(long delay, TimeUnit delayUnit) {
+      this.delayInNanos = delayUnit.toNanos(delay);
       return this;
     }
 
     public DisconnectAction build() {
-      return new DisconnectAction(scope, closeType, delayInMs);
+      return new DisconnectAction(scope, closeType, delayInNanos);
     }
   }
 }
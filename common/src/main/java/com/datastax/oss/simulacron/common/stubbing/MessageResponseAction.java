@@ -16,12 +16,13 @@
 package com.datastax.oss.simulacron.common.stubbing;
 
 import com.datastax.oss.protocol.internal.Message;
+import java.util.concurrent.TimeUnit;
 
 /** An action that involves sending a given {@link Message} as a response. */
 public class MessageResponseAction implements Action {
 
   private final Message message;
-  private final long delayInMs;
+  private final long delayInNanos;
 
   /**
    * Constructs an action to send the input message immediately.
@@ -39,8 +40,19 @@ public class MessageResponseAction implements Action {
    * @param delayInMs How much to delay sending the action.
    */
   public MessageResponseAction(Message message, long delayInMs) {
+    this(message, delayInMs, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Constructs an action to send the input message at some time in the future.
+   *
+   * @param message The message to send.
+   * @param delay How much to delay sending the action.
+   * @param delayUnit The unit of the delay.
+   */
+  public MessageResponseAction(Message message, long delay, TimeUnit delayUnit) {
     this.message = message;
-    this.delayInMs = delayInMs;
+    this.delayInNanos = delayUnit.toNanos(delay);
   }
 
   /** @return The message to send. */
@@ -50,6 +62,11 @@ public class MessageResponseAction implements Action {
 
   @Override
   public Long delayInMs() {
-    return delayInMs;
+    return TimeUnit.NANOSECONDS.toMillis(delayInNanos);
+  }
+
+  @Override
+  public long delayInNanos() {
+    return delayInNanos;
   }
 }
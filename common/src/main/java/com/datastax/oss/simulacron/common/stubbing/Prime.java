@@ -15,6 +15,8 @@
  */
 package com.datastax.oss.simulacron.common.stubbing;
 
+import static com.datastax.oss.simulacron.common.utils.PreparedIdUtils.toPreparedId;
+
 import com.datastax.oss.protocol.internal.Frame;
 import com.datastax.oss.protocol.internal.request.Prepare;
 import com.datastax.oss.protocol.internal.response.result.ColumnSpec;
@@ -28,10 +30,10 @@ import com.datastax.oss.simulacron.common.request.Query;
 import com.datastax.oss.simulacron.common.result.ErrorResult;
 import com.datastax.oss.simulacron.common.result.SuccessResult;
 import com.datastax.oss.simulacron.common.result.VoidResult;
-import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 public class Prime extends StubMapping {
   private final RequestPrime primedRequest;
@@ -81,27 +83,24 @@ public class Prime extends StubMapping {
     if (this.primedRequest.when instanceof Query) {
       Query query = (Query) this.primedRequest.when;
 
-      ByteBuffer b = ByteBuffer.allocate(4);
-      b.putInt(query.getQueryId());
-
-      ByteBuffer bResult = ByteBuffer.allocate(4);
-      bResult.putInt(
-          ~query.getQueryId()); // use bitwise complement of query id for result metadata id
+      byte[] id = toPreparedId(query.getQueryId());
+      // use bitwise complement of query id for result metadata id
+      byte[] resultMetadataId = toPreparedId(~query.getQueryId());
 
       if (this.primedRequest.then instanceof SuccessResult) {
         SuccessResult result = (SuccessResult) this.primedRequest.then;
         return new Prepared(
-            b.array(),
-            bResult.array(),
+            id,
+            resultMetadataId,
             fetchRowMetadataForParams(query),
             fetchRowMetadataForResults(result));
       } else if (this.primedRequest.then instanceof VoidResult) {
         return new Prepared(
-            b.array(), bResult.array(), fetchRowMetadataForParams(query), rowMetadataForVoid);
+            id, resultMetadataId, fetchRowMetadataForParams(query), rowMetadataForVoid);
       } else if (this.primedRequest.then instanceof ErrorResult) {
         return new Prepared(
-            b.array(),
-            bResult.array(),
+            id,
+            resultMetadataId,
             fetchRowMetadataForParams(query),
             new RowsMetadata(new LinkedList<>(), null, null, null));
       }
@@ -109,9 +108,10 @@ public class Prime extends StubMapping {
     return null;
   }
 
-  List<Action> toPreparedAction(long delayInMs) {
+  List<Action> toPreparedAction(long delayInNanos) {
     Prepared preparedResponse = toPrepared();
-    MessageResponseAction action = new MessageResponseAction(preparedResponse, delayInMs);
+    MessageResponseAction action =
+        new MessageResponseAction(preparedResponse, delayInNanos, TimeUnit.NANOSECONDS);
     return Collections.singletonList(action);
   }
 
@@ -121,9 +121,9 @@ public class Prime extends StubMapping {
       if (primedRequest.when instanceof Query) {
         if (primedRequest.then instanceof SuccessResult) {
           // Apply delay if not ignore on prepare.
-          long delayInMs =
-              !primedRequest.then.isIgnoreOnPrepare() ? primedRequest.then.getDelayInMs() : 0;
-          return this.toPreparedAction(delayInMs);
+          long delayInNanos =
+              !primedRequest.then.isIgnoreOnPrepare() ? primedRequest.then.sampleDelayInNanos() : 0;
+          return this.toPreparedAction(delayInNanos);
         } else if (primedRequest.then instanceof ErrorResult) {
           // If ignore on prepare, return a PreparedResponse.
           if (primedRequest.then.isIgnoreOnPrepare()) {
@@ -19,6 +19,7 @@ import com.datastax.oss.simulacron.common.cluster.RequestPrime;
 import com.datastax.oss.simulacron.common.codec.ConsistencyLevel;
 import com.datastax.oss.simulacron.common.codec.RequestFailureReason;
 import com.datastax.oss.simulacron.common.codec.WriteType;
+import com.datastax.oss.simulacron.common.delay.DelayModel;
 import com.datastax.oss.simulacron.common.request.Options;
 import com.datastax.oss.simulacron.common.request.Query;
 import com.datastax.oss.simulacron.common.request.Request;
@@ -481,6 +482,21 @@ public class PrimeDsl {
       return this;
     }
 
+    /**
+     * Adds a delay sampled from the given model for every response, i.e. {@link
+     * DelayModel#logNormal(long, double, TimeUnit)}.
+     *
+     * @param delay The model to sample delays from.
+     * @return this builder
+     */
+    public PrimeBuilder delay(DelayModel delay) {
+      if (then == null) {
+        throw new RuntimeException("then must be called before delay.");
+      }
+      then.setDelay(delay);
+      return this;
+    }
+
     /**
      * Indicates that the prime should not apply to a matched prepare message. This is the default
      * behavior so this method doesn't need to be used unless you want your code to be more
@@ -0,0 +1,77 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.common.utils;
+
+/**
+ * Conversions between the ids of prepared statements and the int query id of primes, which is the
+ * hash code of the query string.
+ */
+public class PreparedIdUtils {
+
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private PreparedIdUtils() {}
+
+  /**
+   * Equivalent to {@code new BigInteger(preparedId).intValue()} without allocating: the id is read
+   * as a big-endian two's complement number, of which the lowest 32 bits are returned. This way
+   * both the 4 byte ids of PREPARED responses and minimal encodings of the query id
+   * (i.e. {@code BigInteger.valueOf(queryId).toByteArray()}) are resolved.
+   *
+   * @param preparedId id of a prepared statement, must not be empty.
+   * @return The query id of the statement.
+   */
+  public static int toQueryId(byte[] preparedId) {
+    if (preparedId.length == 0) {
+      throw new NumberFormatException("Zero length prepared id");
+    }
+    // sign extend ids shorter than 4 bytes, only the last 4 bytes of longer ones are kept.
+    int queryId = preparedId[0] < 0 ? -1 : 0;
+    for (byte b : preparedId) {
+      queryId = (queryId << 8) | (b & 0xff);
+    }
+    return queryId;
+  }
+
+  /**
+   * @param queryId query id of a prime.
+   * @return The 4 byte big-endian id of the prepared statement of the prime.
+   */
+  public static byte[] toPreparedId(int queryId) {
+    return new byte[] {
+      (byte) (queryId >>> 24), (byte) (queryId >>> 16), (byte) (queryId >>> 8), (byte) queryId
+    };
+  }
+
+  /**
+   * Equivalent to {@code new BigInteger(1, preparedId).toString(16)}.
+   *
+   * @param preparedId id of a prepared statement.
+   * @return The id as an unsigned hexadecimal number without leading zeros.
+   */
+  public static String toHexString(byte[] preparedId) {
+    StringBuilder hex = new StringBuilder(preparedId.length * 2);
+    for (byte b : preparedId) {
+      if (hex.length() > 0 || (b & 0xf0) != 0) {
+        hex.append(HEX[(b >> 4) & 0xf]);
+      }
+      if (hex.length() > 0 || (b & 0x0f) != 0) {
+        hex.append(HEX[b & 0xf]);
+      }
+    }
+    return hex.length() > 0 ? hex.toString() : "0";
+  }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.common.cluster;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.datastax.oss.protocol.internal.Frame;
+import com.datastax.oss.protocol.internal.request.Query;
+import com.datastax.oss.simulacron.common.codec.ConsistencyLevel;
+import com.datastax.oss.simulacron.common.utils.FrameUtils;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import org.junit.Test;
+
+public class ActivityLogTest {
+
+  private final InetSocketAddress address = new InetSocketAddress("127.0.0.1", 9042);
+
+  @Test
+  public void shouldNotEvictWhenUnbounded() {
+    ActivityLog log = new ActivityLog();
+    for (int i = 0; i < 10; i++) {
+      add(log, i);
+    }
+
+    assertThat(queries(log.getLogs())).hasSize(10).startsWith("0").endsWith("9");
+    assertThat(log.getSize()).isEqualTo(10);
+    assertThat(log.getEvictedCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldDropOldestWhenFull() {
+    ActivityLog log = new ActivityLog(3, ActivityLog.EvictionPolicy.DROP_OLDEST);
+    for (int i = 0; i < 5; i++) {
+      add(log, i);
+    }
+
+    assertThat(queries(log.getLogs())).containsExactly("2", "3", "4");
+    assertThat(log.getSize()).isEqualTo(3);
+    assertThat(log.getEvictedCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldDropNewestWhenFull() {
+    ActivityLog log = new ActivityLog(3, ActivityLog.EvictionPolicy.DROP_NEWEST);
+    for (int i = 0; i < 5; i++) {
+      // entries are still returned to notify listeners even when not retained.
+      assertThat(add(log, i)).isNotNull();
+    }
+
+    assertThat(queries(log.getLogs())).containsExactly("0", "1", "2");
+    assertThat(log.getEvictedCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldMakeRoomOnClear() {
+    ActivityLog log = new ActivityLog(3, ActivityLog.EvictionPolicy.DROP_NEWEST);
+    for (int i = 0; i < 3; i++) {
+      add(log, i);
+    }
+    log.clear();
+
+    assertThat(log.getLogs()).isEmpty();
+    assertThat(log.getSize()).isEqualTo(0);
+
+    add(log, 3);
+    add(log, 4);
+    assertThat(queries(log.getLogs())).containsExactly("3", "4");
+    assertThat(log.getEvictedCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldDeriveFieldsWhenRead() throws Exception {
+    ActivityLog log = new ActivityLog();
+    Frame frame = FrameUtils.wrapRequest(new Query("select * from foo"));
+    log.addLog(frame, address, 1234L, Optional.empty());
+
+    QueryLog queryLog = log.getLogs().get(0);
+    assertThat(queryLog.getFrame()).isSameAs(frame);
+    assertThat(queryLog.getReceivedTimestamp()).isEqualTo(1234L);
+    assertThat(queryLog.getType()).isEqualTo("QUERY");
+    assertThat(queryLog.getConsistency()).isEqualTo(ConsistencyLevel.ONE);
+
+    // serialization goes through the getters so derived fields are included.
+    String json = ObjectMapperHolder.getMapper().writeValueAsString(log.getLogs().get(0));
+    assertThat(json).contains("\"query\":\"select * from foo\"").contains("\"type\":\"QUERY\"");
+  }
+
+  @Test
+  public void shouldSampleOneInN() {
+    ActivityLog log =
+        new ActivityLog(
+            ActivityLog.UNBOUNDED,
+            ActivityLog.EvictionPolicy.DROP_OLDEST,
+            new ActivityLogSampling(3, 0, null));
+    for (int i = 0; i < 7; i++) {
+      add(log, i);
+    }
+
+    assertThat(queries(log.getLogs())).containsExactly("0", "3", "6");
+    assertThat(log.getSampledOutCount()).isEqualTo(4);
+  }
+
+  @Test
+  public void shouldRateLimitSampling() {
+    ActivityLog log = new ActivityLog();
+    // one per minute with a burst of one so nothing is refilled during the test.
+    log.setSampling(new ActivityLogSampling(1, 1.0 / 60, ActivityLogSampling.Filter.ALL));
+    for (int i = 0; i < 5; i++) {
+      add(log, i);
+    }
+
+    assertThat(queries(log.getLogs())).containsExactly("0");
+    assertThat(log.getSampledOutCount()).isEqualTo(4);
+  }
+
+  @Test
+  public void shouldFilterByPrimed() {
+    ActivityLog log = new ActivityLog();
+    log.setSampling(new ActivityLogSampling(1, 0, ActivityLogSampling.Filter.PRIMED));
+    add(log, 0);
+
+    assertThat(log.getLogs()).isEmpty();
+    assertThat(log.getSampledOutCount()).isEqualTo(1);
+
+    log.setSampling(new ActivityLogSampling(1, 0, ActivityLogSampling.Filter.UNPRIMED));
+    add(log, 1);
+    assertThat(queries(log.getLogs())).containsExactly("1");
+    assertThat(log.getSampledOutCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldNotReuseSequenceNumbersOnClear() {
+    for (ActivityLog log :
+        new ActivityLog[] {
+          new ActivityLog(), new ActivityLog(3, ActivityLog.EvictionPolicy.DROP_OLDEST)
+        }) {
+      add(log, 0);
+      add(log, 1);
+      log.clear();
+      add(log, 2);
+
+      assertThat(log.entries().map(ActivityLog.Entry::getSequence)).containsExactly(2L);
+      assertThat(log.entries().map(e -> e.getLog().getQuery())).containsExactly("2");
+    }
+  }
+
+  private QueryLog add(ActivityLog log, int i) {
+    Frame frame = FrameUtils.wrapRequest(new Query(Integer.toString(i)));
+    return log.addLog(frame, address, System.currentTimeMillis(), Optional.empty());
+  }
+
+  private static List<String> queries(List<QueryLog> logs) {
+    return logs.stream().map(QueryLog::getQuery).collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.common.cluster;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import com.datastax.oss.protocol.internal.Frame;
+import com.datastax.oss.protocol.internal.request.Execute;
+import com.datastax.oss.protocol.internal.request.Options;
+import com.datastax.oss.protocol.internal.request.Query;
+import com.datastax.oss.protocol.internal.request.query.QueryOptions;
+import com.datastax.oss.simulacron.common.codec.ConsistencyLevel;
+import com.datastax.oss.simulacron.common.utils.FrameUtils;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SpillLogTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private final InetSocketAddress address = new InetSocketAddress("127.0.0.1", 9042);
+
+  private final QueryOptions options =
+      new QueryOptions(
+          ConsistencyLevel.QUORUM.getCode(),
+          Collections.singletonList(ByteBuffer.wrap(new byte[] {0, 0, 0, 7})),
+          Collections.emptyMap(),
+          false,
+          -1,
+          null,
+          ConsistencyLevel.LOCAL_SERIAL.getCode(),
+          1234L,
+          null,
+          Integer.MIN_VALUE);
+
+  @Test
+  public void shouldReadBackSpilledLogs() throws Exception {
+    ActivityLog log =
+        ActivityLog.spilling(
+            new ActivityLogSpill(folder.getRoot().toPath()), ActivityLogSampling.RECORD_ALL);
+    add(log, new Query("select * from foo", options));
+    add(log, new Execute(new byte[] {1, 2, 3}, options));
+    add(log, Options.INSTANCE);
+
+    List<QueryLog> logs = log.getLogs();
+    assertThat(log.isSpilling()).isTrue();
+    assertThat(log.getSize()).isEqualTo(3);
+    assertThat(logs).hasSize(3);
+
+    QueryLog query = logs.get(0);
+    assertThat(query.getType()).isEqualTo("QUERY");
+    assertThat(query.getQuery()).isEqualTo("select * from foo");
+    assertThat(query.getConsistency()).isEqualTo(ConsistencyLevel.QUORUM);
+    assertThat(query.getSerialConsistency()).isEqualTo(ConsistencyLevel.LOCAL_SERIAL);
+    assertThat(query.getClientTimestamp()).isEqualTo(1234L);
+    assertThat(query.getReceivedTimestamp()).isEqualTo(0L);
+    assertThat(query.getConnection()).isEqualTo(address);
+    assertThat(((Query) query.getFrame().message).options.positionalValues)
+        .containsExactly(ByteBuffer.wrap(new byte[] {0, 0, 0, 7}));
+
+    QueryLog execute = logs.get(1);
+    assertThat(execute.getType()).isEqualTo("EXECUTE");
+    assertThat(((Execute) execute.getFrame().message).queryId).containsExactly(1, 2, 3);
+
+    QueryLog other = logs.get(2);
+    assertThat(other.getType()).isEqualTo("OPTIONS");
+    assertThat(other.getQuery()).isEqualTo("OPTIONS");
+  }
+
+  @Test
+  public void shouldRollSegments() throws Exception {
+    Path directory = folder.getRoot().toPath();
+    ActivityLog log = ActivityLog.spilling(new ActivityLogSpill(directory, 256), null);
+    for (int i = 0; i < 100; i++) {
+      addUntilRecorded(log, new Query(Integer.toString(i), options));
+    }
+    log.close();
+
+    // each segment holds a few entries.
+    assertThat(folder.getRoot().listFiles().length).isGreaterThan(1).isLessThan(100);
+    List<String> expected =
+        log.getLogs().stream().map(QueryLog::getQuery).collect(Collectors.toList());
+    assertThat(expected).hasSize(100).startsWith("0").endsWith("99");
+    // segments left on disk can be read without the log.
+    assertThat(ActivityLog.readSpilled(directory).map(QueryLog::getQuery))
+        .containsExactlyElementsOf(expected);
+  }
+
+  @Test
+  public void shouldDropRecordsWhileNextSegmentIsNotReady() {
+    ActivityLog log =
+        ActivityLog.spilling(new ActivityLogSpill(folder.getRoot().toPath(), 256), null);
+    for (int i = 0; i < 1000; i++) {
+      add(log, new Query(Integer.toString(i), options));
+    }
+
+    // appends never wait for a segment to be created, records arriving meanwhile are dropped.
+    assertThat(log.getSize() + log.getEvictedCount()).isEqualTo(1000);
+    assertThat(log.getLogs()).hasSize(log.getSize());
+  }
+
+  @Test
+  public void shouldDeleteSegmentsOnClear() throws Exception {
+    Path directory = folder.getRoot().toPath();
+    ActivityLog log = ActivityLog.spilling(new ActivityLogSpill(directory, 256), null);
+    for (int i = 0; i < 10; i++) {
+      addUntilRecorded(log, new Query(Integer.toString(i), options));
+    }
+    log.clear();
+
+    assertThat(log.getLogs()).isEmpty();
+    assertThat(log.getSize()).isEqualTo(0);
+    // only the empty segment the next records go to is left.
+    assertThat(folder.getRoot().list()).containsExactly("segment-000000.log");
+    assertThat(ActivityLog.readSpilled(directory)).isEmpty();
+
+    add(log, new Query("after", options));
+    assertThat(log.getLogs()).extracting(QueryLog::getQuery).containsExactly("after");
+    // sequence numbers of cleared records are not reused.
+    assertThat(log.entries().map(ActivityLog.Entry::getSequence)).containsExactly(10L);
+  }
+
+  @Test
+  public void shouldWriteStringsInlineWhenDictionaryIsFull() throws Exception {
+    Path directory = folder.getRoot().toPath();
+    ActivityLog log = ActivityLog.spilling(new ActivityLogSpill(directory), null);
+    int count = SpillLog.MAX_STRINGS + 10;
+    for (int i = 0; i < count; i++) {
+      add(log, new Query("select * from foo where k = " + i, options));
+    }
+    // known strings are still referenced once the dictionary is full.
+    add(log, new Query("select * from foo where k = 0", options));
+    log.close();
+
+    List<String> queries =
+        log.getLogs().stream().map(QueryLog::getQuery).collect(Collectors.toList());
+    assertThat(queries)
+        .hasSize(count + 1)
+        .startsWith("select * from foo where k = 0")
+        .endsWith("select * from foo where k = " + (count - 1), "select * from foo where k = 0");
+    assertThat(ActivityLog.readSpilled(directory).map(QueryLog::getQuery))
+        .containsExactlyElementsOf(queries);
+  }
+
+  private void addUntilRecorded(
+      ActivityLog log, com.datastax.oss.protocol.internal.Message message) {
+    int size = log.getSize();
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    do {
+      add(log, message);
+      if (log.getSize() > size) {
+        return;
+      }
+      // the next segment is not ready yet.
+      Thread.yield();
+    } while (System.nanoTime() < deadline);
+    fail("Record was never written");
+  }
+
+  private void add(ActivityLog log, com.datastax.oss.protocol.internal.Message message) {
+    Frame frame = FrameUtils.wrapRequest(message);
+    log.addLog(frame, address, 0L, Optional.empty());
+  }
+}
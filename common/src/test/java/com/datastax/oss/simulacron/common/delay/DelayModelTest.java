@@ -0,0 +1,192 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.common.delay;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+import com.datastax.oss.simulacron.common.cluster.ObjectMapperHolder;
+import com.datastax.oss.simulacron.common.result.Result;
+import com.datastax.oss.simulacron.common.result.SuccessResult;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DelayModelTest {
+
+  private static final int SAMPLES = 100_000;
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private final ObjectMapper mapper = ObjectMapperHolder.getMapper();
+
+  @Test
+  public void shouldSampleFixedDelay() {
+    DelayModel delay = DelayModel.fixed(5, TimeUnit.MILLISECONDS);
+    assertThat(delay.sampleNanos()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(5));
+  }
+
+  @Test
+  public void shouldSampleUniformDelayWithinBounds() {
+    long[] samples = sample(DelayModel.uniform(1, 3, TimeUnit.MILLISECONDS));
+    assertThat(samples[0]).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(1));
+    assertThat(samples[SAMPLES - 1]).isLessThan(TimeUnit.MILLISECONDS.toNanos(3));
+    assertThat(millis(median(samples))).isCloseTo(2, within(0.05));
+  }
+
+  @Test
+  public void shouldSampleNormalDelay() {
+    long[] samples = sample(DelayModel.normal(10, 2, TimeUnit.MILLISECONDS));
+    double mean = Arrays.stream(samples).average().orElse(0);
+    assertThat(millis(mean)).isCloseTo(10, within(0.1));
+    // ~84th percentile is one standard deviation above the mean.
+    assertThat(millis(samples[(int) (SAMPLES * 0.8413)])).isCloseTo(12, within(0.1));
+  }
+
+  @Test
+  public void shouldNotSampleNegativeDelays() {
+    long[] samples = sample(DelayModel.normal(0, 1, TimeUnit.MILLISECONDS));
+    assertThat(samples[0]).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldSampleLogNormalDelay() {
+    long[] samples = sample(DelayModel.logNormal(2, 1, TimeUnit.MILLISECONDS));
+    assertThat(millis(median(samples))).isCloseTo(2, within(0.05));
+    // 99th percentile is median * e^(2.326 * sigma).
+    assertThat(millis(samples[(int) (SAMPLES * 0.99)])).isCloseTo(20.5, within(1.0));
+  }
+
+  @Test
+  public void shouldSampleEmpiricalDelay() throws Exception {
+    File log = histogramLog("latencies.hlog");
+
+    long[] samples = sample(DelayModel.empirical(log.toPath(), TimeUnit.MICROSECONDS));
+    assertThat(millis(samples[(int) (SAMPLES * 0.5)])).isCloseTo(1, within(0.01));
+    assertThat(millis(samples[(int) (SAMPLES * 0.95)])).isCloseTo(50, within(0.1));
+  }
+
+  @Test
+  public void shouldSampleEmpiricalDelayFromInlineSamples() throws Exception {
+    // 90% of values at 1ms, 10% at 50ms.
+    long[] values = new long[100];
+    Arrays.fill(values, 1);
+    Arrays.fill(values, 90, 100, 50);
+    Result result = new SuccessResult(null, null);
+    result.setDelay(DelayModel.empirical(values, TimeUnit.MILLISECONDS));
+
+    String json = mapper.writeValueAsString(result);
+    assertThat(json).contains("\"type\":\"empirical\"").doesNotContain("path");
+    Result read = mapper.readValue(json, Result.class);
+    assertThat(read.getDelayModel()).isEqualTo(result.getDelayModel());
+
+    long[] samples = sample(read.getDelayModel());
+    assertThat(millis(samples[(int) (SAMPLES * 0.5)])).isCloseTo(1, within(0.01));
+    assertThat(millis(samples[(int) (SAMPLES * 0.95)])).isCloseTo(50, within(0.1));
+  }
+
+  @Test
+  public void shouldOnlyReadHistogramLogsFromJsonInHistogramDirectory() throws Exception {
+    File log = histogramLog("latencies.hlog");
+    String relative = "{\"type\":\"empirical\",\"path\":\"latencies.hlog\"}";
+
+    assertThatThrownBy(() -> mapper.readValue(relative, DelayModel.class))
+        .hasStackTraceContaining("without a histogram directory");
+
+    EmpiricalDelay.setHistogramDirectory(folder.getRoot().toPath());
+    try {
+      DelayModel delay = mapper.readValue(relative, DelayModel.class);
+      assertThat(millis(median(sample(delay)))).isCloseTo(1, within(0.01));
+
+      String escaping = "{\"type\":\"empirical\",\"path\":\"../latencies.hlog\"}";
+      assertThatThrownBy(() -> mapper.readValue(escaping, DelayModel.class))
+          .hasStackTraceContaining("outside of the histogram directory");
+
+      File outside = File.createTempFile("latencies", ".hlog");
+      outside.deleteOnExit();
+      String absolute =
+          "{\"type\":\"empirical\",\"path\":\""
+              + outside.getAbsolutePath().replace("\\", "\\\\")
+              + "\"}";
+      assertThatThrownBy(() -> mapper.readValue(absolute, DelayModel.class))
+          .hasStackTraceContaining("outside of the histogram directory");
+    } finally {
+      EmpiricalDelay.setHistogramDirectory(null);
+    }
+    assertThat(log).exists();
+  }
+
+  @Test
+  public void shouldRoundTripThroughJson() throws Exception {
+    Result result = new SuccessResult(null, null);
+    result.setDelay(DelayModel.logNormal(2, 0.5, TimeUnit.MILLISECONDS));
+
+    String json = mapper.writeValueAsString(result);
+    assertThat(json).contains("\"delay\":{\"type\":\"log_normal\",\"median_in_ms\":2.0");
+
+    Result read = mapper.readValue(json, Result.class);
+    assertThat(read).isEqualTo(result);
+    assertThat(read.getDelayModel()).isEqualTo(result.getDelayModel());
+  }
+
+  @Test
+  public void shouldReadSubMillisecondDelays() throws Exception {
+    Result result =
+        mapper.readValue(
+            "{\"result\":\"success\","
+                + "\"delay\":{\"type\":\"uniform\",\"min_in_ms\":0.25,\"max_in_ms\":0.5}}",
+            Result.class);
+
+    long sample = result.sampleDelayInNanos();
+    assertThat(sample).isBetween(250_000L, 500_000L);
+  }
+
+  private File histogramLog(String name) throws Exception {
+    Histogram histogram = new Histogram(3);
+    // 90% of values at 1ms, 10% at 50ms, recorded in microseconds.
+    histogram.recordValueWithCount(1000, 900);
+    histogram.recordValueWithCount(50_000, 100);
+    File log = folder.newFile(name);
+    HistogramLogWriter writer = new HistogramLogWriter(log);
+    writer.outputIntervalHistogram(histogram);
+    writer.close();
+    return log;
+  }
+
+  private static long[] sample(DelayModel delay) {
+    long[] samples = new long[SAMPLES];
+    for (int i = 0; i < SAMPLES; i++) {
+      samples[i] = delay.sampleNanos();
+    }
+    Arrays.sort(samples);
+    return samples;
+  }
+
+  private static long median(long[] sorted) {
+    return sorted[sorted.length / 2];
+  }
+
+  private static double millis(double nanos) {
+    return nanos / 1_000_000;
+  }
+}
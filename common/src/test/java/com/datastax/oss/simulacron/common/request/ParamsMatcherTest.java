@@ -0,0 +1,141 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.common.request;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.Test;
+
+public class ParamsMatcherTest {
+
+  private static final int PROTOCOL_VERSION = 4;
+
+  @Test
+  public void shouldMatchPositionalValuesBytewise() {
+    ParamsMatcher matcher =
+        new ParamsMatcher(
+            params("foo", "any", "bar", 100, "baz", "01020304-0506-0708-090a-0b0c0d0e0f10"),
+            types("foo", "varchar", "bar", "int", "baz", "uuid"));
+    ByteBuffer uuid = ByteBuffer.allocate(16);
+    uuid.putLong(0, 0x0102030405060708L).putLong(8, 0x090a0b0c0d0e0f10L);
+
+    assertThat(matches(matcher, utf8("any"), bytes(0, 0, 0, 100), uuid)).isTrue();
+    assertThat(matches(matcher, utf8("any"), bytes(0, 0, 0, 101), uuid)).isFalse();
+    assertThat(matches(matcher, utf8("other"), bytes(0, 0, 0, 100), uuid)).isFalse();
+    // a value of the wrong size for its type doesn't match instead of failing to decode.
+    assertThat(matches(matcher, utf8("any"), bytes(0, 100), uuid)).isFalse();
+    // the number of values must match the number of parameters.
+    assertThat(matches(matcher, utf8("any"), bytes(0, 0, 0, 100))).isFalse();
+  }
+
+  @Test
+  public void shouldMatchAnyValueWithWildcard() {
+    ParamsMatcher matcher =
+        new ParamsMatcher(params("foo", "*", "bar", 100), types("foo", "varchar", "bar", "int"));
+
+    assertThat(matches(matcher, utf8("whatever"), bytes(0, 0, 0, 100))).isTrue();
+    assertThat(matches(matcher, null, bytes(0, 0, 0, 100))).isTrue();
+    assertThat(matches(matcher, utf8("whatever"), bytes(0, 0, 0, 1))).isFalse();
+  }
+
+  @Test
+  public void shouldMatchEmptyValuesLikeDecodedOnes() {
+    ParamsMatcher matcher =
+        new ParamsMatcher(params("foo", 0, "bar", ""), types("foo", "int", "bar", "varchar"));
+
+    // empty int values decode to 0.
+    assertThat(matches(matcher, bytes(), bytes())).isTrue();
+    assertThat(matches(matcher, bytes(0, 0, 0, 0), bytes())).isTrue();
+    assertThat(matches(matcher, bytes(0, 0, 0, 1), bytes())).isFalse();
+  }
+
+  @Test
+  public void shouldCompareDecodedValuesWhenBytesAreNotCanonical() {
+    ParamsMatcher matcher =
+        new ParamsMatcher(
+            params("foo", "1.5", "bar", Arrays.asList(1, 2)),
+            types("foo", "decimal", "bar", "set<int>"));
+
+    ByteBuffer decimal = bytes(0, 0, 0, 1, 15);
+    // unscaled value with a superfluous leading zero byte.
+    ByteBuffer paddedDecimal = bytes(0, 0, 0, 1, 0, 15);
+    ByteBuffer set = bytes(0, 0, 0, 2, 0, 0, 0, 4, 0, 0, 0, 1, 0, 0, 0, 4, 0, 0, 0, 2);
+    // same elements in another order.
+    ByteBuffer reversedSet = bytes(0, 0, 0, 2, 0, 0, 0, 4, 0, 0, 0, 2, 0, 0, 0, 4, 0, 0, 0, 1);
+
+    assertThat(matches(matcher, decimal, set)).isTrue();
+    assertThat(matches(matcher, paddedDecimal, reversedSet)).isTrue();
+    assertThat(matches(matcher, bytes(0, 0, 0, 1, 16), set)).isFalse();
+  }
+
+  @Test
+  public void shouldMatchNamedValuesByName() {
+    ParamsMatcher matcher =
+        new ParamsMatcher(params("foo", "any", "bar", 100), types("foo", "varchar", "bar", "int"));
+
+    Map<String, ByteBuffer> values = new HashMap<>();
+    values.put("bar", bytes(0, 0, 0, 100));
+    values.put("foo", utf8("any"));
+    assertThat(matcher.matchesNamed(PROTOCOL_VERSION, values)).isTrue();
+
+    values.put("foo", utf8("other"));
+    assertThat(matcher.matchesNamed(PROTOCOL_VERSION, values)).isFalse();
+
+    values.remove("foo");
+    values.put("baz", utf8("any"));
+    assertThat(matcher.matchesNamed(PROTOCOL_VERSION, values)).isFalse();
+    assertThat(matcher.matchesNamed(PROTOCOL_VERSION, Collections.emptyMap())).isFalse();
+  }
+
+  private static LinkedHashMap<String, Object> params(Object... namesAndValues) {
+    LinkedHashMap<String, Object> params = new LinkedHashMap<>();
+    for (int i = 0; i < namesAndValues.length; i += 2) {
+      params.put((String) namesAndValues[i], namesAndValues[i + 1]);
+    }
+    return params;
+  }
+
+  private static LinkedHashMap<String, String> types(String... namesAndTypes) {
+    LinkedHashMap<String, String> paramTypes = new LinkedHashMap<>();
+    for (int i = 0; i < namesAndTypes.length; i += 2) {
+      paramTypes.put(namesAndTypes[i], namesAndTypes[i + 1]);
+    }
+    return paramTypes;
+  }
+
+  private static boolean matches(ParamsMatcher matcher, ByteBuffer... values) {
+    return matcher.matchesPositional(PROTOCOL_VERSION, Arrays.asList(values));
+  }
+
+  private static ByteBuffer utf8(String value) {
+    return ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static ByteBuffer bytes(int... values) {
+    byte[] bytes = new byte[values.length];
+    for (int i = 0; i < values.length; i++) {
+      bytes[i] = (byte) values[i];
+    }
+    return ByteBuffer.wrap(bytes);
+  }
+}
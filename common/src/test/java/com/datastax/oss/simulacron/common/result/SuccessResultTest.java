@@ -0,0 +1,89 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.common.result;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.datastax.oss.protocol.internal.response.result.Rows;
+import com.datastax.oss.simulacron.common.codec.ProtocolVersionException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import org.junit.Test;
+
+public class SuccessResultTest {
+
+  @Test
+  public void shouldReuseEncodedRowsWithinAProtocolVersion() {
+    SuccessResult result = result("int", 7);
+
+    Rows rows = result.encodedRows(4);
+    assertThat(result.encodedRows(4)).isSameAs(rows);
+    assertThat(value(rows)).isEqualTo(ByteBuffer.wrap(new byte[] {0, 0, 0, 7}));
+  }
+
+  @Test
+  public void shouldEncodeRowsSeparatelyForEachProtocolVersion() {
+    SuccessResult result = result("int", 7);
+
+    Rows v3 = result.encodedRows(3);
+    Rows v4 = result.encodedRows(4);
+    assertThat(v4).isNotSameAs(v3);
+    assertThat(value(v4)).isEqualTo(value(v3));
+    assertThat(result.encodedRows(3)).isSameAs(v3);
+    assertThat(result.encodedRows(4)).isSameAs(v4);
+  }
+
+  @Test
+  public void shouldNotLeakEncodedRowsAcrossProtocolVersions() {
+    // smallint requires protocol v4, rows cached for v4 must not be served to v3.
+    SuccessResult result = result("smallint", 7);
+
+    assertThat(value(result.encodedRows(4))).isEqualTo(ByteBuffer.wrap(new byte[] {0, 7}));
+    assertThatThrownBy(() -> result.encodedRows(3)).isInstanceOf(ProtocolVersionException.class);
+  }
+
+  @Test
+  public void shouldNotCacheRowsOfUnknownProtocolVersions() {
+    SuccessResult result = result("int", 7);
+
+    assertThat(result.encodedRows(65)).isNotSameAs(result.encodedRows(65));
+  }
+
+  @Test
+  public void shouldNotAllowModifyingEncodedRows() {
+    Rows rows = result("int", 7).encodedRows(4);
+
+    assertThatThrownBy(rows.getData()::poll).isInstanceOf(UnsupportedOperationException.class);
+    assertThat(rows.getData()).hasSize(1);
+  }
+
+  private static SuccessResult result(String type, Object value) {
+    LinkedHashMap<String, String> columnTypes = new LinkedHashMap<>();
+    columnTypes.put("column", type);
+    LinkedHashMap<String, Object> row = new LinkedHashMap<>();
+    row.put("column", value);
+    List<LinkedHashMap<String, Object>> rows = new ArrayList<>(Collections.singletonList(row));
+    return new SuccessResult(rows, columnTypes);
+  }
+
+  private static ByteBuffer value(Rows rows) {
+    return rows.getData().peek().get(0);
+  }
+}
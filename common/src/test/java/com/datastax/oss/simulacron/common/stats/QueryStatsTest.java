@@ -0,0 +1,102 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.common.stats;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.datastax.oss.simulacron.common.codec.ConsistencyLevel;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class QueryStatsTest {
+
+  private final QueryStats stats = new QueryStats();
+
+  @Test
+  public void shouldNormalizeLiterals() {
+    assertThat(QueryStats.normalize("select * from table1 where a = 'it''s' and b = 12.5"))
+        .isEqualTo("select * from table1 where a = ? and b = ?");
+    assertThat(
+            QueryStats.normalize(
+                "delete from foo\n where id = 5c2bdba4-0a5d-4a4c-9b5e-7a1b7d4f2c11 and c = 0xcafe"))
+        .isEqualTo("delete from foo where id = ? and c = ?");
+    assertThat(QueryStats.normalize("select  *\tfrom foo limit 10"))
+        .isEqualTo("select * from foo limit ?");
+  }
+
+  @Test
+  public void shouldAggregateByNormalizedStatement() {
+    stats.record("QUERY", "select * from foo where a = 1", ConsistencyLevel.ONE, false, micros(10));
+    stats.record("QUERY", "select * from foo where a = 2", ConsistencyLevel.ONE, false, micros(20));
+    stats.record(
+        "QUERY", "select * from foo where a = 3", ConsistencyLevel.QUORUM, true, micros(30));
+    stats.record("PREPARE", "select * from foo where a = ?", null, false, micros(5));
+
+    List<StatementStats> snapshot = stats.snapshot();
+    assertThat(snapshot).hasSize(2);
+    StatementStats query =
+        snapshot.stream().filter(s -> s.getType().equals("QUERY")).findFirst().get();
+    assertThat(query.getQuery()).isEqualTo("select * from foo where a = ?");
+    assertThat(query.getCount()).isEqualTo(3);
+    assertThat(query.getSuccess()).isEqualTo(2);
+    assertThat(query.getErrors()).isEqualTo(1);
+    assertThat(query.getConsistencies())
+        .containsEntry(ConsistencyLevel.ONE, 2L)
+        .containsEntry(ConsistencyLevel.QUORUM, 1L)
+        .hasSize(2);
+    assertThat(query.getLatency().getMin()).isEqualTo(10);
+    assertThat(query.getLatency().getMax()).isEqualTo(30);
+    assertThat(query.getLatency().getP50()).isEqualTo(20);
+  }
+
+  @Test
+  public void shouldAccumulateAcrossSnapshots() {
+    stats.record("QUERY", "select * from foo", ConsistencyLevel.ONE, false, micros(10));
+    assertThat(stats.snapshot().get(0).getLatency().getMax()).isEqualTo(10);
+
+    stats.record("QUERY", "select * from foo", ConsistencyLevel.ONE, false, micros(50));
+    StatementStats query = stats.snapshot().get(0);
+    assertThat(query.getCount()).isEqualTo(2);
+    assertThat(query.getLatency().getMin()).isEqualTo(10);
+    assertThat(query.getLatency().getMax()).isEqualTo(50);
+  }
+
+  @Test
+  public void shouldNotRunOutOfStatementsWithInlinedLiterals() {
+    for (int i = 0; i < QueryStats.MAX_STATEMENTS + 10; i++) {
+      stats.record(
+          "QUERY", "select * from foo where a = " + i, ConsistencyLevel.ONE, false, micros(10));
+    }
+
+    List<StatementStats> snapshot = stats.snapshot();
+    assertThat(snapshot).hasSize(1);
+    assertThat(snapshot.get(0).getQuery()).isEqualTo("select * from foo where a = ?");
+    assertThat(snapshot.get(0).getCount()).isEqualTo(QueryStats.MAX_STATEMENTS + 10);
+  }
+
+  @Test
+  public void shouldReset() {
+    stats.record("QUERY", "select * from foo", ConsistencyLevel.ONE, false, micros(10));
+    stats.reset();
+
+    assertThat(stats.snapshot()).isEmpty();
+  }
+
+  private static long micros(long micros) {
+    return TimeUnit.MICROSECONDS.toNanos(micros);
+  }
+}
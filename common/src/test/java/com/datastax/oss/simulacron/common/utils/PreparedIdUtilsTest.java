@@ -0,0 +1,69 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.common.utils;
+
+import static com.datastax.oss.simulacron.common.utils.PreparedIdUtils.toHexString;
+import static com.datastax.oss.simulacron.common.utils.PreparedIdUtils.toPreparedId;
+import static com.datastax.oss.simulacron.common.utils.PreparedIdUtils.toQueryId;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigInteger;
+import java.util.Random;
+import org.junit.Test;
+
+public class PreparedIdUtilsTest {
+
+  private final Random random = new Random(42);
+
+  @Test
+  public void shouldResolveQueryIdLikeBigInteger() {
+    int[] queryIds = {0, 1, -1, 127, 128, -128, -129, 0xffff, Integer.MIN_VALUE, Integer.MAX_VALUE};
+    for (int queryId : queryIds) {
+      assertResolves(queryId);
+    }
+    for (int i = 0; i < 10000; i++) {
+      assertResolves(random.nextInt());
+    }
+  }
+
+  @Test
+  public void shouldKeepLowestBitsOfLongIds() {
+    for (int i = 0; i < 1000; i++) {
+      // i.e. MD5 digests
+      byte[] preparedId = new byte[16];
+      random.nextBytes(preparedId);
+      assertThat(toQueryId(preparedId)).isEqualTo(new BigInteger(preparedId).intValue());
+    }
+  }
+
+  @Test
+  public void shouldFormatHexLikeBigInteger() {
+    byte[][] preparedIds = {{0}, {0, 0, 0, 0}, {0, 0, 1, 0}, {0x0f}, {-1, -1}, toPreparedId(-42)};
+    for (byte[] preparedId : preparedIds) {
+      assertThat(toHexString(preparedId)).isEqualTo(new BigInteger(1, preparedId).toString(16));
+    }
+    for (int i = 0; i < 1000; i++) {
+      byte[] preparedId = new byte[1 + random.nextInt(16)];
+      random.nextBytes(preparedId);
+      assertThat(toHexString(preparedId)).isEqualTo(new BigInteger(1, preparedId).toString(16));
+    }
+  }
+
+  private static void assertResolves(int queryId) {
+    assertThat(toQueryId(toPreparedId(queryId))).isEqualTo(queryId);
+    assertThat(toQueryId(BigInteger.valueOf(queryId).toByteArray())).isEqualTo(queryId);
+  }
+}
@@ -17,9 +17,11 @@ package com.datastax.oss.simulacron.http.server;
 
 import static com.datastax.oss.simulacron.http.server.HttpUtils.handleError;
 
+import com.datastax.oss.simulacron.common.cluster.ActivityLogSampling;
 import com.datastax.oss.simulacron.common.cluster.ClusterQueryLogReport;
 import com.datastax.oss.simulacron.common.cluster.ObjectMapperHolder;
-import com.datastax.oss.simulacron.common.cluster.QueryLogReport;
+import com.datastax.oss.simulacron.common.stats.StatsReport;
+import com.datastax.oss.simulacron.server.BoundTopic;
 import com.datastax.oss.simulacron.server.Server;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.vertx.core.http.HttpMethod;
@@ -49,6 +51,13 @@ public class ActivityLogManager implements HttpListener {
    * <p>GET http://iphere:porthere/log/:clusterIdOrName/:datacenterIdOrName/:nodeIdOrName Will
    * return all queries invoked by clients to a node of a datacenter of a cluster
    *
+   * <p>Logs can be filtered with the filter (primed or nonprimed), query (substring of the query),
+   * type (i.e. QUERY or EXECUTE), from and to (received timestamp range in milliseconds) and
+   * connection (client address, with or without port) parameters, and paged through with the after
+   * and limit parameters, see {@link QueryLogFilter}. With format=ndjson or an Accept header of
+   * application/x-ndjson logs are streamed one per line instead, which should be preferred for
+   * large logs.
+   *
    * @param context RoutingContext Provided by vertx
    */
   private void getQueryLog(RoutingContext context) {
@@ -59,20 +68,24 @@ public class ActivityLogManager implements HttpListener {
               try {
                 ObjectMapper om = ObjectMapperHolder.getMapper();
                 StringBuilder response = new StringBuilder();
-                String filterStr = context.request().getParam("filter");
-
-                final Boolean filter =
-                    filterStr != null ? filterStr.equalsIgnoreCase("primed") : null;
 
                 Scope scope = HttpUtils.getScope(context, server);
                 if (scope == null) {
                   return;
                 }
-                QueryLogReport logReport;
-                if (filter != null) logReport = HttpUtils.find(server, scope).getLogs(filter);
-                else logReport = HttpUtils.find(server, scope).getLogs();
-
-                ClusterQueryLogReport rootReport = logReport.getRootReport();
+                QueryLogFilter filter;
+                try {
+                  filter = QueryLogFilter.fromRequest(context.request());
+                } catch (IllegalArgumentException e) {
+                  handleError(new ErrorMessage(e.getMessage(), 400), context);
+                  return;
+                }
+                BoundTopic<?, ?> topic = HttpUtils.find(server, scope);
+                if (isNdjson(context)) {
+                  new QueryLogStreamer(context, topic, filter).start();
+                  return;
+                }
+                ClusterQueryLogReport rootReport = filter.getLogs(scope.getClusterId(), topic);
                 String activityLogStr =
                     om.writerWithDefaultPrettyPrinter().writeValueAsString(rootReport);
                 response.append(activityLogStr);
@@ -88,6 +101,12 @@ public class ActivityLogManager implements HttpListener {
             });
   }
 
+  private static boolean isNdjson(RoutingContext context) {
+    String accept = context.request().getHeader("accept");
+    return "ndjson".equalsIgnoreCase(context.request().getParam("format"))
+        || (accept != null && accept.contains("application/x-ndjson"));
+  }
+
   /**
    * This is an async callback that will be invoked whenever a request to /log is submitted with
    * DELETE. When a clusterIdOrName is provided in the format of /log/:clusterIdOrName, we will
@@ -130,6 +149,116 @@ public class ActivityLogManager implements HttpListener {
             });
   }
 
+  /**
+   * This is an async callback that will be invoked whenever a request to /log-sampling is submitted
+   * with PUT. It replaces which requests the activity logs of the nodes in the given scope record,
+   * the number of requests that were not recorded is reported as sampled_out in the /log responses.
+   *
+   * <p>Example supported HTTP requests
+   *
+   * <p>PUT http://iphere:porthere/log-sampling/:clusterIdOrName with a body of {"one_in": 100,
+   * "max_per_second": 50, "filter": "primed"} Will only record 1 in 100 primed requests, and at
+   * most 50 of them per second, on every node of a cluster
+   *
+   * @param context RoutingContext Provided by vertx
+   */
+  private void setSampling(RoutingContext context) {
+    context
+        .request()
+        .bodyHandler(
+            totalBuffer -> {
+              try {
+                Scope scope = HttpUtils.getScope(context, server);
+                if (scope == null) {
+                  return;
+                }
+                ActivityLogSampling sampling =
+                    ObjectMapperHolder.getMapper()
+                        .readValue(totalBuffer.toString(), ActivityLogSampling.class);
+                HttpUtils.find(server, scope).setActivityLogSampling(sampling);
+                context
+                    .request()
+                    .response()
+                    .putHeader("content-type", "application/json")
+                    .setStatusCode(200)
+                    .end();
+              } catch (Exception e) {
+                handleError(new ErrorMessage(e.getMessage(), 400), context);
+              }
+            });
+  }
+
+  /**
+   * This is an async callback that will be invoked whenever a request to /stats is submitted with
+   * GET. Unlike /log it returns aggregates per normalized statement and node: how many requests
+   * were received by consistency level, how many failed and percentiles of the time it took to
+   * respond, in microseconds. These are recorded even when activity logging is disabled.
+   *
+   * <p>Example supported HTTP requests
+   *
+   * <p>GET http://iphere:porthere/stats/:clusterIdOrName Will return the statistics of each node of
+   * a cluster
+   *
+   * <p>GET http://iphere:porthere/stats/:clusterIdOrName/:datacenterIdOrName/:nodeIdOrName Will
+   * return the statistics of a node of a datacenter of a cluster
+   *
+   * @param context RoutingContext Provided by vertx
+   */
+  private void getStats(RoutingContext context) {
+    context
+        .request()
+        .bodyHandler(
+            totalBuffer -> {
+              try {
+                Scope scope = HttpUtils.getScope(context, server);
+                if (scope == null) {
+                  return;
+                }
+                StatsReport report = HttpUtils.find(server, scope).getStats();
+                context
+                    .request()
+                    .response()
+                    .putHeader("content-type", "application/json")
+                    .setStatusCode(200)
+                    .end(
+                        ObjectMapperHolder.getMapper()
+                            .writerWithDefaultPrettyPrinter()
+                            .writeValueAsString(report));
+              } catch (Exception e) {
+                handleError(new ErrorMessage(e, 404), context);
+              }
+            });
+  }
+
+  /**
+   * This is an async callback that will be invoked whenever a request to /stats is submitted with
+   * DELETE. It resets the statistics of the nodes in the given scope.
+   *
+   * @param context RoutingContext Provided by vertx
+   */
+  private void deleteStats(RoutingContext context) {
+    context
+        .request()
+        .bodyHandler(
+            totalBuffer -> {
+              try {
+                Scope scope = HttpUtils.getScope(context, server);
+                if (scope == null) {
+                  return;
+                }
+                HttpUtils.find(server, scope).resetStats();
+                context
+                    .request()
+                    .response()
+                    .putHeader("content-type", "application/json")
+                    .setStatusCode(204)
+                    .end();
+              } catch (Exception e) {
+                handleError(new ErrorMessage(e, 404), context);
+              }
+            });
+  }
+
   public void registerWithRouter(Router router) {
     router.route(HttpMethod.GET, "/log/:clusterIdOrName").handler(this::getQueryLog);
     router
@@ -145,5 +274,26 @@ public class ActivityLogManager implements HttpListener {
     router
         .route(HttpMethod.DELETE, "/log/:clusterIdOrName/:datacenterIdOrName/:nodeIdOrName")
         .handler(this::deleteQueryLog);
+    router.route(HttpMethod.PUT, "/log-sampling/:clusterIdOrName").handler(this::setSampling);
+    router
+        .route(HttpMethod.PUT, "/log-sampling/:clusterIdOrName/:datacenterIdOrName")
+        .handler(this::setSampling);
+    router
+        .route(HttpMethod.PUT, "/log-sampling/:clusterIdOrName/:datacenterIdOrName/:nodeIdOrName")
+        .handler(this::setSampling);
+    router.route(HttpMethod.GET, "/stats/:clusterIdOrName").handler(this::getStats);
+    router
+        .route(HttpMethod.GET, "/stats/:clusterIdOrName/:datacenterIdOrName")
+        .handler(this::getStats);
+    router
+        .route(HttpMethod.GET, "/stats/:clusterIdOrName/:datacenterIdOrName/:nodeIdOrName")
+        .handler(this::getStats);
+    router.route(HttpMethod.DELETE, "/stats/:clusterIdOrName").handler(this::deleteStats);
+    router
+        .route(HttpMethod.DELETE, "/stats/:clusterIdOrName/:datacenterIdOrName")
+        .handler(this::deleteStats);
+    router
+        .route(HttpMethod.DELETE, "/stats/:clusterIdOrName/:datacenterIdOrName/:nodeIdOrName")
+        .handler(this::deleteStats);
   }
 }
@@ -18,6 +18,8 @@ package com.datastax.oss.simulacron.http.server;
 import static com.datastax.oss.simulacron.http.server.HttpUtils.handleError;
 import static com.datastax.oss.simulacron.http.server.HttpUtils.handleMessage;
 
+import com.datastax.oss.simulacron.common.cluster.ActivityLog;
+import com.datastax.oss.simulacron.common.cluster.ActivityLogSampling;
 import com.datastax.oss.simulacron.common.cluster.ClusterSpec;
 import com.datastax.oss.simulacron.common.cluster.ObjectMapperHolder;
 import com.datastax.oss.simulacron.server.BoundCluster;
@@ -73,6 +75,32 @@ public class ClusterManager implements HttpListener {
                 String activityLog = context.request().getParam("activity_log");
                 Boolean activityLogEnabled =
                     activityLog != null ? Boolean.parseBoolean(activityLog) : null;
+                String activityLogCapacityParam =
+                    context.request().getParam("activity_log_capacity");
+                Integer activityLogCapacity =
+                    activityLogCapacityParam != null
+                        ? Integer.parseInt(activityLogCapacityParam)
+                        : null;
+                String activityLogEvictionParam =
+                    context.request().getParam("activity_log_eviction");
+                ActivityLog.EvictionPolicy activityLogEvictionPolicy =
+                    activityLogEvictionParam != null
+                        ? ActivityLog.EvictionPolicy.valueOf(activityLogEvictionParam.toUpperCase())
+                        : null;
+                ActivityLogSampling activityLogSampling = parseSampling(context);
+                String eventLoopIsolationParam = context.request().getParam("event_loop_isolation");
+                ServerOptions.EventLoopIsolation eventLoopIsolation =
+                    eventLoopIsolationParam != null
+                        ? ServerOptions.EventLoopIsolation.valueOf(
+                            eventLoopIsolationParam.toUpperCase())
+                        : ServerOptions.EventLoopIsolation.SHARED;
+                String eventLoopThreadsParam = context.request().getParam("event_loop_threads");
+                int eventLoopThreads =
+                    eventLoopThreadsParam != null ? Integer.parseInt(eventLoopThreadsParam) : 0;
+                String preparedCacheParam =
+                    context.request().getParam("prepared_statement_cache_capacity");
+                Integer preparedCacheCapacity =
+                    preparedCacheParam != null ? Integer.parseInt(preparedCacheParam) : null;
                 String name = context.request().getParam("name");
                 StringBuilder response = new StringBuilder();
                 ClusterSpec cluster = null;
@@ -102,6 +130,11 @@ public class ClusterManager implements HttpListener {
                         cluster,
                         ServerOptions.builder()
                             .withActivityLoggingEnabled(activityLogEnabled)
+                            .withActivityLogCapacity(activityLogCapacity)
+                            .withActivityLogEvictionPolicy(activityLogEvictionPolicy)
+                            .withActivityLogSampling(activityLogSampling)
+                            .withEventLoopIsolation(eventLoopIsolation, eventLoopThreads)
+                            .withPreparedStatementCacheCapacity(preparedCacheCapacity)
                             .build());
                 future.whenComplete(
                     (completedCluster, ex) -> {
@@ -179,6 +212,26 @@ public class ClusterManager implements HttpListener {
             });
   }
 
+  /**
+   * Parses the activity_log_one_in, activity_log_max_per_second and activity_log_filter parameters
+   * of a provisioning request.
+   *
+   * @param context RoutingContext provided by vertx
+   * @return the sampling to apply or null if none of the parameters were provided.
+   */
+  private static ActivityLogSampling parseSampling(RoutingContext context) {
+    String oneIn = context.request().getParam("activity_log_one_in");
+    String maxPerSecond = context.request().getParam("activity_log_max_per_second");
+    String filter = context.request().getParam("activity_log_filter");
+    if (oneIn == null && maxPerSecond == null && filter == null) {
+      return null;
+    }
+    return new ActivityLogSampling(
+        oneIn != null ? Integer.parseInt(oneIn) : 1,
+        maxPerSecond != null ? Double.parseDouble(maxPerSecond) : 0,
+        filter != null ? ActivityLogSampling.Filter.valueOf(filter.toUpperCase()) : null);
+  }
+
   /**
    * This is an async callback that will be invoked whenever a request to /cluster is submited with
    * GET. Query a clusterIdOrName is provided in the format of /cluster/:clusterIdOrName, we will
@@ -22,18 +22,26 @@ import com.datastax.oss.simulacron.common.cluster.ConnectionReport;
 import com.datastax.oss.simulacron.common.cluster.ObjectMapperHolder;
 import com.datastax.oss.simulacron.common.stubbing.CloseType;
 import com.datastax.oss.simulacron.server.BoundCluster;
+import com.datastax.oss.simulacron.server.BoundNode;
 import com.datastax.oss.simulacron.server.BoundTopic;
+import com.datastax.oss.simulacron.server.CapacityLimits;
+import com.datastax.oss.simulacron.server.NodeCapacity;
 import com.datastax.oss.simulacron.server.RejectScope;
 import com.datastax.oss.simulacron.server.Server;
+import com.datastax.oss.simulacron.server.TrafficLimits;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.vertx.core.http.HttpMethod;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
 import java.net.InetSocketAddress;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
 import java.util.concurrent.CompletionStage;
+import java.util.function.BiConsumer;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -361,6 +369,114 @@ public class EndpointManager implements HttpListener {
             });
   }
 
+  /**
+   * This is an async callback that will be invoked in order to get the capacity limits and counters
+   * of every node in the given scope, keyed by the node's id path.
+   *
+   * <p>Example Supported HTTP Requests
+   *
+   * <p>GET http://iphere:porthere/capacity/clusterIdOrName/datacenterIdOrName/ this will retrieve
+   * the capacity of every node of the datacenter represented by datacenterIdOrName inside the
+   * cluster represented by clusterIdOrName
+   *
+   * @param context RoutingContext provided by vertx
+   */
+  private void getCapacity(RoutingContext context) {
+    context
+        .request()
+        .bodyHandler(
+            totalBuffer -> {
+              try {
+                Scope scope = HttpUtils.getScope(context, server);
+                if (scope == null) {
+                  return;
+                }
+                Map<String, NodeCapacity> capacity =
+                    HttpUtils.find(server, scope)
+                        .getNodes()
+                        .stream()
+                        .collect(
+                            Collectors.toMap(
+                                BoundNode::resolveIdPath,
+                                BoundNode::getCapacity,
+                                (a, b) -> a,
+                                TreeMap::new));
+                context
+                    .request()
+                    .response()
+                    .putHeader("content-type", "application/json")
+                    .setStatusCode(200)
+                    .end(om.writerWithDefaultPrettyPrinter().writeValueAsString(capacity));
+              } catch (Exception e) {
+                logger.error("Error occurred while processing getCapacity request", e);
+                handleError(new ErrorMessage(e.getMessage(), 400), context);
+              }
+            });
+  }
+
+  /**
+   * This is an async callback that will be invoked in order to replace the capacity limits of every
+   * node in the given scope with the limits in the request body.
+   *
+   * <p>Example Supported HTTP Requests
+   *
+   * <p>PUT http://iphere:porthere/capacity/clusterIdOrName/datacenterIdOrName/nodeIdOrName with a
+   * body of {"ops_per_second": 1000, "max_in_flight": 128, "overload": "reject"} this will limit
+   * the node represented by nodeIdOrName to 1000 requests per second and 128 concurrent requests,
+   * rejecting any excess request with an OVERLOADED error
+   *
+   * @param context RoutingContext provided by vertx
+   */
+  private void setCapacity(RoutingContext context) {
+    setLimits(context, CapacityLimits.class, BoundTopic::setCapacity);
+  }
+
+  /**
+   * This is an async callback that will be invoked in order to shape the traffic of the given
+   * scope with the limits in the request body. Limits set on a node and on its data center both
+   * apply, limits set on a cluster are set on each of its data centers. The observed throughput of
+   * shaped nodes is included in their connection reports.
+   *
+   * <p>Example Supported HTTP Requests
+   *
+   * <p>PUT http://iphere:porthere/traffic/clusterIdOrName/datacenterIdOrName with a body of
+   * {"read_bytes_per_second": 1048576, "write_bytes_per_second": 1048576, "latency_in_ms": 50} this
+   * will limit all the connections to nodes of the datacenter represented by datacenterIdOrName to
+   * 1 MiB/s in each direction, shared between them, and delay every response by 50 milliseconds
+   *
+   * @param context RoutingContext provided by vertx
+   */
+  private void setTraffic(RoutingContext context) {
+    setLimits(context, TrafficLimits.class, BoundTopic::setTraffic);
+  }
+
+  /** Applies the limits parsed from the request body to the topic of the request's scope. */
+  private <T> void setLimits(
+      RoutingContext context, Class<T> limitsClass, BiConsumer<BoundTopic<?, ?>, T> setter) {
+    context
+        .request()
+        .bodyHandler(
+            totalBuffer -> {
+              try {
+                Scope scope = HttpUtils.getScope(context, server);
+                if (scope == null) {
+                  return;
+                }
+                T limits = om.readValue(totalBuffer.toString(), limitsClass);
+                setter.accept(HttpUtils.find(server, scope), limits);
+                context
+                    .request()
+                    .response()
+                    .putHeader("content-type", "application/json")
+                    .setStatusCode(200)
+                    .end();
+              } catch (Exception e) {
+                logger.error("Error occurred while processing setLimits request", e);
+                handleError(new ErrorMessage(e.getMessage(), 400), context);
+              }
+            });
+  }
+
   /**
    * This method handles the registration of the various routes responsible for setting and
    * retrieving cluster information via http.
@@ -428,5 +544,30 @@ public class EndpointManager implements HttpListener {
     router
         .route(HttpMethod.DELETE, "/pause-reads/:clusterIdOrName")
         .handler(this::resumeConnections);
+
+    // Node capacity
+    router
+        .route(HttpMethod.GET, "/capacity/:clusterIdOrName/:datacenterIdOrName/:nodeIdOrName")
+        .handler(this::getCapacity);
+    router
+        .route(HttpMethod.GET, "/capacity/:clusterIdOrName/:datacenterIdOrName")
+        .handler(this::getCapacity);
+    router.route(HttpMethod.GET, "/capacity/:clusterIdOrName").handler(this::getCapacity);
+    router
+        .route(HttpMethod.PUT, "/capacity/:clusterIdOrName/:datacenterIdOrName/:nodeIdOrName")
+        .handler(this::setCapacity);
+    router
+        .route(HttpMethod.PUT, "/capacity/:clusterIdOrName/:datacenterIdOrName")
+        .handler(this::setCapacity);
+    router.route(HttpMethod.PUT, "/capacity/:clusterIdOrName").handler(this::setCapacity);
+
+    // Traffic shaping
+    router
+        .route(HttpMethod.PUT, "/traffic/:clusterIdOrName/:datacenterIdOrName/:nodeIdOrName")
+        .handler(this::setTraffic);
+    router
+        .route(HttpMethod.PUT, "/traffic/:clusterIdOrName/:datacenterIdOrName")
+        .handler(this::setTraffic);
+    router.route(HttpMethod.PUT, "/traffic/:clusterIdOrName").handler(this::setTraffic);
   }
 }
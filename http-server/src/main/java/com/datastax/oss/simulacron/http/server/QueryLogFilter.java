@@ -0,0 +1,258 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.http.server;
+
+import com.datastax.oss.simulacron.common.cluster.ActivityLog;
+import com.datastax.oss.simulacron.common.cluster.ClusterQueryLogReport;
+import com.datastax.oss.simulacron.common.cluster.QueryLog;
+import com.datastax.oss.simulacron.server.BoundNode;
+import com.datastax.oss.simulacron.server.BoundTopic;
+import io.vertx.core.http.HttpServerRequest;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Which logs a request to /log returns, parsed from its query parameters.
+ *
+ * <p>Every log of the requested scope is given a cursor made of the ids of its data center and node
+ * and of its sequence number in the log of that node, see {@link ActivityLog.Entry}. Nodes are
+ * read in the order of their ids, so only logs of the node of the {@code after} parameter with a
+ * greater sequence number and logs of the nodes after it are returned. A client can page through
+ * the logs by passing the cursor of the last log it received, logs recorded meanwhile by the nodes
+ * it already went through are not returned.
+ */
+class QueryLogFilter implements Predicate<QueryLog> {
+
+  private final Boolean primed;
+
+  private final String query;
+
+  private final String type;
+
+  private final long from;
+
+  private final long to;
+
+  private final String connection;
+
+  private final Cursor after;
+
+  private final long limit;
+
+  private QueryLogFilter(
+      Boolean primed,
+      String query,
+      String type,
+      long from,
+      long to,
+      String connection,
+      Cursor after,
+      long limit) {
+    this.primed = primed;
+    this.query = query;
+    this.type = type;
+    this.from = from;
+    this.to = to;
+    this.connection = connection;
+    this.after = after;
+    this.limit = limit;
+  }
+
+  /**
+   * @param request request to parse the parameters of.
+   * @return the filter described by the request.
+   * @throws IllegalArgumentException if a parameter has an invalid value.
+   */
+  static QueryLogFilter fromRequest(HttpServerRequest request) {
+    String filter = request.getParam("filter");
+    Boolean primed = filter != null ? filter.equalsIgnoreCase("primed") : null;
+    long limit = parseLong(request, "limit", Long.MAX_VALUE);
+    if (limit < 0) {
+      throw new IllegalArgumentException("limit must be >= 0, got " + limit);
+    }
+    return new QueryLogFilter(
+        primed,
+        request.getParam("query"),
+        request.getParam("type"),
+        parseLong(request, "from", Long.MIN_VALUE),
+        parseLong(request, "to", Long.MAX_VALUE),
+        request.getParam("connection"),
+        Cursor.parse(request.getParam("after")),
+        limit);
+  }
+
+  private static long parseLong(HttpServerRequest request, String name, long defaultValue) {
+    String value = request.getParam(name);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      return Long.parseLong(value);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(name + " must be a number, got " + value);
+    }
+  }
+
+  /**
+   * @param node node the log was recorded by.
+   * @param sequence sequence number of the log in the node's log.
+   * @return Whether the log comes after the cursor of the last log the client already received.
+   */
+  boolean isAfterCursor(BoundNode node, long sequence) {
+    if (after == null) {
+      return true;
+    }
+    int order = Long.compare(node.getDataCenter().getId(), after.dataCenterId);
+    if (order == 0) {
+      order = Long.compare(node.getId(), after.nodeId);
+    }
+    return order > 0 || (order == 0 && sequence > after.sequence);
+  }
+
+  /**
+   * Tests a log against the filters, regardless of its cursor.
+   *
+   * @param log log to test.
+   * @return Whether the log matches.
+   */
+  @Override
+  public boolean test(QueryLog log) {
+    if (primed != null && log.isPrimed() != primed) {
+      return false;
+    }
+    if (log.getReceivedTimestamp() < from || log.getReceivedTimestamp() >= to) {
+      return false;
+    }
+    if (connection != null && !matches(log.getConnection())) {
+      return false;
+    }
+    if (type != null && !type.equalsIgnoreCase(log.getType())) {
+      return false;
+    }
+    return query == null || (log.getQuery() != null && log.getQuery().contains(query));
+  }
+
+  private boolean matches(SocketAddress address) {
+    if (address instanceof InetSocketAddress) {
+      InetSocketAddress inetAddress = (InetSocketAddress) address;
+      String host = inetAddress.getAddress().getHostAddress();
+      return connection.equals(host) || connection.equals(host + ":" + inetAddress.getPort());
+    }
+    return address != null && connection.equals(address.toString());
+  }
+
+  /**
+   * @param clusterId id of the cluster of the scope.
+   * @param topic scope to read the logs of.
+   * @return the report of the logs of the scope that are in this filter's window.
+   */
+  ClusterQueryLogReport getLogs(long clusterId, BoundTopic<?, ?> topic) {
+    Window window = window();
+    ClusterQueryLogReport report = new ClusterQueryLogReport(clusterId);
+    for (BoundNode node : topic.getNodes()) {
+      ActivityLog activityLog = node.getActivityLog();
+      List<QueryLog> logs = new ArrayList<>();
+      if (!window.isDone() && isAfterCursor(node, Long.MAX_VALUE)) {
+        activityLog
+            .entries()
+            .filter(entry -> window.test(node, entry))
+            .forEach(entry -> logs.add(entry.getLog()));
+      }
+      report.addNode(node, logs, activityLog.getEvictedCount(), activityLog.getSampledOutCount());
+    }
+    return report;
+  }
+
+  /**
+   * @return a window that also applies the cursor and limit, it must be tested against every log
+   *     of the scope in order and only once.
+   */
+  Window window() {
+    return new Window();
+  }
+
+  /** Applies the cursor and limit along with the filters to the logs of a scope. */
+  class Window {
+    private long matched = 0;
+
+    /**
+     * @param node node the log was recorded by.
+     * @param entry the log and its sequence number.
+     * @return Whether the log should be returned.
+     */
+    boolean test(BoundNode node, ActivityLog.Entry entry) {
+      if (matched >= limit
+          || !isAfterCursor(node, entry.getSequence())
+          || !QueryLogFilter.this.test(entry.getLog())) {
+        return false;
+      }
+      matched++;
+      return true;
+    }
+
+    /** @return Whether the limit was reached, no more log can be returned. */
+    boolean isDone() {
+      return matched >= limit;
+    }
+  }
+
+  /** Position of a log in a scope: the ids of its data center and node and its sequence number. */
+  static class Cursor {
+    private final long dataCenterId;
+    private final long nodeId;
+    private final long sequence;
+
+    private Cursor(long dataCenterId, long nodeId, long sequence) {
+      this.dataCenterId = dataCenterId;
+      this.nodeId = nodeId;
+      this.sequence = sequence;
+    }
+
+    /**
+     * @param value cursor in the format dataCenterId:nodeId:sequence, may be null.
+     * @return the parsed cursor, null if there is none.
+     * @throws IllegalArgumentException if the value is not a valid cursor.
+     */
+    static Cursor parse(String value) {
+      if (value == null) {
+        return null;
+      }
+      String[] parts = value.split(":");
+      if (parts.length == 3) {
+        try {
+          return new Cursor(
+              Long.parseLong(parts[0]), Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+        } catch (NumberFormatException e) {
+          // reported below.
+        }
+      }
+      throw new IllegalArgumentException(
+          "after must be a cursor as dataCenterId:nodeId:sequence, got " + value);
+    }
+
+    /**
+     * @param node node the log was recorded by.
+     * @param sequence sequence number of the log in the node's log.
+     * @return the cursor of the log, as returned to clients.
+     */
+    static String format(BoundNode node, long sequence) {
+      return node.getDataCenter().getId() + ":" + node.getId() + ":" + sequence;
+    }
+  }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.http.server;
+
+import com.datastax.oss.simulacron.common.cluster.ActivityLog;
+import com.datastax.oss.simulacron.common.cluster.ObjectMapperHolder;
+import com.datastax.oss.simulacron.server.BoundNode;
+import com.datastax.oss.simulacron.server.BoundTopic;
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.RoutingContext;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Streams the logs of a scope as newline delimited JSON, one object per log holding its cursor,
+ * the ids of its node and the log itself.
+ *
+ * <p>Logs are serialized with a {@link JsonGenerator} in batches which are written as chunks of the
+ * response. The next batch is only written once the response's write queue drained, and other
+ * handlers get to run on the event loop between batches.
+ */
+class QueryLogStreamer {
+
+  private static final Logger logger = LoggerFactory.getLogger(QueryLogStreamer.class);
+
+  /** Maximum number of logs read before yielding the event loop. */
+  private static final int BATCH_SIZE = 1000;
+
+  private final RoutingContext context;
+
+  private final HttpServerResponse response;
+
+  private final QueryLogFilter filter;
+
+  private final QueryLogFilter.Window window;
+
+  private final Iterator<BoundNode> nodes;
+
+  private final BufferOutputStream out = new BufferOutputStream();
+
+  private final JsonGenerator generator;
+
+  private BoundNode node;
+
+  private Iterator<ActivityLog.Entry> logs = Collections.emptyIterator();
+
+  private boolean closed = false;
+
+  QueryLogStreamer(RoutingContext context, BoundTopic<?, ?> topic, QueryLogFilter filter)
+      throws IOException {
+    this.context = context;
+    this.response = context.response();
+    this.filter = filter;
+    this.window = filter.window();
+    this.nodes = new ArrayList<>(topic.getNodes()).iterator();
+    this.generator = ObjectMapperHolder.getMapper().getFactory().createGenerator(out);
+    // lines are delimited explicitly instead.
+    this.generator.setRootValueSeparator(null);
+  }
+
+  void start() {
+    response
+        .setChunked(true)
+        .putHeader("content-type", "application/x-ndjson")
+        .setStatusCode(200)
+        .closeHandler(v -> closed = true);
+    writeBatch();
+  }
+
+  private void writeBatch() {
+    if (closed) {
+      return;
+    }
+    boolean done = false;
+    try {
+      for (int i = 0; i < BATCH_SIZE; i++) {
+        if (window.isDone()) {
+          done = true;
+          break;
+        }
+        if (!logs.hasNext()) {
+          if (!nodes.hasNext()) {
+            done = true;
+            break;
+          }
+          node = nodes.next();
+          // skip the nodes the client already went through.
+          if (filter.isAfterCursor(node, Long.MAX_VALUE)) {
+            logs = node.getActivityLog().entries().iterator();
+          }
+          continue;
+        }
+        ActivityLog.Entry entry = logs.next();
+        if (window.test(node, entry)) {
+          write(entry);
+        }
+      }
+      generator.flush();
+    } catch (Exception e) {
+      // the status was already sent, the best we can do is to abort the response.
+      logger.error("Failed to stream activity log", e);
+      response.close();
+      return;
+    }
+
+    Buffer chunk = out.take();
+    if (chunk.length() > 0) {
+      response.write(chunk);
+    }
+    if (done) {
+      response.end();
+    } else if (response.writeQueueFull()) {
+      response.drainHandler(v -> writeBatch());
+    } else {
+      context.vertx().runOnContext(v -> writeBatch());
+    }
+  }
+
+  private void write(ActivityLog.Entry entry) throws IOException {
+    generator.writeStartObject();
+    generator.writeStringField("cursor", QueryLogFilter.Cursor.format(node, entry.getSequence()));
+    generator.writeNumberField("cluster_id", node.getCluster().getId());
+    generator.writeNumberField("data_center_id", node.getDataCenter().getId());
+    generator.writeNumberField("node_id", node.getId());
+    generator.writeObjectField("log", entry.getLog());
+    generator.writeEndObject();
+    generator.writeRaw('\n');
+  }
+
+  private static class BufferOutputStream extends OutputStream {
+    private Buffer buffer = Buffer.buffer();
+
+    @Override
+    public void write(int b) {
+      buffer.appendByte((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      buffer.appendBytes(b, off, len);
+    }
+
+    Buffer take() {
+      Buffer taken = buffer;
+      buffer = Buffer.buffer();
+      return taken;
+    }
+  }
+}
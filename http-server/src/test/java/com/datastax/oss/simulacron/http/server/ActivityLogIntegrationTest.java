@@ -25,15 +25,22 @@ import com.datastax.driver.core.ConsistencyLevel;
 import com.datastax.driver.core.Session;
 import com.datastax.driver.core.SimpleStatement;
 import com.datastax.driver.core.policies.FallthroughRetryPolicy;
+import com.datastax.oss.protocol.internal.request.Query;
 import com.datastax.oss.simulacron.common.cluster.ClusterQueryLogReport;
 import com.datastax.oss.simulacron.common.cluster.ClusterSpec;
 import com.datastax.oss.simulacron.common.cluster.DataCenterQueryLogReport;
 import com.datastax.oss.simulacron.common.cluster.NodeQueryLogReport;
+import com.datastax.oss.simulacron.common.cluster.ObjectMapperHolder;
 import com.datastax.oss.simulacron.common.cluster.QueryLog;
 import com.datastax.oss.simulacron.common.result.SuccessResult;
 import com.datastax.oss.simulacron.common.stubbing.PrimeDsl;
+import com.datastax.oss.simulacron.common.utils.FrameUtils;
 import com.datastax.oss.simulacron.driver.SimulacronDriverSupport;
+import com.datastax.oss.simulacron.server.BoundDataCenter;
+import com.datastax.oss.simulacron.server.BoundNode;
 import com.datastax.oss.simulacron.server.Server;
+import com.fasterxml.jackson.databind.JsonNode;
+import java.net.InetSocketAddress;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
@@ -213,6 +220,101 @@ public class ActivityLogIntegrationTest {
     assertThat(log.isPrimed()).isTrue();
   }
 
+  @Test
+  public void testFilterQueryLogs() throws Exception {
+    String[] queries =
+        new String[] {"select * from table1", "select * from table2", "select * from table3"};
+    primeAndExecuteQueries(queries, queries);
+    String id = server.getCluster().resolveId();
+
+    List<QueryLog> queryLogs = getAllQueryLogs(server.getLogs(id + "?query=table2"));
+    assertThat(queryLogs).extracting(QueryLog::getQuery).containsExactly("select * from table2");
+
+    queryLogs = getAllQueryLogs(server.getLogs(id + "?type=query&limit=2"));
+    assertThat(queryLogs).hasSize(2);
+
+    queryLogs = getAllQueryLogs(server.getLogs(id + "?type=execute"));
+    assertThat(queryLogs).isEmpty();
+
+    queryLogs = getAllQueryLogs(server.getLogs(id + "?to=" + (System.currentTimeMillis() + 1)));
+    assertThat(queryLogs).hasSize(3);
+
+    assertThat(server.get("/log/" + id + "?limit=abc").response.statusCode()).isEqualTo(400);
+  }
+
+  @Test
+  public void testStreamQueryLogs() throws Exception {
+    String[] queries =
+        new String[] {"select * from table1", "select * from table2", "select * from table3"};
+    primeAndExecuteQueries(queries, queries);
+    String path = "/log/" + server.getCluster().resolveId() + "?format=ndjson&query=table";
+
+    HttpTestResponse response = server.get(path);
+    assertThat(response.response.getHeader("content-type")).isEqualTo("application/x-ndjson");
+    List<JsonNode> lines = parseLines(response.body);
+    assertThat(lines).hasSize(3);
+    assertThat(lines)
+        .extracting(l -> l.get("log").get("query").asText())
+        .containsExactlyInAnyOrder(queries);
+    assertThat(lines).extracting(l -> l.get("cursor").asText()).doesNotHaveDuplicates();
+
+    // resume after the first line.
+    String cursor = lines.get(0).get("cursor").asText();
+    List<JsonNode> page = parseLines(server.get(path + "&limit=1&after=" + cursor).body);
+    assertThat(page).hasSize(1);
+    assertThat(page.get(0).get("cursor")).isEqualTo(lines.get(1).get("cursor"));
+    assertThat(page.get(0).get("node_id")).isEqualTo(lines.get(1).get("node_id"));
+  }
+
+  @Test
+  public void testPageQueryLogsWhileRecording() throws Exception {
+    BoundDataCenter dc = server.getCluster().dc(0);
+    Iterator<BoundNode> nodes = dc.getNodes().iterator();
+    BoundNode node0 = nodes.next();
+    BoundNode node1 = nodes.next();
+    server.getCluster().clearLogs();
+    addLogs(node0, "a0", "a1");
+    addLogs(node1, "b0", "b1");
+    String scope = server.getCluster().getId() + "/" + dc.getId();
+    String path = "/log/" + scope;
+
+    List<JsonNode> page = parseLines(server.get(path + "?format=ndjson&limit=3").body);
+    assertThat(page)
+        .extracting(l -> l.get("log").get("query").asText())
+        .containsExactly("a0", "a1", "b0");
+    String cursor = page.get(2).get("cursor").asText();
+    assertThat(cursor).startsWith(dc.getId() + ":" + node1.getId() + ":");
+
+    // logs recorded by the first node meanwhile must not shift the cursors of the second one.
+    addLogs(node0, "a2", "a3");
+    page = parseLines(server.get(path + "?format=ndjson&limit=3&after=" + cursor).body);
+    assertThat(page).extracting(l -> l.get("log").get("query").asText()).containsExactly("b1");
+
+    List<QueryLog> queryLogs = getAllQueryLogs(server.getLogs(scope + "?after=" + cursor));
+    assertThat(queryLogs).extracting(QueryLog::getQuery).containsExactly("b1");
+  }
+
+  private static void addLogs(BoundNode node, String... queries) {
+    for (String query : queries) {
+      node.getActivityLog()
+          .addLog(
+              FrameUtils.wrapRequest(new Query(query)),
+              new InetSocketAddress("127.0.0.1", 9042),
+              System.currentTimeMillis(),
+              Optional.empty());
+    }
+  }
+
+  private List<JsonNode> parseLines(String body) throws Exception {
+    List<JsonNode> lines = new ArrayList<>();
+    for (String line : body.split("\n")) {
+      if (!line.isEmpty()) {
+        lines.add(ObjectMapperHolder.getMapper().readTree(line));
+      }
+    }
+    return lines;
+  }
+
   private void primeAndExecuteQueries(String[] primed, String[] queries) throws Exception {
     SuccessResult result = getSampleSuccessResult();
     for (String primeQuery : primed) {
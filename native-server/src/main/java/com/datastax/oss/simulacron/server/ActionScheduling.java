@@ -0,0 +1,34 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.server;
+
+/**
+ * How actions primed with a delay are scheduled, see {@link Server.Builder#withActionScheduling}.
+ */
+public enum ActionScheduling {
+  /**
+   * Schedule on the event loop of the connection the request was received on. Delays are as
+   * accurate as the event loop's scheduler (sub-millisecond) and the response is written without
+   * leaving the connection's thread.
+   */
+  EVENT_LOOP,
+  /**
+   * Schedule on the server's {@link io.netty.util.Timer}. With the default {@link
+   * io.netty.util.HashedWheelTimer} delays are rounded up to its 100ms tick and all delayed actions
+   * are run by its single thread.
+   */
+  TIMER
+}
@@ -29,13 +29,15 @@ import com.datastax.oss.simulacron.common.stubbing.CloseType;
 import com.datastax.oss.simulacron.common.stubbing.StubMapping;
 import com.datastax.oss.simulacron.server.listener.QueryListener;
 import com.fasterxml.jackson.annotation.JsonIgnore;
-import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
 import java.net.SocketAddress;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -50,11 +52,29 @@ public class BoundCluster extends AbstractCluster<BoundDataCenter, BoundNode>
 
   private final transient StubStore stubStore;
 
-  private final transient List<QueryListenerWrapper> queryListeners = new ArrayList<>();
+  private final transient PreparedStatementCache preparedStatementCache;
+
+  private final transient List<QueryListenerWrapper> queryListeners =
+      new CopyOnWriteArrayList<>();
 
   private final transient FrameCodecWrapper frameCodec;
 
+  /**
+   * The node each client connection to this cluster was accepted by, by remote address. A client
+   * can use the same address for connections to different nodes, in which case only one of them is
+   * indexed, see {@link #findNode(SocketAddress, BoundDataCenter)}.
+   */
+  final transient Map<SocketAddress, BoundNode> nodesByConnection = new ConcurrentHashMap<>();
+
+  /** The event loop groups created for this or its data centers, shut down on unregistration. */
+  final transient List<EventLoopGroup> eventLoopGroups = new CopyOnWriteArrayList<>();
+
   BoundCluster(ClusterSpec delegate, Long clusterId, Server server) {
+    this(delegate, clusterId, server, PreparedStatementCache.DEFAULT_CAPACITY);
+  }
+
+  BoundCluster(
+      ClusterSpec delegate, Long clusterId, Server server, int preparedStatementCacheCapacity) {
     super(
         delegate.getName(),
         clusterId,
@@ -63,6 +83,7 @@ public class BoundCluster extends AbstractCluster<BoundDataCenter, BoundNode>
         delegate.getPeerInfo());
     this.server = server;
     this.stubStore = new StubStore();
+    this.preparedStatementCache = new PreparedStatementCache(preparedStatementCacheCapacity);
     this.frameCodec = buildFrameCodec(delegate).orElse(defaultFrameCodec());
   }
 
@@ -71,9 +92,15 @@ public class BoundCluster extends AbstractCluster<BoundDataCenter, BoundNode>
     return stubStore;
   }
 
+  /** @return The primes registered for PREPARE messages no stub mapping matched. */
+  @JsonIgnore
+  public PreparedStatementCache getPreparedStatementCache() {
+    return preparedStatementCache;
+  }
+
   @Override
   public int clearPrimes(boolean nested) {
-    int cleared = getStubStore().clear();
+    int cleared = getStubStore().clear() + preparedStatementCache.clear();
     if (nested) {
       for (BoundDataCenter dc : getDataCenters()) {
         cleared += dc.clearPrimes(true);
@@ -93,8 +120,9 @@ public class BoundCluster extends AbstractCluster<BoundDataCenter, BoundNode>
     for (BoundNode node : this.getNodes()) {
       clusterConnectionReport.addNode(
           node,
-          node.clientChannelGroup.stream().map(Channel::remoteAddress).collect(Collectors.toList()),
-          node.getAddress());
+          node.connections.addresses(),
+          node.getAddress(),
+          node.getTrafficShaper().report());
     }
     return clusterConnectionReport;
   }
@@ -114,14 +142,11 @@ public class BoundCluster extends AbstractCluster<BoundDataCenter, BoundNode>
   public CompletionStage<ClusterConnectionReport> closeConnectionAsync(
       SocketAddress connection, CloseType type) {
 
-    for (BoundNode node : this.getNodes()) {
-      // identify the node that has the connection and close it with that node.
-      for (SocketAddress address : node.getConnections().getConnections()) {
-        if (connection.equals(address)) {
-          return node.closeConnectionAsync(address, type)
-              .thenApply(NodeConnectionReport::getRootReport);
-        }
-      }
+    // identify the node that has the connection and close it with that node.
+    BoundNode node = findNode(connection, null);
+    if (node != null) {
+      return node.closeConnectionAsync(connection, type)
+          .thenApply(NodeConnectionReport::getRootReport);
     }
 
     CompletableFuture<ClusterConnectionReport> failedFuture = new CompletableFuture<>();
@@ -129,6 +154,27 @@ public class BoundCluster extends AbstractCluster<BoundDataCenter, BoundNode>
     return failedFuture;
   }
 
+  /**
+   * @param connection remote address of a client connection.
+   * @param dataCenter data center of this cluster to look for the connection in, or null for all.
+   * @return the node with an open connection from the given address, or null if there is none.
+   */
+  BoundNode findNode(SocketAddress connection, BoundDataCenter dataCenter) {
+    BoundNode node = nodesByConnection.get(connection);
+    if (node != null
+        && (dataCenter == null || node.getDataCenter() == dataCenter)
+        && node.connections.get(connection) != null) {
+      return node;
+    }
+    // the connection may be indexed with another node that has a connection from the same address.
+    for (BoundNode candidate : dataCenter != null ? dataCenter.getNodes() : getNodes()) {
+      if (candidate.connections.get(connection) != null) {
+        return candidate;
+      }
+    }
+    return null;
+  }
+
   @Override
   public ClusterConnectionReport pauseRead() {
     this.getNodes().forEach(BoundNode::pauseRead);
@@ -150,7 +196,14 @@ public class BoundCluster extends AbstractCluster<BoundDataCenter, BoundNode>
   @JsonIgnore
   public ClusterQueryLogReport getLogs() {
     ClusterQueryLogReport clusterQueryLogReport = new ClusterQueryLogReport(getId());
-    this.getNodes().forEach(n -> clusterQueryLogReport.addNode(n, n.activityLog.getLogs()));
+    this.getNodes()
+        .forEach(
+            n ->
+                clusterQueryLogReport.addNode(
+                    n,
+                    n.activityLog.getLogs(),
+                    n.activityLog.getEvictedCount(),
+                    n.activityLog.getSampledOutCount()));
     return clusterQueryLogReport;
   }
 
@@ -163,7 +216,34 @@ public class BoundCluster extends AbstractCluster<BoundDataCenter, BoundNode>
   @JsonIgnore
   public ClusterQueryLogReport getLogs(boolean primed) {
     ClusterQueryLogReport clusterQueryLogReport = new ClusterQueryLogReport(getId());
-    this.getNodes().forEach(n -> clusterQueryLogReport.addNode(n, n.activityLog.getLogs(primed)));
+    this.getNodes()
+        .forEach(
+            n ->
+                clusterQueryLogReport.addNode(
+                    n,
+                    n.activityLog.getLogs(primed),
+                    n.activityLog.getEvictedCount(),
+                    n.activityLog.getSampledOutCount()));
+    return clusterQueryLogReport;
+  }
+
+  /**
+   * Returns a QueryLogReport that contains the logs for this cluster matching the given filter
+   *
+   * @return QueryLogReport
+   */
+  @Override
+  @JsonIgnore
+  public ClusterQueryLogReport getLogs(Predicate<QueryLog> filter) {
+    ClusterQueryLogReport clusterQueryLogReport = new ClusterQueryLogReport(getId());
+    this.getNodes()
+        .forEach(
+            n ->
+                clusterQueryLogReport.addNode(
+                    n,
+                    n.activityLog.getLogs(filter),
+                    n.activityLog.getEvictedCount(),
+                    n.activityLog.getSampledOutCount()));
     return clusterQueryLogReport;
   }
 
@@ -184,14 +264,32 @@ public class BoundCluster extends AbstractCluster<BoundDataCenter, BoundNode>
     return frameCodec;
   }
 
+  /**
+   * Shapes the traffic of each data center in this cluster, see {@link
+   * BoundDataCenter#setTraffic(TrafficLimits)}.
+   *
+   * @param limits The limits to apply, {@link TrafficLimits#UNLIMITED} to remove them.
+   */
+  @Override
+  public void setTraffic(TrafficLimits limits) {
+    getDataCenters().forEach(dc -> dc.setTraffic(limits));
+  }
+
   Optional<StubMapping> find(BoundNode node, Frame frame) {
     Optional<StubMapping> stub = stubStore.find(node, frame);
     if (!stub.isPresent() && server != null) {
       stub = server.stubStore.find(node, frame);
     }
+    if (!stub.isPresent()) {
+      stub = preparedStatementCache.find(node, frame);
+    }
     return stub;
   }
 
+  boolean hasQueryListeners() {
+    return !queryListeners.isEmpty();
+  }
+
   void notifyQueryListeners(BoundNode node, QueryLog queryLog, boolean after) {
     if (queryLog != null && !queryListeners.isEmpty()) {
       for (QueryListenerWrapper wrapper : queryListeners) {
@@ -29,13 +29,13 @@ import com.datastax.oss.simulacron.common.stubbing.CloseType;
 import com.datastax.oss.simulacron.common.stubbing.StubMapping;
 import com.datastax.oss.simulacron.server.listener.QueryListener;
 import com.fasterxml.jackson.annotation.JsonIgnore;
-import io.netty.channel.Channel;
+import io.netty.bootstrap.ServerBootstrap;
 import java.net.SocketAddress;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -48,10 +48,16 @@ public class BoundDataCenter extends AbstractDataCenter<BoundCluster, BoundNode>
 
   private final transient StubStore stubStore;
 
-  private final transient List<QueryListenerWrapper> queryListeners = new ArrayList<>();
+  private final transient List<QueryListenerWrapper> queryListeners =
+      new CopyOnWriteArrayList<>();
 
   private final transient FrameCodecWrapper frameCodec;
 
+  private final transient TrafficShaper trafficShaper = new TrafficShaper("dataCenterTraffic");
+
+  /** Binds the nodes of this when it has an event loop group of its own, null otherwise. */
+  transient volatile ServerBootstrap bootstrap;
+
   BoundDataCenter(BoundCluster parent) {
     super(
         "dummy",
@@ -80,6 +86,12 @@ public class BoundDataCenter extends AbstractDataCenter<BoundCluster, BoundNode>
     this.frameCodec = buildFrameCodec(delegate).orElse(parent.getFrameCodec());
   }
 
+  /** @return The bootstrap binding the listening channels of the nodes of this. */
+  ServerBootstrap getBootstrap() {
+    ServerBootstrap bootstrap = this.bootstrap;
+    return bootstrap != null ? bootstrap : server.serverBootstrap;
+  }
+
   @Override
   public StubStore getStubStore() {
     return stubStore;
@@ -107,8 +119,9 @@ public class BoundDataCenter extends AbstractDataCenter<BoundCluster, BoundNode>
     for (BoundNode node : this.getNodes()) {
       clusterConnectionReport.addNode(
           node,
-          node.clientChannelGroup.stream().map(Channel::remoteAddress).collect(Collectors.toList()),
-          node.getAddress());
+          node.connections.addresses(),
+          node.getAddress(),
+          node.getTrafficShaper().report());
     }
     return clusterConnectionReport.getDataCenters().iterator().next();
   }
@@ -128,14 +141,11 @@ public class BoundDataCenter extends AbstractDataCenter<BoundCluster, BoundNode>
   public CompletionStage<DataCenterConnectionReport> closeConnectionAsync(
       SocketAddress connection, CloseType type) {
 
-    for (BoundNode node : this.getNodes()) {
-      // identify the node that has the connection and close it with that node.
-      for (SocketAddress address : node.getConnections().getConnections()) {
-        if (connection.equals(address)) {
-          return node.closeConnectionAsync(address, type)
-              .thenApply(n -> n.getRootReport().getDataCenters().iterator().next());
-        }
-      }
+    // identify the node that has the connection and close it with that node.
+    BoundNode node = getCluster().findNode(connection, this);
+    if (node != null) {
+      return node.closeConnectionAsync(connection, type)
+          .thenApply(n -> n.getRootReport().getDataCenters().iterator().next());
     }
 
     CompletableFuture<DataCenterConnectionReport> failedFuture = new CompletableFuture<>();
@@ -164,7 +174,14 @@ public class BoundDataCenter extends AbstractDataCenter<BoundCluster, BoundNode>
   @JsonIgnore
   public DataCenterQueryLogReport getLogs(boolean primed) {
     ClusterQueryLogReport clusterQueryLogReport = new ClusterQueryLogReport(cluster.getId());
-    this.getNodes().forEach(n -> clusterQueryLogReport.addNode(n, n.activityLog.getLogs(primed)));
+    this.getNodes()
+        .forEach(
+            n ->
+                clusterQueryLogReport.addNode(
+                    n,
+                    n.activityLog.getLogs(primed),
+                    n.activityLog.getEvictedCount(),
+                    n.activityLog.getSampledOutCount()));
     return clusterQueryLogReport.getDataCenters().iterator().next();
   }
 
@@ -183,7 +200,34 @@ public class BoundDataCenter extends AbstractDataCenter<BoundCluster, BoundNode>
   @JsonIgnore
   public DataCenterQueryLogReport getLogs() {
     ClusterQueryLogReport clusterQueryLogReport = new ClusterQueryLogReport(cluster.getId());
-    this.getNodes().forEach(n -> clusterQueryLogReport.addNode(n, n.activityLog.getLogs()));
+    this.getNodes()
+        .forEach(
+            n ->
+                clusterQueryLogReport.addNode(
+                    n,
+                    n.activityLog.getLogs(),
+                    n.activityLog.getEvictedCount(),
+                    n.activityLog.getSampledOutCount()));
+    return clusterQueryLogReport.getDataCenters().iterator().next();
+  }
+
+  /**
+   * Returns a QueryLogReport that contains the logs for this datacenter matching the given filter
+   *
+   * @return QueryLogReport
+   */
+  @Override
+  @JsonIgnore
+  public DataCenterQueryLogReport getLogs(Predicate<QueryLog> filter) {
+    ClusterQueryLogReport clusterQueryLogReport = new ClusterQueryLogReport(cluster.getId());
+    this.getNodes()
+        .forEach(
+            n ->
+                clusterQueryLogReport.addNode(
+                    n,
+                    n.activityLog.getLogs(filter),
+                    n.activityLog.getEvictedCount(),
+                    n.activityLog.getSampledOutCount()));
     return clusterQueryLogReport.getDataCenters().iterator().next();
   }
 
@@ -198,6 +242,27 @@ public class BoundDataCenter extends AbstractDataCenter<BoundCluster, BoundNode>
     return frameCodec;
   }
 
+  /**
+   * Shapes the traffic of all connections to nodes in this data center together, as if they were
+   * sharing a single link.
+   *
+   * @param limits The limits to apply, {@link TrafficLimits#UNLIMITED} to remove them.
+   */
+  @Override
+  public void setTraffic(TrafficLimits limits) {
+    trafficShaper.setLimits(
+        limits,
+        getNodes()
+            .stream()
+            .flatMap(n -> n.connections.channels().stream())
+            .collect(Collectors.toList()));
+  }
+
+  @JsonIgnore
+  public TrafficShaper getTrafficShaper() {
+    return trafficShaper;
+  }
+
   Optional<StubMapping> find(BoundNode node, Frame frame) {
     Optional<StubMapping> stub = stubStore.find(node, frame);
     if (!stub.isPresent()) {
@@ -206,6 +271,10 @@ public class BoundDataCenter extends AbstractDataCenter<BoundCluster, BoundNode>
     return stub;
   }
 
+  boolean hasQueryListeners() {
+    return !queryListeners.isEmpty() || getCluster().hasQueryListeners();
+  }
+
   void notifyQueryListeners(BoundNode node, QueryLog queryLog, boolean after) {
     if (queryLog != null && !queryListeners.isEmpty()) {
       for (QueryListenerWrapper wrapper : queryListeners) {
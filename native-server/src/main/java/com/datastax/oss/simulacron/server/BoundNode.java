@@ -18,14 +18,15 @@ package com.datastax.oss.simulacron.server;
 import static com.datastax.oss.protocol.internal.response.result.Void.INSTANCE;
 import static com.datastax.oss.simulacron.common.stubbing.DisconnectAction.Scope.CLUSTER;
 import static com.datastax.oss.simulacron.common.stubbing.DisconnectAction.Scope.NODE;
-import static com.datastax.oss.simulacron.common.stubbing.PrimeDsl.noRows;
-import static com.datastax.oss.simulacron.common.stubbing.PrimeDsl.when;
 import static com.datastax.oss.simulacron.common.utils.FrameUtils.wrapResponse;
+import static com.datastax.oss.simulacron.common.utils.PreparedIdUtils.toHexString;
 import static com.datastax.oss.simulacron.server.ChannelUtils.completable;
 import static com.datastax.oss.simulacron.server.FrameCodecUtils.buildFrameCodec;
 
 import com.datastax.oss.protocol.internal.Frame;
+import com.datastax.oss.protocol.internal.FrameCodec;
 import com.datastax.oss.protocol.internal.Message;
+import com.datastax.oss.protocol.internal.ProtocolConstants;
 import com.datastax.oss.protocol.internal.request.Batch;
 import com.datastax.oss.protocol.internal.request.Execute;
 import com.datastax.oss.protocol.internal.request.Options;
@@ -33,9 +34,11 @@ import com.datastax.oss.protocol.internal.request.Prepare;
 import com.datastax.oss.protocol.internal.request.Query;
 import com.datastax.oss.protocol.internal.request.Register;
 import com.datastax.oss.protocol.internal.request.Startup;
+import com.datastax.oss.protocol.internal.response.Error;
 import com.datastax.oss.protocol.internal.response.Ready;
 import com.datastax.oss.protocol.internal.response.Supported;
 import com.datastax.oss.protocol.internal.response.error.Unprepared;
+import com.datastax.oss.protocol.internal.response.result.Rows;
 import com.datastax.oss.protocol.internal.response.result.SetKeyspace;
 import com.datastax.oss.simulacron.common.cluster.AbstractNode;
 import com.datastax.oss.simulacron.common.cluster.ActivityLog;
@@ -45,20 +48,22 @@ import com.datastax.oss.simulacron.common.cluster.NodeConnectionReport;
 import com.datastax.oss.simulacron.common.cluster.NodeQueryLogReport;
 import com.datastax.oss.simulacron.common.cluster.NodeSpec;
 import com.datastax.oss.simulacron.common.cluster.QueryLog;
+import com.datastax.oss.simulacron.common.codec.ConsistencyLevel;
+import com.datastax.oss.simulacron.common.request.Request;
+import com.datastax.oss.simulacron.common.result.SuccessResult;
+import com.datastax.oss.simulacron.common.stats.QueryStats;
 import com.datastax.oss.simulacron.common.stubbing.Action;
 import com.datastax.oss.simulacron.common.stubbing.CloseType;
 import com.datastax.oss.simulacron.common.stubbing.DisconnectAction;
 import com.datastax.oss.simulacron.common.stubbing.MessageResponseAction;
 import com.datastax.oss.simulacron.common.stubbing.NoResponseAction;
 import com.datastax.oss.simulacron.common.stubbing.Prime;
-import com.datastax.oss.simulacron.common.stubbing.PrimeDsl.PrimeBuilder;
 import com.datastax.oss.simulacron.common.stubbing.StubMapping;
 import com.datastax.oss.simulacron.server.listener.QueryListener;
 import com.fasterxml.jackson.annotation.JsonIgnore;
-import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
-import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.group.ChannelGroup;
 import io.netty.channel.group.DefaultChannelGroup;
@@ -67,7 +72,6 @@ import io.netty.util.Timeout;
 import io.netty.util.Timer;
 import io.netty.util.TimerTask;
 import io.netty.util.concurrent.GlobalEventExecutor;
-import java.math.BigInteger;
 import java.net.SocketAddress;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -75,13 +79,13 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
@@ -103,15 +107,28 @@ public class BoundNode extends AbstractNode<BoundCluster, BoundDataCenter>
   private static final Pattern useKeyspacePattern =
       Pattern.compile("\\s*use\\s+(.*)$", Pattern.CASE_INSENSITIVE);
 
-  private final transient ServerBootstrap bootstrap;
+  private static final String COMPRESSION = "COMPRESSION";
+
+  private static final Ready READY = new Ready();
+
+  private static final Supported SUPPORTED = buildSupported();
+
+  private static final Runnable NO_OP = () -> {};
 
   // TODO: Isn't really a good reason for this to be an AtomicReference as if binding fails we don't
   // reset
   // the channel, but leaving it this way for now in case there is a future use case.
   final transient AtomicReference<Channel> channel;
 
-  final transient ChannelGroup clientChannelGroup =
-      new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+  /**
+   * Listening channels bound with SO_REUSEPORT in addition to {@link #channel}, see {@link
+   * Server.Builder#withReusePortListeners(int)}.
+   */
+  final transient AtomicReference<List<Channel>> reusePortChannels =
+      new AtomicReference<>(Collections.emptyList());
+
+  /** Client connections of this node, indexed by remote address. */
+  final transient ConnectionRegistry connections;
 
   // TODO: There could be a lot of concurrency issues around simultaneous calls to reject/accept,
   // however in the general case we don't expect it.   Leave this as AtomicReference in case we want
@@ -121,7 +138,11 @@ public class BoundNode extends AbstractNode<BoundCluster, BoundDataCenter>
 
   private final transient Timer timer;
 
-  private final transient StubStore stubStore;
+  private final transient ActionScheduling actionScheduling;
+
+  // stub store, listeners and statistics are only allocated once used, most nodes of large
+  // clusters are never primed or listened to individually.
+  private transient volatile StubStore stubStore;
 
   private final boolean activityLogging;
 
@@ -129,12 +150,18 @@ public class BoundNode extends AbstractNode<BoundCluster, BoundDataCenter>
 
   private final BoundCluster cluster;
 
-  private final transient List<QueryListenerWrapper> queryListeners = new ArrayList<>();
+  private transient volatile List<QueryListenerWrapper> queryListeners;
 
-  final transient ActivityLog activityLog = new ActivityLog();
+  final transient ActivityLog activityLog;
 
   private final transient FrameCodecWrapper frameCodec;
 
+  private final transient NodeCapacity capacity;
+
+  private final transient TrafficShaper trafficShaper = new TrafficShaper("nodeTraffic");
+
+  private transient volatile QueryStats queryStats;
+
   private static class RejectState {
     private final RejectScope scope;
     private volatile int rejectAfter;
@@ -161,6 +188,30 @@ public class BoundNode extends AbstractNode<BoundCluster, BoundDataCenter>
       Timer timer,
       Channel channel,
       boolean activityLogging) {
+    this(
+        address,
+        delegate,
+        peerInfo,
+        cluster,
+        parent,
+        server,
+        timer,
+        channel,
+        activityLogging,
+        new ActivityLog());
+  }
+
+  BoundNode(
+      SocketAddress address,
+      NodeSpec delegate,
+      Map<String, Object> peerInfo,
+      BoundCluster cluster,
+      BoundDataCenter parent,
+      Server server,
+      Timer timer,
+      Channel channel,
+      boolean activityLogging,
+      ActivityLog activityLog) {
     super(
         address,
         delegate.getName(),
@@ -173,22 +224,39 @@ public class BoundNode extends AbstractNode<BoundCluster, BoundDataCenter>
     this.cluster = cluster;
     this.server = server;
     // for test purposes server may be null.
-    this.bootstrap = server != null ? server.serverBootstrap : null;
     this.timer = timer;
+    // same default as Server.Builder so that standalone nodes schedule actions the same way.
+    this.actionScheduling = server != null ? server.actionScheduling : ActionScheduling.EVENT_LOOP;
     this.channel = new AtomicReference<>(channel);
-    this.stubStore = new StubStore();
     this.activityLogging = activityLogging;
+    this.activityLog = activityLog;
     this.frameCodec = buildFrameCodec(delegate).orElse(parent.getFrameCodec());
+    this.capacity = new NodeCapacity(CapacityLimits.fromPeerInfo(this));
+    this.connections =
+        new ConnectionRegistry(this, cluster != null ? cluster.nodesByConnection : null);
   }
 
   @Override
   public Long getActiveConnections() {
-    // Filter only active channels as some may be in process of closing.
-    return clientChannelGroup.stream().filter(Channel::isActive).count();
+    return (long) connections.getActive();
+  }
+
+  /**
+   * @param address remote address of a client connection.
+   * @return the connection, empty if this node has no open connection from that address.
+   */
+  public Optional<ClientConnection> getConnection(SocketAddress address) {
+    return Optional.ofNullable(connections.get(address));
+  }
+
+  /** @return The open client connections of this node and their traffic. */
+  @JsonIgnore
+  public Collection<ClientConnection> getClientConnections() {
+    return connections.getAll();
   }
 
   /**
-   * Closes the listening channel for this node. Note that this does not close existing client
+   * Closes the listening channels for this node. Note that this does not close existing client
    * connections, this can be done using {@link #disconnectConnections()}. To stop listening and
    * close connections, use {@link #close()}.
    *
@@ -196,7 +264,14 @@ public class BoundNode extends AbstractNode<BoundCluster, BoundDataCenter>
    */
   private CompletableFuture<Void> unbind() {
     logger.debug("Unbinding listener on {}", channel);
-    return completable(channel.get().close()).thenApply(v -> null);
+    List<Channel> reusePort = reusePortChannels.get();
+    if (reusePort.isEmpty()) {
+      return completable(channel.get().close()).thenApply(v -> null);
+    }
+    List<CompletableFuture<Void>> closeFutures = new ArrayList<>(reusePort.size() + 1);
+    closeFutures.add(completable(channel.get().close()));
+    reusePort.forEach(c -> closeFutures.add(completable(c.close())));
+    return CompletableFuture.allOf(closeFutures.toArray(new CompletableFuture[] {}));
   }
 
   /**
@@ -211,19 +286,20 @@ public class BoundNode extends AbstractNode<BoundCluster, BoundDataCenter>
       return CompletableFuture.completedFuture(null);
     }
     CompletableFuture<Void> future = new CompletableFuture<>();
-    ChannelFuture bindFuture = bootstrap.bind(this.getAddress());
-    bindFuture.addListener(
-        (ChannelFutureListener)
-            channelFuture -> {
-              if (channelFuture.isSuccess()) {
-                channelFuture.channel().attr(Server.HANDLER).set(this);
-                logger.debug("Bound {} to {}", BoundNode.this, channelFuture.channel());
+    server
+        .bindListeners(getDataCenter().getBootstrap(), this.getAddress())
+        .whenComplete(
+            (channels, cause) -> {
+              if (cause == null) {
+                channels.forEach(c -> c.attr(Server.HANDLER).set(this));
+                logger.debug("Bound {} to {}", BoundNode.this, channels);
+                reusePortChannels.set(channels.subList(1, channels.size()));
+                channel.set(channels.get(0));
                 future.complete(null);
-                channel.set(channelFuture.channel());
               } else {
                 // If failed, propagate it.
                 future.completeExceptionally(
-                    new BindNodeException(BoundNode.this, getAddress(), channelFuture.cause()));
+                    new BindNodeException(BoundNode.this, getAddress(), cause));
               }
             });
     return future;
@@ -236,7 +312,7 @@ public class BoundNode extends AbstractNode<BoundCluster, BoundDataCenter>
    * @return future that completes when all client channels are disconnected.
    */
   private CompletionStage<Void> disconnectConnections() {
-    return completable(clientChannelGroup.disconnect()).thenApply(v -> null);
+    return completable(connections.channels().disconnect()).thenApply(v -> null);
   }
 
   /**
@@ -265,7 +341,11 @@ public class BoundNode extends AbstractNode<BoundCluster, BoundDataCenter>
   @JsonIgnore
   public NodeQueryLogReport getLogs() {
     ClusterQueryLogReport clusterQueryLogReportReport = new ClusterQueryLogReport(cluster.getId());
-    return clusterQueryLogReportReport.addNode(this, this.activityLog.getLogs());
+    return clusterQueryLogReportReport.addNode(
+        this,
+        this.activityLog.getLogs(),
+        this.activityLog.getEvictedCount(),
+        this.activityLog.getSampledOutCount());
   }
 
   /**
@@ -277,7 +357,32 @@ public class BoundNode extends AbstractNode<BoundCluster, BoundDataCenter>
   @JsonIgnore
   public NodeQueryLogReport getLogs(boolean primed) {
     ClusterQueryLogReport clusterQueryLogReportReport = new ClusterQueryLogReport(cluster.getId());
-    return clusterQueryLogReportReport.addNode(this, this.activityLog.getLogs(primed));
+    return clusterQueryLogReportReport.addNode(
+        this,
+        this.activityLog.getLogs(primed),
+        this.activityLog.getEvictedCount(),
+        this.activityLog.getSampledOutCount());
+  }
+
+  /**
+   * This is used to fetch the QueryLogReport with activity logs matching the given filter
+   *
+   * @return QueryLogReport containing the matching logs for the node
+   */
+  @Override
+  @JsonIgnore
+  public NodeQueryLogReport getLogs(Predicate<QueryLog> filter) {
+    ClusterQueryLogReport clusterQueryLogReportReport = new ClusterQueryLogReport(cluster.getId());
+    return clusterQueryLogReportReport.addNode(
+        this,
+        this.activityLog.getLogs(filter),
+        this.activityLog.getEvictedCount(),
+        this.activityLog.getSampledOutCount());
+  }
+
+  @Override
+  public Stream<QueryLog> streamLogs() {
+    return activityLog.stream();
   }
 
   @Override
@@ -288,6 +393,11 @@ public class BoundNode extends AbstractNode<BoundCluster, BoundDataCenter>
   @Override
   public void registerQueryListener(
       QueryListener queryListener, boolean after, Predicate<QueryLog> filter) {
+    synchronized (this) {
+      if (queryListeners == null) {
+        queryListeners = new CopyOnWriteArrayList<>();
+      }
+    }
     queryListeners.add(new QueryListenerWrapper(queryListener, after, filter));
   }
 
@@ -334,7 +444,9 @@ public class BoundNode extends AbstractNode<BoundCluster, BoundDataCenter>
    * @return matching stub if present.
    */
   private Optional<StubMapping> find(Frame frame) {
-    Optional<StubMapping> stub = stubStore.find(this, frame);
+    StubStore stubStore = this.stubStore;
+    Optional<StubMapping> stub =
+        stubStore != null ? stubStore.find(this, frame) : Optional.empty();
     if (!stub.isPresent()) {
       return getDataCenter().find(this, frame);
     }
@@ -358,12 +470,85 @@ public class BoundNode extends AbstractNode<BoundCluster, BoundDataCenter>
     // On receiving a message, first check the stub store to see if there is handling logic for it.
     // If there is, handle each action.
     // Otherwise delegate to default behavior.
+    if (frame.message instanceof Startup && !negotiateCompression(ctx, frame)) {
+      sendMessage(
+          ctx,
+          frame,
+          new Error(
+              ProtocolConstants.ErrorCode.PROTOCOL_ERROR,
+              "Unsupported compression algorithm: "
+                  + ((Startup) frame.message).options.get(COMPRESSION)));
+      return;
+    }
+    long receivedNanos = System.nanoTime();
+    ClientConnection connection = ClientConnection.of(ctx.channel());
+    if (connection != null) {
+      connection.frameReceived();
+    }
+    if (capacity.isLimited() && consumesCapacity(frame.message)) {
+      long delay = capacity.acquire();
+      if (delay == NodeCapacity.REJECTED) {
+        sendMessage(
+            ctx,
+            frame,
+            new Error(ProtocolConstants.ErrorCode.OVERLOADED, "Node is over capacity"));
+        recordStats(frame, Optional.empty(), true, receivedNanos);
+      } else if (delay > 0) {
+        // queued, latency grows with the backlog.
+        ctx.executor()
+            .schedule(
+                () -> respond(ctx, frame, receivedNanos, capacity::release),
+                delay,
+                TimeUnit.NANOSECONDS);
+      } else {
+        respond(ctx, frame, receivedNanos, capacity::release);
+      }
+      return;
+    }
+    respond(ctx, frame, receivedNanos, NO_OP);
+  }
+
+  /** Requests that consume capacity are also the ones {@link QueryStats} are recorded for. */
+  private static boolean consumesCapacity(Message message) {
+    return message instanceof Query
+        || message instanceof Execute
+        || message instanceof Batch
+        || message instanceof Prepare;
+  }
+
+  /**
+   * Responds to the given request using a matching stub mapping or the default behavior.
+   *
+   * @param ctx context of the connection the request was received on.
+   * @param frame the received request.
+   * @param receivedNanos {@link System#nanoTime()} when the request was received.
+   * @param onDone invoked once the response was sent or all actions were handled.
+   */
+  private void respond(
+      ChannelHandlerContext ctx, Frame frame, long receivedNanos, Runnable onDone) {
+    ClientConnection connection = ClientConnection.of(ctx.channel());
+    if (connection != null) {
+      onDone = connection.track(onDone);
+    }
     Optional<StubMapping> stubOption = find(frame);
     List<Action> actions = null;
     if (stubOption.isPresent()) {
       logger.debug("Stub mapping found for {}", frame.message);
       StubMapping stub = stubOption.get();
       actions = stub.getActions(this, frame);
+      if (stub instanceof Prime
+          && ((Prime) stub).getPrimedRequest().then instanceof SuccessResult) {
+        // Rows of a success result are cached per protocol version, so they only need to be
+        // serialized once.
+        for (Action action : actions) {
+          if (action instanceof MessageResponseAction) {
+            Message message = ((MessageResponseAction) action).getMessage();
+            if (message instanceof Rows) {
+              frameCodec.getPreEncodedResponses().add(message);
+            }
+          }
+        }
+      }
     }
 
     QueryLog queryLog = null;
@@ -378,7 +563,15 @@ public class BoundNode extends AbstractNode<BoundCluster, BoundDataCenter>
     if (actions != null && !actions.isEmpty()) {
       // TODO: It might be useful to tie behavior to completion of actions but for now this isn't
       // necessary.
+      boolean error =
+          actions.stream()
+              .anyMatch(
+                  a ->
+                      a instanceof MessageResponseAction
+                          && ((MessageResponseAction) a).getMessage() instanceof Error);
+      Runnable done = recordingStats(frame, stubOption, error, receivedNanos, onDone);
       CompletableFuture<Void> future = new CompletableFuture<>();
+      future.whenComplete((v, ex) -> done.run());
       handleActions(actions.iterator(), ctx, frame, future, queryLog);
     } else {
       // Future that if set defers sending the message until the future completes.
@@ -388,6 +581,7 @@ public class BoundNode extends AbstractNode<BoundCluster, BoundDataCenter>
         RejectState state = rejectState.get();
         // We aren't listening for new connections, return immediately.
         if (!state.listeningForNewConnections) {
+          onDone.run();
           return;
         } else if (state.rejectAfter > 0) {
           // Decrement rejectAfter indicating a new initialization attempt.
@@ -400,16 +594,9 @@ public class BoundNode extends AbstractNode<BoundCluster, BoundDataCenter>
             deferFuture = rejectConnectionsAsync(-1, state.scope).toCompletableFuture();
           }
         }
-        response = new Ready();
+        response = READY;
       } else if (frame.message instanceof Options) {
-        // Maybe eventually we can set these depending on the version but so far it looks
-        // like this.cassandraVersion and this.dseVersion are both null
-        HashMap<String, List<String>> options = new HashMap<>();
-        options.put("PROTOCOL_VERSIONS", Arrays.asList("3/v3", "4/v4", "5/v5-beta"));
-        options.put("CQL_VERSION", Collections.singletonList("3.4.4"));
-        options.put("COMPRESSION", Arrays.asList("snappy", "lz4"));
-
-        response = new Supported(options);
+        response = SUPPORTED;
       } else if (frame.message instanceof Query) {
         Query query = (Query) frame.message;
         String queryStr = query.query;
@@ -434,7 +621,7 @@ public class BoundNode extends AbstractNode<BoundCluster, BoundDataCenter>
         // Unprepared execute received, return an unprepared.
         Execute execute = (Execute) frame.message;
         logger.warn("No stub mapping found for message type EXECUTE: \"{}\"", execute.toString());
-        String hex = new BigInteger(1, execute.queryId).toString(16);
+        String hex = toHexString(execute.queryId);
         response = new Unprepared("No prepared statement with id: " + hex, execute.queryId);
       } else if (frame.message instanceof Prepare) {
         // fake up a prepared statement from the message and register an internal prime for it.
@@ -444,13 +631,14 @@ public class BoundNode extends AbstractNode<BoundCluster, BoundDataCenter>
         logger.info(
             "No stub mapping found for message type PREPARE: \"{}\". Registering priming...",
             query);
-        Prime prime = whenWithInferredParams(query).then(noRows()).build();
-        this.getCluster().getStubStore().registerInternal(prime);
+        Prime prime = this.getCluster().getPreparedStatementCache().register(query);
         response = prime.toPrepared();
       }
 
       if (response != null) {
         final QueryLog fQueryLog = queryLog;
+        Runnable done =
+            recordingStats(frame, stubOption, response instanceof Error, receivedNanos, onDone);
         if (deferFuture != null) {
           final Message fResponse = response;
 
@@ -459,21 +647,156 @@ public class BoundNode extends AbstractNode<BoundCluster, BoundDataCenter>
                 sendMessage(ctx, frame, fResponse)
                     .addListener(
                         (x) -> {
+                          done.run();
                           notifyQueryListeners(fQueryLog, true);
                         });
               });
         } else {
           sendMessage(ctx, frame, response)
-              .addListener((x) -> notifyQueryListeners(fQueryLog, true));
+              .addListener(
+                  (x) -> {
+                    done.run();
+                    notifyQueryListeners(fQueryLog, true);
+                  });
         }
       } else {
+        onDone.run();
         notifyQueryListeners(queryLog, true);
       }
     }
   }
 
+  private Runnable recordingStats(
+      Frame frame,
+      Optional<StubMapping> stubOption,
+      boolean error,
+      long receivedNanos,
+      Runnable onDone) {
+    if (!consumesCapacity(frame.message)) {
+      return onDone;
+    }
+    return () -> {
+      recordStats(frame, stubOption, error, receivedNanos);
+      onDone.run();
+    };
+  }
+
+  private void recordStats(
+      Frame frame, Optional<StubMapping> stubOption, boolean error, long receivedNanos) {
+    Message message = frame.message;
+    long latency = System.nanoTime() - receivedNanos;
+    if (message instanceof Query) {
+      Query query = (Query) message;
+      getQueryStats().record(
+          "QUERY",
+          query.query,
+          ConsistencyLevel.fromCode(query.options.consistency),
+          error,
+          latency);
+    } else if (message instanceof Execute) {
+      Execute execute = (Execute) message;
+      String query = null;
+      if (stubOption.isPresent() && stubOption.get() instanceof Prime) {
+        Request when = ((Prime) stubOption.get()).getPrimedRequest().when;
+        if (when instanceof com.datastax.oss.simulacron.common.request.Query) {
+          query = ((com.datastax.oss.simulacron.common.request.Query) when).query;
+        }
+      }
+      if (query == null) {
+        // statement not known, identify it by its prepared id.
+        query = "0x" + toHexString(execute.queryId);
+      }
+      getQueryStats().record(
+          "EXECUTE", query, ConsistencyLevel.fromCode(execute.options.consistency), error, latency);
+    } else if (message instanceof Batch) {
+      getQueryStats().record(
+          "BATCH", null, ConsistencyLevel.fromCode(((Batch) message).consistency), error, latency);
+    } else if (message instanceof Prepare) {
+      getQueryStats().record("PREPARE", ((Prepare) message).cqlQuery, null, error, latency);
+    }
+  }
+
+  /**
+   * Switches the connection to the compression algorithm requested in the given STARTUP message, if
+   * any. Like Cassandra, the READY response is already compressed, except with protocol v5 where
+   * segments rather than frames are compressed, and only once the handshake is done.
+   *
+   * @param ctx context of the connection the message was received on.
+   * @param frame the received STARTUP message.
+   * @return false if the requested algorithm is not supported.
+   */
+  private boolean negotiateCompression(ChannelHandlerContext ctx, Frame frame) {
+    Startup startup = (Startup) frame.message;
+    String algorithm = startup.options != null ? startup.options.get(COMPRESSION) : null;
+    if (algorithm == null) {
+      return true;
+    }
+    // handlers may be absent when testing with an embedded channel.
+    FrameDecoder decoder = ctx.pipeline().get(FrameDecoder.class);
+    FrameEncoder encoder = ctx.pipeline().get(FrameEncoder.class);
+    if (FrameEncoder.usesSegments(frame)) {
+      // v5 only supports lz4.
+      Optional<ByteBufCompressor> compressor =
+          frameCodec.compressor(algorithm).filter(c -> c instanceof Lz4Compressor);
+      if (!compressor.isPresent()) {
+        logger.warn("Client requested unsupported compression algorithm {}", algorithm);
+        return false;
+      }
+      if (encoder != null) {
+        encoder.setSegmentCompressor(compressor.get());
+      }
+      return true;
+    }
+    Optional<FrameCodec<ByteBuf>> codec = frameCodec.withCompression(algorithm);
+    if (!codec.isPresent()) {
+      logger.warn("Client requested unsupported compression algorithm {}", algorithm);
+      return false;
+    }
+    if (decoder != null) {
+      decoder.setDecodingCodec(codec.get());
+    }
+    if (encoder != null) {
+      encoder.setFrameCodec(codec.get());
+    }
+    return true;
+  }
+
+  private static Supported buildSupported() {
+    // Maybe eventually we can set these depending on the version but so far it looks
+    // like this.cassandraVersion and this.dseVersion are both null
+    HashMap<String, List<String>> options = new HashMap<>();
+    options.put("PROTOCOL_VERSIONS", Arrays.asList("3/v3", "4/v4", "5/v5-beta"));
+    options.put("CQL_VERSION", Collections.singletonList("3.4.4"));
+    options.put("COMPRESSION", Arrays.asList("snappy", "lz4"));
+    return new Supported(Collections.unmodifiableMap(options));
+  }
+
   private void notifyQueryListeners(QueryLog queryLog, boolean after) {
-    if (queryLog != null && !queryListeners.isEmpty()) {
+    if (queryLog == null || !hasQueryListeners()) {
+      return;
+    }
+    if (server != null && server.listenerDispatcher != null) {
+      server.listenerDispatcher.publish(this, queryLog, after);
+    } else {
+      dispatchQueryListeners(queryLog, after);
+    }
+  }
+
+  boolean hasQueryListeners() {
+    List<QueryListenerWrapper> queryListeners = this.queryListeners;
+    return (queryListeners != null && !queryListeners.isEmpty())
+        || getDataCenter().hasQueryListeners();
+  }
+
+  /**
+   * Invokes the listeners of this node, its data center and its cluster on the calling thread.
+   *
+   * @param queryLog the request to notify about.
+   * @param after whether the request was already handled.
+   */
+  void dispatchQueryListeners(QueryLog queryLog, boolean after) {
+    List<QueryListenerWrapper> queryListeners = this.queryListeners;
+    if (queryListeners != null) {
       for (QueryListenerWrapper wrapper : queryListeners) {
         if (after == wrapper.after) {
           wrapper.apply(this, queryLog);
@@ -499,8 +822,13 @@ public class BoundNode extends AbstractNode<BoundCluster, BoundDataCenter>
     CompletableFuture<Void> future = new CompletableFuture<>();
     Action action = nextActions.next();
     ActionHandler handler = new ActionHandler(action, ctx, frame, future);
-    if (action.delayInMs() > 0) {
-      timer.newTimeout(handler, action.delayInMs(), TimeUnit.MILLISECONDS);
+    long delayInNanos = action.delayInNanos();
+    if (delayInNanos > 0) {
+      if (actionScheduling == ActionScheduling.EVENT_LOOP) {
+        ctx.executor().schedule(handler, delayInNanos, TimeUnit.NANOSECONDS);
+      } else {
+        timer.newTimeout(handler, delayInNanos, TimeUnit.NANOSECONDS);
+      }
     } else {
       // process immediately when delay is 0.
       handler.run(null);
@@ -517,7 +845,7 @@ public class BoundNode extends AbstractNode<BoundCluster, BoundDataCenter>
         });
   }
 
-  private class ActionHandler implements TimerTask {
+  private class ActionHandler implements TimerTask, Runnable {
 
     private final Action action;
     private final ChannelHandlerContext ctx;
@@ -534,6 +862,11 @@ public class BoundNode extends AbstractNode<BoundCluster, BoundDataCenter>
 
     @Override
     public void run(Timeout timeout) {
+      run();
+    }
+
+    @Override
+    public void run() {
       CompletableFuture<Void> future;
       // TODO maybe delegate this logic elsewhere
       if (action instanceof MessageResponseAction) {
@@ -588,22 +921,39 @@ public class BoundNode extends AbstractNode<BoundCluster, BoundDataCenter>
 
   private ChannelFuture sendMessage(
       ChannelHandlerContext ctx, Frame requestFrame, Message responseMessage) {
+    if (responseMessage == READY || responseMessage == SUPPORTED) {
+      frameCodec.getPreEncodedResponses().add(responseMessage);
+    }
     Frame responseFrame = wrapResponse(requestFrame, responseMessage);
     logger.debug(
         "Sending response for streamId: {} with msg {}",
         responseFrame.streamId,
         responseFrame.message);
+    ClientConnection connection = ClientConnection.of(ctx.channel());
+    if (connection != null) {
+      connection.frameSent();
+    }
     return ctx.writeAndFlush(responseFrame);
   }
 
   @Override
   public StubStore getStubStore() {
+    StubStore stubStore = this.stubStore;
+    if (stubStore == null) {
+      synchronized (this) {
+        stubStore = this.stubStore;
+        if (stubStore == null) {
+          stubStore = new StubStore();
+          this.stubStore = stubStore;
+        }
+      }
+    }
     return stubStore;
   }
 
   @Override
   public int clearPrimes(boolean nested) {
-    return stubStore.clear();
+    return clearPrimes();
   }
 
   @Override
@@ -613,7 +963,8 @@ public class BoundNode extends AbstractNode<BoundCluster, BoundDataCenter>
 
   /** See {@link #clearPrimes(boolean)} */
   public int clearPrimes() {
-    return stubStore.clear();
+    StubStore stubStore = this.stubStore;
+    return stubStore != null ? stubStore.clear() : 0;
   }
 
   @Override
@@ -621,26 +972,27 @@ public class BoundNode extends AbstractNode<BoundCluster, BoundDataCenter>
     ClusterConnectionReport clusterConnectionReport = new ClusterConnectionReport(cluster.getId());
     return clusterConnectionReport.addNode(
         this,
-        clientChannelGroup.stream().map(Channel::remoteAddress).collect(Collectors.toList()),
-        getAddress());
+        connections.addresses(),
+        getAddress(),
+        trafficShaper.report());
   }
 
   @Override
   public CompletionStage<NodeConnectionReport> closeConnectionsAsync(CloseType closeType) {
     NodeConnectionReport report = getConnections();
 
-    return closeChannelGroup(this.clientChannelGroup, closeType).thenApply(v -> report);
+    return closeChannelGroup(connections.channels(), closeType).thenApply(v -> report);
   }
 
   @Override
   public NodeConnectionReport pauseRead() {
-    this.clientChannelGroup.forEach(c -> c.config().setAutoRead(false));
+    connections.channels().forEach(c -> c.config().setAutoRead(false));
     return getConnections();
   }
 
   @Override
   public NodeConnectionReport resumeRead() {
-    this.clientChannelGroup.forEach(c -> c.config().setAutoRead(true));
+    connections.channels().forEach(c -> c.config().setAutoRead(true));
     return getConnections();
   }
 
@@ -678,17 +1030,15 @@ public class BoundNode extends AbstractNode<BoundCluster, BoundDataCenter>
   @Override
   public CompletionStage<NodeConnectionReport> closeConnectionAsync(
       SocketAddress connection, CloseType type) {
-    Optional<Channel> channel =
-        this.clientChannelGroup.stream()
-            .filter(c -> c.remoteAddress().equals(connection))
-            .findFirst();
+    ClientConnection clientConnection = connections.get(connection);
 
-    if (channel.isPresent()) {
+    if (clientConnection != null) {
       ChannelGroup channelGroup = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
-      channelGroup.add(channel.get());
+      channelGroup.add(clientConnection.getChannel());
       ClusterConnectionReport clusterReport = new ClusterConnectionReport(getCluster().getId());
       NodeConnectionReport report =
-          clusterReport.addNode(this, Collections.singletonList(connection), getAddress());
+          clusterReport.addNode(
+              this, Collections.singletonList(connection), getAddress(), trafficShaper.report());
 
       return closeChannelGroup(channelGroup, type).thenApply(f -> report);
     } else {
@@ -714,40 +1064,47 @@ public class BoundNode extends AbstractNode<BoundCluster, BoundDataCenter>
     return frameCodec;
   }
 
+  /** @return The statistics of the statements this node received. */
+  @JsonIgnore
+  public QueryStats getQueryStats() {
+    QueryStats queryStats = this.queryStats;
+    if (queryStats == null) {
+      synchronized (this) {
+        queryStats = this.queryStats;
+        if (queryStats == null) {
+          queryStats = new QueryStats();
+          this.queryStats = queryStats;
+        }
+      }
+    }
+    return queryStats;
+  }
+
+  /** @return The activity log recording the requests this node received. */
+  @JsonIgnore
+  public ActivityLog getActivityLog() {
+    return activityLog;
+  }
+
+  /** @return The capacity model of this node, to adjust its limits or inspect its counters. */
+  @JsonIgnore
+  public NodeCapacity getCapacity() {
+    return capacity;
+  }
+
   /**
-   * Convenience fluent builder for constructing a prime with a query, where the parameters are
-   * inferred by the query
+   * Shapes the traffic of all connections to this node together, as if they were sharing a single
+   * link. Applies in addition to the limits of its data center.
    *
-   * @param query The query string to match against.
-   * @return builder for this prime.
+   * @param limits The limits to apply, {@link TrafficLimits#UNLIMITED} to remove them.
    */
-  private static PrimeBuilder whenWithInferredParams(String query) {
-    long posParamCount = query.chars().filter(num -> num == '?').count();
-
-    // Do basic param population for positional types
-    LinkedHashMap<String, String> paramTypes = new LinkedHashMap<>();
-    LinkedHashMap<String, Object> params = new LinkedHashMap<>();
-    if (posParamCount > 0) {
-      for (int i = 0; i < posParamCount; i++) {
-        params.put(Integer.toString(i), "*");
-        paramTypes.put(Integer.toString(i), "varchar");
-      }
-    }
-    // Do basic param population for named types
-    else {
-      List<String> allMatches = new ArrayList<>();
-      Pattern p = Pattern.compile("([\\w']+)\\s=\\s:[\\w]+");
-      Matcher m = p.matcher(query);
-      while (m.find()) {
-        allMatches.add(m.group(1));
-      }
-      for (String match : allMatches) {
-        params.put(match, "*");
-        paramTypes.put(match, "varchar");
-      }
-    }
-    return when(
-        new com.datastax.oss.simulacron.common.request.Query(
-            query, Collections.emptyList(), params, paramTypes));
+  @Override
+  public void setTraffic(TrafficLimits limits) {
+    trafficShaper.setLimits(limits, connections.channels());
+  }
+
+  @JsonIgnore
+  public TrafficShaper getTrafficShaper() {
+    return trafficShaper;
   }
 }
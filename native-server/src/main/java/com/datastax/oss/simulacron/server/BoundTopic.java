@@ -17,10 +17,13 @@ package com.datastax.oss.simulacron.server;
 
 import static com.datastax.oss.simulacron.server.CompletableFutures.getUninterruptibly;
 
+import com.datastax.oss.simulacron.common.cluster.ActivityLogSampling;
 import com.datastax.oss.simulacron.common.cluster.ConnectionReport;
 import com.datastax.oss.simulacron.common.cluster.NodeProperties;
 import com.datastax.oss.simulacron.common.cluster.QueryLog;
 import com.datastax.oss.simulacron.common.cluster.QueryLogReport;
+import com.datastax.oss.simulacron.common.stats.NodeStatsReport;
+import com.datastax.oss.simulacron.common.stats.StatsReport;
 import com.datastax.oss.simulacron.common.stubbing.CloseType;
 import com.datastax.oss.simulacron.common.stubbing.Prime;
 import com.datastax.oss.simulacron.common.stubbing.PrimeDsl;
@@ -33,6 +36,7 @@ import java.util.concurrent.CompletionStage;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public interface BoundTopic<C extends ConnectionReport, Q extends QueryLogReport>
     extends AutoCloseable, NodeProperties {
@@ -213,11 +217,80 @@ public interface BoundTopic<C extends ConnectionReport, Q extends QueryLogReport
   @JsonIgnore
   Q getLogs(boolean primed);
 
+  /**
+   * @param filter which logs to include, it is tested against the logs of each node in order.
+   * @return recorded query logs for this that match the filter.
+   */
+  @JsonIgnore
+  Q getLogs(Predicate<QueryLog> filter);
+
+  /**
+   * Unlike {@link #getLogs()}, logs spilled to disk are read as the stream is consumed instead of
+   * being loaded all at once.
+   *
+   * @return recorded query logs of each node in order.
+   */
+  default Stream<QueryLog> streamLogs() {
+    return getNodes().stream().flatMap(BoundNode::streamLogs);
+  }
+
   /** clears the query logs for this. */
   default void clearLogs() {
     getNodes().forEach(BoundNode::clearLogs);
   }
 
+  /**
+   * @return the statistics of the statements each node of this received, and of the prepared
+   *     statement cache of their cluster.
+   */
+  @JsonIgnore
+  default StatsReport getStats() {
+    StatsReport report = new StatsReport();
+    for (BoundNode node : getNodes()) {
+      if (report.getPreparedStatementCache() == null) {
+        report.setPreparedStatementCache(node.getCluster().getPreparedStatementCache().getStats());
+      }
+      report.addNode(
+          new NodeStatsReport(
+              node.getCluster().getId(),
+              node.getDataCenter().getId(),
+              node.getId(),
+              node.getQueryStats().snapshot()));
+    }
+    return report;
+  }
+
+  /** Forgets the statistics of the statements each node of this received. */
+  default void resetStats() {
+    getNodes().forEach(n -> n.getQueryStats().reset());
+  }
+
+  /**
+   * Replaces which requests the activity logs of this record from now on.
+   *
+   * @param sampling The sampling to apply, {@link ActivityLogSampling#RECORD_ALL} to record all.
+   */
+  default void setActivityLogSampling(ActivityLogSampling sampling) {
+    getNodes().forEach(n -> n.activityLog.setSampling(sampling));
+  }
+
+  /**
+   * Replaces the capacity limits of every node in this.
+   *
+   * @param limits The limits to apply, {@link CapacityLimits#UNLIMITED} to remove them.
+   */
+  default void setCapacity(CapacityLimits limits) {
+    getNodes().forEach(n -> n.getCapacity().setLimits(limits));
+  }
+
+  /**
+   * Limits the bandwidth and adds latency to the connections of this. Limits of a node and of its
+   * data center both apply, setting limits on a cluster sets them on each of its data centers.
+   *
+   * @param limits The limits to apply, {@link TrafficLimits#UNLIMITED} to remove them.
+   */
+  void setTraffic(TrafficLimits limits);
+
   /**
    * Registers a listener that is invoked whenever a query is received.
    *
@@ -0,0 +1,64 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.server;
+
+import com.datastax.oss.protocol.internal.Compressor;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+/**
+ * Base class for the {@link Compressor}s that may be negotiated on STARTUP.
+ *
+ * <p>Compressed output is written to pooled (direct when possible) buffers since it is handed
+ * straight to the channel, which releases it. Decompressed output is only read once to decode a
+ * frame and is put on the heap so it doesn't need to be released.
+ */
+abstract class ByteBufCompressor implements Compressor<ByteBuf> {
+
+  final ByteBufAllocator alloc;
+
+  ByteBufCompressor(ByteBufAllocator alloc) {
+    this.alloc = alloc;
+  }
+
+  @Override
+  public ByteBuf compress(ByteBuf uncompressed) {
+    return compress(uncompressed, true);
+  }
+
+  public ByteBuf compressWithoutLength(ByteBuf uncompressed) {
+    return compress(uncompressed, false);
+  }
+
+  /**
+   * Compresses the readable bytes of the input, consuming them.
+   *
+   * @param uncompressed the bytes to compress.
+   * @param prependWithUncompressedLength whether to prefix the output with the uncompressed length
+   *     (protocol v4 and below).
+   * @return a new buffer containing the compressed bytes.
+   */
+  abstract ByteBuf compress(ByteBuf uncompressed, boolean prependWithUncompressedLength);
+
+  /**
+   * Decompresses the readable bytes of the input, consuming them.
+   *
+   * @param compressed the bytes to decompress, not prefixed with the uncompressed length.
+   * @param uncompressedLength the length of the uncompressed output.
+   * @return a new buffer containing the decompressed bytes.
+   */
+  public abstract ByteBuf decompressWithoutLength(ByteBuf compressed, int uncompressedLength);
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.server;
+
+import com.datastax.oss.simulacron.common.cluster.NodeProperties;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Limits on the requests a node accepts, see {@link NodeCapacity}.
+ *
+ * <p>Limits may be set through peer info when creating a cluster with the keys {@code
+ * capacity_ops_per_second}, {@code capacity_burst}, {@code capacity_max_in_flight} and {@code
+ * capacity_overload}, or later on through {@link BoundTopic#setCapacity(CapacityLimits)}.
+ */
+public class CapacityLimits {
+
+  /** What happens to requests in excess of the configured throughput. */
+  public enum Overload {
+    /** Respond immediately with an OVERLOADED error. */
+    @JsonProperty("reject")
+    REJECT,
+    /**
+     * Delay the request until it fits in the configured throughput, latency grows with the backlog.
+     * The backlog itself is bounded by the max in flight limit, if any.
+     */
+    @JsonProperty("queue")
+    QUEUE
+  }
+
+  /** No limits, the default. */
+  public static final CapacityLimits UNLIMITED = new CapacityLimits(0, 0, 0, Overload.REJECT);
+
+  private final double opsPerSecond;
+
+  private final int burst;
+
+  private final int maxInFlight;
+
+  private final Overload overload;
+
+  /**
+   * @param opsPerSecond maximum sustained throughput, or 0 if not limited.
+   * @param burst how many requests may be accepted at once on top of the sustained throughput, if
+   *     0 defaults to a tenth of a second worth of requests.
+   * @param maxInFlight maximum number of requests being processed or queued at once, or 0 if not
+   *     limited. Requests over this limit are always rejected.
+   * @param overload what happens to requests in excess of opsPerSecond.
+   */
+  @JsonCreator
+  public CapacityLimits(
+      @JsonProperty("ops_per_second") double opsPerSecond,
+      @JsonProperty("burst") int burst,
+      @JsonProperty("max_in_flight") int maxInFlight,
+      @JsonProperty("overload") Overload overload) {
+    if (opsPerSecond < 0 || burst < 0 || maxInFlight < 0) {
+      throw new IllegalArgumentException(
+          "Capacity limits must be positive or 0 for no limit, got ops_per_second="
+              + opsPerSecond
+              + ", burst="
+              + burst
+              + ", max_in_flight="
+              + maxInFlight);
+    }
+    this.opsPerSecond = opsPerSecond;
+    this.burst = burst != 0 ? burst : (int) Math.max(1, opsPerSecond / 10);
+    this.maxInFlight = maxInFlight;
+    this.overload = overload != null ? overload : Overload.REJECT;
+  }
+
+  /**
+   * @param node node to resolve the limits of.
+   * @return The limits configured in the peer info of the node or its parents, or {@link
+   *     #UNLIMITED}.
+   */
+  static CapacityLimits fromPeerInfo(NodeProperties node) {
+    Optional<Number> opsPerSecond = node.resolvePeerInfo("capacity_ops_per_second", Number.class);
+    Optional<Number> maxInFlight = node.resolvePeerInfo("capacity_max_in_flight", Number.class);
+    if (!opsPerSecond.isPresent() && !maxInFlight.isPresent()) {
+      return UNLIMITED;
+    }
+    return new CapacityLimits(
+        opsPerSecond.map(Number::doubleValue).orElse(0.0),
+        node.resolvePeerInfo("capacity_burst", Number.class).map(Number::intValue).orElse(0),
+        maxInFlight.map(Number::intValue).orElse(0),
+        node.resolvePeerInfo("capacity_overload", String.class)
+            .map(o -> Overload.valueOf(o.toUpperCase(Locale.ROOT)))
+            .orElse(Overload.REJECT));
+  }
+
+  @JsonProperty("ops_per_second")
+  public double getOpsPerSecond() {
+    return opsPerSecond;
+  }
+
+  @JsonProperty("burst")
+  public int getBurst() {
+    return burst;
+  }
+
+  @JsonProperty("max_in_flight")
+  public int getMaxInFlight() {
+    return maxInFlight;
+  }
+
+  @JsonProperty("overload")
+  public Overload getOverload() {
+    return overload;
+  }
+
+  @Override
+  public String toString() {
+    return "CapacityLimits{"
+        + "opsPerSecond="
+        + opsPerSecond
+        + ", burst="
+        + burst
+        + ", maxInFlight="
+        + maxInFlight
+        + ", overload="
+        + overload
+        + '}';
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.server;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import java.net.SocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/** A client connection to a node and the traffic that went through it. */
+@JsonPropertyOrder({
+  "address",
+  "connected_at",
+  "bytes_read",
+  "bytes_written",
+  "frames_received",
+  "frames_sent",
+  "in_flight"
+})
+public class ClientConnection {
+
+  static final AttributeKey<ClientConnection> ATTRIBUTE =
+      AttributeKey.newInstance("simulacron-connection");
+
+  private final Channel channel;
+
+  private final SocketAddress address;
+
+  private final long connectedAt = System.currentTimeMillis();
+
+  private final LongAdder bytesRead = new LongAdder();
+
+  private final LongAdder bytesWritten = new LongAdder();
+
+  private final LongAdder framesReceived = new LongAdder();
+
+  private final LongAdder framesSent = new LongAdder();
+
+  private final AtomicInteger inFlight = new AtomicInteger();
+
+  ClientConnection(Channel channel) {
+    this.channel = channel;
+    this.address = channel.remoteAddress();
+  }
+
+  /**
+   * @param channel a client channel.
+   * @return the connection of the channel, or null if it wasn't accepted by a node.
+   */
+  static ClientConnection of(Channel channel) {
+    return channel.hasAttr(ATTRIBUTE) ? channel.attr(ATTRIBUTE).get() : null;
+  }
+
+  Channel getChannel() {
+    return channel;
+  }
+
+  @JsonProperty("address")
+  public SocketAddress getAddress() {
+    return address;
+  }
+
+  /** @return When the connection was accepted in milliseconds since the epoch. */
+  @JsonProperty("connected_at")
+  public long getConnectedAt() {
+    return connectedAt;
+  }
+
+  /** @return Number of bytes read from the connection. */
+  @JsonProperty("bytes_read")
+  public long getBytesRead() {
+    return bytesRead.sum();
+  }
+
+  /** @return Number of bytes written to the connection. */
+  @JsonProperty("bytes_written")
+  public long getBytesWritten() {
+    return bytesWritten.sum();
+  }
+
+  /** @return Number of request frames received on the connection. */
+  @JsonProperty("frames_received")
+  public long getFramesReceived() {
+    return framesReceived.sum();
+  }
+
+  /** @return Number of response frames sent on the connection. */
+  @JsonProperty("frames_sent")
+  public long getFramesSent() {
+    return framesSent.sum();
+  }
+
+  /** @return Number of requests received on the connection that weren't responded to yet. */
+  @JsonProperty("in_flight")
+  public int getInFlight() {
+    return inFlight.get();
+  }
+
+  void bytesRead(int bytes) {
+    bytesRead.add(bytes);
+  }
+
+  void bytesWritten(int bytes) {
+    bytesWritten.add(bytes);
+  }
+
+  void frameReceived() {
+    framesReceived.increment();
+  }
+
+  void frameSent() {
+    framesSent.increment();
+  }
+
+  /**
+   * Counts a request as in flight until the returned callback is invoked.
+   *
+   * @param onDone invoked once the request is handled.
+   * @return callback that runs onDone and no longer counts the request as in flight.
+   */
+  Runnable track(Runnable onDone) {
+    inFlight.incrementAndGet();
+    return () -> {
+      inFlight.decrementAndGet();
+      onDone.run();
+    };
+  }
+
+  @Override
+  public String toString() {
+    return "ClientConnection{" + address + "}";
+  }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.server;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The client connections of a node, indexed by remote address so that a single connection can be
+ * found without going through all of them. Connections are also added to the index of their
+ * cluster if one is given, which maps them back to the node that accepted them.
+ *
+ * <p>The list of addresses used by connection reports is only rebuilt after a connection was
+ * accepted or closed.
+ */
+class ConnectionRegistry {
+
+  /** Name of the handler counting the bytes of each connection, first in the pipeline. */
+  static final String STATS_HANDLER = "connectionStats";
+
+  /** Only allocated once a connection is accepted, see {@link #channels()}. */
+  private volatile ChannelGroup channels;
+
+  private final Map<SocketAddress, ClientConnection> connections = new ConcurrentHashMap<>();
+
+  private final BoundNode node;
+
+  private final Map<SocketAddress, BoundNode> clusterIndex;
+
+  private final AtomicInteger active = new AtomicInteger();
+
+  /** Incremented whenever a connection is added or removed, to invalidate {@link #addresses}. */
+  private final AtomicLong version = new AtomicLong();
+
+  private volatile Snapshot addresses = new Snapshot(0, Collections.emptyList());
+
+  /**
+   * @param node node accepting the connections.
+   * @param clusterIndex index of the cluster of the node, or null if there is none.
+   */
+  ConnectionRegistry(BoundNode node, Map<SocketAddress, BoundNode> clusterIndex) {
+    this.node = node;
+    this.clusterIndex = clusterIndex;
+  }
+
+  /**
+   * Registers a newly accepted channel, it is removed once it closes.
+   *
+   * @param channel the channel.
+   * @return the connection of the channel.
+   */
+  ClientConnection register(Channel channel) {
+    ClientConnection connection = new ClientConnection(channel);
+    channel.attr(ClientConnection.ATTRIBUTE).set(connection);
+    channels().add(channel);
+    SocketAddress address = connection.getAddress();
+    if (address != null) {
+      connections.put(address, connection);
+      if (clusterIndex != null) {
+        clusterIndex.put(address, node);
+      }
+    }
+    active.incrementAndGet();
+    version.incrementAndGet();
+    channel.closeFuture().addListener(f -> unregister(connection));
+    return connection;
+  }
+
+  private void unregister(ClientConnection connection) {
+    SocketAddress address = connection.getAddress();
+    if (address != null && connections.remove(address, connection) && clusterIndex != null) {
+      clusterIndex.remove(address, node);
+    }
+    active.decrementAndGet();
+    version.incrementAndGet();
+  }
+
+  /** @return All client channels, for operations that apply to every connection at once. */
+  ChannelGroup channels() {
+    ChannelGroup channels = this.channels;
+    if (channels == null) {
+      synchronized (this) {
+        channels = this.channels;
+        if (channels == null) {
+          channels = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+          this.channels = channels;
+        }
+      }
+    }
+    return channels;
+  }
+
+  /**
+   * @param address remote address of a connection.
+   * @return the connection, or null if there is no open connection from that address.
+   */
+  ClientConnection get(SocketAddress address) {
+    return connections.get(address);
+  }
+
+  /** @return Number of open connections. */
+  int getActive() {
+    return active.get();
+  }
+
+  /** @return The open connections. */
+  Collection<ClientConnection> getAll() {
+    return Collections.unmodifiableCollection(connections.values());
+  }
+
+  /** @return The remote addresses of the open connections. */
+  List<SocketAddress> addresses() {
+    long current = version.get();
+    Snapshot snapshot = addresses;
+    if (snapshot.version != current) {
+      snapshot =
+          new Snapshot(
+              current, Collections.unmodifiableList(new ArrayList<>(connections.keySet())));
+      addresses = snapshot;
+    }
+    return snapshot.addresses;
+  }
+
+  private static class Snapshot {
+    private final long version;
+    private final List<SocketAddress> addresses;
+
+    Snapshot(long version, List<SocketAddress> addresses) {
+      this.version = version;
+      this.addresses = addresses;
+    }
+  }
+
+  /** Counts the bytes read from and written to a connection. */
+  @ChannelHandler.Sharable
+  static class StatsHandler extends ChannelDuplexHandler {
+
+    static final StatsHandler INSTANCE = new StatsHandler();
+
+    private StatsHandler() {}
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+      ClientConnection connection = ClientConnection.of(ctx.channel());
+      if (connection != null) {
+        connection.bytesRead(size(msg));
+      }
+      super.channelRead(ctx, msg);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise)
+        throws Exception {
+      ClientConnection connection = ClientConnection.of(ctx.channel());
+      if (connection != null) {
+        connection.bytesWritten(size(msg));
+      }
+      super.write(ctx, msg, promise);
+    }
+
+    private static int size(Object msg) {
+      if (msg instanceof ByteBuf) {
+        return ((ByteBuf) msg).readableBytes();
+      } else if (msg instanceof ByteBufHolder) {
+        return ((ByteBufHolder) msg).content().readableBytes();
+      }
+      return 0;
+    }
+  }
+}
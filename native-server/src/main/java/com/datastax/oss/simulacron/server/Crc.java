@@ -0,0 +1,90 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.server;
+
+import io.netty.buffer.ByteBuf;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * Checksums protecting protocol v5 segments: a CRC24 of the segment header and a CRC32 of its
+ * payload.
+ *
+ * <p>The CRC32 is delegated to {@link CRC32}, which the JVM intrinsifies for both heap and direct
+ * buffers. There is no JDK equivalent for the CRC24 so it is table driven, which only matters since
+ * it is computed for every segment.
+ */
+final class Crc {
+
+  private static final int CRC24_INIT = 0x875060;
+
+  private static final int CRC24_POLY = 0x1974F0B;
+
+  private static final int[] CRC24_TABLE = new int[256];
+
+  // Cassandra seeds the payload CRC32 with these bytes so that an all-zero payload does not have
+  // an all-zero checksum.
+  private static final byte[] CRC32_INITIAL_BYTES = {
+    (byte) 0xfa, (byte) 0x2d, (byte) 0x55, (byte) 0xca
+  };
+
+  static {
+    for (int i = 0; i < 256; i++) {
+      int crc = i << 16;
+      for (int j = 0; j < 8; j++) {
+        crc <<= 1;
+        if ((crc & 0x1000000) != 0) {
+          crc ^= CRC24_POLY;
+        }
+      }
+      CRC24_TABLE[i] = crc;
+    }
+  }
+
+  private Crc() {}
+
+  /**
+   * @param value bytes to checksum, least significant byte first.
+   * @param length number of bytes of value to checksum.
+   * @return the CRC24 of the given bytes.
+   */
+  static int crc24(long value, int length) {
+    int crc = CRC24_INIT;
+    for (int i = 0; i < length; i++) {
+      crc = CRC24_TABLE[((crc >>> 16) ^ (int) value) & 0xff] ^ ((crc << 8) & 0xffffff);
+      value >>>= 8;
+    }
+    return crc;
+  }
+
+  /**
+   * @param crc instance to compute the checksum with, it is reset first.
+   * @param buffer bytes to checksum, its indexes are not modified.
+   * @return the CRC32 of the readable bytes of the buffer.
+   */
+  static int crc32(CRC32 crc, ByteBuf buffer) {
+    crc.reset();
+    crc.update(CRC32_INITIAL_BYTES);
+    if (buffer.nioBufferCount() == 1) {
+      crc.update(buffer.nioBuffer());
+    } else {
+      for (ByteBuffer component : buffer.nioBuffers()) {
+        crc.update(component);
+      }
+    }
+    return (int) crc.getValue();
+  }
+}
@@ -18,20 +18,79 @@ package com.datastax.oss.simulacron.server;
 import com.datastax.oss.protocol.internal.Compressor;
 import com.datastax.oss.protocol.internal.FrameCodec;
 import io.netty.buffer.ByteBuf;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 class FrameCodecWrapper extends FrameCodec<ByteBuf> {
 
+  private static final Logger logger = LoggerFactory.getLogger(FrameCodecWrapper.class);
+
   private static final ByteBufCodec codec = new ByteBufCodec();
 
   private final Set<Integer> supportedProtocolVersions;
 
+  private final CodecGroup[] codecGroups;
+
+  private final Map<String, Optional<ByteBufCompressor>> compressors = new ConcurrentHashMap<>();
+
+  private final Map<String, FrameCodec<ByteBuf>> compressedCodecs = new ConcurrentHashMap<>();
+
+  private final PreEncodedResponses preEncodedResponses = new PreEncodedResponses();
+
   FrameCodecWrapper(Set<Integer> supportedProtocolVersions, CodecGroup... codecGroups) {
     super(codec, Compressor.none(), codecGroups);
     this.supportedProtocolVersions = supportedProtocolVersions;
+    this.codecGroups = codecGroups;
   }
 
   Set<Integer> getSupportedProtocolVersions() {
     return supportedProtocolVersions;
   }
+
+  PreEncodedResponses getPreEncodedResponses() {
+    return preEncodedResponses;
+  }
+
+  /**
+   * @param algorithm compression algorithm requested by a client on STARTUP.
+   * @return The compressor for the given algorithm, or empty if the algorithm is not supported.
+   */
+  Optional<ByteBufCompressor> compressor(String algorithm) {
+    return compressors.computeIfAbsent(algorithm.toLowerCase(), this::newCompressor);
+  }
+
+  /**
+   * @param algorithm compression algorithm requested by a client on STARTUP.
+   * @return A codec for the same protocol versions as this one that compresses frames with the
+   *     given algorithm, or empty if the algorithm is not supported.
+   */
+  Optional<FrameCodec<ByteBuf>> withCompression(String algorithm) {
+    return compressor(algorithm)
+        .map(
+            compressor ->
+                compressedCodecs.computeIfAbsent(
+                    compressor.algorithm(), a -> new FrameCodec<>(codec, compressor, codecGroups)));
+  }
+
+  private Optional<ByteBufCompressor> newCompressor(String algorithm) {
+    try {
+      switch (algorithm) {
+        case "lz4":
+          return Optional.of(new Lz4Compressor());
+        case "snappy":
+          return Optional.of(new SnappyCompressor());
+        default:
+          return Optional.empty();
+      }
+    } catch (Throwable t) {
+      // i.e. the library or its native bindings are not available.
+      logger.warn(
+          "Could not load {} compression, refusing connections requesting it.", algorithm, t);
+      return Optional.empty();
+    }
+  }
 }
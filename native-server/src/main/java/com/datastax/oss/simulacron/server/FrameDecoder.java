@@ -16,6 +16,7 @@
 package com.datastax.oss.simulacron.server;
 
 import com.datastax.oss.protocol.internal.Frame;
+import com.datastax.oss.protocol.internal.FrameCodec;
 import com.datastax.oss.protocol.internal.Message;
 import com.datastax.oss.protocol.internal.ProtocolConstants;
 import com.datastax.oss.protocol.internal.response.Error;
@@ -31,6 +32,9 @@ public class FrameDecoder extends LengthFieldBasedFrameDecoder {
   private static final Logger logger = LoggerFactory.getLogger(FrameDecoder.class);
   private final FrameCodecWrapper frameCodec;
 
+  /** Codec used to decode frames, differs from frameCodec once compression is negotiated. */
+  private FrameCodec<ByteBuf> decodingCodec;
+
   private static final int MAX_FRAME_LENGTH = 256 * 1024 * 1024; // 256 MB
   private static final int HEADER_LENGTH =
       5; // size of the header = version (1) + flags (1) + stream id (2) + opcode (1)
@@ -42,6 +46,16 @@ public class FrameDecoder extends LengthFieldBasedFrameDecoder {
     super(MAX_FRAME_LENGTH, HEADER_LENGTH, LENGTH_FIELD_LENGTH, 0, 0, true);
 
     this.frameCodec = frameCodec;
+    this.decodingCodec = frameCodec;
+  }
+
+  /**
+   * Sets the codec to decode subsequent frames with, i.e. once compression was negotiated.
+   *
+   * @param decodingCodec codec to use.
+   */
+  void setDecodingCodec(FrameCodec<ByteBuf> decodingCodec) {
+    this.decodingCodec = decodingCodec;
   }
 
   @Override
@@ -119,7 +133,7 @@ public class FrameDecoder extends LengthFieldBasedFrameDecoder {
       contents.skipBytes(9 + length);
       return new UnsupportedProtocolVersionMessage(protocolVersion, streamId);
     }
-    return frameCodec.decode(contents);
+    return decodingCodec.decode(contents);
   }
 
   @Override
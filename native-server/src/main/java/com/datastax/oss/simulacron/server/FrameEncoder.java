@@ -19,9 +19,12 @@ import com.datastax.oss.protocol.internal.Frame;
 import com.datastax.oss.protocol.internal.FrameCodec;
 import com.datastax.oss.protocol.internal.ProtocolConstants;
 import com.datastax.oss.protocol.internal.response.Error;
+import com.datastax.oss.protocol.internal.response.Ready;
 import com.datastax.oss.simulacron.common.utils.FrameUtils;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
 import io.netty.handler.codec.MessageToMessageEncoder;
 import java.util.List;
 import org.slf4j.Logger;
@@ -31,16 +34,88 @@ public class FrameEncoder extends MessageToMessageEncoder<Frame> {
 
   private static Logger logger = LoggerFactory.getLogger(FrameEncoder.class);
 
-  private final FrameCodec<ByteBuf> frameCodec;
+  private FrameCodec<ByteBuf> frameCodec;
+
+  private PreEncodedResponses preEncodedResponses;
+
+  /** Compressor for protocol v5 segments, compression is negotiated before segments are used. */
+  private ByteBufCompressor segmentCompressor;
 
   FrameEncoder(FrameCodec<ByteBuf> frameCodec) {
     this.frameCodec = frameCodec;
+    this.preEncodedResponses =
+        frameCodec instanceof FrameCodecWrapper
+            ? ((FrameCodecWrapper) frameCodec).getPreEncodedResponses()
+            : null;
+  }
+
+  /**
+   * Sets the codec to encode subsequent frames with, i.e. once compression was negotiated.
+   *
+   * @param frameCodec codec to use.
+   */
+  void setFrameCodec(FrameCodec<ByteBuf> frameCodec) {
+    this.frameCodec = frameCodec;
+    // pre-encoded responses are never compressed.
+    this.preEncodedResponses = null;
+  }
+
+  /**
+   * Sets the compressor to compress protocol v5 segments with, once they are in use.
+   *
+   * @param segmentCompressor compressor to use.
+   */
+  void setSegmentCompressor(ByteBufCompressor segmentCompressor) {
+    this.segmentCompressor = segmentCompressor;
+  }
+
+  /**
+   * @param frame a frame received or sent on a connection.
+   * @return whether the connection switches to protocol v5 segments after the handshake.
+   */
+  static boolean usesSegments(Frame frame) {
+    return frame.protocolVersion >= ProtocolConstants.Version.V5 && !frame.beta;
+  }
+
+  @Override
+  public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise)
+      throws Exception {
+    if (msg instanceof Frame) {
+      Frame frame = (Frame) msg;
+      // The READY message itself is still sent as a legacy frame, both peers use segments from
+      // there on.
+      if (frame.message instanceof Ready && usesSegments(frame)) {
+        promise = promise.unvoid();
+        promise.addListener(
+            future -> {
+              if (future.isSuccess()) {
+                enableSegments(ctx.pipeline());
+              }
+            });
+      }
+    }
+    super.write(ctx, msg, promise);
+  }
+
+  private void enableSegments(ChannelPipeline pipeline) {
+    if (pipeline.get(SegmentEncoder.class) != null) {
+      return;
+    }
+    // Both go at the head of the pipeline, the encoder needs to see consolidated flushes to pack
+    // frames together and the decoder needs to see raw bytes.
+    pipeline.addFirst("segmentDecoder", new SegmentDecoder(segmentCompressor));
+    pipeline.addFirst("segmentEncoder", new SegmentEncoder(segmentCompressor));
   }
 
   @Override
   protected void encode(ChannelHandlerContext ctx, Frame msg, List<Object> out) {
     try {
-      out.add(frameCodec.encode(msg));
+      // Pass through the already serialized body if this is a static response.
+      ByteBuf preEncoded =
+          preEncodedResponses != null
+              ? preEncodedResponses.encode(msg, frameCodec, ctx.alloc())
+              : null;
+      out.add(preEncoded != null ? preEncoded : frameCodec.encode(msg));
     } catch (Throwable t) {
       logger.error("Exception while encoding a frame. Returning a server error instead.", t);
       out.add(
@@ -24,7 +24,7 @@ import java.net.UnknownHostException;
 import java.util.Queue;
 import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicLong;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -38,7 +38,14 @@ public class Inet4Resolver implements AddressResolver {
 
   private static final Logger logger =
       LoggerFactory.getLogger(com.datastax.oss.simulacron.server.Inet4Resolver.class);
-  private final AtomicReference<byte[]> ipParts;
+  // all but the first octet roll over after 254, see nextAddressBytes.
+  private static final int OCTET_VALUES = 255;
+  private static final long ADDRESS_SPACE = (long) OCTET_VALUES * OCTET_VALUES * OCTET_VALUES;
+
+  private final byte[] startingAddress;
+  // number of addresses handed out, the next one is computed from it instead of the previous one
+  // so that concurrent callers don't contend.
+  private final AtomicLong allocated = new AtomicLong();
   private static final AtomicBoolean WARNED = new AtomicBoolean();
   private final int port;
 
@@ -62,7 +69,7 @@ public class Inet4Resolver implements AddressResolver {
     byte[] ipAddr = new byte[4];
 
     System.arraycopy(startingAddress, 0, ipAddr, 0, 4);
-    this.ipParts = new AtomicReference<>(ipAddr);
+    this.startingAddress = ipAddr;
     this.port = port;
     checkAddressPresence(ipAddr, 100);
   }
@@ -124,25 +131,38 @@ public class Inet4Resolver implements AddressResolver {
     return newBytes;
   }
 
+  /**
+   * Computes the address {@link #nextAddressBytes(byte[])} returns when applied a number of times,
+   * without going through the addresses in between.
+   *
+   * @param startingBytes the address to start from.
+   * @param offset how many addresses to advance.
+   * @return the address offset addresses after the starting one.
+   */
+  static byte[] addressBytes(byte[] startingBytes, long offset) {
+    long value = 0;
+    for (int i = 1; i < 4; i++) {
+      value = value * OCTET_VALUES + (startingBytes[i] & 0xFF);
+    }
+    value = (value + offset) % ADDRESS_SPACE;
+    byte[] newBytes = new byte[4];
+    newBytes[0] = startingBytes[0];
+    for (int i = 3; i > 0; i--) {
+      newBytes[i] = (byte) (value % OCTET_VALUES);
+      value /= OCTET_VALUES;
+    }
+    return newBytes;
+  }
+
   @Override
   public SocketAddress get() {
     // If an address was released, reuse it.
     InetSocketAddress address = releasedAddresses.poll();
     if (address != null) {
       return address;
-    } else {
-      // get current address and increment to create next one.
-      // if CAS fails, try again until it works.
-      while (true) {
-        byte[] ref = ipParts.get();
-        InetAddress addr = inetAddress(ref);
-        byte[] next = nextAddressBytes(ref);
-
-        if (ipParts.compareAndSet(ref, next)) {
-          return new InetSocketAddress(addr, this.port);
-        }
-      }
     }
+    byte[] next = addressBytes(startingAddress, allocated.getAndIncrement());
+    return new InetSocketAddress(inetAddress(next), this.port);
   }
 
   @Override
@@ -0,0 +1,73 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.server;
+
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delays writes and flushes of a connection by the latency of the {@link TrafficShaper}s of its
+ * node and data center.
+ *
+ * <p>Writes are scheduled on the connection's event loop with a deadline that never goes backwards,
+ * so responses keep their order even if the latency is lowered while some are still pending.
+ */
+class LatencyHandler extends ChannelDuplexHandler {
+
+  private final TrafficShaper[] shapers;
+
+  private long lastDeadline;
+
+  LatencyHandler(TrafficShaper... shapers) {
+    this.shapers = shapers;
+  }
+
+  @Override
+  public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+    long delay = delay();
+    if (delay > 0) {
+      ctx.executor().schedule(() -> ctx.write(msg, promise), delay, TimeUnit.NANOSECONDS);
+    } else {
+      ctx.write(msg, promise);
+    }
+  }
+
+  @Override
+  public void flush(ChannelHandlerContext ctx) {
+    long delay = delay();
+    if (delay > 0) {
+      ctx.executor().schedule(ctx::flush, delay, TimeUnit.NANOSECONDS);
+    } else {
+      ctx.flush();
+    }
+  }
+
+  private long delay() {
+    long latency = 0;
+    for (TrafficShaper shaper : shapers) {
+      latency += shaper.getLatencyInNanos();
+    }
+    long now = System.nanoTime();
+    if (latency == 0 && lastDeadline - now <= 0) {
+      return 0;
+    }
+    long deadline = Math.max(now + latency, lastDeadline);
+    lastDeadline = deadline;
+    return deadline - now;
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.server;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import java.nio.ByteBuffer;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+/** LZ4 compression as used by the native protocol: uncompressed length followed by LZ4 block. */
+class Lz4Compressor extends ByteBufCompressor {
+
+  private final LZ4Compressor compressor;
+
+  private final LZ4FastDecompressor decompressor;
+
+  Lz4Compressor() {
+    this(ByteBufAllocator.DEFAULT);
+  }
+
+  Lz4Compressor(ByteBufAllocator alloc) {
+    super(alloc);
+    LZ4Factory factory = LZ4Factory.fastestInstance();
+    this.compressor = factory.fastCompressor();
+    this.decompressor = factory.fastDecompressor();
+  }
+
+  @Override
+  public String algorithm() {
+    return "lz4";
+  }
+
+  @Override
+  ByteBuf compress(ByteBuf uncompressed, boolean prependWithUncompressedLength) {
+    int length = uncompressed.readableBytes();
+    int maxCompressedLength = compressor.maxCompressedLength(length);
+    ByteBuf output =
+        alloc.directBuffer((prependWithUncompressedLength ? 4 : 0) + maxCompressedLength);
+    try {
+      if (prependWithUncompressedLength) {
+        output.writeInt(length);
+      }
+      ByteBuffer in = uncompressed.nioBuffer(uncompressed.readerIndex(), length);
+      ByteBuffer out = output.nioBuffer(output.writerIndex(), maxCompressedLength);
+      int written =
+          compressor.compress(in, in.position(), length, out, out.position(), maxCompressedLength);
+      uncompressed.skipBytes(length);
+      output.writerIndex(output.writerIndex() + written);
+      return output;
+    } catch (RuntimeException e) {
+      output.release();
+      throw e;
+    }
+  }
+
+  @Override
+  public ByteBuf decompress(ByteBuf compressed) {
+    return decompressWithoutLength(compressed, compressed.readInt());
+  }
+
+  @Override
+  public ByteBuf decompressWithoutLength(ByteBuf compressed, int uncompressedLength) {
+    byte[] output = new byte[uncompressedLength];
+    ByteBuffer in = compressed.nioBuffer(compressed.readerIndex(), compressed.readableBytes());
+    int read =
+        decompressor.decompress(in, in.position(), ByteBuffer.wrap(output), 0, uncompressedLength);
+    compressed.skipBytes(read);
+    return Unpooled.wrappedBuffer(output);
+  }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.server;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Models the finite capacity of a node: a throughput limit and a limit on concurrent requests, see
+ * {@link CapacityLimits}.
+ *
+ * <p>The throughput limit is a token bucket implemented as a generic cell rate algorithm: a single
+ * theoretical arrival time is advanced by one emission interval per accepted request with a CAS,
+ * so admission is lock-free and doesn't need a refill task.
+ */
+@JsonPropertyOrder({"limits", "in_flight", "admitted", "queued", "rejected"})
+public class NodeCapacity {
+
+  /** Returned by {@link #acquire()} when a request is rejected. */
+  static final long REJECTED = -1;
+
+  private volatile Limits limits;
+
+  private final AtomicLong theoreticalArrivalTime = new AtomicLong(System.nanoTime());
+
+  private final AtomicInteger inFlight = new AtomicInteger();
+
+  private final LongAdder admitted = new LongAdder();
+
+  private final LongAdder queued = new LongAdder();
+
+  private final LongAdder rejected = new LongAdder();
+
+  NodeCapacity(CapacityLimits limits) {
+    setLimits(limits);
+  }
+
+  /**
+   * Replaces the limits of this node, requests already admitted are not affected.
+   *
+   * @param limits the new limits.
+   */
+  public void setLimits(CapacityLimits limits) {
+    this.limits = new Limits(limits);
+    theoreticalArrivalTime.set(System.nanoTime());
+  }
+
+  @JsonProperty("limits")
+  public CapacityLimits getLimits() {
+    return limits.limits;
+  }
+
+  /** @return Number of requests admitted or queued that didn't complete yet. */
+  @JsonProperty("in_flight")
+  public int getInFlight() {
+    return inFlight.get();
+  }
+
+  /** @return Number of requests processed without delay. */
+  @JsonProperty("admitted")
+  public long getAdmitted() {
+    return admitted.sum();
+  }
+
+  /** @return Number of requests delayed because they exceeded the throughput limit. */
+  @JsonProperty("queued")
+  public long getQueued() {
+    return queued.sum();
+  }
+
+  /** @return Number of requests rejected with an OVERLOADED error. */
+  @JsonProperty("rejected")
+  public long getRejected() {
+    return rejected.sum();
+  }
+
+  /**
+   * Tries to admit a request, if admitted {@link #release()} must be called once it completes.
+   *
+   * @return {@link #REJECTED} if the request should be rejected, otherwise the delay in nanoseconds
+   *     to apply before processing it.
+   */
+  long acquire() {
+    Limits limits = this.limits;
+    if (limits.maxInFlight > 0) {
+      if (inFlight.incrementAndGet() > limits.maxInFlight) {
+        inFlight.decrementAndGet();
+        rejected.increment();
+        return REJECTED;
+      }
+    } else {
+      inFlight.incrementAndGet();
+    }
+
+    long delay = 0;
+    if (limits.emissionInterval > 0) {
+      long now = System.nanoTime();
+      while (true) {
+        long arrival = theoreticalArrivalTime.get();
+        long start = arrival - now > 0 ? arrival : now;
+        long wait = start - now - limits.tolerance;
+        if (wait > 0 && limits.reject) {
+          inFlight.decrementAndGet();
+          rejected.increment();
+          return REJECTED;
+        }
+        if (theoreticalArrivalTime.compareAndSet(arrival, start + limits.emissionInterval)) {
+          delay = Math.max(0, wait);
+          break;
+        }
+      }
+    }
+    if (delay > 0) {
+      queued.increment();
+    } else {
+      admitted.increment();
+    }
+    return delay;
+  }
+
+  /** Signals the completion of a request admitted by {@link #acquire()}. */
+  void release() {
+    inFlight.decrementAndGet();
+  }
+
+  /** @return Whether there are limits configured at all. */
+  boolean isLimited() {
+    return limits.limited;
+  }
+
+  private static class Limits {
+    private final CapacityLimits limits;
+    private final boolean limited;
+    private final boolean reject;
+    private final int maxInFlight;
+    private final long emissionInterval;
+    private final long tolerance;
+
+    Limits(CapacityLimits limits) {
+      this.limits = limits;
+      this.maxInFlight = limits.getMaxInFlight();
+      this.reject = limits.getOverload() == CapacityLimits.Overload.REJECT;
+      if (limits.getOpsPerSecond() > 0) {
+        this.emissionInterval =
+            Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / limits.getOpsPerSecond()));
+        this.tolerance = emissionInterval * (limits.getBurst() - 1);
+      } else {
+        this.emissionInterval = 0;
+        this.tolerance = 0;
+      }
+      this.limited = maxInFlight > 0 || emissionInterval > 0;
+    }
+  }
+}
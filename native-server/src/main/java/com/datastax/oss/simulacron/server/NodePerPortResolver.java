@@ -19,7 +19,7 @@ import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.util.Queue;
 import java.util.concurrent.PriorityBlockingQueue;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A resolver that returns the next unused port for the current ip address. When we've reached the
@@ -30,10 +30,14 @@ import java.util.concurrent.atomic.AtomicReference;
  */
 public class NodePerPortResolver implements AddressResolver {
 
-  // the next ip address to use
-  private final AtomicReference<InetSocketAddress> ip;
+  // the first ip address to use
+  private final byte[] startingAddress;
   // the port to use at start of ip range
   private final int startingPortPerIp;
+  // how many ports are used on each ip
+  private final int portsPerIp;
+  // number of addresses handed out, the next one is computed from it.
+  private final AtomicLong allocated = new AtomicLong();
 
   // Use priority queue so released addresses are sorted by ip address and port.
   private final Queue<InetSocketAddress> releasedAddresses =
@@ -51,11 +55,9 @@ public class NodePerPortResolver implements AddressResolver {
     byte[] ipAddr = new byte[4];
 
     System.arraycopy(startingAddress, 0, ipAddr, 0, 4);
-    this.ip =
-        new AtomicReference<>(
-            new InetSocketAddress(Inet4Resolver.inetAddress(ipAddr), startingPortPerIp));
-
+    this.startingAddress = ipAddr;
     this.startingPortPerIp = startingPortPerIp;
+    this.portsPerIp = Math.max(65536 - startingPortPerIp, 1);
 
     Inet4Resolver.checkAddressPresence(ipAddr, 1);
   }
@@ -66,30 +68,11 @@ public class NodePerPortResolver implements AddressResolver {
     InetSocketAddress address = releasedAddresses.poll();
     if (address != null) {
       return address;
-    } else {
-      // get current address and increment to the next one.
-      // if CAS fails try again until it works.
-      while (true) {
-        InetSocketAddress addr = ip.get();
-
-        int port = addr.getPort() + 1;
-
-        InetSocketAddress newAddress;
-        // if we've exhausted ports, move on to next ip, otherwise use next port.
-        if (port > 65535) {
-          newAddress =
-              new InetSocketAddress(
-                  Inet4Resolver.inetAddress(
-                      Inet4Resolver.nextAddressBytes(addr.getAddress().getAddress())),
-                  startingPortPerIp);
-        } else {
-          newAddress = new InetSocketAddress(addr.getAddress(), port);
-        }
-
-        if (ip.compareAndSet(addr, newAddress)) {
-          return addr;
-        }
-      }
     }
+    // once we've exhausted ports of an ip, move on to the next ip.
+    long index = allocated.getAndIncrement();
+    byte[] ip = Inet4Resolver.addressBytes(startingAddress, index / portsPerIp);
+    int port = startingPortPerIp + (int) (index % portsPerIp);
+    return new InetSocketAddress(Inet4Resolver.inetAddress(ip), port);
   }
 }
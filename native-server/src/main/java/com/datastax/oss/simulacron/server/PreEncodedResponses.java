@@ -0,0 +1,174 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.server;
+
+import com.datastax.oss.protocol.internal.Frame;
+import com.datastax.oss.protocol.internal.FrameCodec;
+import com.datastax.oss.protocol.internal.Message;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded set of response messages whose body never changes (i.e. READY, SUPPORTED or the rows
+ * of a primed success result). Each is serialized once per protocol version; subsequent writes
+ * reuse the encoded body and only get a freshly written header with their own stream id.
+ *
+ * <p>Once full, adding a message evicts a template that wasn't used recently, picked with the same
+ * CLOCK (second chance) approximation of LRU as {@link PreparedStatementCache}, so hot responses
+ * keep their encoded bytes.
+ */
+class PreEncodedResponses {
+
+  static final int MAX_RESPONSES = 1024;
+
+  private static final int MIN_PROTOCOL_VERSION = 3;
+
+  private static final int MAX_PROTOCOL_VERSION = 7;
+
+  // size of the header = version (1) + flags (1) + stream id (2) + opcode (1) + length (4)
+  private static final int HEADER_LENGTH = 9;
+
+  private static final int STREAM_ID_OFFSET = 2;
+
+  private final Map<Message, Template> templates = new ConcurrentHashMap<>();
+
+  // templates in the order the clock hand visits them, also guards adds.
+  private final Queue<Template> clock = new ArrayDeque<>();
+
+  /**
+   * Marks the given message as safe to pre-encode. The message must not be mutated afterwards.
+   *
+   * @param message The response message.
+   */
+  void add(Message message) {
+    if (templates.containsKey(message)) {
+      return;
+    }
+    synchronized (clock) {
+      if (templates.containsKey(message)) {
+        return;
+      }
+      // primes may be re-registered over and over, evict rather than growing forever.
+      while (clock.size() >= MAX_RESPONSES) {
+        evict();
+      }
+      Template template = new Template(message);
+      templates.put(message, template);
+      clock.add(template);
+    }
+  }
+
+  /** Moves the clock hand until it finds a template that wasn't used since its last visit. */
+  private void evict() {
+    while (true) {
+      Template template = clock.remove();
+      if (template.referenced) {
+        template.referenced = false;
+        clock.add(template);
+      } else {
+        templates.remove(template.message, template);
+        return;
+      }
+    }
+  }
+
+  /**
+   * Returns the encoded form of the given response frame if its message was previously {@link
+   * #add(Message) added}, otherwise null.
+   *
+   * @param frame The response frame to encode.
+   * @param frameCodec Codec used to encode the message the first time it is seen for a version.
+   * @param alloc Allocator used for the frame header.
+   * @return The encoded frame, or null if it must be encoded normally.
+   */
+  ByteBuf encode(Frame frame, FrameCodec<ByteBuf> frameCodec, ByteBufAllocator alloc) {
+    if (frame.protocolVersion < MIN_PROTOCOL_VERSION
+        || frame.protocolVersion > MAX_PROTOCOL_VERSION
+        || frame.tracing
+        || (frame.customPayload != null && !frame.customPayload.isEmpty())
+        || (frame.warnings != null && !frame.warnings.isEmpty())) {
+      return null;
+    }
+    Template template = templates.get(frame.message);
+    if (template == null) {
+      return null;
+    }
+    template.referenced = true;
+    ByteBuf encoded = template.encoded(frame, frameCodec);
+    ByteBuf header = alloc.ioBuffer(HEADER_LENGTH, HEADER_LENGTH);
+    header.writeBytes(encoded, encoded.readerIndex(), HEADER_LENGTH);
+    header.setShort(STREAM_ID_OFFSET, frame.streamId);
+    ByteBuf body =
+        encoded.retainedSlice(
+            encoded.readerIndex() + HEADER_LENGTH, encoded.readableBytes() - HEADER_LENGTH);
+    return Unpooled.wrappedBuffer(header, body);
+  }
+
+  int size() {
+    return templates.size();
+  }
+
+  private static class Template {
+
+    private final Message message;
+
+    // set by encodes, cleared when the clock hand passes the template.
+    private volatile boolean referenced = false;
+
+    // one slot per protocol version and beta flag.
+    private final AtomicReferenceArray<ByteBuf> encoded =
+        new AtomicReferenceArray<>((MAX_PROTOCOL_VERSION + 1) * 2);
+
+    Template(Message message) {
+      this.message = message;
+    }
+
+    ByteBuf encoded(Frame frame, FrameCodec<ByteBuf> frameCodec) {
+      int index = frame.protocolVersion * 2 + (frame.beta ? 1 : 0);
+      ByteBuf buf = encoded.get(index);
+      if (buf == null) {
+        ByteBuf fresh =
+            frameCodec.encode(
+                new Frame(
+                    frame.protocolVersion,
+                    frame.beta,
+                    0,
+                    false,
+                    null,
+                    -1,
+                    -1,
+                    Collections.emptyMap(),
+                    Collections.emptyList(),
+                    message));
+        // Keep the template on the heap so it is simply garbage collected once evicted, the
+        // encoder only ever hands out retained slices of it.
+        buf = Unpooled.copiedBuffer(fresh);
+        fresh.release();
+        if (!encoded.compareAndSet(index, null, buf)) {
+          buf = encoded.get(index);
+        }
+      }
+      return buf;
+    }
+  }
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.server;
+
+import static com.datastax.oss.simulacron.common.stubbing.PrimeDsl.noRows;
+import static com.datastax.oss.simulacron.common.stubbing.PrimeDsl.when;
+import static com.datastax.oss.simulacron.common.utils.PreparedIdUtils.toQueryId;
+
+import com.datastax.oss.protocol.internal.Frame;
+import com.datastax.oss.protocol.internal.request.Execute;
+import com.datastax.oss.protocol.internal.request.Prepare;
+import com.datastax.oss.protocol.internal.request.Query;
+import com.datastax.oss.simulacron.common.stats.PreparedStatementCacheStats;
+import com.datastax.oss.simulacron.common.stubbing.Prime;
+import com.datastax.oss.simulacron.common.stubbing.PrimeDsl.PrimeBuilder;
+import com.datastax.oss.simulacron.common.stubbing.StubMapping;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Holds the internal primes a cluster registers for PREPARE messages no stub mapping matched, so
+ * that the statements can be executed afterwards.
+ *
+ * <p>Each query is primed once and kept by its query id (see {@link QueryIdIndex}). The number of
+ * cached primes is bounded: when full, the least recently used ones are evicted using the CLOCK
+ * (second chance) approximation of LRU, which lets lookups only mark the entries they hit instead
+ * of reordering them under a lock. Evicted statements answer EXECUTE with UNPREPARED, and are
+ * primed again by the next PREPARE, just like with a real Cassandra node.
+ *
+ * <p>Since the cache is consulted after the stub stores, primes registered by users always take
+ * precedence over inferred ones.
+ */
+public final class PreparedStatementCache {
+
+  /** The default maximum number of cached primes. */
+  public static final int DEFAULT_CAPACITY = 10000;
+
+  private static final Pattern NAMED_PARAMETER = Pattern.compile("([\\w']+)\\s=\\s:[\\w]+");
+
+  private final int capacity;
+
+  private final QueryIdIndex<Entry> byQueryId = new QueryIdIndex<>();
+
+  // entries in the order the clock hand visits them, guarded by this.
+  private final Queue<Entry> clock = new ArrayDeque<>();
+
+  private final LongAdder hits = new LongAdder();
+
+  private final LongAdder misses = new LongAdder();
+
+  private final LongAdder evictions = new LongAdder();
+
+  /** @param capacity maximum number of cached primes, 0 to not cache any. */
+  public PreparedStatementCache(int capacity) {
+    if (capacity < 0) {
+      throw new IllegalArgumentException(
+          "Prepared statement cache capacity must be >= 0, got " + capacity);
+    }
+    this.capacity = capacity;
+  }
+
+  /**
+   * Finds the cached prime of a QUERY, PREPARE or EXECUTE message.
+   *
+   * @param node node that received the frame.
+   * @param frame received frame.
+   * @return The matching prime, if any.
+   */
+  public Optional<StubMapping> find(BoundNode node, Frame frame) {
+    Entry entry = null;
+    if (frame.message instanceof Query) {
+      entry = get(((Query) frame.message).query);
+    } else if (frame.message instanceof Prepare) {
+      entry = get(((Prepare) frame.message).cqlQuery);
+    } else if (frame.message instanceof Execute) {
+      byte[] queryId = ((Execute) frame.message).queryId;
+      if (queryId != null && queryId.length > 0) {
+        entry = byQueryId.get(toQueryId(queryId));
+      }
+    } else {
+      return Optional.empty();
+    }
+
+    if (entry != null && entry.prime.matches(node, frame)) {
+      hits.increment();
+      entry.referenced = true;
+      return Optional.of(entry.prime);
+    }
+    // unprimed QUERY messages are not meant to be cached, only count statements to prepare again.
+    if (!(frame.message instanceof Query)) {
+      misses.increment();
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * Primes the given query with no rows, inferring its parameters, unless it is already cached.
+   *
+   * @param query query to prime.
+   * @return The prime of the query. It is only cached if the cache has a capacity and no other
+   *     cached query has the same query id.
+   */
+  public Prime register(String query) {
+    Entry entry = get(query);
+    if (entry != null) {
+      return entry.prime;
+    }
+
+    Prime prime = new InternalStubWrapper(whenWithInferredParams(query).then(noRows()).build());
+    if (capacity == 0) {
+      return prime;
+    }
+    synchronized (this) {
+      int queryId = query.hashCode();
+      entry = byQueryId.get(queryId);
+      if (entry != null) {
+        // registered concurrently, or a different query with the same id which is left uncached.
+        return entry.query.equals(query) ? entry.prime : prime;
+      }
+      while (clock.size() >= capacity) {
+        evict();
+      }
+      Entry created = new Entry(queryId, query, prime);
+      byQueryId.computeIfAbsent(queryId, () -> created);
+      clock.add(created);
+    }
+    return prime;
+  }
+
+  /**
+   * Removes all cached primes, the metrics are left as is.
+   *
+   * @return The number of removed primes.
+   */
+  public synchronized int clear() {
+    int cleared = clock.size();
+    clock.clear();
+    byQueryId.clear();
+    return cleared;
+  }
+
+  /** @return The maximum number of cached primes. */
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /** @return The number of cached primes. */
+  public synchronized int size() {
+    return clock.size();
+  }
+
+  /** @return The number of QUERY, PREPARE and EXECUTE messages that matched a cached prime. */
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  /**
+   * @return The number of PREPARE messages of queries that weren't cached and EXECUTE messages of
+   *     query ids that weren't cached, i.e. evicted or never prepared.
+   */
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  /** @return The number of primes evicted to make room for new ones. */
+  public long getEvictionCount() {
+    return evictions.sum();
+  }
+
+  /** @return A snapshot of the capacity, size and counters of this cache. */
+  public PreparedStatementCacheStats getStats() {
+    return new PreparedStatementCacheStats(
+        capacity, size(), getHitCount(), getMissCount(), getEvictionCount());
+  }
+
+  private Entry get(String query) {
+    if (query == null) {
+      return null;
+    }
+    Entry entry = byQueryId.get(query.hashCode());
+    return entry != null && entry.query.equals(query) ? entry : null;
+  }
+
+  /** Moves the clock hand until it finds an entry that wasn't hit since its last visit. */
+  private void evict() {
+    while (true) {
+      Entry entry = clock.remove();
+      if (entry.referenced) {
+        entry.referenced = false;
+        clock.add(entry);
+      } else {
+        byQueryId.remove(entry.queryId, entry);
+        evictions.increment();
+        return;
+      }
+    }
+  }
+
+  /**
+   * Convenience fluent builder for constructing a prime with a query, where the parameters are
+   * inferred by the query
+   *
+   * @param query The query string to match against.
+   * @return builder for this prime.
+   */
+  private static PrimeBuilder whenWithInferredParams(String query) {
+    long posParamCount = query.chars().filter(num -> num == '?').count();
+
+    // Do basic param population for positional types
+    LinkedHashMap<String, String> paramTypes = new LinkedHashMap<>();
+    LinkedHashMap<String, Object> params = new LinkedHashMap<>();
+    if (posParamCount > 0) {
+      for (int i = 0; i < posParamCount; i++) {
+        params.put(Integer.toString(i), "*");
+        paramTypes.put(Integer.toString(i), "varchar");
+      }
+    }
+    // Do basic param population for named types
+    else {
+      Matcher m = NAMED_PARAMETER.matcher(query);
+      while (m.find()) {
+        params.put(m.group(1), "*");
+        paramTypes.put(m.group(1), "varchar");
+      }
+    }
+    return when(
+        new com.datastax.oss.simulacron.common.request.Query(
+            query, Collections.emptyList(), params, paramTypes));
+  }
+
+  private static class Entry {
+    private final int queryId;
+    private final String query;
+    private final Prime prime;
+    // set by hits, cleared when the clock hand passes the entry.
+    private volatile boolean referenced = false;
+
+    Entry(int queryId, String query, Prime prime) {
+      this.queryId = queryId;
+      this.query = query;
+      this.prime = prime;
+    }
+  }
+}
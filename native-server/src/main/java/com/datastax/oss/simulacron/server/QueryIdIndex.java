@@ -0,0 +1,153 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.server;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * An open addressing hash map keyed by primitive int query ids, so that looking up the primes of
+ * an EXECUTE message neither boxes its id nor allocates.
+ *
+ * <p>Lookups are lock-free while writes are synchronized. Each key and its value are published
+ * together in an immutable slot, removed keys leave a slot without value behind until the table is
+ * rebuilt so that concurrent lookups can keep probing past them.
+ *
+ * @param <V> type of the values.
+ */
+final class QueryIdIndex<V> {
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  // power of two sized, kept at most half full so every probe sequence ends on an empty slot.
+  private volatile AtomicReferenceArray<Slot<V>> table =
+      new AtomicReferenceArray<>(INITIAL_CAPACITY);
+
+  private int size = 0;
+
+  // number of slots that are not empty, including those of removed keys.
+  private int used = 0;
+
+  /**
+   * @param key query id to look up.
+   * @return The value associated with the key or null if there is none.
+   */
+  V get(int key) {
+    AtomicReferenceArray<Slot<V>> table = this.table;
+    int mask = table.length() - 1;
+    for (int i = index(key, mask); ; i = (i + 1) & mask) {
+      Slot<V> slot = table.get(i);
+      if (slot == null) {
+        return null;
+      } else if (slot.key == key && slot.value != null) {
+        return slot.value;
+      }
+    }
+  }
+
+  /**
+   * @param key query id to look up.
+   * @param supplier creates the value to associate with the key if there is none.
+   * @return The value associated with the key.
+   */
+  synchronized V computeIfAbsent(int key, Supplier<V> supplier) {
+    V value = get(key);
+    if (value == null) {
+      value = supplier.get();
+      if ((used + 1) * 2 > table.length()) {
+        rebuild();
+      }
+      insert(table, new Slot<>(key, value));
+      size++;
+      used++;
+    }
+    return value;
+  }
+
+  /**
+   * @param key query id to remove.
+   * @param value value the key must be associated with.
+   * @return Whether or not the key was associated with the value and was removed.
+   */
+  synchronized boolean remove(int key, V value) {
+    AtomicReferenceArray<Slot<V>> table = this.table;
+    int mask = table.length() - 1;
+    for (int i = index(key, mask); ; i = (i + 1) & mask) {
+      Slot<V> slot = table.get(i);
+      if (slot == null) {
+        return false;
+      } else if (slot.key == key && slot.value != null && slot.value == value) {
+        table.set(i, new Slot<>(key, null));
+        size--;
+        return true;
+      }
+    }
+  }
+
+  /** Removes all keys. */
+  synchronized void clear() {
+    table = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+    size = 0;
+    used = 0;
+  }
+
+  /** @return The number of keys. */
+  synchronized int size() {
+    return size;
+  }
+
+  /** Copies the remaining keys to a table sized for them, leaving the slots of removed ones out. */
+  private void rebuild() {
+    int length = INITIAL_CAPACITY;
+    while ((size + 1) * 2 > length) {
+      length *= 2;
+    }
+    AtomicReferenceArray<Slot<V>> rebuilt = new AtomicReferenceArray<>(length);
+    for (int i = 0; i < table.length(); i++) {
+      Slot<V> slot = table.get(i);
+      if (slot != null && slot.value != null) {
+        insert(rebuilt, slot);
+      }
+    }
+    table = rebuilt;
+    used = size;
+  }
+
+  private static <V> void insert(AtomicReferenceArray<Slot<V>> table, Slot<V> slot) {
+    int mask = table.length() - 1;
+    int i = index(slot.key, mask);
+    while (table.get(i) != null) {
+      i = (i + 1) & mask;
+    }
+    table.set(i, slot);
+  }
+
+  private static int index(int key, int mask) {
+    // query ids are string hash codes, spread them so linear probing doesn't cluster.
+    int h = key * 0x9E3779B9;
+    return (h ^ (h >>> 16)) & mask;
+  }
+
+  private static class Slot<V> {
+    private final int key;
+    private final V value;
+
+    Slot(int key, V value) {
+      this.key = key;
+      this.value = value;
+    }
+  }
+}
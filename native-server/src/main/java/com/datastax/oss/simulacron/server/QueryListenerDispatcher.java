@@ -0,0 +1,193 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.server;
+
+import com.datastax.oss.simulacron.common.cluster.QueryLog;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Invokes {@link com.datastax.oss.simulacron.server.listener.QueryListener}s on a dedicated thread
+ * instead of the event loop that received the request, so that slow listeners don't add to the
+ * latency of responses.
+ *
+ * <p>Events are handed over through a bounded ring buffer that any number of event loops write to
+ * and only the dispatching thread reads from. When it is full, events are dropped rather than
+ * blocking the event loop, see {@link #getDroppedCount()}. Listeners are still invoked in the order
+ * events were published, but possibly after the response was sent and even for a before listener.
+ */
+public class QueryListenerDispatcher implements AutoCloseable {
+
+  private static final Logger logger = LoggerFactory.getLogger(QueryListenerDispatcher.class);
+
+  /** How long the dispatching thread sleeps at most when there is nothing to dispatch. */
+  private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final int capacity;
+
+  private final AtomicReferenceArray<Event> events;
+
+  /** Index of the next slot producers claim. */
+  private final AtomicLong producerIndex = new AtomicLong();
+
+  /** Index of the next slot to dispatch, only written by the dispatching thread. */
+  private final AtomicLong consumerIndex = new AtomicLong();
+
+  private final LongAdder dropped = new LongAdder();
+
+  private final LongAdder dispatched = new LongAdder();
+
+  private volatile long lastLagNanos;
+
+  private volatile long maxLagNanos;
+
+  private volatile boolean idle;
+
+  private volatile boolean closed;
+
+  private final Thread thread;
+
+  /** @param capacity maximum number of events waiting to be dispatched. */
+  public QueryListenerDispatcher(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Capacity must be > 0, got " + capacity);
+    }
+    this.capacity = capacity;
+    this.events = new AtomicReferenceArray<>(capacity);
+    this.thread = new DefaultThreadFactory("simulacron-listener").newThread(this::run);
+    this.thread.start();
+  }
+
+  /**
+   * Publishes a request to the listeners of the node, its data center and its cluster. Never
+   * blocks, the event is dropped if too many are waiting.
+   *
+   * @param node node that received the request.
+   * @param queryLog the request.
+   * @param after whether the request was already handled.
+   * @return false if the event was dropped.
+   */
+  boolean publish(BoundNode node, QueryLog queryLog, boolean after) {
+    Event event = new Event(node, queryLog, after, System.nanoTime());
+    long index;
+    do {
+      index = producerIndex.get();
+      if (closed || index - consumerIndex.get() >= capacity) {
+        dropped.increment();
+        return false;
+      }
+    } while (!producerIndex.compareAndSet(index, index + 1));
+    events.lazySet(slot(index), event);
+    if (idle) {
+      LockSupport.unpark(thread);
+    }
+    return true;
+  }
+
+  private int slot(long index) {
+    return (int) (index % capacity);
+  }
+
+  private void run() {
+    while (!closed) {
+      long index = consumerIndex.get();
+      if (index == producerIndex.get()) {
+        idle = true;
+        // check again in case an event was published before we were marked idle.
+        if (index == producerIndex.get()) {
+          LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+        }
+        idle = false;
+        continue;
+      }
+      Event event = events.get(slot(index));
+      if (event == null) {
+        // slot was claimed but the event is not visible yet.
+        Thread.yield();
+        continue;
+      }
+      events.lazySet(slot(index), null);
+      consumerIndex.lazySet(index + 1);
+      dispatch(event);
+    }
+  }
+
+  private void dispatch(Event event) {
+    long lag = System.nanoTime() - event.publishedNanos;
+    lastLagNanos = lag;
+    if (lag > maxLagNanos) {
+      maxLagNanos = lag;
+    }
+    try {
+      event.node.dispatchQueryListeners(event.queryLog, event.after);
+    } catch (Throwable t) {
+      logger.error("Query listener failed for {}", event.queryLog, t);
+    }
+    dispatched.increment();
+  }
+
+  /** @return How many events were not dispatched because too many were already waiting. */
+  public long getDroppedCount() {
+    return dropped.sum();
+  }
+
+  /** @return How many events were dispatched to listeners. */
+  public long getDispatchedCount() {
+    return dispatched.sum();
+  }
+
+  /** @return How many events are waiting to be dispatched. */
+  public long getPendingCount() {
+    return Math.max(0, producerIndex.get() - consumerIndex.get());
+  }
+
+  /** @return Time between publishing and dispatching the last dispatched event. */
+  public long getLastLag(TimeUnit unit) {
+    return unit.convert(lastLagNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /** @return Longest time between publishing and dispatching an event. */
+  public long getMaxLag(TimeUnit unit) {
+    return unit.convert(maxLagNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /** Stops dispatching, events still waiting are discarded. */
+  @Override
+  public void close() {
+    closed = true;
+    LockSupport.unpark(thread);
+  }
+
+  private static class Event {
+    private final BoundNode node;
+    private final QueryLog queryLog;
+    private final boolean after;
+    private final long publishedNanos;
+
+    Event(BoundNode node, QueryLog queryLog, boolean after, long publishedNanos) {
+      this.node = node;
+      this.queryLog = queryLog;
+      this.after = after;
+      this.publishedNanos = publishedNanos;
+    }
+  }
+}
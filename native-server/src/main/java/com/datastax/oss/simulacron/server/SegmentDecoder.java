@@ -0,0 +1,92 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.server;
+
+import static com.datastax.oss.simulacron.server.SegmentEncoder.COMPRESSED_HEADER_LENGTH;
+import static com.datastax.oss.simulacron.server.SegmentEncoder.CRC24_LENGTH;
+import static com.datastax.oss.simulacron.server.SegmentEncoder.CRC32_LENGTH;
+import static com.datastax.oss.simulacron.server.SegmentEncoder.HEADER_LENGTH;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.CorruptedFrameException;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Unwraps protocol v5 segments, verifying their checksums, and passes their payload on to the
+ * {@link FrameDecoder}.
+ *
+ * <p>Since the payload of consecutive segments is a regular stream of frames, the frame decoder
+ * takes care of both self-contained segments holding several frames and frames split across
+ * segments.
+ */
+class SegmentDecoder extends ByteToMessageDecoder {
+
+  private static final int LENGTH_MASK = SegmentEncoder.MAX_PAYLOAD_LENGTH;
+
+  private final ByteBufCompressor compressor;
+
+  private final int headerLength;
+
+  private final CRC32 crc = new CRC32();
+
+  /** @param compressor compressor to decompress segments with, or null if not compressed. */
+  SegmentDecoder(ByteBufCompressor compressor) {
+    this.compressor = compressor;
+    this.headerLength = compressor == null ? HEADER_LENGTH : COMPRESSED_HEADER_LENGTH;
+  }
+
+  @Override
+  protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
+    if (in.readableBytes() < headerLength) {
+      return;
+    }
+    int index = in.readerIndex();
+    int headerDataLength = headerLength - CRC24_LENGTH;
+    long headerData =
+        compressor == null
+            ? in.getUnsignedMediumLE(index)
+            : in.getUnsignedIntLE(index) | ((long) in.getUnsignedByte(index + 4) << 32);
+    int expectedHeaderCrc = in.getUnsignedMediumLE(index + headerDataLength);
+    if (Crc.crc24(headerData, headerDataLength) != expectedHeaderCrc) {
+      throw new CorruptedFrameException("Segment header CRC mismatch");
+    }
+
+    int payloadLength = (int) (headerData & LENGTH_MASK);
+    int uncompressedLength = compressor == null ? 0 : (int) ((headerData >>> 17) & LENGTH_MASK);
+    if (in.readableBytes() < headerLength + payloadLength + CRC32_LENGTH) {
+      return;
+    }
+    in.skipBytes(headerLength);
+    ByteBuf payload = in.readRetainedSlice(payloadLength);
+    if (Crc.crc32(crc, payload) != in.readIntLE()) {
+      payload.release();
+      throw new CorruptedFrameException("Segment payload CRC mismatch");
+    }
+
+    if (uncompressedLength == 0) {
+      out.add(payload);
+    } else {
+      try {
+        out.add(compressor.decompressWithoutLength(payload, uncompressedLength));
+      } finally {
+        payload.release();
+      }
+    }
+  }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.server;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.concurrent.PromiseNotifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Wraps encoded frames into protocol v5 segments.
+ *
+ * <p>Frames written between two flushes are packed into as few self-contained segments as
+ * possible, so a burst of small responses costs one header and checksum rather than one per frame.
+ * Frames larger than a segment are split across non-self-contained segments.
+ *
+ * <p>This is installed at the head of the pipeline, after the flush consolidation, so it sees
+ * consolidated flushes.
+ */
+class SegmentEncoder extends ChannelOutboundHandlerAdapter {
+
+  /** Maximum length of a segment payload, the length field is 17 bits. */
+  static final int MAX_PAYLOAD_LENGTH = 128 * 1024 - 1;
+
+  static final int HEADER_LENGTH = 6;
+
+  static final int COMPRESSED_HEADER_LENGTH = 8;
+
+  static final int CRC24_LENGTH = 3;
+
+  static final int CRC32_LENGTH = 4;
+
+  private final ByteBufCompressor compressor;
+
+  private final CRC32 crc = new CRC32();
+
+  private final List<ByteBuf> pendingFrames = new ArrayList<>();
+
+  private final List<ChannelPromise> pendingPromises = new ArrayList<>();
+
+  private int pendingLength = 0;
+
+  /** @param compressor compressor to compress segments with, or null if not compressed. */
+  SegmentEncoder(ByteBufCompressor compressor) {
+    this.compressor = compressor;
+  }
+
+  @Override
+  public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+    if (!(msg instanceof ByteBuf)) {
+      ctx.write(msg, promise);
+      return;
+    }
+    ByteBuf frame = (ByteBuf) msg;
+    int length = frame.readableBytes();
+    if (length > MAX_PAYLOAD_LENGTH) {
+      writePending(ctx);
+      writeSplit(ctx, frame, promise);
+      return;
+    }
+    if (pendingLength + length > MAX_PAYLOAD_LENGTH) {
+      writePending(ctx);
+    }
+    pendingFrames.add(frame);
+    pendingPromises.add(promise);
+    pendingLength += length;
+  }
+
+  @Override
+  public void flush(ChannelHandlerContext ctx) {
+    writePending(ctx);
+    ctx.flush();
+  }
+
+  @Override
+  public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+    writePending(ctx);
+    super.close(ctx, promise);
+  }
+
+  @Override
+  public void handlerRemoved(ChannelHandlerContext ctx) {
+    for (ByteBuf frame : pendingFrames) {
+      frame.release();
+    }
+    pendingFrames.clear();
+    pendingPromises.clear();
+    pendingLength = 0;
+  }
+
+  private void writePending(ChannelHandlerContext ctx) {
+    if (pendingFrames.isEmpty()) {
+      return;
+    }
+    ByteBuf payload;
+    ChannelPromise promise;
+    if (pendingFrames.size() == 1) {
+      payload = pendingFrames.get(0);
+      promise = pendingPromises.get(0);
+    } else {
+      CompositeByteBuf composite = ctx.alloc().compositeBuffer(pendingFrames.size());
+      composite.addComponents(true, pendingFrames);
+      payload = composite;
+      promise = ctx.newPromise();
+      List<ChannelPromise> toNotify = new ArrayList<>(pendingPromises.size());
+      for (ChannelPromise pending : pendingPromises) {
+        if (!pending.isVoid()) {
+          toNotify.add(pending);
+        }
+      }
+      if (!toNotify.isEmpty()) {
+        promise.addListener(
+            new PromiseNotifier<Void, ChannelFuture>(toNotify.toArray(new ChannelPromise[0])));
+      }
+    }
+    pendingFrames.clear();
+    pendingPromises.clear();
+    pendingLength = 0;
+    ctx.write(encode(ctx.alloc(), payload, true), promise);
+  }
+
+  private void writeSplit(ChannelHandlerContext ctx, ByteBuf frame, ChannelPromise promise) {
+    try {
+      while (frame.readableBytes() > MAX_PAYLOAD_LENGTH) {
+        ByteBuf slice = frame.readRetainedSlice(MAX_PAYLOAD_LENGTH);
+        ctx.write(encode(ctx.alloc(), slice, false), ctx.voidPromise());
+      }
+      ctx.write(encode(ctx.alloc(), frame.retain(), false), promise);
+    } finally {
+      frame.release();
+    }
+  }
+
+  /**
+   * Encodes a segment, releasing the given payload.
+   *
+   * @param alloc allocator for the header and trailer.
+   * @param payload the segment payload, at most {@link #MAX_PAYLOAD_LENGTH} bytes.
+   * @param selfContained whether the payload only contains complete frames.
+   * @return the encoded segment.
+   */
+  ByteBuf encode(ByteBufAllocator alloc, ByteBuf payload, boolean selfContained) {
+    int uncompressedLength = payload.readableBytes();
+    int headerLength = HEADER_LENGTH;
+    long headerData;
+    if (compressor == null) {
+      headerData = uncompressedLength;
+      if (selfContained) {
+        headerData |= 1L << 17;
+      }
+    } else {
+      headerLength = COMPRESSED_HEADER_LENGTH;
+      ByteBuf compressed = compressor.compressWithoutLength(payload.duplicate());
+      if (compressed.readableBytes() < uncompressedLength) {
+        payload.release();
+        payload = compressed;
+        headerData = compressed.readableBytes() | ((long) uncompressedLength << 17);
+      } else {
+        // not worth it, an uncompressed length of 0 tells the peer the payload is stored as is.
+        compressed.release();
+        headerData = uncompressedLength;
+      }
+      if (selfContained) {
+        headerData |= 1L << 34;
+      }
+    }
+
+    int headerDataLength = headerLength - CRC24_LENGTH;
+    ByteBuf header = alloc.ioBuffer(headerLength);
+    for (int i = 0; i < headerDataLength; i++) {
+      header.writeByte((int) (headerData >>> (8 * i)));
+    }
+    header.writeMediumLE(Crc.crc24(headerData, headerDataLength));
+
+    ByteBuf trailer = alloc.ioBuffer(CRC32_LENGTH);
+    trailer.writeIntLE(Crc.crc32(crc, payload));
+
+    return alloc.compositeBuffer(3).addComponents(true, header, payload, trailer);
+  }
+}
@@ -17,6 +17,9 @@ package com.datastax.oss.simulacron.server;
 
 import static com.datastax.oss.simulacron.server.CompletableFutures.getUninterruptibly;
 
+import com.datastax.oss.simulacron.common.cluster.ActivityLog;
+import com.datastax.oss.simulacron.common.cluster.ActivityLogSampling;
+import com.datastax.oss.simulacron.common.cluster.ActivityLogSpill;
 import com.datastax.oss.simulacron.common.cluster.ClusterSpec;
 import com.datastax.oss.simulacron.common.cluster.DataCenterSpec;
 import com.datastax.oss.simulacron.common.cluster.NodeSpec;
@@ -28,20 +31,19 @@ import com.datastax.oss.simulacron.server.token.SplitTokenAssigner;
 import com.datastax.oss.simulacron.server.token.TokenAssigner;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.Channel;
-import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.ServerChannel;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.flush.FlushConsolidationHandler;
 import io.netty.util.AttributeKey;
 import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
 import io.netty.util.Timer;
 import io.netty.util.concurrent.DefaultThreadFactory;
 import java.net.SocketAddress;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -49,6 +51,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
@@ -98,6 +101,22 @@ public final class Server implements AutoCloseable {
   /** Whether or not a custom timer was used. We don't want to close ones users pass in. */
   private final boolean customTimer;
 
+  /** How actions with a delay are scheduled. */
+  final ActionScheduling actionScheduling;
+
+  /** Dispatches requests to query listeners off the event loop, or null to invoke them inline. */
+  final QueryListenerDispatcher listenerDispatcher;
+
+  /** Number of listening channels bound with SO_REUSEPORT for each node, 1 if it isn't used. */
+  private final int listenersPerNode;
+
+  /**
+   * The transport of the event loop groups created for clusters or data centers isolated with
+   * {@link ServerOptions.Builder#withEventLoopIsolation}, null if the event loop group provided to
+   * the builder isn't of a known transport.
+   */
+  private final Transport transport;
+
   /** Counter used to assign incrementing ids to clusters. */
   private final AtomicLong clusterCounter = new AtomicLong();
 
@@ -107,6 +126,15 @@ public final class Server implements AutoCloseable {
   /** Whether or not activity logging is enabled. */
   private final boolean activityLogging;
 
+  /** Maximum number of entries retained by each node's activity log. */
+  private final int activityLogCapacity;
+
+  /** What a full activity log does with new entries. */
+  private final ActivityLog.EvictionPolicy activityLogEvictionPolicy;
+
+  /** Where activity logs are spilled to disk, or null to keep them in memory. */
+  private final ActivityLogSpill activityLogSpill;
+
   final EventLoopGroup eventLoopGroup;
 
   /** Whether or not a custom event loop was used. We don't want to close ones users pass in. */
@@ -124,6 +152,42 @@ public final class Server implements AutoCloseable {
       StubStore stubStore,
       boolean activityLogging,
       ServerBootstrap serverBootstrap) {
+    this(
+        addressResolver,
+        eventLoopGroup,
+        customEventLoop,
+        timer,
+        customTimer,
+        bindTimeoutInNanos,
+        stubStore,
+        activityLogging,
+        ActivityLog.UNBOUNDED,
+        ActivityLog.EvictionPolicy.DROP_OLDEST,
+        null,
+        ActionScheduling.EVENT_LOOP,
+        null,
+        1,
+        null,
+        serverBootstrap);
+  }
+
+  Server(
+      AddressResolver addressResolver,
+      EventLoopGroup eventLoopGroup,
+      boolean customEventLoop,
+      Timer timer,
+      boolean customTimer,
+      long bindTimeoutInNanos,
+      StubStore stubStore,
+      boolean activityLogging,
+      int activityLogCapacity,
+      ActivityLog.EvictionPolicy activityLogEvictionPolicy,
+      ActivityLogSpill activityLogSpill,
+      ActionScheduling actionScheduling,
+      QueryListenerDispatcher listenerDispatcher,
+      int listenersPerNode,
+      Transport transport,
+      ServerBootstrap serverBootstrap) {
     // custom constructor onyl made to help facilitate testing with a custom bootstrap.
     this.addressResolver = addressResolver;
     this.timer = timer;
@@ -134,6 +198,13 @@ public final class Server implements AutoCloseable {
     this.bindTimeoutInNanos = bindTimeoutInNanos;
     this.stubStore = stubStore;
     this.activityLogging = activityLogging;
+    this.activityLogCapacity = activityLogCapacity;
+    this.activityLogEvictionPolicy = activityLogEvictionPolicy;
+    this.activityLogSpill = activityLogSpill;
+    this.actionScheduling = actionScheduling;
+    this.listenerDispatcher = listenerDispatcher;
+    this.listenersPerNode = listenersPerNode;
+    this.transport = transport;
   }
 
   private Server(
@@ -145,7 +216,13 @@ public final class Server implements AutoCloseable {
       boolean customTimer,
       long bindTimeoutInNanos,
       StubStore stubStore,
-      boolean activityLogging) {
+      boolean activityLogging,
+      int activityLogCapacity,
+      ActivityLog.EvictionPolicy activityLogEvictionPolicy,
+      ActivityLogSpill activityLogSpill,
+      ActionScheduling actionScheduling,
+      QueryListenerDispatcher listenerDispatcher,
+      int listenersPerNode) {
     this(
         addressResolver,
         eventLoopGroup,
@@ -155,10 +232,37 @@ public final class Server implements AutoCloseable {
         bindTimeoutInNanos,
         stubStore,
         activityLogging,
+        activityLogCapacity,
+        activityLogEvictionPolicy,
+        activityLogSpill,
+        actionScheduling,
+        listenerDispatcher,
+        listenersPerNode,
+        Transport.of(channelClass),
+        newBootstrap(eventLoopGroup, channelClass, listenersPerNode > 1));
+  }
+
+  private static ServerBootstrap newBootstrap(
+      EventLoopGroup eventLoopGroup,
+      Class<? extends ServerChannel> channelClass,
+      boolean reusePort) {
+    ServerBootstrap bootstrap =
         new ServerBootstrap()
             .group(eventLoopGroup)
             .channel(channelClass)
-            .childHandler(new Initializer()));
+            .childHandler(new Initializer());
+    if (reusePort) {
+      bootstrap.option(Transport.of(channelClass).reusePortOption(), true);
+    }
+    return bootstrap;
+  }
+
+  /**
+   * @return The dispatcher invoking query listeners off the event loop, empty if they are invoked
+   *     on the event loop.
+   */
+  public Optional<QueryListenerDispatcher> getQueryListenerDispatcher() {
+    return Optional.ofNullable(listenerDispatcher);
   }
 
   /** @return Whether or not this has been closed. */
@@ -177,11 +281,16 @@ public final class Server implements AutoCloseable {
    * Cluster
    *
    * @param cluster Cluster to wrap in a bound cluster.
+   * @param serverOptions options the cluster is registered with.
    */
   @SuppressWarnings("unchecked")
-  private BoundCluster boundCluster(ClusterSpec cluster) {
+  private BoundCluster boundCluster(ClusterSpec cluster, ServerOptions serverOptions) {
     long clusterId = cluster.getId() == null ? clusterCounter.getAndIncrement() : cluster.getId();
-    return new BoundCluster(cluster, clusterId, this);
+    int cacheCapacity =
+        serverOptions.getPreparedStatementCacheCapacity() != null
+            ? serverOptions.getPreparedStatementCacheCapacity()
+            : PreparedStatementCache.DEFAULT_CAPACITY;
+    return new BoundCluster(cluster, clusterId, this, cacheCapacity);
   }
 
   /** synchronous version of {@link #registerAsync(ClusterSpec.Builder)} */
@@ -229,7 +338,11 @@ public final class Server implements AutoCloseable {
     if (isClosed()) {
       return failByClose();
     }
-    BoundCluster c = boundCluster(cluster);
+    if (serverOptions.getEventLoopIsolation() != ServerOptions.EventLoopIsolation.SHARED
+        && transport == null) {
+      return failByIsolation();
+    }
+    BoundCluster c = boundCluster(cluster, serverOptions);
 
     List<CompletableFuture<BoundNode>> bindFutures = new ArrayList<>();
 
@@ -243,8 +356,19 @@ public final class Server implements AutoCloseable {
             ? new SplitTokenAssigner(cluster)
             : new RandomTokenAssigner(cluster.getNumberOfTokens());
 
+    ServerBootstrap clusterBootstrap = null;
+    if (serverOptions.getEventLoopIsolation() == ServerOptions.EventLoopIsolation.CLUSTER) {
+      clusterBootstrap = isolatedBootstrap(c, "simulacron-io-cluster-" + c.getId(), serverOptions);
+    }
     for (DataCenterSpec dataCenter : cluster.getDataCenters()) {
       BoundDataCenter dc = new BoundDataCenter(dataCenter, c);
+      if (serverOptions.getEventLoopIsolation() == ServerOptions.EventLoopIsolation.DATA_CENTER) {
+        dc.bootstrap =
+            isolatedBootstrap(
+                c, "simulacron-io-cluster-" + c.getId() + "-dc-" + dc.getId(), serverOptions);
+      } else {
+        dc.bootstrap = clusterBootstrap;
+      }
 
       for (NodeSpec node : dataCenter.getNodes()) {
         String tokenStr = tokenAssignment.getTokens(node);
@@ -252,61 +376,87 @@ public final class Server implements AutoCloseable {
         SocketAddress address =
             node.getAddress() != null ? node.getAddress() : addressResolver.get();
         bindFutures.add(
-            bindInternal(node, c, dc, tokenStr, address, activityLogging).toCompletableFuture());
+            bindInternal(node, c, dc, tokenStr, address, activityLogging, serverOptions)
+                .toCompletableFuture());
       }
     }
 
     clusters.put(c.getId(), c);
 
-    List<BoundNode> nodes = new ArrayList<>(bindFutures.size());
-    Throwable exception = null;
-    boolean timedOut = false;
-    // Evaluate each future, if any fail capture the exception and record all successfully
-    // bound nodes.
-    long start = System.nanoTime();
+    // Fail as soon as any node fails to bind or binding takes longer than the bind timeout. Timing
+    // out is scheduled on the timer so the caller's thread is never blocked.
+    CompletableFuture<Void> bound = new CompletableFuture<>();
+    Timeout bindTimeout =
+        timer.newTimeout(
+            t ->
+                bound.completeExceptionally(
+                    new TimeoutException(
+                        "Timed out after "
+                            + TimeUnit.MILLISECONDS.convert(
+                                bindTimeoutInNanos, TimeUnit.NANOSECONDS)
+                            + "ms binding nodes of cluster "
+                            + c.getId())),
+            bindTimeoutInNanos,
+            TimeUnit.NANOSECONDS);
     for (CompletableFuture<BoundNode> f : bindFutures) {
-      try {
-        if (timedOut) {
-          BoundNode node = f.getNow(null);
-          if (node != null) {
-            nodes.add(node);
-          }
-        } else {
-          nodes.add(f.get(bindTimeoutInNanos, TimeUnit.NANOSECONDS));
-        }
-        if (System.nanoTime() - start > bindTimeoutInNanos) {
-          timedOut = true;
-        }
-      } catch (TimeoutException te) {
-        timedOut = true;
-        exception = te;
-      } catch (Exception e) {
-        exception = e.getCause();
-      }
+      f.whenComplete(
+          (node, ex) -> {
+            if (ex != null) {
+              bound.completeExceptionally(
+                  ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+            }
+          });
     }
+    CompletableFuture.allOf(bindFutures.toArray(new CompletableFuture[] {}))
+        .thenRun(() -> bound.complete(null));
 
-    // If there was a failure close all bound nodes.
-    if (exception != null) {
-      final Throwable e = exception;
-      // Close each node
-      List<CompletableFuture<BoundNode>> futures =
-          nodes.stream().map(this::close).collect(Collectors.toList());
+    CompletableFuture<BoundCluster> future = new CompletableFuture<>();
+    bound.whenComplete(
+        (v, ex) -> {
+          bindTimeout.cancel();
+          if (ex == null) {
+            future.complete(c);
+          } else {
+            rollback(c, bindFutures)
+                .whenComplete(
+                    (__, rex) -> {
+                      // remove cluster from registry since it failed to completely register.
+                      clusters.remove(c.getId());
+                      shutdownEventLoops(c)
+                          .whenComplete((___, sex) -> future.completeExceptionally(ex));
+                    });
+          }
+        });
+    return future;
+  }
 
-      CompletableFuture<BoundCluster> future = new CompletableFuture<>();
-      // On completion of unbinding all nodes, fail the returned future.
-      CompletableFuture.allOf(futures.toArray(new CompletableFuture[] {}))
-          .handle(
-              (v, ex) -> {
-                // remove cluster from registry since it failed to completely register.
-                clusters.remove(c.getId());
-                future.completeExceptionally(e);
-                return v;
-              });
-      return future;
-    } else {
-      return CompletableFuture.allOf(bindFutures.toArray(new CompletableFuture[] {}))
-          .thenApply(__ -> c);
+  /**
+   * Closes the nodes of a cluster that failed to register. Nodes that are still binding are closed
+   * whenever they complete binding.
+   *
+   * @param cluster cluster that failed to register.
+   * @param bindFutures the bind futures of each node in the cluster.
+   * @return future that completes when all nodes that were already bound are closed.
+   */
+  @SuppressWarnings("unchecked")
+  private CompletableFuture<Void> rollback(
+      BoundCluster cluster, List<CompletableFuture<BoundNode>> bindFutures) {
+    List<CompletableFuture<BoundNode>> closeFutures = new ArrayList<>();
+    for (CompletableFuture<BoundNode> f : bindFutures) {
+      if (!f.isDone()) {
+        f.thenAccept(
+            node -> {
+              logger.debug(
+                  "Node {} of cluster {} bound after registration failed, closing it.",
+                  node.resolveId(),
+                  cluster.getId());
+              close(node);
+            });
+      } else if (!f.isCompletedExceptionally()) {
+        closeFutures.add(close(f.join()));
+      }
     }
+    return CompletableFuture.allOf(closeFutures.toArray(new CompletableFuture[] {}));
   }
 
   /** synchronous version of {@link #unregisterAsync(BoundNode)} */
@@ -386,11 +536,16 @@ public final class Server implements AutoCloseable {
         CompletableFuture.allOf(closeFutures.toArray(new CompletableFuture[] {}))
             .whenComplete(
                 (__, ex) -> {
-                  if (ex != null) {
-                    future.completeExceptionally(ex);
-                  } else {
-                    future.complete(foundCluster);
-                  }
+                  foundCluster.getDataCenters().forEach(dc -> dc.getTrafficShaper().release());
+                  shutdownEventLoops(foundCluster)
+                      .whenComplete(
+                          (___, sex) -> {
+                            if (ex != null) {
+                              future.completeExceptionally(ex);
+                            } else {
+                              future.complete(foundCluster);
+                            }
+                          });
                 });
       } else {
         future.completeExceptionally(new IllegalArgumentException("ClusterSpec not found."));
@@ -471,11 +626,21 @@ public final class Server implements AutoCloseable {
           new IllegalArgumentException("Node belongs to a Cluster, should be standalone."));
       return future;
     }
+    if (serverOptions.getEventLoopIsolation() != ServerOptions.EventLoopIsolation.SHARED
+        && transport == null) {
+      return failByIsolation();
+    }
     // Wrap node in dummy cluster
     Long clusterId = clusterCounter.getAndIncrement();
     BoundCluster dummyCluster =
-        boundCluster(ClusterSpec.builder().withId(clusterId).withName("dummy").build());
+        boundCluster(
+            ClusterSpec.builder().withId(clusterId).withName("dummy").build(), serverOptions);
     BoundDataCenter dummyDataCenter = new BoundDataCenter(dummyCluster);
+    if (serverOptions.getEventLoopIsolation() != ServerOptions.EventLoopIsolation.SHARED) {
+      // the node is alone in its cluster and data center, either isolation gives it its own group.
+      dummyDataCenter.bootstrap =
+          isolatedBootstrap(dummyCluster, "simulacron-io-cluster-" + clusterId, serverOptions);
+    }
 
     clusters.put(clusterId, dummyCluster);
 
@@ -485,13 +650,27 @@ public final class Server implements AutoCloseable {
             : this.activityLogging;
     // Use node's address if set, otherwise generate a new one.
     SocketAddress address = node.getAddress() != null ? node.getAddress() : addressResolver.get();
-    return bindInternal(
-        node,
-        dummyCluster,
-        dummyDataCenter,
-        node.resolvePeerInfo("tokens", String.class).orElse("0"),
-        address,
-        activityLogging);
+    CompletableFuture<BoundNode> future = new CompletableFuture<>();
+    bindInternal(
+            node,
+            dummyCluster,
+            dummyDataCenter,
+            node.resolvePeerInfo("tokens", String.class).orElse("0"),
+            address,
+            activityLogging,
+            serverOptions)
+        .whenComplete(
+            (boundNode, ex) -> {
+              if (ex == null) {
+                future.complete(boundNode);
+              } else {
+                // remove cluster from registry since it failed to completely register.
+                clusters.remove(clusterId);
+                shutdownEventLoops(dummyCluster)
+                    .whenComplete((__, sex) -> future.completeExceptionally(ex));
+              }
+            });
+    return future;
   }
 
   /**
@@ -513,41 +692,178 @@ public final class Server implements AutoCloseable {
       BoundDataCenter parent,
       String token,
       SocketAddress address,
-      boolean activityLogging) {
+      boolean activityLogging,
+      ServerOptions serverOptions) {
+    int activityLogCapacity =
+        serverOptions.getActivityLogCapacity() != null
+            ? serverOptions.getActivityLogCapacity()
+            : this.activityLogCapacity;
+    ActivityLog.EvictionPolicy activityLogEvictionPolicy =
+        serverOptions.getActivityLogEvictionPolicy() != null
+            ? serverOptions.getActivityLogEvictionPolicy()
+            : this.activityLogEvictionPolicy;
     // derive a token for this node. This is done here as the ordering of nodes under a
     // data center is changed when it is bound.
     Map<String, Object> newPeerInfo = new HashMap<>(refNode.getPeerInfo());
     newPeerInfo.put("tokens", token);
+    CompletableFuture<ActivityLog> activityLogFuture =
+        newActivityLog(
+            refNode,
+            cluster,
+            parent,
+            activityLogging,
+            activityLogCapacity,
+            activityLogEvictionPolicy,
+            serverOptions.getActivityLogSampling());
     CompletableFuture<BoundNode> f = new CompletableFuture<>();
-    ChannelFuture bindFuture = this.serverBootstrap.bind(address);
-    bindFuture.addListener(
-        (ChannelFutureListener)
-            channelFuture -> {
-              if (channelFuture.isSuccess()) {
-                BoundNode node =
-                    new BoundNode(
-                        address,
-                        refNode,
-                        newPeerInfo,
-                        cluster,
-                        parent,
-                        this,
-                        timer,
-                        channelFuture.channel(),
-                        activityLogging);
-                logger.info("Bound Node {} to {}", node.resolveId(), channelFuture.channel());
-                channelFuture.channel().attr(HANDLER).set(node);
-                f.complete(node);
-              } else {
+    CompletableFuture<List<Channel>> listeners = bindListeners(parent.getBootstrap(), address);
+    CompletableFuture.allOf(listeners, activityLogFuture)
+        .whenComplete(
+            (v, ex) -> {
+              if (listeners.isCompletedExceptionally()) {
+                activityLogFuture.thenAccept(ActivityLog::close);
                 // If failed, propagate it.
                 f.completeExceptionally(
-                    new BindNodeException(refNode, address, channelFuture.cause()));
+                    new BindNodeException(refNode, address, failure(listeners)));
+                return;
+              }
+              List<Channel> channels = listeners.join();
+              if (activityLogFuture.isCompletedExceptionally()) {
+                channels.forEach(Channel::close);
+                f.completeExceptionally(failure(activityLogFuture));
+                return;
               }
+              BoundNode node =
+                  new BoundNode(
+                      address,
+                      refNode,
+                      newPeerInfo,
+                      cluster,
+                      parent,
+                      this,
+                      timer,
+                      channels.get(0),
+                      activityLogging,
+                      activityLogFuture.join());
+              node.reusePortChannels.set(channels.subList(1, channels.size()));
+              logger.info("Bound Node {} to {}", node.resolveId(), channels);
+              channels.forEach(c -> c.attr(HANDLER).set(node));
+              f.complete(node);
             });
 
     return f;
   }
 
+  /**
+   * Creates an event loop group for the nodes of a cluster or data center, which is shut down when
+   * the cluster is unregistered.
+   *
+   * @param cluster cluster owning the event loop group.
+   * @param name name prefix of the event loop threads.
+   * @param serverOptions options giving the number of threads.
+   * @return bootstrap binding listening channels on the event loop group.
+   */
+  private ServerBootstrap isolatedBootstrap(
+      BoundCluster cluster, String name, ServerOptions serverOptions) {
+    EventLoopGroup group =
+        transport.newEventLoopGroup(
+            serverOptions.getEventLoopThreads(), new DefaultThreadFactory(name));
+    cluster.eventLoopGroups.add(group);
+    logger.debug("Created {} event loop group {} for cluster {}", transport, name, cluster.getId());
+    return newBootstrap(group, transport.serverChannelClass(), listenersPerNode > 1);
+  }
+
+  private <T> CompletionStage<T> failByIsolation() {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    future.completeExceptionally(
+        new IllegalStateException(
+            "Event loop isolation needs the event loop group of the server to be of a known"
+                + " transport"));
+    return future;
+  }
+
+  /**
+   * Binds the listening channels of a node, one unless {@link
+   * Builder#withReusePortListeners(int)} was used.
+   *
+   * @param bootstrap bootstrap of the event loop group of the node.
+   * @param address address to bind to.
+   * @return future that completes with the bound channels. If any of them fails to bind, the others
+   *     are closed and the future fails.
+   */
+  CompletableFuture<List<Channel>> bindListeners(ServerBootstrap bootstrap, SocketAddress address) {
+    List<CompletableFuture<Channel>> bindFutures = new ArrayList<>(listenersPerNode);
+    for (int i = 0; i < listenersPerNode; i++) {
+      CompletableFuture<Channel> bindFuture = new CompletableFuture<>();
+      bootstrap
+          .bind(address)
+          .addListener(
+              (ChannelFutureListener)
+                  channelFuture -> {
+                    if (channelFuture.isSuccess()) {
+                      bindFuture.complete(channelFuture.channel());
+                    } else {
+                      bindFuture.completeExceptionally(channelFuture.cause());
+                    }
+                  });
+      bindFutures.add(bindFuture);
+    }
+    CompletableFuture<List<Channel>> f = new CompletableFuture<>();
+    CompletableFuture.allOf(bindFutures.toArray(new CompletableFuture[] {}))
+        .whenComplete(
+            (v, ex) -> {
+              List<Channel> channels = new ArrayList<>(bindFutures.size());
+              Throwable cause = null;
+              for (CompletableFuture<Channel> bindFuture : bindFutures) {
+                try {
+                  channels.add(bindFuture.join());
+                } catch (CompletionException e) {
+                  cause = e.getCause();
+                }
+              }
+              if (cause == null) {
+                f.complete(channels);
+              } else {
+                channels.forEach(Channel::close);
+                f.completeExceptionally(cause);
+              }
+            });
+    return f;
+  }
+
+  private static Throwable failure(CompletableFuture<?> future) {
+    try {
+      future.join();
+      return null;
+    } catch (CompletionException e) {
+      return e.getCause();
+    }
+  }
+
+  /**
+   * Creates the activity log of a node. A spilling log is only created if activity logging is
+   * enabled, its files are created in the background since this is called from event loops.
+   */
+  private CompletableFuture<ActivityLog> newActivityLog(
+      NodeSpec refNode,
+      BoundCluster cluster,
+      BoundDataCenter parent,
+      boolean activityLogging,
+      int capacity,
+      ActivityLog.EvictionPolicy evictionPolicy,
+      ActivityLogSampling sampling) {
+    if (activityLogSpill == null || !activityLogging) {
+      return CompletableFuture.completedFuture(new ActivityLog(capacity, evictionPolicy, sampling));
+    }
+    // each node gets its own directory so their segments can be read back individually.
+    ActivityLogSpill spill =
+        activityLogSpill
+            .resolve("cluster-" + cluster.getId())
+            .resolve("dc-" + parent.getId())
+            .resolve("node-" + refNode.getId());
+    return ActivityLog.spillingAsync(spill, sampling).toCompletableFuture();
+  }
+
   private CompletableFuture<BoundNode> close(BoundNode node) {
     logger.debug("Closing Node {} on {}.", node.resolveId(), node.channel);
     return node.stopAsync()
@@ -556,28 +872,13 @@ public final class Server implements AutoCloseable {
               logger.debug(
                   "Releasing {} back to address resolver so it may be reused.", node.getAddress());
               addressResolver.release(node.getAddress());
+              node.getTrafficShaper().release();
+              node.activityLog.close();
               return node;
             })
         .toCompletableFuture();
   }
 
-  /**
-   * Wrapper method for using netty-transport-native-epoll if available, addresses classes directly
-   * without importing so if library isn't in environment this doesn't create any problems.
-   *
-   * @return Epoll-based event loop group is epoll is available, otherwise empty.
-   */
-  private static Optional<EventLoopGroup> epollEventLoopGroup(ThreadFactory threadFactory) {
-    if (io.netty.channel.epoll.Epoll.isAvailable()) {
-      return Optional.of(new io.netty.channel.epoll.EpollEventLoopGroup(0, threadFactory));
-    }
-    return Optional.empty();
-  }
-
-  private static Class<? extends ServerChannel> epollClass() {
-    return io.netty.channel.epoll.EpollServerSocketChannel.class;
-  }
-
   /** @return a {@link Builder} for configuring and creating {@link Server} instances. */
   public static Builder builder() {
     return new Builder();
@@ -601,28 +902,16 @@ public final class Server implements AutoCloseable {
               return this.unregisterAllAsync()
                   .thenCompose(
                       i -> {
+                        if (listenerDispatcher != null) {
+                          listenerDispatcher.close();
+                        }
                         // If timer was created for Server, stop it.
                         if (!customTimer) {
                           timer.stop();
                         }
                         // If event loop was created for Server, shut it down.
                         if (!customEventLoop) {
-                          // Immediate shutdown should be appropriate since we unregister first so
-                          // nothing should be happening on event loop.
-                          Future<?> future =
-                              eventLoopGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS);
-                          // adapt future to completable future by calling get on common pool.
-                          CompletableFuture<Void> f =
-                              CompletableFuture.supplyAsync(
-                                  () -> {
-                                    try {
-                                      future.get();
-                                      return null;
-                                    } catch (InterruptedException | ExecutionException e) {
-                                      throw new RuntimeException(e);
-                                    }
-                                  });
-                          return f;
+                          return shutdown(eventLoopGroup);
                         } else {
                           CompletableFuture<Void> future = new CompletableFuture<>();
                           future.complete(null);
@@ -634,6 +923,33 @@ public final class Server implements AutoCloseable {
     }
   }
 
+  /**
+   * Shuts down the event loop groups created for a cluster or its data centers.
+   *
+   * @param cluster unregistered cluster.
+   * @return future that completes when all of them are terminated.
+   */
+  private static CompletableFuture<Void> shutdownEventLoops(BoundCluster cluster) {
+    return CompletableFuture.allOf(
+        cluster.eventLoopGroups.stream().map(Server::shutdown).toArray(CompletableFuture[]::new));
+  }
+
+  private static CompletableFuture<Void> shutdown(EventLoopGroup eventLoopGroup) {
+    // Immediate shutdown should be appropriate since we unregister first so nothing should be
+    // happening on event loop.
+    Future<?> future = eventLoopGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+    // adapt future to completable future by calling get on common pool.
+    return CompletableFuture.supplyAsync(
+        () -> {
+          try {
+            future.get();
+            return null;
+          } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
+          }
+        });
+  }
+
   /**
    * @inheritDoc
    *     <p>Also see {@link #closeAsync()}
@@ -653,10 +969,25 @@ public final class Server implements AutoCloseable {
 
     private Timer timer;
 
+    private ActionScheduling actionScheduling = ActionScheduling.EVENT_LOOP;
+
+    private int asyncQueryListenerCapacity = 0;
+
+    private int reusePortListeners = 1;
+
+    private Transport transport = Transport.AUTO;
+
     private StubStore stubStore;
 
     private boolean activityLogging = true;
 
+    private int activityLogCapacity = ActivityLog.UNBOUNDED;
+
+    private ActivityLog.EvictionPolicy activityLogEvictionPolicy =
+        ActivityLog.EvictionPolicy.DROP_OLDEST;
+
+    private ActivityLogSpill activityLogSpill;
+
     private boolean multipleNodesPerIp = false;
 
     private EventLoopGroup eventLoopGroup;
@@ -711,8 +1042,9 @@ public final class Server implements AutoCloseable {
     }
 
     /**
-     * Sets the timer to use for scheduling actions. If not set, a {@link HashedWheelTimer} is
-     * created with a naming format of 'simulacron-timer-X-Y'.
+     * Sets the timer to use for scheduling actions when using {@link ActionScheduling#TIMER}, and
+     * for bind timeouts. If not set, a {@link HashedWheelTimer} is created with a naming format of
+     * 'simulacron-timer-X-Y'.
      *
      * @param timer timer to use.
      * @return This builder.
@@ -722,6 +1054,18 @@ public final class Server implements AutoCloseable {
       return this;
     }
 
+    /**
+     * Sets how actions primed with a delay are scheduled. By default they are scheduled on the
+     * event loop of the connection they respond to ({@link ActionScheduling#EVENT_LOOP}).
+     *
+     * @param actionScheduling scheduling mode to use.
+     * @return This builder.
+     */
+    public Builder withActionScheduling(ActionScheduling actionScheduling) {
+      this.actionScheduling = actionScheduling;
+      return this;
+    }
+
     /**
      * Sets the {@link StubStore} to be used by this server. By default creates a new one with
      * built-in stubs for handling metadata requests for system.local and peers ({@link
@@ -746,6 +1090,95 @@ public final class Server implements AutoCloseable {
       return this;
     }
 
+    /**
+     * Sets the maximum number of entries each node's activity log retains. By default the log is
+     * unbounded, with a capacity older or newer entries are dropped depending on {@link
+     * #withActivityLogEvictionPolicy(ActivityLog.EvictionPolicy)}.
+     *
+     * @param capacity maximum number of entries, or {@link ActivityLog#UNBOUNDED}.
+     * @return This builder.
+     */
+    public Builder withActivityLogCapacity(int capacity) {
+      if (capacity < 0) {
+        throw new IllegalArgumentException("Activity log capacity must be >= 0, got " + capacity);
+      }
+      this.activityLogCapacity = capacity;
+      return this;
+    }
+
+    /**
+     * Sets what a full activity log does with new entries. By default the oldest entry is dropped.
+     *
+     * @param evictionPolicy eviction policy to use.
+     * @return This builder.
+     */
+    public Builder withActivityLogEvictionPolicy(ActivityLog.EvictionPolicy evictionPolicy) {
+      this.activityLogEvictionPolicy = evictionPolicy;
+      return this;
+    }
+
+    /**
+     * Makes each node's activity log append its entries to memory-mapped files instead of keeping
+     * them in memory, which allows recording every request of runs lasting hours. Each node stores
+     * its segments under {@code cluster-<id>/dc-<id>/node-<id>} in the given directory, any segment
+     * already there is deleted when the node is bound. The capacity and eviction policy of the log
+     * do not apply when spilling.
+     *
+     * @param directory directory to store segments in.
+     * @param segmentSize size of each segment file in bytes.
+     * @return This builder.
+     */
+    public Builder withActivityLogSpill(Path directory, int segmentSize) {
+      this.activityLogSpill = new ActivityLogSpill(directory, segmentSize);
+      return this;
+    }
+
+    /**
+     * Invokes query listeners on a dedicated thread instead of the event loop that received the
+     * request. Requests are queued for the listeners up to the given capacity, past which they are
+     * dropped instead of slowing down the event loop.
+     *
+     * @param capacity maximum number of requests waiting to be dispatched to listeners.
+     * @return This builder.
+     */
+    public Builder withAsyncQueryListeners(int capacity) {
+      if (capacity <= 0) {
+        throw new IllegalArgumentException("Capacity must be > 0, got " + capacity);
+      }
+      this.asyncQueryListenerCapacity = capacity;
+      return this;
+    }
+
+    /**
+     * Selects the transport of the event loops the server creates, by default the first available
+     * of io_uring, epoll and NIO. If the given transport isn't available the next one in that chain
+     * is used. Has no effect if an event loop group is provided with {@link
+     * #withEventLoopGroup(EventLoopGroup, Class)}.
+     *
+     * @param transport transport to use.
+     * @return This builder.
+     */
+    public Builder withTransport(Transport transport) {
+      this.transport = transport;
+      return this;
+    }
+
+    /**
+     * Binds several listening channels to the address of each node with SO_REUSEPORT, so that the
+     * kernel spreads the connections to a single node across as many accept loops and event loops.
+     * Only supported with the epoll and io_uring transports, the option is ignored otherwise.
+     *
+     * @param listeners number of listening channels per node.
+     * @return This builder.
+     */
+    public Builder withReusePortListeners(int listeners) {
+      if (listeners <= 0) {
+        throw new IllegalArgumentException("Listeners must be > 0, got " + listeners);
+      }
+      this.reusePortListeners = listeners;
+      return this;
+    }
+
     /**
      * Whether to support multiple nodes per IP (as per CASSANDRA-7544). Using this with true
      * overrides {@link #withAddressResolver(AddressResolver)}, using {@link
@@ -817,25 +1250,10 @@ public final class Server implements AutoCloseable {
       Class<? extends ServerChannel> channelClass = this.channelClass;
       if (eventLoopGroup == null) {
         ThreadFactory f = new DefaultThreadFactory("simulacron-io-worker");
-        try {
-          // try to resolve Epoll class, if throws Exception, fall back on nio
-          Class.forName("io.netty.channel.epoll.Epoll");
-          // if epoll event loop could be established, use it, otherwise use nio.
-          Optional<EventLoopGroup> epollEventLoop = epollEventLoopGroup(f);
-          if (epollEventLoop.isPresent()) {
-            logger.debug("Detected epoll support, using EpollEventLoopGroup");
-            eventLoopGroup = epollEventLoop.get();
-            channelClass = epollClass();
-          } else {
-            logger.debug("Could not load native transport (epoll), using NioEventLoopGroup");
-            eventLoopGroup = new NioEventLoopGroup(0, f);
-            channelClass = NioServerSocketChannel.class;
-          }
-        } catch (ClassNotFoundException ce) {
-          logger.debug("netty-transport-native-epoll not on classpath, using NioEventLoopGroup");
-          eventLoopGroup = new NioEventLoopGroup(0, f);
-          channelClass = NioServerSocketChannel.class;
-        }
+        Transport resolved = transport.resolve();
+        logger.debug("Using {} transport", resolved);
+        eventLoopGroup = resolved.newEventLoopGroup(0, f);
+        channelClass = resolved.serverChannelClass();
       }
       return new Server(
           addressResolver,
@@ -846,7 +1264,27 @@ public final class Server implements AutoCloseable {
           this.timer != null,
           bindTimeoutInNanos,
           stubStore,
-          activityLogging);
+          activityLogging,
+          activityLogCapacity,
+          activityLogEvictionPolicy,
+          activityLogSpill,
+          actionScheduling,
+          asyncQueryListenerCapacity > 0
+              ? new QueryListenerDispatcher(asyncQueryListenerCapacity)
+              : null,
+          listenersPerNode(channelClass));
+    }
+
+    private int listenersPerNode(Class<? extends ServerChannel> channelClass) {
+      Transport transport = channelClass != null ? Transport.of(channelClass) : null;
+      if (reusePortListeners > 1 && (transport == null || transport.reusePortOption() == null)) {
+        logger.warn(
+            "SO_REUSEPORT listeners require the epoll or io_uring transport, using {} instead. "
+                + "Binding a single listener per node.",
+            channelClass);
+        return 1;
+      }
+      return reusePortListeners;
     }
   }
 
@@ -856,17 +1294,24 @@ public final class Server implements AutoCloseable {
     protected void initChannel(Channel channel) throws Exception {
       ChannelPipeline pipeline = channel.pipeline();
       BoundNode node = channel.parent().attr(HANDLER).get();
-      node.clientChannelGroup.add(channel);
+      node.connections.register(channel);
       MDC.put("node", node.getId().toString());
 
       try {
         logger.debug("Got new connection {}", channel);
 
+        TrafficShaper dataCenterShaper = node.getDataCenter().getTrafficShaper();
         pipeline
+            .addLast("latency", new LatencyHandler(dataCenterShaper, node.getTrafficShaper()))
             .addLast(new FlushConsolidationHandler())
             .addLast("decoder", new FrameDecoder(node.getFrameCodec()))
             .addLast("encoder", new FrameEncoder(node.getFrameCodec()))
             .addLast("requestHandler", new RequestHandler(node));
+        // bandwidth shaping goes first so it sees the bytes actually read and written.
+        node.getTrafficShaper().install(channel);
+        dataCenterShaper.install(channel);
+        pipeline.addFirst(
+            ConnectionRegistry.STATS_HANDLER, ConnectionRegistry.StatsHandler.INSTANCE);
       } finally {
         MDC.remove("node");
       }
@@ -15,13 +15,51 @@
  */
 package com.datastax.oss.simulacron.server;
 
+import com.datastax.oss.simulacron.common.cluster.ActivityLog;
+import com.datastax.oss.simulacron.common.cluster.ActivityLogSampling;
+
 /** A set of options use to configure how a Cluster/Node is registered with a {@link Server}. */
 public class ServerOptions {
 
   private final Boolean activityLogging;
 
-  ServerOptions(Boolean activityLogging) {
+  private final Integer activityLogCapacity;
+
+  private final ActivityLog.EvictionPolicy activityLogEvictionPolicy;
+
+  private final ActivityLogSampling activityLogSampling;
+
+  private final EventLoopIsolation eventLoopIsolation;
+
+  private final int eventLoopThreads;
+
+  private final Integer preparedStatementCacheCapacity;
+
+  ServerOptions(
+      Boolean activityLogging,
+      Integer activityLogCapacity,
+      ActivityLog.EvictionPolicy activityLogEvictionPolicy,
+      ActivityLogSampling activityLogSampling,
+      EventLoopIsolation eventLoopIsolation,
+      int eventLoopThreads,
+      Integer preparedStatementCacheCapacity) {
     this.activityLogging = activityLogging;
+    this.activityLogCapacity = activityLogCapacity;
+    this.activityLogEvictionPolicy = activityLogEvictionPolicy;
+    this.activityLogSampling = activityLogSampling;
+    this.eventLoopIsolation = eventLoopIsolation;
+    this.eventLoopThreads = eventLoopThreads;
+    this.preparedStatementCacheCapacity = preparedStatementCacheCapacity;
+  }
+
+  /** Which nodes share an event loop group. */
+  public enum EventLoopIsolation {
+    /** All nodes use the event loop group of the {@link Server}. */
+    SHARED,
+    /** The nodes of the cluster use an event loop group of their own. */
+    CLUSTER,
+    /** The nodes of each data center use an event loop group of their own. */
+    DATA_CENTER
   }
 
   /**
@@ -32,7 +70,50 @@ public class ServerOptions {
     return activityLogging;
   }
 
-  public static ServerOptions DEFAULT = new ServerOptions(null);
+  /**
+   * @return The maximum number of entries each node's activity log retains ({@link
+   *     ActivityLog#UNBOUNDED} for no limit) or null to defer to global configuration.
+   */
+  public Integer getActivityLogCapacity() {
+    return activityLogCapacity;
+  }
+
+  /**
+   * @return What a full activity log should do with new entries or null to defer to global
+   *     configuration.
+   */
+  public ActivityLog.EvictionPolicy getActivityLogEvictionPolicy() {
+    return activityLogEvictionPolicy;
+  }
+
+  /** @return Which requests each node's activity log records or null to record all of them. */
+  public ActivityLogSampling getActivityLogSampling() {
+    return activityLogSampling;
+  }
+
+  /** @return Which nodes share an event loop group. */
+  public EventLoopIsolation getEventLoopIsolation() {
+    return eventLoopIsolation;
+  }
+
+  /**
+   * @return The number of threads of each isolated event loop group, 0 for Netty's default of twice
+   *     the number of cores.
+   */
+  public int getEventLoopThreads() {
+    return eventLoopThreads;
+  }
+
+  /**
+   * @return The maximum number of primes the cluster keeps for PREPARE messages no stub mapping
+   *     matched or null for {@link PreparedStatementCache#DEFAULT_CAPACITY}.
+   */
+  public Integer getPreparedStatementCacheCapacity() {
+    return preparedStatementCacheCapacity;
+  }
+
+  public static ServerOptions DEFAULT =
+      new ServerOptions(null, null, null, null, EventLoopIsolation.SHARED, 0, null);
 
   public static Builder builder() {
     return new Builder();
@@ -42,6 +123,18 @@ public class ServerOptions {
 
     private Boolean activityLogging = null;
 
+    private Integer activityLogCapacity = null;
+
+    private ActivityLog.EvictionPolicy activityLogEvictionPolicy = null;
+
+    private ActivityLogSampling activityLogSampling = null;
+
+    private EventLoopIsolation eventLoopIsolation = EventLoopIsolation.SHARED;
+
+    private int eventLoopThreads = 0;
+
+    private Integer preparedStatementCacheCapacity = null;
+
     /**
      * Whether or not to enable activity logging. By default falls back on global configuration
      * (which defaults to enabled).
@@ -54,8 +147,93 @@ public class ServerOptions {
       return this;
     }
 
+    /**
+     * The maximum number of entries each node's activity log retains. By default falls back on
+     * global configuration (which defaults to {@link ActivityLog#UNBOUNDED}).
+     *
+     * @param capacity maximum number of entries. Set to null to fallback.
+     * @return This builder.
+     */
+    public Builder withActivityLogCapacity(Integer capacity) {
+      if (capacity != null && capacity < 0) {
+        throw new IllegalArgumentException("Activity log capacity must be >= 0, got " + capacity);
+      }
+      this.activityLogCapacity = capacity;
+      return this;
+    }
+
+    /**
+     * What a full activity log should do with new entries. By default falls back on global
+     * configuration (which defaults to {@link ActivityLog.EvictionPolicy#DROP_OLDEST}).
+     *
+     * @param evictionPolicy eviction policy. Set to null to fallback.
+     * @return This builder.
+     */
+    public Builder withActivityLogEvictionPolicy(ActivityLog.EvictionPolicy evictionPolicy) {
+      this.activityLogEvictionPolicy = evictionPolicy;
+      return this;
+    }
+
+    /**
+     * Which requests each node's activity log records. By default all of them are recorded. May be
+     * changed later on with {@link BoundTopic#setActivityLogSampling(ActivityLogSampling)}.
+     *
+     * @param sampling sampling settings. Set to null to record all requests.
+     * @return This builder.
+     */
+    public Builder withActivityLogSampling(ActivityLogSampling sampling) {
+      this.activityLogSampling = sampling;
+      return this;
+    }
+
+    /**
+     * Gives the cluster or each of its data centers an event loop group of its own instead of using
+     * the one of the {@link Server}, so that a data center with slow listeners or large responses
+     * doesn't add latency to the others. The groups use the transport of the server and are shut
+     * down when the cluster is unregistered. The names of their threads start with
+     * 'simulacron-io-cluster-X', followed by '-dc-Y' when isolating data centers, so they can be
+     * pinned to CPUs with OS tools such as taskset.
+     *
+     * @param isolation which nodes share an event loop group.
+     * @param threads number of threads of each group, 0 for Netty's default of twice the number of
+     *     cores.
+     * @return This builder.
+     */
+    public Builder withEventLoopIsolation(EventLoopIsolation isolation, int threads) {
+      if (threads < 0) {
+        throw new IllegalArgumentException("Event loop threads must be >= 0, got " + threads);
+      }
+      this.eventLoopIsolation = isolation != null ? isolation : EventLoopIsolation.SHARED;
+      this.eventLoopThreads = threads;
+      return this;
+    }
+
+    /**
+     * The maximum number of primes the cluster keeps for PREPARE messages no stub mapping matched,
+     * see {@link PreparedStatementCache}. By default {@link
+     * PreparedStatementCache#DEFAULT_CAPACITY}.
+     *
+     * @param capacity maximum number of primes, 0 to not keep any. Set to null to fallback.
+     * @return This builder.
+     */
+    public Builder withPreparedStatementCacheCapacity(Integer capacity) {
+      if (capacity != null && capacity < 0) {
+        throw new IllegalArgumentException(
+            "Prepared statement cache capacity must be >= 0, got " + capacity);
+      }
+      this.preparedStatementCacheCapacity = capacity;
+      return this;
+    }
+
     public ServerOptions build() {
-      return new ServerOptions(activityLogging);
+      return new ServerOptions(
+          activityLogging,
+          activityLogCapacity,
+          activityLogEvictionPolicy,
+          activityLogSampling,
+          eventLoopIsolation,
+          eventLoopThreads,
+          preparedStatementCacheCapacity);
     }
   }
 }
@@ -0,0 +1,100 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.server;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import org.xerial.snappy.Snappy;
+
+/**
+ * Snappy compression as used by the native protocol. Snappy embeds the uncompressed length in its
+ * own format, it is not supported in protocol v5 segments.
+ */
+class SnappyCompressor extends ByteBufCompressor {
+
+  SnappyCompressor() {
+    this(ByteBufAllocator.DEFAULT);
+  }
+
+  SnappyCompressor(ByteBufAllocator alloc) {
+    super(alloc);
+    // Fail fast if the native library can't be loaded.
+    Snappy.maxCompressedLength(0);
+  }
+
+  @Override
+  public String algorithm() {
+    return "snappy";
+  }
+
+  @Override
+  ByteBuf compress(ByteBuf uncompressed, boolean prependWithUncompressedLength) {
+    if (!prependWithUncompressedLength) {
+      throw new UnsupportedOperationException("Snappy is not supported with protocol v5");
+    }
+    int length = uncompressed.readableBytes();
+    int maxCompressedLength = Snappy.maxCompressedLength(length);
+    ByteBuffer in = uncompressed.nioBuffer(uncompressed.readerIndex(), length);
+    // Snappy's ByteBuffer API only works with direct buffers, fall back on arrays otherwise.
+    ByteBuf output =
+        in.isDirect()
+            ? alloc.directBuffer(maxCompressedLength)
+            : alloc.heapBuffer(maxCompressedLength);
+    try {
+      int written;
+      if (in.isDirect()) {
+        written = Snappy.compress(in, output.nioBuffer(0, maxCompressedLength));
+      } else {
+        byte[] input =
+            ByteBufUtil.getBytes(uncompressed, uncompressed.readerIndex(), length, false);
+        written = Snappy.compress(input, 0, length, output.array(), output.arrayOffset());
+      }
+      uncompressed.skipBytes(length);
+      output.writerIndex(written);
+      return output;
+    } catch (IOException e) {
+      output.release();
+      throw new UncheckedIOException(e);
+    } catch (RuntimeException e) {
+      output.release();
+      throw e;
+    }
+  }
+
+  @Override
+  public ByteBuf decompress(ByteBuf compressed) {
+    int length = compressed.readableBytes();
+    byte[] input = ByteBufUtil.getBytes(compressed, compressed.readerIndex(), length, false);
+    try {
+      byte[] output = new byte[Snappy.uncompressedLength(input, 0, length)];
+      Snappy.uncompress(input, 0, length, output, 0);
+      compressed.skipBytes(length);
+      return Unpooled.wrappedBuffer(output);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public ByteBuf decompressWithoutLength(ByteBuf compressed, int uncompressedLength) {
+    throw new UnsupportedOperationException("Snappy is not supported with protocol v5");
+  }
+}
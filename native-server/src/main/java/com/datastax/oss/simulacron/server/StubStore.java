@@ -15,33 +15,149 @@
  */
 package com.datastax.oss.simulacron.server;
 
+import static com.datastax.oss.simulacron.common.utils.PreparedIdUtils.toQueryId;
+
 import com.datastax.oss.protocol.internal.Frame;
+import com.datastax.oss.protocol.internal.Message;
+import com.datastax.oss.protocol.internal.request.Batch;
+import com.datastax.oss.protocol.internal.request.Execute;
+import com.datastax.oss.protocol.internal.request.Options;
+import com.datastax.oss.protocol.internal.request.Prepare;
+import com.datastax.oss.protocol.internal.request.Query;
+import com.datastax.oss.simulacron.common.request.Request;
 import com.datastax.oss.simulacron.common.stubbing.Prime;
 import com.datastax.oss.simulacron.common.stubbing.StubMapping;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 
+/**
+ * A store of {@link StubMapping}s that is consulted for every received {@link Frame}.
+ *
+ * <p>{@link Prime}s are bucketed by what they can possibly match: query primes by their exact
+ * query string (for QUERY and PREPARE messages) and by their query id (for EXECUTE messages, see
+ * {@link QueryIdIndex}), batch and options primes by message type. Only mappings that can't be
+ * indexed (i.e. {@link com.datastax.oss.simulacron.common.stubbing.PeerMetadataHandler}) are
+ * scanned for every frame.
+ *
+ * <p>Every mapping is assigned an increasing sequence number on registration so that the first
+ * registered mapping that matches a frame is returned, regardless of which bucket it lives in.
+ */
 public class StubStore {
 
-  private final CopyOnWriteArrayList<StubMapping> stubMappings = new CopyOnWriteArrayList<>();
+  private final Map<String, List<Entry>> byQuery = new ConcurrentHashMap<>();
+
+  private final QueryIdIndex<List<Entry>> byQueryId = new QueryIdIndex<>();
+
+  private final Map<Class<? extends Message>, List<Entry>> byMessageType =
+      new ConcurrentHashMap<>();
+
+  private final List<Entry> unindexed = new CopyOnWriteArrayList<>();
+
+  private long sequence = 0;
+
+  private int size = 0;
 
   public StubStore() {}
 
   public void register(StubMapping mapping) {
-    stubMappings.add(mapping);
+    add(mapping);
   }
 
   public void registerInternal(Prime prime) {
-    stubMappings.add(new InternalStubWrapper(prime));
+    add(new InternalStubWrapper(prime));
   }
 
-  public int clear() {
-    int size = stubMappings.size();
-    stubMappings.clear();
-    return size;
+  private synchronized void add(StubMapping mapping) {
+    Entry entry = new Entry(sequence++, mapping);
+    size++;
+    if (mapping instanceof Prime) {
+      Request when = ((Prime) mapping).getPrimedRequest().when;
+      if (when instanceof com.datastax.oss.simulacron.common.request.Query) {
+        com.datastax.oss.simulacron.common.request.Query query =
+            (com.datastax.oss.simulacron.common.request.Query) when;
+        if (query.query != null) {
+          bucket(byQuery, query.query).add(entry);
+          byQueryId.computeIfAbsent(query.getQueryId(), CopyOnWriteArrayList::new).add(entry);
+          return;
+        }
+      } else if (when instanceof com.datastax.oss.simulacron.common.request.Batch) {
+        bucket(byMessageType, Batch.class).add(entry);
+        return;
+      } else if (when instanceof com.datastax.oss.simulacron.common.request.Options) {
+        bucket(byMessageType, Options.class).add(entry);
+        return;
+      }
+    }
+    unindexed.add(entry);
+  }
+
+  private static <K> List<Entry> bucket(Map<K, List<Entry>> index, K key) {
+    return index.computeIfAbsent(key, k -> new CopyOnWriteArrayList<>());
+  }
+
+  public synchronized int clear() {
+    int cleared = size;
+    byQuery.clear();
+    byQueryId.clear();
+    byMessageType.clear();
+    unindexed.clear();
+    size = 0;
+    return cleared;
   }
 
   public Optional<StubMapping> find(BoundNode node, Frame frame) {
-    return stubMappings.stream().filter(s -> s.matches(node, frame)).findFirst();
+    Iterator<Entry> indexed = candidates(frame.message).iterator();
+    Iterator<Entry> scanned = unindexed.iterator();
+
+    // Merge both candidate lists by registration order so first match semantics are preserved.
+    Entry nextIndexed = indexed.hasNext() ? indexed.next() : null;
+    Entry nextScanned = scanned.hasNext() ? scanned.next() : null;
+    while (nextIndexed != null || nextScanned != null) {
+      Entry next;
+      if (nextScanned == null
+          || (nextIndexed != null && nextIndexed.sequence < nextScanned.sequence)) {
+        next = nextIndexed;
+        nextIndexed = indexed.hasNext() ? indexed.next() : null;
+      } else {
+        next = nextScanned;
+        nextScanned = scanned.hasNext() ? scanned.next() : null;
+      }
+      if (next.mapping.matches(node, frame)) {
+        return Optional.of(next.mapping);
+      }
+    }
+    return Optional.empty();
+  }
+
+  private List<Entry> candidates(Message message) {
+    List<Entry> candidates = null;
+    if (message instanceof Query) {
+      candidates = byQuery.get(((Query) message).query);
+    } else if (message instanceof Prepare) {
+      candidates = byQuery.get(((Prepare) message).cqlQuery);
+    } else if (message instanceof Execute) {
+      byte[] queryId = ((Execute) message).queryId;
+      if (queryId != null && queryId.length > 0) {
+        candidates = byQueryId.get(toQueryId(queryId));
+      }
+    } else if (message instanceof Batch || message instanceof Options) {
+      candidates = byMessageType.get(message.getClass());
+    }
+    return candidates != null ? candidates : Collections.emptyList();
+  }
+
+  private static class Entry {
+    private final long sequence;
+    private final StubMapping mapping;
+
+    Entry(long sequence, StubMapping mapping) {
+      this.sequence = sequence;
+      this.mapping = mapping;
+    }
   }
 }
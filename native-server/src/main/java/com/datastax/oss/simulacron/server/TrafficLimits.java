@@ -0,0 +1,101 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.server;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bandwidth and latency applied to the connections of a node or of every node in a data center, see
+ * {@link BoundTopic#setTraffic(TrafficLimits)}.
+ */
+public class TrafficLimits {
+
+  /** No shaping, the default. */
+  public static final TrafficLimits UNLIMITED = new TrafficLimits(0, 0, 0);
+
+  private final long readBytesPerSecond;
+
+  private final long writeBytesPerSecond;
+
+  private final long latencyInNanos;
+
+  /**
+   * @param readBytesPerSecond maximum bytes read per second, or 0 if not limited.
+   * @param writeBytesPerSecond maximum bytes written per second, or 0 if not limited.
+   * @param latency fixed latency added to every write.
+   * @param latencyUnit unit of latency.
+   */
+  public TrafficLimits(
+      long readBytesPerSecond, long writeBytesPerSecond, long latency, TimeUnit latencyUnit) {
+    if (readBytesPerSecond < 0 || writeBytesPerSecond < 0 || latency < 0) {
+      throw new IllegalArgumentException(
+          "Traffic limits must be positive or 0 for no limit, got read_bytes_per_second="
+              + readBytesPerSecond
+              + ", write_bytes_per_second="
+              + writeBytesPerSecond
+              + ", latency="
+              + latency);
+    }
+    this.readBytesPerSecond = readBytesPerSecond;
+    this.writeBytesPerSecond = writeBytesPerSecond;
+    this.latencyInNanos = latencyUnit.toNanos(latency);
+  }
+
+  @JsonCreator
+  public TrafficLimits(
+      @JsonProperty("read_bytes_per_second") long readBytesPerSecond,
+      @JsonProperty("write_bytes_per_second") long writeBytesPerSecond,
+      @JsonProperty("latency_in_ms") long latencyInMs) {
+    this(readBytesPerSecond, writeBytesPerSecond, latencyInMs, TimeUnit.MILLISECONDS);
+  }
+
+  @JsonProperty("read_bytes_per_second")
+  public long getReadBytesPerSecond() {
+    return readBytesPerSecond;
+  }
+
+  @JsonProperty("write_bytes_per_second")
+  public long getWriteBytesPerSecond() {
+    return writeBytesPerSecond;
+  }
+
+  @JsonProperty("latency_in_ms")
+  public long getLatencyInMs() {
+    return TimeUnit.NANOSECONDS.toMillis(latencyInNanos);
+  }
+
+  long getLatencyInNanos() {
+    return latencyInNanos;
+  }
+
+  boolean limitsBandwidth() {
+    return readBytesPerSecond > 0 || writeBytesPerSecond > 0;
+  }
+
+  @Override
+  public String toString() {
+    return "TrafficLimits{"
+        + "readBytesPerSecond="
+        + readBytesPerSecond
+        + ", writeBytesPerSecond="
+        + writeBytesPerSecond
+        + ", latencyInNanos="
+        + latencyInNanos
+        + '}';
+  }
+}
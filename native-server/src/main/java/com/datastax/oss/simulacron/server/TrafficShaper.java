@@ -0,0 +1,122 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.server;
+
+import com.datastax.oss.simulacron.common.cluster.TrafficReport;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelPipeline;
+import io.netty.handler.traffic.GlobalTrafficShapingHandler;
+import io.netty.handler.traffic.TrafficCounter;
+import io.netty.util.concurrent.GlobalEventExecutor;
+
+/**
+ * Shapes the traffic of every connection of a node or a data center, applying the same {@link
+ * TrafficLimits} to all of them as if they were sharing a single link.
+ *
+ * <p>Bandwidth is limited with a {@link GlobalTrafficShapingHandler} that is only created and added
+ * to pipelines once a bandwidth limit is first set, so that unshaped topics don't pay for it.
+ * Latency is applied by {@link LatencyHandler}, which reads it from here on every write.
+ */
+public class TrafficShaper {
+
+  private final String handlerName;
+
+  private volatile TrafficLimits limits = TrafficLimits.UNLIMITED;
+
+  private volatile GlobalTrafficShapingHandler handler;
+
+  TrafficShaper(String handlerName) {
+    this.handlerName = handlerName;
+  }
+
+  /**
+   * Replaces the limits of this shaper.
+   *
+   * @param limits the new limits.
+   * @param channels the connections currently open, which get the bandwidth shaping handler if it's
+   *     created by this call.
+   */
+  synchronized void setLimits(TrafficLimits limits, Iterable<Channel> channels) {
+    this.limits = limits;
+    if (handler != null) {
+      handler.configure(limits.getWriteBytesPerSecond(), limits.getReadBytesPerSecond());
+    } else if (limits.limitsBandwidth()) {
+      handler =
+          new GlobalTrafficShapingHandler(
+              GlobalEventExecutor.INSTANCE,
+              limits.getWriteBytesPerSecond(),
+              limits.getReadBytesPerSecond());
+      for (Channel channel : channels) {
+        install(channel);
+      }
+    }
+  }
+
+  public TrafficLimits getLimits() {
+    return limits;
+  }
+
+  long getLatencyInNanos() {
+    return limits.getLatencyInNanos();
+  }
+
+  /**
+   * Adds the bandwidth shaping handler at the head of the pipeline of the given connection, if there
+   * is one. This happens on the event loop of the connection, so that installs from concurrent limit
+   * updates and from the connection's initialization can't both add it.
+   *
+   * @param channel a new or existing connection.
+   */
+  void install(Channel channel) {
+    if (handler == null) {
+      return;
+    }
+    if (channel.eventLoop().inEventLoop()) {
+      install(channel.pipeline());
+    } else {
+      channel.eventLoop().execute(() -> install(channel.pipeline()));
+    }
+  }
+
+  private void install(ChannelPipeline pipeline) {
+    GlobalTrafficShapingHandler handler = this.handler;
+    if (handler != null && pipeline.get(handlerName) == null) {
+      pipeline.addFirst(handlerName, handler);
+    }
+  }
+
+  /** @return the throughput of the shaped connections, or null if bandwidth was never limited. */
+  TrafficReport report() {
+    GlobalTrafficShapingHandler handler = this.handler;
+    if (handler == null) {
+      return null;
+    }
+    TrafficCounter counter = handler.trafficCounter();
+    return new TrafficReport(
+        counter.lastReadThroughput(),
+        counter.lastWriteThroughput(),
+        counter.cumulativeReadBytes(),
+        counter.cumulativeWrittenBytes());
+  }
+
+  /** Stops the throughput counter of the bandwidth shaping handler, if any. */
+  synchronized void release() {
+    if (handler != null) {
+      handler.release();
+      handler = null;
+    }
+  }
+}
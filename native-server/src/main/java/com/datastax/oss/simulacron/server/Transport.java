@@ -0,0 +1,230 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.server;
+
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import java.util.concurrent.ThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The transport the server's event loops use when it creates them, see {@link
+ * Server.Builder#withTransport(Transport)}. When a transport isn't available the next one in the
+ * chain io_uring, epoll, NIO is used instead.
+ */
+public enum Transport {
+  /** The first available of {@link #IO_URING}, {@link #EPOLL} and {@link #NIO}. */
+  AUTO {
+    @Override
+    public boolean isAvailable() {
+      return true;
+    }
+
+    @Override
+    Transport fallback() {
+      return IO_URING;
+    }
+
+    @Override
+    EventLoopGroup newEventLoopGroup(int threads, ThreadFactory threadFactory) {
+      return resolve().newEventLoopGroup(threads, threadFactory);
+    }
+
+    @Override
+    Class<? extends ServerChannel> serverChannelClass() {
+      return resolve().serverChannelClass();
+    }
+
+    @Override
+    ChannelOption<Boolean> reusePortOption() {
+      return resolve().reusePortOption();
+    }
+  },
+  /**
+   * Linux io_uring, which submits and completes socket operations in batches instead of with a
+   * system call each. Needs netty-incubator-transport-native-io_uring on the classpath, in a
+   * version matching the Netty one, and a 5.9+ kernel. No release of it works with the Netty
+   * version the server is built with, so it is only available when the application provides a more
+   * recent Netty.
+   */
+  IO_URING {
+    @Override
+    public boolean isAvailable() {
+      try {
+        return (Boolean)
+            Class.forName(IO_URING_PACKAGE + "IOUring").getMethod("isAvailable").invoke(null);
+      } catch (ReflectiveOperationException | LinkageError e) {
+        return false;
+      }
+    }
+
+    @Override
+    Transport fallback() {
+      return EPOLL;
+    }
+
+    @Override
+    EventLoopGroup newEventLoopGroup(int threads, ThreadFactory threadFactory) {
+      try {
+        return (EventLoopGroup)
+            Class.forName(IO_URING_PACKAGE + "IOUringEventLoopGroup")
+                .getConstructor(int.class, ThreadFactory.class)
+                .newInstance(threads, threadFactory);
+      } catch (ReflectiveOperationException e) {
+        throw new IllegalStateException("Could not create io_uring event loop group", e);
+      }
+    }
+
+    @Override
+    Class<? extends ServerChannel> serverChannelClass() {
+      try {
+        return Class.forName(IO_URING_PACKAGE + "IOUringServerSocketChannel")
+            .asSubclass(ServerChannel.class);
+      } catch (ClassNotFoundException e) {
+        throw new IllegalStateException("Could not load io_uring server channel", e);
+      }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    ChannelOption<Boolean> reusePortOption() {
+      try {
+        return (ChannelOption<Boolean>)
+            Class.forName(IO_URING_PACKAGE + "IOUringChannelOption")
+                .getField("SO_REUSEPORT")
+                .get(null);
+      } catch (ReflectiveOperationException e) {
+        throw new IllegalStateException("Could not load io_uring SO_REUSEPORT option", e);
+      }
+    }
+  },
+  /** Linux epoll, needs netty-transport-native-epoll on the classpath. */
+  EPOLL {
+    @Override
+    public boolean isAvailable() {
+      try {
+        // resolve the class first so nothing is linked if the library isn't in the environment.
+        Class.forName("io.netty.channel.epoll.Epoll");
+        return io.netty.channel.epoll.Epoll.isAvailable();
+      } catch (ClassNotFoundException | LinkageError e) {
+        return false;
+      }
+    }
+
+    @Override
+    Transport fallback() {
+      return NIO;
+    }
+
+    @Override
+    EventLoopGroup newEventLoopGroup(int threads, ThreadFactory threadFactory) {
+      return new io.netty.channel.epoll.EpollEventLoopGroup(threads, threadFactory);
+    }
+
+    @Override
+    Class<? extends ServerChannel> serverChannelClass() {
+      return io.netty.channel.epoll.EpollServerSocketChannel.class;
+    }
+
+    @Override
+    ChannelOption<Boolean> reusePortOption() {
+      return io.netty.channel.epoll.EpollChannelOption.SO_REUSEPORT;
+    }
+  },
+  /** Java NIO, always available. */
+  NIO {
+    @Override
+    public boolean isAvailable() {
+      return true;
+    }
+
+    @Override
+    Transport fallback() {
+      return this;
+    }
+
+    @Override
+    EventLoopGroup newEventLoopGroup(int threads, ThreadFactory threadFactory) {
+      return new NioEventLoopGroup(threads, threadFactory);
+    }
+
+    @Override
+    Class<? extends ServerChannel> serverChannelClass() {
+      return NioServerSocketChannel.class;
+    }
+  };
+
+  private static final Logger logger = LoggerFactory.getLogger(Transport.class);
+
+  private static final String IO_URING_PACKAGE = "io.netty.incubator.channel.uring.";
+
+  /** @return Whether this transport can be used in this environment. */
+  public abstract boolean isAvailable();
+
+  /** @return The transport to try when this one isn't available. */
+  abstract Transport fallback();
+
+  /**
+   * @param threads number of event loops, 0 for Netty's default of twice the number of cores.
+   * @param threadFactory factory of the event loop threads.
+   * @return a new event loop group of this transport.
+   */
+  abstract EventLoopGroup newEventLoopGroup(int threads, ThreadFactory threadFactory);
+
+  abstract Class<? extends ServerChannel> serverChannelClass();
+
+  /**
+   * @return The SO_REUSEPORT option of the server channels of this transport, or null if it doesn't
+   *     support it.
+   */
+  ChannelOption<Boolean> reusePortOption() {
+    return null;
+  }
+
+  /**
+   * @param channelClass server channel class of an event loop group.
+   * @return The available transport creating channels of the given class, or null if there is none.
+   */
+  static Transport of(Class<? extends ServerChannel> channelClass) {
+    for (Transport transport : values()) {
+      if (transport != AUTO
+          && transport.isAvailable()
+          && transport.serverChannelClass().equals(channelClass)) {
+        return transport;
+      }
+    }
+    return null;
+  }
+
+  /** @return This transport if it is available, otherwise the first available fallback. */
+  public Transport resolve() {
+    Transport transport = this == AUTO ? fallback() : this;
+    while (!transport.isAvailable()) {
+      Transport next = transport.fallback();
+      if (this == AUTO) {
+        logger.debug("{} transport is not available, trying {}", transport, next);
+      } else {
+        logger.warn("{} transport is not available, falling back to {}", transport, next);
+      }
+      transport = next;
+    }
+    return transport;
+  }
+}
@@ -22,7 +22,9 @@ import com.datastax.oss.simulacron.server.BoundNode;
 /**
  * A listener that gets invoked whenever a query is received on a node. Note that this method blocks
  * the calling thread (event loop) that received the message so it is recommended not to do anything
- * intensive of blocking in the apply implementation.
+ * intensive of blocking in the apply implementation, unless the server was built with {@link
+ * com.datastax.oss.simulacron.server.Server.Builder#withAsyncQueryListeners(int)} in which case it
+ * is invoked on a dedicated thread.
  */
 public interface QueryListener {
   void apply(BoundNode boundNode, QueryLog queryLog);
@@ -327,8 +327,10 @@ public class BoundNodeTest {
     Frame frame = channel.readOutbound();
     assertThat(frame).isNull();
 
-    // Wait a second for action to be processed
+    // Wait a second for action to be processed, delayed actions are scheduled on the channel's
+    // event loop which only runs them when asked to.
     TimeUnit.SECONDS.sleep(1);
+    channel.runPendingTasks();
 
     frame = channel.readOutbound();
     assertThat(frame.message).isSameAs(response);
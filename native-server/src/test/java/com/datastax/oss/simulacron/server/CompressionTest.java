@@ -0,0 +1,116 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.server;
+
+import static com.datastax.oss.simulacron.common.stubbing.PrimeDsl.rows;
+import static com.datastax.oss.simulacron.common.stubbing.PrimeDsl.when;
+import static com.datastax.oss.simulacron.server.AddressResolver.localAddressResolver;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.datastax.oss.protocol.internal.Compressor;
+import com.datastax.oss.protocol.internal.Frame;
+import com.datastax.oss.protocol.internal.FrameCodec;
+import com.datastax.oss.protocol.internal.ProtocolConstants;
+import com.datastax.oss.protocol.internal.request.Query;
+import com.datastax.oss.protocol.internal.request.Startup;
+import com.datastax.oss.protocol.internal.response.Error;
+import com.datastax.oss.protocol.internal.response.Ready;
+import com.datastax.oss.protocol.internal.response.result.Rows;
+import com.datastax.oss.simulacron.common.cluster.NodeSpec;
+import com.datastax.oss.simulacron.common.stubbing.PrimeDsl;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.local.LocalServerChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+
+public class CompressionTest {
+
+  private final EventLoopGroup eventLoop = new DefaultEventLoopGroup();
+
+  private final Server localServer =
+      Server.builder()
+          .withEventLoopGroup(eventLoop, LocalServerChannel.class)
+          .withAddressResolver(localAddressResolver)
+          .build();
+
+  @After
+  public void tearDown() {
+    try {
+      // unregisters any node left behind by a failed test and stops the server's timer.
+      localServer.close();
+    } finally {
+      // the server and clients share this group, it is not shut down by the server.
+      eventLoop.shutdownGracefully(0, 0, TimeUnit.MILLISECONDS).syncUninterruptibly();
+    }
+  }
+
+  @Test
+  public void testLz4Compression() throws Exception {
+    testCompression(new Lz4Compressor());
+  }
+
+  @Test
+  public void testSnappyCompression() throws Exception {
+    testCompression(new SnappyCompressor());
+  }
+
+  @Test
+  public void testShouldRejectUnknownCompression() throws Exception {
+    try (BoundNode node = localServer.register(NodeSpec.builder());
+        MockClient client = new MockClient(eventLoop).connect(node.getAddress())) {
+      client.write(startup("gzip"));
+
+      Frame response = client.next();
+      assertThat(response.message).isInstanceOf(Error.class);
+      assertThat(((Error) response.message).code)
+          .isEqualTo(ProtocolConstants.ErrorCode.PROTOCOL_ERROR);
+    }
+  }
+
+  private void testCompression(Compressor<ByteBuf> compressor) throws Exception {
+    PrimeDsl.RowBuilder rows = rows().columnTypes("id", "int", "value", "varchar");
+    for (int i = 0; i < 100; i++) {
+      rows.row("id", i, "value", "a rather repetitive value that should compress well");
+    }
+
+    try (BoundNode node = localServer.register(NodeSpec.builder());
+        MockClient client =
+            new MockClient(eventLoop, FrameCodec.defaultClient(new ByteBufCodec(), compressor))
+                .connect(node.getAddress())) {
+      node.prime(when("select * from data").then(rows));
+
+      client.write(startup(compressor.algorithm()));
+      assertThat(client.next().message).isInstanceOf(Ready.class);
+
+      client.write(new Query("select * from data"));
+      Frame response = client.next();
+      assertThat(response.message).isInstanceOf(Rows.class);
+      assertThat(((Rows) response.message).getData()).hasSize(100);
+    }
+  }
+
+  private static Startup startup(String compression) {
+    Map<String, String> options = new HashMap<>();
+    options.put("CQL_VERSION", "3.0.0");
+    options.put("COMPRESSION", compression);
+    return new Startup(options);
+  }
+}
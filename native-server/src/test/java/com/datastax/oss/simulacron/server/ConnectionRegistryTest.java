@@ -0,0 +1,136 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.datastax.oss.simulacron.common.cluster.ClusterSpec;
+import com.datastax.oss.simulacron.common.cluster.NodeSpec;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.local.LocalAddress;
+import java.net.SocketAddress;
+import java.util.Collections;
+import java.util.UUID;
+import org.junit.Test;
+
+public class ConnectionRegistryTest {
+
+  private final BoundCluster cluster = new BoundCluster(ClusterSpec.builder().build(), 0L, null);
+  private final BoundDataCenter dc = new BoundDataCenter(cluster);
+  private final BoundNode node =
+      new BoundNode(
+          new LocalAddress(UUID.randomUUID().toString()),
+          NodeSpec.builder().withName("node0").withId(0L).withCassandraVersion("3.0.14").build(),
+          Collections.emptyMap(),
+          cluster,
+          dc,
+          null,
+          null,
+          null,
+          false);
+
+  private final ConnectionRegistry registry = node.connections;
+
+  @Test
+  public void shouldIndexConnectionsByRemoteAddress() {
+    EmbeddedChannel channel = new EmbeddedChannel();
+    ClientConnection connection = registry.register(channel);
+
+    assertThat(registry.get(channel.remoteAddress())).isSameAs(connection);
+    assertThat(node.getConnection(channel.remoteAddress())).contains(connection);
+    assertThat(node.getActiveConnections()).isEqualTo(1L);
+    assertThat(cluster.nodesByConnection).containsEntry(channel.remoteAddress(), node);
+    assertThat(node.getConnections().getConnections()).containsExactly(channel.remoteAddress());
+  }
+
+  @Test
+  public void shouldRemoveConnectionOnClose() {
+    EmbeddedChannel channel = new EmbeddedChannel();
+    SocketAddress address = channel.remoteAddress();
+    registry.register(channel);
+    assertThat(registry.addresses()).hasSize(1);
+
+    channel.close();
+
+    assertThat(registry.get(address)).isNull();
+    assertThat(registry.getActive()).isEqualTo(0);
+    assertThat(registry.addresses()).isEmpty();
+    assertThat(cluster.nodesByConnection).isEmpty();
+  }
+
+  @Test
+  public void shouldFindConnectionsFromSameAddressToSeveralNodes() {
+    BoundNode node1 =
+        new BoundNode(
+            new LocalAddress(UUID.randomUUID().toString()),
+            NodeSpec.builder().withName("node1").withId(1L).withCassandraVersion("3.0.14").build(),
+            Collections.emptyMap(),
+            cluster,
+            dc,
+            null,
+            null,
+            null,
+            false);
+    // embedded channels all share the same remote address.
+    EmbeddedChannel channel0 = new EmbeddedChannel();
+    EmbeddedChannel channel1 = new EmbeddedChannel();
+    SocketAddress address = registry.register(channel0).getAddress();
+    node1.connections.register(channel1);
+    assertThat(channel1.remoteAddress()).isEqualTo(address);
+
+    channel1.close();
+
+    assertThat(cluster.findNode(address, null)).isSameAs(node);
+    assertThat(cluster.findNode(address, dc)).isSameAs(node);
+
+    channel0.close();
+
+    assertThat(cluster.findNode(address, null)).isNull();
+  }
+
+  @Test
+  public void shouldReuseAddressesUntilConnectionsChange() {
+    registry.register(new EmbeddedChannel());
+    assertThat(registry.addresses()).isSameAs(registry.addresses());
+  }
+
+  @Test
+  public void shouldCountBytesOfConnection() {
+    EmbeddedChannel channel = new EmbeddedChannel(ConnectionRegistry.StatsHandler.INSTANCE);
+    ClientConnection connection = registry.register(channel);
+
+    channel.writeInbound(Unpooled.wrappedBuffer(new byte[10]));
+    channel.writeOutbound(Unpooled.wrappedBuffer(new byte[4]));
+
+    assertThat(connection.getBytesRead()).isEqualTo(10);
+    assertThat(connection.getBytesWritten()).isEqualTo(4);
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  public void shouldTrackInFlightRequests() {
+    ClientConnection connection = registry.register(new EmbeddedChannel());
+    boolean[] done = new boolean[1];
+
+    Runnable onDone = connection.track(() -> done[0] = true);
+    assertThat(connection.getInFlight()).isEqualTo(1);
+
+    onDone.run();
+    assertThat(connection.getInFlight()).isEqualTo(0);
+    assertThat(done[0]).isTrue();
+  }
+}
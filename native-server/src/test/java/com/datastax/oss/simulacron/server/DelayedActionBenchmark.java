@@ -0,0 +1,182 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.server;
+
+import static com.datastax.oss.simulacron.common.stubbing.PrimeDsl.noRows;
+import static com.datastax.oss.simulacron.common.stubbing.PrimeDsl.when;
+
+import com.datastax.oss.protocol.internal.Compressor;
+import com.datastax.oss.protocol.internal.Frame;
+import com.datastax.oss.protocol.internal.FrameCodec;
+import com.datastax.oss.protocol.internal.Message;
+import com.datastax.oss.protocol.internal.request.Query;
+import com.datastax.oss.protocol.internal.request.Startup;
+import com.datastax.oss.protocol.internal.response.Ready;
+import com.datastax.oss.simulacron.common.cluster.NodeSpec;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Measures how far delayed responses stray from their primed delay under a steady request rate, for
+ * each {@link ActionScheduling}.
+ *
+ * <p>This is not part of the test suite, run its main method with optional arguments: requests per
+ * second (100000), primed delay in milliseconds (5) and duration in seconds (10).
+ */
+public class DelayedActionBenchmark {
+
+  private static final String QUERY = "select * from delayed";
+
+  private static final int MAX_STREAM_IDS = 32768;
+
+  public static void main(String[] args) throws Exception {
+    int rate = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+    int delayMs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+    int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+    for (ActionScheduling actionScheduling : ActionScheduling.values()) {
+      long[] errors = run(actionScheduling, rate, delayMs, seconds);
+      Arrays.sort(errors);
+      System.out.printf(
+          "%-10s %d req/s, %dms delay: delay error p50=%.3fms p99=%.3fms p99.9=%.3fms max=%.3fms%n",
+          actionScheduling,
+          rate,
+          delayMs,
+          percentile(errors, 0.5),
+          percentile(errors, 0.99),
+          percentile(errors, 0.999),
+          percentile(errors, 1));
+    }
+  }
+
+  private static long[] run(ActionScheduling actionScheduling, int rate, int delayMs, int seconds)
+      throws Exception {
+    int total = rate * seconds;
+    long[] errors = new long[total];
+    AtomicInteger received = new AtomicInteger();
+    AtomicLongArray sentAt = new AtomicLongArray(MAX_STREAM_IDS);
+    CountDownLatch ready = new CountDownLatch(1);
+    CountDownLatch done = new CountDownLatch(1);
+    long delayNanos = TimeUnit.MILLISECONDS.toNanos(delayMs);
+    FrameCodec<ByteBuf> frameCodec =
+        FrameCodec.defaultClient(new ByteBufCodec(), Compressor.none());
+
+    EventLoopGroup clientGroup = new NioEventLoopGroup(1);
+    try (Server server = Server.builder().withActionScheduling(actionScheduling).build();
+        BoundNode node = server.register(NodeSpec.builder())) {
+      node.prime(when(QUERY).then(noRows()).delay(delayMs, TimeUnit.MILLISECONDS));
+
+      Channel channel =
+          new Bootstrap()
+              .group(clientGroup)
+              .channel(NioSocketChannel.class)
+              .handler(
+                  new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                      ch.pipeline()
+                          .addLast(new FrameEncoder(frameCodec))
+                          .addLast(new TestFrameDecoder(frameCodec))
+                          .addLast(
+                              new ChannelInboundHandlerAdapter() {
+                                @Override
+                                public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                                  long now = System.nanoTime();
+                                  Frame frame = (Frame) msg;
+                                  if (frame.message instanceof Ready) {
+                                    ready.countDown();
+                                    return;
+                                  }
+                                  int i = received.getAndIncrement();
+                                  if (i < total) {
+                                    errors[i] = now - sentAt.get(frame.streamId) - delayNanos;
+                                  }
+                                  if (i == total - 1) {
+                                    done.countDown();
+                                  }
+                                }
+                              });
+                    }
+                  })
+              .connect(node.getAddress())
+              .sync()
+              .channel();
+
+      channel.writeAndFlush(request(0, new Startup()));
+      ready.await(5, TimeUnit.SECONDS);
+
+      // Send requests in batches every 100 micros to approximate a steady rate.
+      int perBatch = Math.max(1, rate / 10_000);
+      AtomicInteger sent = new AtomicInteger();
+      ScheduledFuture<?> sender =
+          clientGroup.scheduleAtFixedRate(
+              () -> {
+                for (int i = 0; i < perBatch && sent.get() < total; i++) {
+                  int streamId = sent.getAndIncrement() % MAX_STREAM_IDS;
+                  sentAt.set(streamId, System.nanoTime());
+                  channel.write(request(streamId, new Query(QUERY)));
+                }
+                channel.flush();
+              },
+              0,
+              100,
+              TimeUnit.MICROSECONDS);
+
+      if (!done.await(seconds * 2 + delayMs / 1000 + 10, TimeUnit.SECONDS)) {
+        System.out.printf(
+            "%s: only received %d/%d responses%n", actionScheduling, received.get(), total);
+      }
+      sender.cancel(false);
+      channel.close().sync();
+    } finally {
+      clientGroup.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+    }
+    return errors;
+  }
+
+  private static Frame request(int streamId, Message message) {
+    return new Frame(
+        4,
+        false,
+        streamId,
+        false,
+        null,
+        -1,
+        -1,
+        Collections.emptyMap(),
+        Collections.emptyList(),
+        message);
+  }
+
+  private static double percentile(long[] sorted, double percentile) {
+    int index = (int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1);
+    return sorted[Math.max(0, index)] / 1_000_000.0;
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.InetSocketAddress;
+import org.junit.Test;
+
+public class Inet4ResolverTest {
+
+  @Test
+  public void testAddressBytesMatchesIteratingNextAddress() {
+    byte[] start = new byte[] {127, 0, (byte) 254, (byte) 200};
+    byte[] expected = start;
+    for (int i = 0; i < 100_000; i++) {
+      assertThat(Inet4Resolver.addressBytes(start, i)).isEqualTo(expected);
+      expected = Inet4Resolver.nextAddressBytes(expected);
+    }
+  }
+
+  @Test
+  public void testShouldReuseReleasedAddress() {
+    AddressResolver resolver = new Inet4Resolver(9042);
+    InetSocketAddress first = (InetSocketAddress) resolver.get();
+    InetSocketAddress second = (InetSocketAddress) resolver.get();
+    assertThat(first.getAddress())
+        .isEqualTo(Inet4Resolver.inetAddress(AddressResolver.defaultStartingIp));
+    assertThat(second.getAddress().getAddress())
+        .isEqualTo(Inet4Resolver.nextAddressBytes(AddressResolver.defaultStartingIp));
+
+    resolver.release(first);
+    assertThat(resolver.get()).isEqualTo(first);
+    assertThat(((InetSocketAddress) resolver.get()).getAddress().getAddress())
+        .isEqualTo(Inet4Resolver.nextAddressBytes(second.getAddress().getAddress()));
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.server;
+
+import com.datastax.oss.simulacron.common.cluster.ClusterSpec;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time it takes to provision a large cluster with one node per port and the heap it
+ * retains once bound.
+ *
+ * <p>This is not part of the test suite, run its main method with optional arguments: number of
+ * nodes (10000) and number of data centers (10). The process may need a higher limit of open files
+ * as every node listens on its own socket.
+ */
+public class LargeClusterBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    int nodes = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+    int dataCenters = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+    int[] nodesPerDc = new int[dataCenters];
+    Arrays.fill(nodesPerDc, nodes / dataCenters);
+    nodesPerDc[0] += nodes % dataCenters;
+
+    try (Server server =
+        Server.builder()
+            .withMultipleNodesPerIp(true)
+            .withBindTimeout(5, TimeUnit.MINUTES)
+            .build()) {
+      long heapBefore = usedHeap();
+      long start = System.nanoTime();
+      BoundCluster cluster = server.register(ClusterSpec.builder().withNodes(nodesPerDc));
+      long elapsed = System.nanoTime() - start;
+      long heapAfter = usedHeap();
+
+      int bound = cluster.getNodes().size();
+      System.out.printf(
+          "%d nodes in %d data centers: bound in %dms, retained heap %.1fMiB (%.1fKiB per node)%n",
+          bound,
+          dataCenters,
+          TimeUnit.NANOSECONDS.toMillis(elapsed),
+          (heapAfter - heapBefore) / (1024.0 * 1024.0),
+          (heapAfter - heapBefore) / 1024.0 / bound);
+      cluster.unregister();
+    }
+  }
+
+  private static long usedHeap() throws InterruptedException {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+      Thread.sleep(100);
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
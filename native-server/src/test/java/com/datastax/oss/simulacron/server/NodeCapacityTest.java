@@ -0,0 +1,83 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.datastax.oss.simulacron.server.CapacityLimits.Overload;
+import org.junit.Test;
+
+public class NodeCapacityTest {
+
+  @Test
+  public void shouldAdmitEverythingWhenUnlimited() {
+    NodeCapacity capacity = new NodeCapacity(CapacityLimits.UNLIMITED);
+    assertThat(capacity.isLimited()).isFalse();
+    for (int i = 0; i < 1000; i++) {
+      assertThat(capacity.acquire()).isEqualTo(0);
+    }
+    assertThat(capacity.getAdmitted()).isEqualTo(1000);
+    assertThat(capacity.getRejected()).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldRejectOverMaxInFlight() {
+    NodeCapacity capacity = new NodeCapacity(new CapacityLimits(0, 0, 2, Overload.REJECT));
+    assertThat(capacity.acquire()).isEqualTo(0);
+    assertThat(capacity.acquire()).isEqualTo(0);
+    assertThat(capacity.acquire()).isEqualTo(NodeCapacity.REJECTED);
+    assertThat(capacity.getInFlight()).isEqualTo(2);
+
+    capacity.release();
+    assertThat(capacity.acquire()).isEqualTo(0);
+    assertThat(capacity.getAdmitted()).isEqualTo(3);
+    assertThat(capacity.getRejected()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldRejectOverBurst() {
+    // one request per minute so the bucket doesn't refill during the test.
+    NodeCapacity capacity = new NodeCapacity(new CapacityLimits(1.0 / 60, 3, 0, Overload.REJECT));
+    for (int i = 0; i < 3; i++) {
+      assertThat(capacity.acquire()).isEqualTo(0);
+    }
+    assertThat(capacity.acquire()).isEqualTo(NodeCapacity.REJECTED);
+    assertThat(capacity.getRejected()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldQueueOverBurstWithGrowingDelay() {
+    NodeCapacity capacity = new NodeCapacity(new CapacityLimits(1.0 / 60, 1, 0, Overload.QUEUE));
+    assertThat(capacity.acquire()).isEqualTo(0);
+    long first = capacity.acquire();
+    long second = capacity.acquire();
+    assertThat(first).isGreaterThan(0);
+    assertThat(second).isGreaterThan(first);
+    assertThat(capacity.getQueued()).isEqualTo(2);
+    assertThat(capacity.getInFlight()).isEqualTo(3);
+  }
+
+  @Test
+  public void shouldReplaceLimits() {
+    NodeCapacity capacity = new NodeCapacity(new CapacityLimits(0, 0, 1, Overload.REJECT));
+    assertThat(capacity.acquire()).isEqualTo(0);
+    assertThat(capacity.acquire()).isEqualTo(NodeCapacity.REJECTED);
+
+    capacity.setLimits(CapacityLimits.UNLIMITED);
+    assertThat(capacity.isLimited()).isFalse();
+    assertThat(capacity.acquire()).isEqualTo(0);
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.server;
+
+import static com.datastax.oss.simulacron.common.utils.FrameUtils.wrapResponse;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.datastax.oss.protocol.internal.Frame;
+import com.datastax.oss.protocol.internal.request.Startup;
+import com.datastax.oss.protocol.internal.response.Ready;
+import com.datastax.oss.protocol.internal.response.result.SetKeyspace;
+import com.datastax.oss.simulacron.common.utils.FrameUtils;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import org.junit.Test;
+
+public class PreEncodedResponsesTest {
+
+  private final FrameCodecWrapper frameCodec = FrameCodecUtils.defaultFrameCodec();
+
+  private final PreEncodedResponses responses = new PreEncodedResponses();
+
+  @Test
+  public void shouldOnlyEncodeAddedMessages() {
+    Frame response = wrapResponse(request(4, 1), new Ready());
+
+    assertThat(responses.encode(response, frameCodec, ByteBufAllocator.DEFAULT)).isNull();
+  }
+
+  @Test
+  public void shouldEncodeSameBytesAsCodecWithPatchedStreamId() {
+    Ready ready = new Ready();
+    responses.add(ready);
+
+    for (int protocolVersion = 3; protocolVersion <= 4; protocolVersion++) {
+      for (int streamId : new int[] {0, 1, 127, 128, 32767}) {
+        Frame response = wrapResponse(request(protocolVersion, streamId), ready);
+        ByteBuf expected = frameCodec.encode(response);
+        ByteBuf actual = responses.encode(response, frameCodec, ByteBufAllocator.DEFAULT);
+        try {
+          assertThat(ByteBufUtil.hexDump(actual)).isEqualTo(ByteBufUtil.hexDump(expected));
+        } finally {
+          expected.release();
+          actual.release();
+        }
+      }
+    }
+  }
+
+  @Test
+  public void shouldNotReleaseTemplateWhenResponseIsReleased() {
+    Ready ready = new Ready();
+    responses.add(ready);
+    Frame response = wrapResponse(request(4, 1), ready);
+
+    responses.encode(response, frameCodec, ByteBufAllocator.DEFAULT).release();
+    ByteBuf actual = responses.encode(response, frameCodec, ByteBufAllocator.DEFAULT);
+
+    assertThat(actual.refCnt()).isEqualTo(1);
+    assertThat(actual.readableBytes()).isEqualTo(9);
+    actual.release();
+  }
+
+  @Test
+  public void shouldEvictTemplatesNotUsedRecentlyWhenFull() {
+    Ready hot = new Ready();
+    responses.add(hot);
+    Frame hotResponse = wrapResponse(request(4, 1), hot);
+    responses.encode(hotResponse, frameCodec, ByteBufAllocator.DEFAULT).release();
+
+    SetKeyspace[] cold = new SetKeyspace[PreEncodedResponses.MAX_RESPONSES];
+    for (int i = 0; i < cold.length; i++) {
+      cold[i] = new SetKeyspace("ks" + i);
+      responses.add(cold[i]);
+    }
+
+    // only the least recently used template was evicted to make room for the last one.
+    assertThat(responses.size()).isEqualTo(PreEncodedResponses.MAX_RESPONSES);
+    ByteBuf actual = responses.encode(hotResponse, frameCodec, ByteBufAllocator.DEFAULT);
+    assertThat(actual).isNotNull();
+    actual.release();
+    Frame evicted = wrapResponse(request(4, 1), cold[0]);
+    assertThat(responses.encode(evicted, frameCodec, ByteBufAllocator.DEFAULT)).isNull();
+    Frame kept = wrapResponse(request(4, 1), cold[cold.length - 1]);
+    actual = responses.encode(kept, frameCodec, ByteBufAllocator.DEFAULT);
+    assertThat(actual).isNotNull();
+    actual.release();
+  }
+
+  private static Frame request(int protocolVersion, int streamId) {
+    Frame frame = FrameUtils.wrapRequest(new Startup());
+    return new Frame(
+        protocolVersion,
+        false,
+        streamId,
+        false,
+        null,
+        -1,
+        -1,
+        frame.customPayload,
+        frame.warnings,
+        frame.message);
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.datastax.oss.protocol.internal.request.Execute;
+import com.datastax.oss.protocol.internal.request.Prepare;
+import com.datastax.oss.protocol.internal.request.Query;
+import com.datastax.oss.protocol.internal.request.query.QueryOptions;
+import com.datastax.oss.simulacron.common.stubbing.InternalStubMapping;
+import com.datastax.oss.simulacron.common.stubbing.Prime;
+import com.datastax.oss.simulacron.common.stubbing.StubMapping;
+import com.datastax.oss.simulacron.common.utils.FrameUtils;
+import java.util.Collections;
+import java.util.Optional;
+import org.junit.Test;
+
+public class PreparedStatementCacheTest {
+
+  private final QueryOptions options =
+      new QueryOptions(
+          1,
+          Collections.emptyList(),
+          Collections.emptyMap(),
+          true,
+          0,
+          null,
+          8,
+          0L,
+          null,
+          Integer.MIN_VALUE);
+
+  @Test
+  public void shouldRegisterEachQueryOnce() {
+    PreparedStatementCache cache = new PreparedStatementCache(10);
+    Prime prime = cache.register("select * from foo");
+
+    assertThat(prime).isInstanceOf(InternalStubMapping.class);
+    assertThat(cache.register("select * from foo")).isSameAs(prime);
+    assertThat(cache.size()).isEqualTo(1);
+
+    assertThat(find(cache, new Prepare("select * from foo"))).contains(prime);
+    assertThat(find(cache, new Query("select * from foo"))).contains(prime);
+    assertThat(find(cache, execute(prime))).contains(prime);
+    assertThat(find(cache, new Prepare("select * from bar"))).isEmpty();
+  }
+
+  @Test
+  public void shouldInferParameters() {
+    PreparedStatementCache cache = new PreparedStatementCache(10);
+
+    com.datastax.oss.simulacron.common.request.Query positional =
+        query(cache.register("select * from foo where k = ? and c = ?"));
+    assertThat(positional.params).containsOnlyKeys("0", "1");
+    assertThat(positional.paramTypes).containsEntry("0", "varchar").containsEntry("1", "varchar");
+
+    com.datastax.oss.simulacron.common.request.Query named =
+        query(cache.register("select * from foo where k = :k and c = :c"));
+    assertThat(named.params).containsOnlyKeys("k", "c");
+  }
+
+  @Test
+  public void shouldEvictEntriesNotHitSinceLastPass() {
+    PreparedStatementCache cache = new PreparedStatementCache(2);
+    Prime first = cache.register("select * from first");
+    Prime second = cache.register("select * from second");
+
+    // hit first so that it gets a second chance.
+    assertThat(find(cache, execute(first))).contains(first);
+    Prime third = cache.register("select * from third");
+
+    assertThat(cache.size()).isEqualTo(2);
+    assertThat(cache.getEvictionCount()).isEqualTo(1);
+    assertThat(find(cache, execute(first))).contains(first);
+    assertThat(find(cache, execute(second))).isEmpty();
+    assertThat(find(cache, execute(third))).contains(third);
+
+    // second is primed again by the next PREPARE.
+    Prime again = cache.register("select * from second");
+    assertThat(again).isNotSameAs(second);
+    assertThat(find(cache, execute(again))).contains(again);
+    assertThat(cache.getEvictionCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldCountHitsAndMisses() {
+    PreparedStatementCache cache = new PreparedStatementCache(10);
+    Prime prime = cache.register("select * from foo");
+
+    find(cache, execute(prime));
+    find(cache, new Prepare("select * from foo"));
+    find(cache, new Prepare("select * from bar"));
+    find(cache, new Execute(new byte[] {1, 2, 3, 4}, options));
+    // queries that were never prepared are not misses.
+    find(cache, new Query("select * from bar", options));
+
+    assertThat(cache.getHitCount()).isEqualTo(2);
+    assertThat(cache.getMissCount()).isEqualTo(2);
+    assertThat(cache.getEvictionCount()).isEqualTo(0);
+    assertThat(cache.getStats())
+        .extracting("capacity", "size", "hits", "misses", "evictions")
+        .containsExactly(10, 1, 2L, 2L, 0L);
+  }
+
+  @Test
+  public void shouldNotCacheWithoutCapacity() {
+    PreparedStatementCache cache = new PreparedStatementCache(0);
+    Prime prime = cache.register("select * from foo");
+
+    assertThat(prime.toPrepared()).isNotNull();
+    assertThat(cache.size()).isEqualTo(0);
+    assertThat(find(cache, execute(prime))).isEmpty();
+  }
+
+  @Test
+  public void shouldClearEntries() {
+    PreparedStatementCache cache = new PreparedStatementCache(10);
+    Prime prime = cache.register("select * from foo");
+    cache.register("select * from bar");
+
+    assertThat(cache.clear()).isEqualTo(2);
+    assertThat(cache.size()).isEqualTo(0);
+    assertThat(find(cache, execute(prime))).isEmpty();
+  }
+
+  private Execute execute(Prime prime) {
+    return new Execute(prime.toPrepared().preparedQueryId, options);
+  }
+
+  private static com.datastax.oss.simulacron.common.request.Query query(Prime prime) {
+    return (com.datastax.oss.simulacron.common.request.Query) prime.getPrimedRequest().when;
+  }
+
+  private static Optional<StubMapping> find(
+      PreparedStatementCache cache, com.datastax.oss.protocol.internal.Message message) {
+    return cache.find(null, FrameUtils.wrapRequest(message));
+  }
+}
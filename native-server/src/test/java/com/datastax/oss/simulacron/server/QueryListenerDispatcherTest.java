@@ -0,0 +1,131 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.datastax.oss.simulacron.common.cluster.ClusterSpec;
+import com.datastax.oss.simulacron.common.cluster.NodeSpec;
+import com.datastax.oss.simulacron.common.cluster.QueryLog;
+import io.netty.channel.local.LocalAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+
+public class QueryListenerDispatcherTest {
+
+  private final BoundCluster cluster = new BoundCluster(ClusterSpec.builder().build(), 0L, null);
+  private final BoundDataCenter dc = new BoundDataCenter(cluster);
+  private final BoundNode node =
+      new BoundNode(
+          new LocalAddress(UUID.randomUUID().toString()),
+          NodeSpec.builder().withName("node0").withId(0L).withCassandraVersion("3.0.14").build(),
+          Collections.emptyMap(),
+          cluster,
+          dc,
+          null,
+          null,
+          null,
+          false);
+
+  private QueryListenerDispatcher dispatcher;
+
+  @After
+  public void tearDown() {
+    if (dispatcher != null) {
+      dispatcher.close();
+    }
+  }
+
+  private static QueryLog log(String query) {
+    return new QueryLog(query, null, null, null, 0L, 0L, true);
+  }
+
+  @Test
+  public void shouldDispatchInOrderToEveryLevel() throws Exception {
+    dispatcher = new QueryListenerDispatcher(16);
+    List<String> nodeQueries = Collections.synchronizedList(new ArrayList<>());
+    CountDownLatch clusterLatch = new CountDownLatch(3);
+    node.registerQueryListener((n, l) -> nodeQueries.add(l.getQuery()));
+    cluster.registerQueryListener((n, l) -> clusterLatch.countDown());
+
+    for (int i = 0; i < 3; i++) {
+      assertThat(dispatcher.publish(node, log("select " + i), false)).isTrue();
+    }
+
+    assertThat(clusterLatch.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(nodeQueries).containsExactly("select 0", "select 1", "select 2");
+    assertThat(dispatcher.getDroppedCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldOnlyDispatchToListenersOfMatchingPhase() throws Exception {
+    dispatcher = new QueryListenerDispatcher(16);
+    List<Boolean> phases = Collections.synchronizedList(new ArrayList<>());
+    CountDownLatch latch = new CountDownLatch(1);
+    node.registerQueryListener((n, l) -> phases.add(false), false);
+    node.registerQueryListener(
+        (n, l) -> {
+          phases.add(true);
+          latch.countDown();
+        },
+        true);
+
+    dispatcher.publish(node, log("select"), true);
+
+    assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(phases).containsExactly(true);
+  }
+
+  @Test
+  public void shouldDropWhenFull() throws Exception {
+    dispatcher = new QueryListenerDispatcher(2);
+    CountDownLatch blocked = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    node.registerQueryListener(
+        (n, l) -> {
+          blocked.countDown();
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        });
+
+    // first event blocks the dispatching thread, the next two fill the buffer.
+    dispatcher.publish(node, log("select 0"), false);
+    assertThat(blocked.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(dispatcher.publish(node, log("select 1"), false)).isTrue();
+    assertThat(dispatcher.publish(node, log("select 2"), false)).isTrue();
+    assertThat(dispatcher.publish(node, log("select 3"), false)).isFalse();
+    assertThat(dispatcher.getDroppedCount()).isEqualTo(1);
+    assertThat(dispatcher.getPendingCount()).isEqualTo(2);
+
+    release.countDown();
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (dispatcher.getDispatchedCount() < 3 && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(dispatcher.getDispatchedCount()).isEqualTo(3);
+    assertThat(dispatcher.getPendingCount()).isEqualTo(0);
+    assertThat(dispatcher.getMaxLag(TimeUnit.NANOSECONDS)).isGreaterThan(0);
+  }
+}
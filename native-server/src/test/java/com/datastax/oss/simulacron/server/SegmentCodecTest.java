@@ -0,0 +1,159 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.CorruptedFrameException;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+public class SegmentCodecTest {
+
+  private final Random random = new Random(0);
+
+  @Test
+  public void shouldPackFramesWrittenBeforeFlushIntoOneSegment() {
+    EmbeddedChannel encoder = new EmbeddedChannel(new SegmentEncoder(null));
+    byte[][] frames = {bytes(10), bytes(20), bytes(30)};
+    for (byte[] frame : frames) {
+      encoder.write(Unpooled.wrappedBuffer(frame));
+    }
+    assertThat((Object) encoder.readOutbound()).isNull();
+    encoder.flush();
+
+    ByteBuf segment = encoder.readOutbound();
+    assertThat((Object) encoder.readOutbound()).isNull();
+    // header + payload + crc.
+    assertThat(segment.readableBytes()).isEqualTo(6 + 60 + 4);
+    // self-contained flag is set.
+    assertThat(segment.getUnsignedMediumLE(0)).isEqualTo(60 | 1 << 17);
+
+    assertThat(decode(new SegmentDecoder(null), segment)).isEqualTo(concat(frames));
+  }
+
+  @Test
+  public void shouldSplitLargeFramesAcrossSegments() {
+    EmbeddedChannel encoder = new EmbeddedChannel(new SegmentEncoder(null));
+    byte[] frame = bytes(SegmentEncoder.MAX_PAYLOAD_LENGTH * 2 + 100);
+    encoder.writeAndFlush(Unpooled.wrappedBuffer(frame));
+
+    ByteBuf all = Unpooled.buffer();
+    int segments = 0;
+    ByteBuf segment;
+    while ((segment = encoder.readOutbound()) != null) {
+      // self-contained flag is not set.
+      assertThat(segment.getUnsignedMediumLE(0) & 1 << 17).isEqualTo(0);
+      all.writeBytes(segment);
+      segment.release();
+      segments++;
+    }
+    assertThat(segments).isEqualTo(3);
+    assertThat(decode(new SegmentDecoder(null), all)).isEqualTo(frame);
+  }
+
+  @Test
+  public void shouldCompressSegmentsWithLz4() {
+    Lz4Compressor compressor = new Lz4Compressor();
+    EmbeddedChannel encoder = new EmbeddedChannel(new SegmentEncoder(compressor));
+    byte[] compressible = new byte[1000];
+    Arrays.fill(compressible, (byte) 'a');
+    byte[] incompressible = bytes(16);
+    encoder.writeAndFlush(Unpooled.wrappedBuffer(compressible));
+    encoder.writeAndFlush(Unpooled.wrappedBuffer(incompressible));
+
+    ByteBuf compressed = encoder.readOutbound();
+    assertThat(compressed.readableBytes()).isLessThan(compressible.length);
+    ByteBuf stored = encoder.readOutbound();
+    // uncompressed length of 0 when stored as is.
+    assertThat(stored.getUnsignedIntLE(0) >>> 17 & SegmentEncoder.MAX_PAYLOAD_LENGTH).isEqualTo(0);
+
+    ByteBuf both = Unpooled.wrappedBuffer(compressed, stored);
+    assertThat(decode(new SegmentDecoder(compressor), both))
+        .isEqualTo(concat(compressible, incompressible));
+  }
+
+  @Test
+  public void shouldRejectCorruptedSegments() {
+    EmbeddedChannel encoder = new EmbeddedChannel(new SegmentEncoder(null));
+    encoder.writeAndFlush(Unpooled.wrappedBuffer(bytes(10)));
+    ByteBuf segment = Unpooled.buffer().writeBytes((ByteBuf) encoder.readOutbound());
+    segment.setByte(8, segment.getByte(8) + 1);
+
+    try {
+      decode(new SegmentDecoder(null), segment);
+      fail("Expected a CRC mismatch");
+    } catch (CorruptedFrameException e) {
+      assertThat(e).hasMessage("Segment payload CRC mismatch");
+    }
+  }
+
+  @Test
+  public void shouldComputeCrc24LikeBitwiseImplementation() {
+    for (int i = 0; i < 1000; i++) {
+      long value = random.nextLong() & 0xFFFFFFFFFFL;
+      int length = 3 + random.nextInt(3);
+      assertThat(Crc.crc24(value, length)).isEqualTo(bitwiseCrc24(value, length));
+    }
+  }
+
+  private static int bitwiseCrc24(long value, int length) {
+    int crc = 0x875060;
+    for (int i = 0; i < length; i++) {
+      crc ^= (int) ((value & 0xff) << 16);
+      value >>= 8;
+      for (int j = 0; j < 8; j++) {
+        crc <<= 1;
+        if ((crc & 0x1000000) != 0) {
+          crc ^= 0x1974F0B;
+        }
+      }
+    }
+    return crc;
+  }
+
+  private byte[] decode(SegmentDecoder decoder, ByteBuf segments) {
+    EmbeddedChannel channel = new EmbeddedChannel(decoder);
+    channel.writeInbound(segments);
+    ByteBuf all = Unpooled.buffer();
+    ByteBuf payload;
+    while ((payload = channel.readInbound()) != null) {
+      all.writeBytes(payload);
+      payload.release();
+    }
+    byte[] result = new byte[all.readableBytes()];
+    all.readBytes(result);
+    return result;
+  }
+
+  private byte[] bytes(int length) {
+    byte[] bytes = new byte[length];
+    random.nextBytes(bytes);
+    return bytes;
+  }
+
+  private static byte[] concat(byte[]... chunks) {
+    ByteBuf all = Unpooled.wrappedBuffer(chunks);
+    byte[] result = new byte[all.readableBytes()];
+    all.readBytes(result);
+    return result;
+  }
+}
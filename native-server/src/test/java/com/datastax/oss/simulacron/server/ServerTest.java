@@ -15,6 +15,8 @@
  */
 package com.datastax.oss.simulacron.server;
 
+import static com.datastax.oss.simulacron.common.stubbing.PrimeDsl.noRows;
+import static com.datastax.oss.simulacron.common.stubbing.PrimeDsl.when;
 import static com.datastax.oss.simulacron.server.AddressResolver.localAddressResolver;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.fail;
@@ -22,6 +24,7 @@ import static org.junit.Assert.fail;
 import com.datastax.oss.protocol.internal.Compressor;
 import com.datastax.oss.protocol.internal.Frame;
 import com.datastax.oss.protocol.internal.FrameCodec;
+import com.datastax.oss.protocol.internal.Message;
 import com.datastax.oss.protocol.internal.ProtocolConstants;
 import com.datastax.oss.protocol.internal.ProtocolV3ClientCodecs;
 import com.datastax.oss.protocol.internal.ProtocolV4ClientCodecs;
@@ -55,10 +58,15 @@ import com.datastax.oss.simulacron.common.stubbing.EmptyReturnMetadataHandler;
 import com.datastax.oss.simulacron.common.utils.FrameUtils;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPipeline;
 import io.netty.channel.ChannelPromise;
 import io.netty.channel.DefaultEventLoopGroup;
 import io.netty.channel.EventLoopGroup;
@@ -74,11 +82,15 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import org.assertj.core.util.Lists;
 import org.junit.After;
+import org.junit.Assume;
 import org.junit.Test;
 
 public class ServerTest {
@@ -267,6 +279,49 @@ public class ServerTest {
     }
   }
 
+  @Test
+  public void testRegisterClusterDoesNotBlockWhileBinding() throws Exception {
+    // Designated address to be slow to bind.
+    SocketAddress slowAddr = localAddressResolver.get();
+
+    ServerBootstrap serverBootstrap =
+        new ServerBootstrap()
+            .group(eventLoop)
+            .channel(LocalServerChannel.class)
+            .handler(new SlowBindHandler(slowAddr))
+            .childHandler(new Server.Initializer());
+
+    HashedWheelTimer timer = new HashedWheelTimer();
+    try (Server slowServer =
+        new Server(
+            localAddressResolver,
+            eventLoop,
+            true,
+            timer,
+            true,
+            TimeUnit.NANOSECONDS.convert(5, TimeUnit.SECONDS),
+            new StubStore(),
+            false,
+            serverBootstrap)) {
+
+      ClusterSpec cluster = ClusterSpec.builder().build();
+      DataCenterSpec dc = cluster.addDataCenter().build();
+      dc.addNode().withAddress(slowAddr).build();
+      dc.addNode().build();
+
+      // Registering should return immediately even though one node takes a second to bind.
+      CompletableFuture<BoundCluster> future =
+          slowServer.registerAsync(cluster).toCompletableFuture();
+      assertThat(future).isNotDone();
+
+      try (BoundCluster boundCluster = future.get(5, TimeUnit.SECONDS)) {
+        assertThat(boundCluster.getNodes()).hasSize(2);
+      }
+    } finally {
+      timer.stop();
+    }
+  }
+
   @Test
   public void testUnregisterCluster() throws Exception {
     ClusterSpec cluster = ClusterSpec.builder().withNodes(2, 2).build();
@@ -1186,4 +1241,237 @@ public class ServerTest {
       }
     }
   }
+
+  @Test
+  public void testDelayedActionsWithEachActionScheduling() throws Exception {
+    for (ActionScheduling actionScheduling : ActionScheduling.values()) {
+      try (Server server =
+              Server.builder()
+                  .withEventLoopGroup(eventLoop, LocalServerChannel.class)
+                  .withAddressResolver(localAddressResolver)
+                  .withActionScheduling(actionScheduling)
+                  .build();
+          BoundNode boundNode = server.register(NodeSpec.builder());
+          MockClient client = new MockClient(eventLoop).connect(boundNode.getAddress())) {
+        boundNode.prime(
+            when("select * from delayed").then(noRows()).delay(50, TimeUnit.MILLISECONDS));
+
+        long start = System.nanoTime();
+        client.write(new Query("select * from delayed"));
+        Frame response = client.next();
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertThat(response.message).as(actionScheduling.name()).isInstanceOf(Rows.class);
+        assertThat(elapsedMs).as(actionScheduling.name()).isGreaterThanOrEqualTo(50);
+      }
+    }
+  }
+
+  @Test
+  public void testReusePortListenersIgnoredWithoutEpoll() throws Exception {
+    try (Server server =
+            Server.builder()
+                .withEventLoopGroup(eventLoop, LocalServerChannel.class)
+                .withAddressResolver(localAddressResolver)
+                .withReusePortListeners(4)
+                .build();
+        BoundNode boundNode = server.register(NodeSpec.builder());
+        MockClient client = new MockClient(eventLoop).connect(boundNode.getAddress())) {
+      assertThat(boundNode.reusePortChannels.get()).isEmpty();
+
+      client.write(new Startup());
+      assertThat(client.next().message).isInstanceOf(Ready.class);
+    }
+  }
+
+  @Test
+  public void testReusePortListenersShouldBindAndUnbindTogether() throws Exception {
+    Assume.assumeTrue(io.netty.channel.epoll.Epoll.isAvailable());
+    try (Server server = Server.builder().withReusePortListeners(3).build();
+        BoundNode boundNode = server.register(NodeSpec.builder())) {
+      List<Channel> listeners = new ArrayList<>(boundNode.reusePortChannels.get());
+      listeners.add(boundNode.channel.get());
+      assertThat(listeners).hasSize(3).allMatch(Channel::isOpen);
+      assertThat(listeners).allMatch(c -> c.localAddress().equals(boundNode.getAddress()));
+
+      boundNode.stop();
+      assertThat(listeners).noneMatch(Channel::isOpen);
+
+      boundNode.start();
+      assertThat(boundNode.reusePortChannels.get()).hasSize(2).allMatch(Channel::isOpen);
+      assertThat(boundNode.channel.get().isOpen()).isTrue();
+    }
+  }
+
+  @Test
+  public void testEventLoopIsolationPerDataCenter() throws Exception {
+    ServerOptions options =
+        ServerOptions.builder()
+            .withEventLoopIsolation(ServerOptions.EventLoopIsolation.DATA_CENTER, 1)
+            .build();
+    try (Server server = Server.builder().withTransport(Transport.NIO).build()) {
+      BoundCluster cluster =
+          server.register(ClusterSpec.builder().withNodes(1, 1).build(), options);
+      assertThat(cluster.eventLoopGroups).hasSize(2);
+
+      for (BoundDataCenter dc : cluster.getDataCenters()) {
+        Channel channel = dc.getNodes().iterator().next().channel.get();
+        assertThat(channel.eventLoop().parent()).isNotSameAs(server.eventLoopGroup);
+        String thread = channel.eventLoop().submit(() -> Thread.currentThread().getName()).get();
+        assertThat(thread)
+            .startsWith("simulacron-io-cluster-" + cluster.getId() + "-dc-" + dc.getId() + "-");
+      }
+
+      cluster.unregister();
+      assertThat(cluster.eventLoopGroups).allMatch(EventLoopGroup::isTerminated);
+      assertThat(server.eventLoopGroup.isShutdown()).isFalse();
+    }
+  }
+
+  @Test
+  public void testRegisterIsolatedNodeFailsWhenAddressAlreadyBound() throws Exception {
+    ServerOptions options =
+        ServerOptions.builder()
+            .withEventLoopIsolation(ServerOptions.EventLoopIsolation.CLUSTER, 1)
+            .build();
+    try (Server server = Server.builder().withTransport(Transport.NIO).build()) {
+      BoundNode bound = server.register(NodeSpec.builder());
+      try {
+        server.register(NodeSpec.builder().withAddress(bound.getAddress()).build(), options);
+        fail();
+      } catch (Exception e) {
+        assertThat(e.getCause()).isInstanceOf(BindNodeException.class);
+      }
+
+      // the cluster wrapping the node should not have been registered.
+      assertThat(server.getClusters()).containsOnly(bound.getCluster());
+    }
+  }
+
+  @Test
+  public void testEventLoopIsolationNeedsKnownTransport() throws Exception {
+    ServerOptions options =
+        ServerOptions.builder()
+            .withEventLoopIsolation(ServerOptions.EventLoopIsolation.CLUSTER, 1)
+            .build();
+    try (Server server =
+        Server.builder()
+            .withEventLoopGroup(eventLoop, LocalServerChannel.class)
+            .withAddressResolver(localAddressResolver)
+            .build()) {
+      server.register(ClusterSpec.builder().withNodes(1).build(), options);
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e.getMessage()).contains("known transport");
+    }
+  }
+
+  @Test
+  public void testProtocolV5UsesSegmentsAfterReady() throws Exception {
+    ClusterSpec spec = ClusterSpec.builder().withCassandraVersion("4.0.0").withNodes(1).build();
+    try (BoundCluster cluster = localServer.register(spec)) {
+      BoundNode node = cluster.getNodes().iterator().next();
+      node.prime(when("select * from segments").then(noRows()));
+
+      // A v4 connection keeps receiving legacy frames, starting with the response version byte.
+      byte[] v4Response = queryRaw(node, 4, "select * from segments");
+      assertThat(v4Response[0]).isEqualTo((byte) 0x84);
+
+      // A v5 connection receives a self-contained segment wrapping the response frame.
+      byte[] v5Response = queryRaw(node, 5, "select * from segments");
+      ByteBuf segment = Unpooled.wrappedBuffer(v5Response);
+      int header = segment.getUnsignedMediumLE(0);
+      int payloadLength = header & SegmentEncoder.MAX_PAYLOAD_LENGTH;
+      assertThat(header & 1 << 17).isNotZero();
+      assertThat(v5Response.length)
+          .isEqualTo(SegmentEncoder.HEADER_LENGTH + payloadLength + SegmentEncoder.CRC32_LENGTH);
+      assertThat(segment.getByte(SegmentEncoder.HEADER_LENGTH)).isEqualTo((byte) 0x85);
+    }
+  }
+
+  @Test
+  public void testRespondsWithOverloadedWhenOverCapacity() throws Exception {
+    try (BoundNode node = localServer.register(NodeSpec.builder());
+        MockClient client = new MockClient(eventLoop).connect(node.getAddress())) {
+      node.prime(when("select * from capacity").then(noRows()));
+      // a single request per second, without burst on top of it.
+      node.setCapacity(new CapacityLimits(1, 1, 0, CapacityLimits.Overload.REJECT));
+
+      client.write(new Startup());
+      assertThat(client.next().message).isInstanceOf(Ready.class);
+
+      List<Frame> responses = new ArrayList<>();
+      for (int i = 0; i < 3; i++) {
+        client.write(new Query("select * from capacity"));
+      }
+      for (int i = 0; i < 3; i++) {
+        responses.add(client.next());
+      }
+
+      assertThat(responses.get(0).message).isInstanceOf(Rows.class);
+      Frame rejected = responses.get(responses.size() - 1);
+      assertThat(rejected.message).isInstanceOf(Error.class);
+      assertThat(((Error) rejected.message).code)
+          .isEqualTo(ProtocolConstants.ErrorCode.OVERLOADED);
+      assertThat(node.getCapacity().getRejected()).isGreaterThanOrEqualTo(1);
+    }
+  }
+
+  /**
+   * Goes through STARTUP and READY then sends the given query, switching the client to segments
+   * after READY when the protocol version requires it.
+   *
+   * @return the raw bytes the query response was received as.
+   */
+  private byte[] queryRaw(BoundNode node, int protocolVersion, String query) throws Exception {
+    FrameCodec<ByteBuf> frameCodec =
+        new FrameCodec<>(
+            new ByteBufCodec(),
+            Compressor.none(),
+            new ProtocolV4ClientCodecs(),
+            new ProtocolV5ClientCodecs());
+    BlockingQueue<byte[]> received = new LinkedBlockingQueue<>();
+    try (MockClient client = new MockClient(eventLoop, frameCodec)) {
+      client.connect(node.getAddress());
+      client.write(frame(protocolVersion, new Startup()));
+      Frame ready = client.next();
+      assertThat(ready.message).isInstanceOf(Ready.class);
+
+      ChannelPipeline pipeline = client.channel.pipeline();
+      if (FrameEncoder.usesSegments(ready)) {
+        pipeline.addFirst(new SegmentDecoder(null));
+        pipeline.addFirst(new SegmentEncoder(null));
+      }
+      pipeline.addFirst(
+          new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+              if (msg instanceof ByteBuf) {
+                received.offer(ByteBufUtil.getBytes((ByteBuf) msg));
+              }
+              ctx.fireChannelRead(msg);
+            }
+          });
+
+      client.write(frame(protocolVersion, new Query(query)));
+      Frame response = client.next();
+      assertThat(response.protocolVersion).isEqualTo(protocolVersion);
+      assertThat(response.message).isInstanceOf(Rows.class);
+      return received.poll(5, TimeUnit.SECONDS);
+    }
+  }
+
+  private static Frame frame(int protocolVersion, Message message) {
+    return new Frame(
+        protocolVersion,
+        false,
+        0,
+        false,
+        null,
+        -1,
+        -1,
+        FrameUtils.emptyCustomPayload,
+        Collections.emptyList(),
+        message);
+  }
 }
@@ -0,0 +1,142 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.server;
+
+import static com.datastax.oss.simulacron.common.stubbing.PrimeDsl.noRows;
+import static com.datastax.oss.simulacron.common.stubbing.PrimeDsl.when;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.datastax.oss.protocol.internal.Frame;
+import com.datastax.oss.protocol.internal.request.Execute;
+import com.datastax.oss.protocol.internal.request.Prepare;
+import com.datastax.oss.protocol.internal.request.Query;
+import com.datastax.oss.protocol.internal.request.query.QueryOptions;
+import com.datastax.oss.simulacron.common.cluster.AbstractNode;
+import com.datastax.oss.simulacron.common.stubbing.Action;
+import com.datastax.oss.simulacron.common.stubbing.Prime;
+import com.datastax.oss.simulacron.common.stubbing.StubMapping;
+import com.datastax.oss.simulacron.common.utils.FrameUtils;
+import com.datastax.oss.simulacron.common.utils.PreparedIdUtils;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import org.junit.Test;
+
+public class StubStoreTest {
+
+  private final StubStore stubStore = new StubStore();
+
+  private final QueryOptions options =
+      new QueryOptions(
+          1,
+          Collections.emptyList(),
+          Collections.emptyMap(),
+          true,
+          0,
+          null,
+          8,
+          0L,
+          null,
+          Integer.MIN_VALUE);
+
+  @Test
+  public void shouldFindPrimeByQueryAndQueryId() {
+    Prime other = when("select * from other").then(noRows()).build();
+    Prime prime = when("select * from foo").then(noRows()).build();
+    stubStore.register(other);
+    stubStore.register(prime);
+
+    assertThat(find(new Query("select * from foo"))).contains(prime);
+    assertThat(find(new Prepare("select * from foo"))).contains(prime);
+
+    byte[] queryId = BigInteger.valueOf("select * from foo".hashCode()).toByteArray();
+    assertThat(find(new Execute(queryId, options))).contains(prime);
+
+    assertThat(find(new Query("select * from bar"))).isEmpty();
+  }
+
+  @Test
+  public void shouldFindPrimesByPreparedId() {
+    List<Prime> primes = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      Prime prime = when("select * from table" + i).then(noRows()).build();
+      primes.add(prime);
+      stubStore.register(prime);
+    }
+
+    for (Prime prime : primes) {
+      byte[] preparedId = prime.toPrepared().preparedQueryId;
+      assertThat(find(new Execute(preparedId, options))).contains(prime);
+    }
+    assertThat(find(new Execute(PreparedIdUtils.toPreparedId(42), options))).isEmpty();
+    assertThat(find(new Execute(new byte[0], options))).isEmpty();
+
+    stubStore.clear();
+    assertThat(find(new Execute(primes.get(0).toPrepared().preparedQueryId, options))).isEmpty();
+  }
+
+  @Test
+  public void shouldPreserveRegistrationOrderAcrossIndexedAndScannedMappings() {
+    StubMapping catchAll = new CatchAllMapping();
+    Prime first = when("select * from foo").then(noRows()).build();
+    Prime second = when("select * from foo").then(noRows()).build();
+
+    stubStore.register(first);
+    stubStore.register(catchAll);
+    stubStore.register(second);
+
+    // first was registered before the unindexed mapping so it should win.
+    assertThat(find(new Query("select * from foo"))).contains(first);
+    // no indexed prime for this query, the unindexed mapping should be used.
+    assertThat(find(new Query("select * from bar"))).contains(catchAll);
+
+    stubStore.clear();
+    stubStore.register(catchAll);
+    stubStore.register(first);
+
+    // unindexed mapping was registered first so it should win.
+    assertThat(find(new Query("select * from foo"))).contains(catchAll);
+  }
+
+  @Test
+  public void shouldClearAllMappings() {
+    stubStore.register(when("select * from foo").then(noRows()).build());
+    stubStore.register(new CatchAllMapping());
+    stubStore.registerInternal(when("select * from bar").then(noRows()).build());
+
+    assertThat(stubStore.clear()).isEqualTo(3);
+    assertThat(find(new Query("select * from foo"))).isEmpty();
+    assertThat(stubStore.clear()).isEqualTo(0);
+  }
+
+  private Optional<StubMapping> find(com.datastax.oss.protocol.internal.Message message) {
+    return stubStore.find(null, FrameUtils.wrapRequest(message));
+  }
+
+  private static class CatchAllMapping extends StubMapping {
+    @Override
+    public boolean matches(Frame frame) {
+      return true;
+    }
+
+    @Override
+    public List<Action> getActions(AbstractNode node, Frame frame) {
+      return Collections.emptyList();
+    }
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class TrafficShaperTest {
+
+  private final TrafficShaper dataCenterShaper = new TrafficShaper("dataCenterTraffic");
+
+  private final TrafficShaper nodeShaper = new TrafficShaper("nodeTraffic");
+
+  @Test
+  public void shouldDelayWritesByCombinedLatency() throws Exception {
+    dataCenterShaper.setLimits(new TrafficLimits(0, 0, 50), Collections.emptyList());
+    nodeShaper.setLimits(new TrafficLimits(0, 0, 50), Collections.emptyList());
+    EmbeddedChannel channel = new EmbeddedChannel(new LatencyHandler(dataCenterShaper, nodeShaper));
+
+    long start = System.nanoTime();
+    channel.writeAndFlush("response");
+    assertThat((Object) channel.readOutbound()).isNull();
+
+    while (channel.outboundMessages().isEmpty()) {
+      Thread.sleep(10);
+      channel.runPendingTasks();
+    }
+    assertThat(System.nanoTime() - start)
+        .isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+    assertThat((Object) channel.readOutbound()).isEqualTo("response");
+  }
+
+  @Test
+  public void shouldPreserveOrderWhenLatencyIsLowered() throws Exception {
+    nodeShaper.setLimits(new TrafficLimits(0, 0, 100), Collections.emptyList());
+    EmbeddedChannel channel = new EmbeddedChannel(new LatencyHandler(nodeShaper));
+
+    channel.writeAndFlush("first");
+    nodeShaper.setLimits(TrafficLimits.UNLIMITED, Collections.emptyList());
+    channel.writeAndFlush("second");
+    assertThat((Object) channel.readOutbound()).isNull();
+
+    while (channel.outboundMessages().size() < 2) {
+      Thread.sleep(10);
+      channel.runPendingTasks();
+    }
+    assertThat((Object) channel.readOutbound()).isEqualTo("first");
+    assertThat((Object) channel.readOutbound()).isEqualTo("second");
+  }
+
+  @Test
+  public void shouldInstallBandwidthShapingOnlyOnceLimited() {
+    EmbeddedChannel channel = new EmbeddedChannel();
+    try {
+      nodeShaper.setLimits(new TrafficLimits(0, 0, 10), Collections.singletonList(channel));
+      assertThat(channel.pipeline().get("nodeTraffic")).isNull();
+      assertThat(nodeShaper.report()).isNull();
+
+      nodeShaper.setLimits(new TrafficLimits(1024, 2048, 0), Collections.singletonList(channel));
+      assertThat(channel.pipeline().get("nodeTraffic")).isNotNull();
+      assertThat(nodeShaper.report()).isNotNull();
+
+      // installing again for a new connection is a no-op when already there.
+      nodeShaper.install(channel);
+      assertThat(nodeShaper.getLimits().getReadBytesPerSecond()).isEqualTo(1024);
+      assertThat(nodeShaper.getLimits().getWriteBytesPerSecond()).isEqualTo(2048);
+    } finally {
+      nodeShaper.release();
+      channel.close();
+    }
+  }
+}
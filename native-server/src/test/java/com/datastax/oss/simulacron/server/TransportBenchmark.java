@@ -0,0 +1,165 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.server;
+
+import static com.datastax.oss.simulacron.common.stubbing.PrimeDsl.noRows;
+import static com.datastax.oss.simulacron.common.stubbing.PrimeDsl.when;
+
+import com.datastax.oss.protocol.internal.Compressor;
+import com.datastax.oss.protocol.internal.Frame;
+import com.datastax.oss.protocol.internal.FrameCodec;
+import com.datastax.oss.protocol.internal.Message;
+import com.datastax.oss.protocol.internal.request.Query;
+import com.datastax.oss.protocol.internal.request.Startup;
+import com.datastax.oss.protocol.internal.response.Ready;
+import com.datastax.oss.simulacron.common.cluster.NodeSpec;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compares the request throughput of the server with each available {@link Transport}, using
+ * closed-loop clients that send a new request as soon as one is answered.
+ *
+ * <p>This is not part of the test suite, run its main method with optional arguments: number of
+ * connections (64), requests in flight per connection (128) and duration in seconds (10).
+ *
+ * <p>io_uring is reported as not available with this build: the incubator io_uring transport needs
+ * a much more recent Netty than the one the server is built with, so it can't be added to the
+ * classpath. Only epoll and NIO are compared until Netty is upgraded.
+ */
+public class TransportBenchmark {
+
+  private static final String QUERY = "select * from transport";
+
+  public static void main(String[] args) throws Exception {
+    int connections = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+    int inFlight = args.length > 1 ? Integer.parseInt(args[1]) : 128;
+    int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+    for (Transport transport : Transport.values()) {
+      if (transport == Transport.AUTO) {
+        continue;
+      }
+      if (!transport.isAvailable()) {
+        System.out.printf("%-8s not available%n", transport);
+        continue;
+      }
+      long responses = run(transport, connections, inFlight, seconds);
+      System.out.printf(
+          "%-8s %d connections, %d in flight each: %.0f req/s%n",
+          transport, connections, inFlight, responses / (double) seconds);
+    }
+  }
+
+  private static long run(Transport transport, int connections, int inFlight, int seconds)
+      throws Exception {
+    LongAdder received = new LongAdder();
+    CountDownLatch ready = new CountDownLatch(connections);
+    FrameCodec<ByteBuf> frameCodec =
+        FrameCodec.defaultClient(new ByteBufCodec(), Compressor.none());
+
+    EventLoopGroup clientGroup = new NioEventLoopGroup();
+    // logging every request would measure the activity log rather than the transport.
+    try (Server server =
+            Server.builder().withTransport(transport).withActivityLoggingEnabled(false).build();
+        BoundNode node = server.register(NodeSpec.builder())) {
+      node.prime(when(QUERY).then(noRows()));
+
+      Bootstrap bootstrap =
+          new Bootstrap()
+              .group(clientGroup)
+              .channel(NioSocketChannel.class)
+              .handler(
+                  new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel ch) {
+                      ch.pipeline()
+                          .addLast(new FrameEncoder(frameCodec))
+                          .addLast(new TestFrameDecoder(frameCodec))
+                          .addLast(
+                              new ChannelInboundHandlerAdapter() {
+                                @Override
+                                public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                                  Frame frame = (Frame) msg;
+                                  if (frame.message instanceof Ready) {
+                                    ready.countDown();
+                                    return;
+                                  }
+                                  received.increment();
+                                  // reuse the stream id of the response for the next request.
+                                  ctx.writeAndFlush(request(frame.streamId, new Query(QUERY)));
+                                }
+                              });
+                    }
+                  });
+
+      List<Channel> channels = new ArrayList<>(connections);
+      for (int i = 0; i < connections; i++) {
+        Channel channel = bootstrap.connect(node.getAddress()).sync().channel();
+        channel.writeAndFlush(request(0, new Startup()));
+        channels.add(channel);
+      }
+      ready.await(10, TimeUnit.SECONDS);
+
+      for (Channel channel : channels) {
+        for (int streamId = 0; streamId < inFlight; streamId++) {
+          channel.write(request(streamId, new Query(QUERY)));
+        }
+        channel.flush();
+      }
+
+      // warm up for a second before measuring.
+      Thread.sleep(1000);
+      long start = received.sum();
+      Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+      long responses = received.sum() - start;
+
+      for (Channel channel : channels) {
+        channel.close().sync();
+      }
+      return responses;
+    } finally {
+      clientGroup.shutdownGracefully(0, 0, TimeUnit.SECONDS).sync();
+    }
+  }
+
+  private static Frame request(int streamId, Message message) {
+    return new Frame(
+        4,
+        false,
+        streamId,
+        false,
+        null,
+        -1,
+        -1,
+        Collections.emptyMap(),
+        Collections.emptyList(),
+        message);
+  }
+}
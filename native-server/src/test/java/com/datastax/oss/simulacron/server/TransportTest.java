@@ -0,0 +1,50 @@
+/*
+ * Copyright DataStax, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.datastax.oss.simulacron.server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+public class TransportTest {
+
+  @Test
+  public void shouldResolveToAnAvailableTransport() {
+    for (Transport transport : Transport.values()) {
+      Transport resolved = transport.resolve();
+      assertThat(resolved).isNotEqualTo(Transport.AUTO);
+      assertThat(resolved.isAvailable()).isTrue();
+    }
+  }
+
+  @Test
+  public void shouldKeepAvailableTransport() {
+    assertThat(Transport.NIO.resolve()).isEqualTo(Transport.NIO);
+    if (Transport.EPOLL.isAvailable()) {
+      assertThat(Transport.EPOLL.resolve()).isEqualTo(Transport.EPOLL);
+    }
+  }
+
+  @Test
+  public void shouldFallBackInOrder() {
+    Transport expected =
+        Transport.IO_URING.isAvailable()
+            ? Transport.IO_URING
+            : Transport.EPOLL.isAvailable() ? Transport.EPOLL : Transport.NIO;
+    assertThat(Transport.IO_URING.resolve()).isEqualTo(expected);
+    assertThat(Transport.AUTO.resolve()).isEqualTo(expected);
+  }
+}
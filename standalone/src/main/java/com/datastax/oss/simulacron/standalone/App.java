@@ -18,6 +18,7 @@ package com.datastax.oss.simulacron.standalone;
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
 import com.beust.jcommander.JCommander;
+import com.datastax.oss.simulacron.common.delay.EmpiricalDelay;
 import com.datastax.oss.simulacron.http.server.ActivityLogManager;
 import com.datastax.oss.simulacron.http.server.ClusterManager;
 import com.datastax.oss.simulacron.http.server.EndpointManager;
@@ -29,6 +30,7 @@ import com.datastax.oss.simulacron.server.NodePerPortResolver;
 import com.datastax.oss.simulacron.server.Server;
 import java.net.InetAddress;
 import java.net.ServerSocket;
+import java.nio.file.Paths;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -80,7 +82,21 @@ public class App {
     byte[] ipBytes = ipAddress.getAddress();
 
     Server.Builder builder =
-        Server.builder().withActivityLoggingEnabled(!cli.disableActivityLogging);
+        Server.builder()
+            .withActivityLoggingEnabled(!cli.disableActivityLogging)
+            .withActivityLogCapacity(cli.activityLogCapacity)
+            .withActivityLogEvictionPolicy(cli.activityLogEvictionPolicy)
+            .withTransport(cli.transport);
+
+    if (cli.activityLogSpillDirectory != null) {
+      builder =
+          builder.withActivityLogSpill(
+              Paths.get(cli.activityLogSpillDirectory), cli.activityLogSegmentSize);
+    }
+
+    if (cli.histogramDirectory != null) {
+      EmpiricalDelay.setHistogramDirectory(Paths.get(cli.histogramDirectory));
+    }
 
     if (cli.startingPort > -1) {
       builder =
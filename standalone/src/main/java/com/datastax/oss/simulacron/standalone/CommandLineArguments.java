@@ -19,6 +19,9 @@ import ch.qos.logback.classic.Level;
 import com.beust.jcommander.IStringConverter;
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.ParameterException;
+import com.datastax.oss.simulacron.common.cluster.ActivityLog;
+import com.datastax.oss.simulacron.common.cluster.ActivityLogSpill;
+import com.datastax.oss.simulacron.server.Transport;
 
 class CommandLineArguments {
 
@@ -59,6 +62,43 @@ class CommandLineArguments {
       description = "Disables activity logging by default")
   boolean disableActivityLogging = false;
 
+  @Parameter(
+      names = {"--activity-log-capacity"},
+      description =
+          "Maximum number of entries kept in each node's activity log, 0 (default) for unbounded")
+  int activityLogCapacity = ActivityLog.UNBOUNDED;
+
+  @Parameter(
+      names = {"--activity-log-eviction"},
+      description = "What a full activity log does with new entries, DROP_OLDEST or DROP_NEWEST")
+  ActivityLog.EvictionPolicy activityLogEvictionPolicy = ActivityLog.EvictionPolicy.DROP_OLDEST;
+
+  @Parameter(
+      names = {"--activity-log-spill-dir"},
+      description =
+          "Directory where each node's activity log is appended to memory-mapped files instead of"
+              + " being kept in memory")
+  String activityLogSpillDirectory = null;
+
+  @Parameter(
+      names = {"--activity-log-segment-size"},
+      description = "Size in bytes of each activity log file when spilling, 64 MiB by default")
+  int activityLogSegmentSize = ActivityLogSpill.DEFAULT_SEGMENT_SIZE;
+
+  @Parameter(
+      names = {"--histogram-dir"},
+      description =
+          "Directory that the HdrHistogram logs of empirical delays primed over HTTP are read from,"
+              + " only inline samples are accepted if not set")
+  String histogramDirectory = null;
+
+  @Parameter(
+      names = {"--transport"},
+      description =
+          "Transport of the native server's event loops, AUTO (default), IO_URING, EPOLL or NIO."
+              + " Falls back to the next one when not available")
+  Transport transport = Transport.AUTO;
+
   @Parameter(
       names = {"--help", "-h"},
       hidden = true)